@@ -20,11 +20,14 @@
 package org.kiji.schema.platform;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue.KeyComparator;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.io.hfile.CacheConfig;
 import org.apache.hadoop.hbase.io.hfile.Compression;
@@ -74,6 +77,23 @@ public final class CDH41MR1SchemaBridge extends SchemaPlatformBridge {
     hTable.setWriteBufferSize(bufSize);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean supportsSharedHTableResources() {
+    // HBase 0.92 HTables cannot use an external connection and thread pool.
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public HTableInterface newHTable(
+      String tableName, Configuration conf, HConnection connection, ExecutorService pool)
+      throws IOException {
+    // HBase 0.92 HTables cannot use an external connection and thread pool.
+    // HTables created from equivalent configurations still share their connection.
+    return new HTable(conf, tableName);
+  }
+
   /** {@inheritDoc} */
   @Override
   public HFile.Writer createHFileWriter(Configuration conf,
@@ -20,15 +20,19 @@
 package org.kiji.schema.platform;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue.KeyComparator;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.io.hfile.CacheConfig;
 import org.apache.hadoop.hbase.io.hfile.Compression;
 import org.apache.hadoop.hbase.io.hfile.HFile;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.mapred.JobConf;
 
@@ -73,6 +77,25 @@ public final class CDH42MR1SchemaBridge extends SchemaPlatformBridge {
     hTable.setWriteBufferSize(bufSize);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean supportsSharedHTableResources() {
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public HTableInterface newHTable(
+      String tableName, Configuration conf, HConnection connection, ExecutorService pool)
+      throws IOException {
+    final HTable htable = new HTable(Bytes.toBytes(tableName), connection, pool);
+    // The HTable is set up from the configuration of the shared connection:
+    // apply the per-handle settings of the given configuration.
+    htable.setWriteBufferSize(conf.getLong("hbase.client.write.buffer", 2097152));
+    htable.setScannerCaching(conf.getInt("hbase.client.scanner.caching", 1));
+    return htable;
+  }
+
   /** {@inheritDoc} */
   @Override
   public HFile.Writer createHFileWriter(Configuration conf,
@@ -233,7 +233,8 @@ public abstract class EntityIdFactory {
     /** {@inheritDoc} */
     @Override
     public EntityId getEntityIdFromHBaseRowKey(byte[] hbaseRowKey) {
-      return FormattedEntityId.fromHBaseRowKey(hbaseRowKey, mRowKeyFormat);
+      // Rows read from HBase often only need their HBase row key: decode components on demand.
+      return FormattedEntityId.fromHBaseRowKeyLazily(hbaseRowKey, mRowKeyFormat);
     }
   }
 
@@ -379,6 +380,11 @@ public abstract class EntityIdFactory {
   /**
    * Creates an entity ID from an HBase row key.
    *
+   * <p>
+   *   The components of the row key may be decoded lazily, when first requested:
+   *   a malformed HBase row key may only be reported when its components are requested.
+   * </p>
+   *
    * @param hbaseRowKey HBase row key.
    * @return a new EntityId with the specified HBase row key.
    */
@@ -19,9 +19,7 @@
 
 package org.kiji.schema;
 
-import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -41,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.schema.avro.ComponentType;
+import org.kiji.schema.avro.HashSpec;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.util.ByteArrayFormatter;
@@ -120,11 +119,13 @@ import org.kiji.schema.util.Hasher;
 final class FormattedEntityId extends EntityId {
   // HBase row key bytes. The encoded components of the row key
   // potentially including a hash prefix, as specified in the row key format.
-  private byte[] mHBaseRowKey;
+  private final byte[] mHBaseRowKey;
 
-  private List<Object> mComponentValues;
+  // Decoded components of the row key, or null until decoded from the HBase row key.
+  // Always null when key materialization is suppressed.
+  private volatile List<Object> mComponentValues;
 
-  private RowKeyFormat2 mRowKeyFormat;
+  private final RowKeyFormat2 mRowKeyFormat;
 
   private static final Logger LOG = LoggerFactory.getLogger(FormattedEntityId.class);
 
@@ -147,6 +148,11 @@ final class FormattedEntityId extends EntityId {
   /**
    * Creates a FormattedEntityId from the specified Kiji row key.
    *
+   * <p>
+   *   The components are validated and encoded in a single pass, into buffers reused across
+   *   calls by the same thread: the only array allocated is the HBase row key itself.
+   * </p>
+   *
    * @param kijiRowKey An ordered <b>mutable</b> list of objects of row key components. The
    *    contents of this list may be modified in case of any type promotions from
    *    Integer to Long.
@@ -178,17 +184,21 @@ final class FormattedEntityId extends EntityId {
 
     // Validate the components passed in against the row key format such
     // as prevent non-null component from following null components and checking
-    // component types against the format specified.
+    // component types against the format specified, and encode them.
+    final RowKeyBuffers buffers = ROW_KEY_BUFFERS.get();
+    buffers.reset();
+    final int hashUpto = format.getRangeScanStartIndex() - 1;
     boolean hasSeenNull = false;
     for (int i = 0; i < kijiRowKey.size(); i++) {
+      Object component = kijiRowKey.get(i);
       // Prevent non-null components that follow null components
       if (hasSeenNull) {
-        if (null == kijiRowKey.get(i)) {
+        if (null == component) {
           continue;
         } else {
           throw new EntityIdException("Non null component follows null component");
         }
-      } else if (null == kijiRowKey.get(i)) {
+      } else if (null == component) {
         // we found a null, check if this is at a position greater than or equal to
         // nullable_start_index (the position from which null values are allowed)
         // also set the flag indicating we've seen a null value
@@ -200,27 +210,25 @@ final class FormattedEntityId extends EntityId {
               + String.format("Expected at least %d non-null components",
                   format.getNullableStartIndex()));
         }
-      } else {
-        // for non-null components ensure that the type matches the format spec
-        ComponentType type = getType(kijiRowKey.get(i));
-        if (null == type || type != format.getComponents().get(i).getType()) {
-          if (type == ComponentType.INTEGER
-               && format.getComponents().get(i).getType() == ComponentType.LONG) {
-            kijiRowKey.set(i, ((Integer) kijiRowKey.get(i)).longValue());
-          } else {
+      }
+
+      // for non-null components ensure that the type matches the format spec
+      final ComponentType formatType = format.getComponents().get(i).getType();
+      final ComponentType type = getType(component);
+      if (type != formatType) {
+        if (type == ComponentType.INTEGER && formatType == ComponentType.LONG) {
+          component = ((Integer) component).longValue();
+          kijiRowKey.set(i, component);
+        } else {
           throw new EntityIdException(String.format(
               "Invalid type for component %s at index %d in kijiRowKey",
-              kijiRowKey.get(i).toString(), i));
-          }
+              component.toString(), i));
         }
       }
+      buffers.putComponent(formatType, component, i <= hashUpto);
     }
 
-    byte[] hbaseRowKey = null;
-
-    hbaseRowKey = makeHbaseRowKey(format, kijiRowKey);
-
-    return new FormattedEntityId(format, hbaseRowKey, kijiRowKey);
+    return new FormattedEntityId(format, buffers.toHBaseRowKey(format), kijiRowKey);
   }
 
   /**
@@ -233,106 +241,214 @@ final class FormattedEntityId extends EntityId {
   static FormattedEntityId fromHBaseRowKey(byte[] hbaseRowKey, RowKeyFormat2 format) {
     Preconditions.checkNotNull(format);
     Preconditions.checkNotNull(hbaseRowKey);
-    // we modify the hbaseRowKey in the makeKijiRowKey code for integer encoding, so we make
-    // a copy of it to pass to makeKijiRowKey:
-    byte[] cloneHbaseKey = hbaseRowKey.clone();
-    List<Object> kijiRowKey = makeKijiRowKey(format, cloneHbaseKey);
+    List<Object> kijiRowKey = makeKijiRowKey(format, hbaseRowKey);
     return new FormattedEntityId(format, hbaseRowKey, kijiRowKey);
   }
 
   /**
-   * Create an hbase row key, which is a byte array from the given formatted kijiRowKey.
-   * This method requires that the kijiRowKey argument is the correct length for the specified
-   * format.
-   * The following encoding will be used to ensure correct ordering:
+   * Creates a FormattedEntityId from the specified HBase row key, without decoding it.
+   *
+   * <p>
+   *   The components are only decoded when first requested, which saves decoding (and boxing)
+   *   them for the rows whose components are never looked at.
+   *   As a consequence, a malformed HBase row key is only reported when its components are
+   *   requested.
+   * </p>
+   *
+   * @param hbaseRowKey A byte[] containing the HBase row key.
+   * @param format The RowKeyFormat as specified in the layout file.
+   * @return a new FormattedEntityId with the specified HBase row key.
+   */
+  static FormattedEntityId fromHBaseRowKeyLazily(byte[] hbaseRowKey, RowKeyFormat2 format) {
+    Preconditions.checkNotNull(format);
+    Preconditions.checkNotNull(hbaseRowKey);
+    return new FormattedEntityId(format, hbaseRowKey, null);
+  }
+
+  /**
+   * Reusable buffers to encode the components of formatted row keys.
+   *
+   * <p>
+   * The following encoding is used to ensure correct ordering:
    * Strings are UTF-8 encoded and terminated by a null byte. Strings cannot contain "\u0000".
    * Integers are exactly 4 bytes long.
    * Longs are exactly 8 bytes long.
    * Both integers and longs have the sign bit flipped so that their values are wrapped around to
    * create the correct lexicographic ordering. (i.e. after converting to byte array,
-   * MIN_INT < 0 < MAX_INT).
+   * MIN_INT &lt; 0 &lt; MAX_INT).
    * Hashed components are exactly hash_size bytes long and are the first component of
-   * the hbase key.
+   * the hbase key. The hash covers the encoded components (without string terminators) up to
+   * the range scan index, which defaults to the first component only.
    * Except for the first, all components of a kijiRowKey can be null. However, to maintain
    * ordering, all components to the right of a null component must also be null. Nullable index
    * in the row key format specifies which component (and hence following components) are nullable.
-   * By default, the hash only uses the first component, but this can be changed using the Range
-   * Scan index.
+   * </p>
    *
-   * @param format The formatted row key format for this table.
-   * @param kijiRowKey An ordered list of Objects of the key components.
-   * @return A byte array representing the encoded Hbase row key.
+   * <p> Buffers are not thread-safe, and only grow. </p>
    */
-  private static byte[] makeHbaseRowKey(RowKeyFormat2 format, List<Object> kijiRowKey) {
+  private static final class RowKeyBuffers {
+    /** Initial size of the buffers, in bytes. */
+    private static final int INITIAL_SIZE = 64;
 
-    ArrayList<byte[]> hbaseKey = new ArrayList<byte[]>();
-    final byte zeroDelim = 0;
+    /** Encoded components, including string terminators. */
+    private byte[] mKey = new byte[INITIAL_SIZE];
 
-    int pos;
-    for (pos = 0; pos < kijiRowKey.size(); pos++) {
-      // we have already done the validation check for null cascades.
-      if (null == kijiRowKey.get(pos)) {
-        continue;
-      }
-      byte[] tempBytes;
-      switch (getType(kijiRowKey.get(pos))) {
+    /** Number of bytes used in mKey. */
+    private int mKeyLength = 0;
+
+    /** Encoded hashed components, excluding string terminators. */
+    private byte[] mHashInput = new byte[INITIAL_SIZE];
+
+    /** Number of bytes used in mHashInput. */
+    private int mHashInputLength = 0;
+
+    /** Empties the buffers. */
+    void reset() {
+      mKeyLength = 0;
+      mHashInputLength = 0;
+    }
+
+    /**
+     * Encodes a row key component.
+     *
+     * @param type Type of the component, as specified by the row key format.
+     * @param component Non-null component value, of the type specified by the row key format.
+     * @param hashed Whether the component is included in the hash prefix.
+     */
+    void putComponent(ComponentType type, Object component, boolean hashed) {
+      final int start = mKeyLength;
+      switch (type) {
         case STRING:
-          if (((String)kijiRowKey.get(pos)).contains("\u0000")) {
-            throw new EntityIdException("String component cannot contain \u0000");
-          }
-          try {
-            hbaseKey.add(((String) kijiRowKey.get(pos)).getBytes("UTF-8"));
-          } catch (UnsupportedEncodingException e) {
-            LOG.error(e.toString());
-            throw new EntityIdException(String.format(
-                "UnsupportedEncoding for component %d", pos));
-          }
+          putString((String) component);
           break;
         case INTEGER:
-          int temp = (Integer) kijiRowKey.get(pos);
-          tempBytes = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE)
-              .putInt(temp).array();
-          tempBytes[0] = (byte)((int) tempBytes[0] ^ (int)Byte.MIN_VALUE);
-          hbaseKey.add(tempBytes);
+          putInt((Integer) component);
           break;
         case LONG:
-          long templong = (Long) kijiRowKey.get(pos);
-          tempBytes = ByteBuffer.allocate(Long.SIZE / Byte.SIZE).putLong(templong).array();
-          tempBytes[0] = (byte)((int) tempBytes[0] ^ (int)Byte.MIN_VALUE);
-          hbaseKey.add(tempBytes);
+          putLong((Long) component);
           break;
         default:
           throw new RuntimeException("Invalid code path");
       }
+      if (hashed) {
+        final int length = mKeyLength - start;
+        mHashInput = ensureCapacity(mHashInput, mHashInputLength + length);
+        System.arraycopy(mKey, start, mHashInput, mHashInputLength, length);
+        mHashInputLength += length;
+      }
+      if (type == ComponentType.STRING) {
+        // empty strings will be encoded as null, hence we need to delimit them too
+        mKey = ensureCapacity(mKey, mKeyLength + 1);
+        mKey[mKeyLength++] = 0;
+      }
     }
 
-    // hash stuff
-    int hashUpto = format.getRangeScanStartIndex() - 1;
-    ByteArrayOutputStream tohash = new ByteArrayOutputStream();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    for (pos = 0; pos <= hashUpto && pos < hbaseKey.size(); pos++) {
-      tohash.write(hbaseKey.get(pos), 0, hbaseKey.get(pos).length);
+    /**
+     * Encodes a string component in UTF-8, without terminator.
+     *
+     * <p> Unpaired surrogates are encoded as '?', as String.getBytes("UTF-8") does. </p>
+     *
+     * @param str String component.
+     */
+    private void putString(String str) {
+      final int length = str.length();
+      // At most 3 bytes per UTF-16 char (surrogate pairs are 4 bytes for 2 chars):
+      mKey = ensureCapacity(mKey, mKeyLength + 3 * length);
+      final byte[] key = mKey;
+      int pos = mKeyLength;
+      for (int i = 0; i < length; i++) {
+        final char c = str.charAt(i);
+        if (c == 0) {
+          throw new EntityIdException("String component cannot contain \u0000");
+        } else if (c < 0x80) {
+          key[pos++] = (byte) c;
+        } else if (c < 0x800) {
+          key[pos++] = (byte) (0xc0 | (c >>> 6));
+          key[pos++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)
+            && (i + 1 < length) && Character.isLowSurrogate(str.charAt(i + 1))) {
+          final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+          key[pos++] = (byte) (0xf0 | (codePoint >>> 18));
+          key[pos++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+          key[pos++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+          key[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+        } else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+          key[pos++] = (byte) '?';
+        } else {
+          key[pos++] = (byte) (0xe0 | (c >>> 12));
+          key[pos++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+          key[pos++] = (byte) (0x80 | (c & 0x3f));
+        }
+      }
+      mKeyLength = pos;
     }
-    byte[] hashed = Arrays.copyOfRange(Hasher.hash(tohash.toByteArray()), 0,
-        format.getSalt().getHashSize());
-    baos.write(hashed, 0, hashed.length);
 
-    // to materialize or not to materialize that is the question
-    if (format.getSalt().getSuppressKeyMaterialization()) {
-      return baos.toByteArray();
-    } else {
-      for (pos = 0; pos < hbaseKey.size(); pos++) {
-        baos.write(hbaseKey.get(pos), 0, hbaseKey.get(pos).length);
-        if (format.getComponents().get(pos).getType() == ComponentType.STRING
-            || format.getComponents().get(pos) == null) {
-          // empty strings will be encoded as null, hence we need to delimit them too
-          baos.write(zeroDelim);
-        }
+    /**
+     * Encodes an integer component: big-endian, with the sign bit flipped.
+     *
+     * @param value Integer component.
+     */
+    private void putInt(int value) {
+      mKey = ensureCapacity(mKey, mKeyLength + Integer.SIZE / Byte.SIZE);
+      Bytes.putInt(mKey, mKeyLength, value ^ Integer.MIN_VALUE);
+      mKeyLength += Integer.SIZE / Byte.SIZE;
+    }
+
+    /**
+     * Encodes a long component: big-endian, with the sign bit flipped.
+     *
+     * @param value Long component.
+     */
+    private void putLong(long value) {
+      mKey = ensureCapacity(mKey, mKeyLength + Long.SIZE / Byte.SIZE);
+      Bytes.putLong(mKey, mKeyLength, value ^ Long.MIN_VALUE);
+      mKeyLength += Long.SIZE / Byte.SIZE;
+    }
+
+    /**
+     * Builds the HBase row key from the encoded components: the hash prefix, followed by the
+     * encoded components unless key materialization is suppressed.
+     *
+     * @param format The formatted row key format for this table.
+     * @return A byte array representing the encoded Hbase row key.
+     */
+    byte[] toHBaseRowKey(RowKeyFormat2 format) {
+      final HashSpec salt = format.getSalt();
+      final int hashSize = salt.getHashSize();
+      // to materialize or not to materialize that is the question
+      final boolean materialize = !salt.getSuppressKeyMaterialization();
+      final byte[] hbaseRowKey = new byte[hashSize + (materialize ? mKeyLength : 0)];
+      Hasher.hash(salt.getHashType(), mHashInput, 0, mHashInputLength, hbaseRowKey, 0, hashSize);
+      if (materialize) {
+        System.arraycopy(mKey, 0, hbaseRowKey, hashSize, mKeyLength);
+      }
+      return hbaseRowKey;
+    }
+
+    /**
+     * Grows a buffer, if necessary, to hold at least the given number of bytes.
+     *
+     * @param buffer Buffer to grow.
+     * @param capacity Minimum capacity required, in bytes.
+     * @return the buffer itself if large enough, or a larger copy of the buffer.
+     */
+    private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+      if (capacity <= buffer.length) {
+        return buffer;
       }
-      return baos.toByteArray();
+      return Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
     }
   }
 
+  /** Row key encoding buffers, one per thread. */
+  private static final ThreadLocal<RowKeyBuffers> ROW_KEY_BUFFERS =
+      new ThreadLocal<RowKeyBuffers>() {
+        @Override
+        protected RowKeyBuffers initialValue() {
+          return new RowKeyBuffers();
+        }
+      };
+
   @Override
   public byte[] getHBaseRowKey() {
     return mHBaseRowKey;
@@ -343,7 +459,7 @@ final class FormattedEntityId extends EntityId {
    * the key format in the layout file.
    *
    * @param format The row key format as specified in the layout file.
-   * @param hbaseRowKey A byte array containing the hbase row key.
+   * @param hbaseRowKey A byte array containing the hbase row key. Not modified.
    * @return An ordered list of component values in the key.
    */
   private static List<Object> makeKijiRowKey(RowKeyFormat2 format, byte[] hbaseRowKey) {
@@ -362,7 +478,6 @@ final class FormattedEntityId extends EntityId {
       }
       return null;
     }
-    ByteBuffer buf;
 
     while (kijiRowElem < format.getComponents().size() && pos < hbaseRowKey.length) {
       switch (format.getComponents().get(kijiRowElem).getType()) {
@@ -384,25 +499,19 @@ final class FormattedEntityId extends EntityId {
           pos = endpos + 1;
           break;
         case INTEGER:
-          // Toggle highest order bit to return to original 2's complement.
-          hbaseRowKey[pos] =  (byte)((int) hbaseRowKey[pos] ^ (int) Byte.MIN_VALUE);
-          try {
-            buf = ByteBuffer.wrap(hbaseRowKey, pos, Integer.SIZE / Byte.SIZE);
-          } catch (IndexOutOfBoundsException e) {
+          if (pos + Integer.SIZE / Byte.SIZE > hbaseRowKey.length) {
             throw new EntityIdException("Malformed hbase Row Key");
           }
-          kijiRowKey.add(Integer.valueOf(buf.getInt()));
+          // Toggle highest order bit to return to original 2's complement.
+          kijiRowKey.add(Integer.valueOf(Bytes.toInt(hbaseRowKey, pos) ^ Integer.MIN_VALUE));
           pos = pos + Integer.SIZE / Byte.SIZE;
           break;
         case LONG:
-          // Toggle highest order bit to return to original 2's complement.
-          hbaseRowKey[pos] =  (byte)((int) hbaseRowKey[pos] ^ (int) Byte.MIN_VALUE);
-          try {
-            buf = ByteBuffer.wrap(hbaseRowKey, pos, Long.SIZE / Byte.SIZE);
-          } catch (IndexOutOfBoundsException e) {
+          if (pos + Long.SIZE / Byte.SIZE > hbaseRowKey.length) {
             throw new EntityIdException("Malformed hbase Row Key");
           }
-          kijiRowKey.add(Long.valueOf(buf.getLong()));
+          // Toggle highest order bit to return to original 2's complement.
+          kijiRowKey.add(Long.valueOf(Bytes.toLong(hbaseRowKey, pos) ^ Long.MIN_VALUE));
           pos = pos + Long.SIZE / Byte.SIZE;
           break;
         default:
@@ -435,7 +544,8 @@ final class FormattedEntityId extends EntityId {
    * Creates a new FormattedEntityId.
    * @param format Format of the row key as specified in the layout file.
    * @param hbaseRowKey Byte array containing the hbase row key.
-   * @param kijiRowKey An ordered list of row key components.
+   * @param kijiRowKey An ordered list of row key components,
+   *     or null to decode them from the hbase row key when first requested.
    */
   private FormattedEntityId(RowKeyFormat2 format, byte[] hbaseRowKey, List<Object> kijiRowKey) {
     mRowKeyFormat = Preconditions.checkNotNull(format);
@@ -448,22 +558,40 @@ final class FormattedEntityId extends EntityId {
     }
   }
 
+  /**
+   * Returns the components of the row key, decoding them from the hbase row key if necessary.
+   *
+   * <p>
+   *   Decoding is idempotent: concurrent first calls may decode the components more than once,
+   *   but always agree on the result.
+   * </p>
+   *
+   * @return the components of the row key.
+   */
+  private List<Object> getComponentValues() {
+    Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
+        String.format("Cannot retrieve components as materialization is suppressed"));
+    List<Object> componentValues = mComponentValues;
+    if (null == componentValues) {
+      componentValues = makeKijiRowKey(mRowKeyFormat, mHBaseRowKey);
+      mComponentValues = componentValues;
+    }
+    return componentValues;
+  }
+
   /** {@inheritDoc} */
   @Override
   @SuppressWarnings("unchecked")
   public <T> T getComponentByIndex(int idx) {
-    Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
-        String.format("Cannot retrieve components as materialization is suppressed"));
-    Preconditions.checkArgument(idx >= 0 && idx < mComponentValues.size());
-    return (T) mComponentValues.get(idx);
+    final List<Object> componentValues = getComponentValues();
+    Preconditions.checkArgument(idx >= 0 && idx < componentValues.size());
+    return (T) componentValues.get(idx);
   }
 
   /** {@inheritDoc} */
   @Override
   public List<Object> getComponents() {
-    Preconditions.checkState(!mRowKeyFormat.getSalt().getSuppressKeyMaterialization(),
-        String.format("Cannot retrieve components as materialization is suppressed"));
-    return Collections.unmodifiableList(mComponentValues);
+    return Collections.unmodifiableList(getComponentValues());
   }
 
   /** {@inheritDoc} */
@@ -471,7 +599,7 @@ final class FormattedEntityId extends EntityId {
   public String toString() {
     if (!mRowKeyFormat.getSalt().getSuppressKeyMaterialization()) {
       return Objects.toStringHelper(FormattedEntityId.class)
-          .add("components", Joiner.on(",").join(mComponentValues))
+          .add("components", Joiner.on(",").join(getComponentValues()))
           .add("hbase", Bytes.toStringBinary(mHBaseRowKey))
           .toString();
     } else {
@@ -492,7 +620,7 @@ final class FormattedEntityId extends EntityId {
     /** Set of characters which must be escaped */
     HashSet<Character> escapeSet = Sets.newHashSet('"', '\\', '\'');
     ArrayList<String> componentStrings = Lists.newArrayList();
-    for (Object component : mComponentValues) {
+    for (Object component : getComponentValues()) {
       if (component == null) {
         componentStrings.add("null");
       } else {
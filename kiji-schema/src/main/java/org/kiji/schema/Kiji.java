@@ -47,6 +47,8 @@ import org.kiji.schema.util.ReferenceCountable;
  *   // Do some magic
  *   kiji.release();
  * </code></pre>
+ * Opening the same Kiji instance several times within a process may return the same, shared
+ * object: each open() must be matched by exactly one release().
  *
  * <h2>Base Kiji tables within an instance:</h2>
  * <p>
@@ -142,7 +144,17 @@ public interface Kiji extends KijiTableFactory, ReferenceCountable<Kiji> {
     }
   }
 
-  /** @return The hadoop configuration. */
+  /**
+   * Returns a copy of the Hadoop configuration this Kiji instance was opened with.
+   *
+   * <p>
+   *   Kiji instances opened with equivalent HBase client settings may be shared within the
+   *   process: the configuration is then the one the instance was first opened with.
+   *   Changes to the returned copy do not affect the Kiji instance.
+   * </p>
+   *
+   * @return a copy of the Hadoop configuration.
+   */
   @Deprecated
   Configuration getConf();
 
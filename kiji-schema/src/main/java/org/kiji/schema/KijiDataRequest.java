@@ -22,7 +22,9 @@ package org.kiji.schema;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +32,7 @@ import java.util.Set;
 import com.google.common.base.Objects;
 import com.google.common.base.Objects.ToStringHelper;
 import com.google.common.collect.ImmutableMap;
+import org.apache.avro.Schema;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.hadoop.hbase.HConstants;
 
@@ -106,6 +109,14 @@ public final class KijiDataRequest implements Serializable {
     private final KijiColumnFilter mFilter;
     /** The number of cells per page (zero means no paging). */
     private final int mPageSize;
+    /** Whether pagers prefetch the next page while the current one is processed. */
+    private final boolean mPagePrefetch;
+    /** JSON representation of the Avro reader schema (may be null, which means default). */
+    private final String mReaderSchemaJson;
+    /** Record fields to decode (may be null, which means all fields). */
+    private final List<String> mProjectedFields;
+    /** Lazily parsed Avro reader schema. */
+    private transient Schema mReaderSchema;
 
     /**
      * Creates a new request for the latest version of the cell in <code>family:qualifier</code>.
@@ -118,11 +129,34 @@ public final class KijiDataRequest implements Serializable {
      */
     Column(String family, String qualifier, int maxVersions, KijiColumnFilter filter,
         int pageSize) {
+      this(family, qualifier, maxVersions, filter, pageSize, false, null, null);
+    }
+
+    /**
+     * Creates a new request for the latest version of the cell in <code>family:qualifier</code>.
+     *
+     * @param family The name of the column family to request.
+     * @param qualifier The name of the column qualifier to request.
+     * @param maxVersions the max versions of the column to request.
+     * @param filter a column filter to attach to the results of this column request.
+     * @param pageSize the default number of cells per page to retrieve at a time.
+     * @param pagePrefetch whether pagers prefetch the next page asynchronously.
+     * @param readerSchema the Avro reader schema to decode cells with (null means default).
+     * @param projectedFields the record fields to decode (null means all fields).
+     */
+    Column(String family, String qualifier, int maxVersions, KijiColumnFilter filter,
+        int pageSize, boolean pagePrefetch, Schema readerSchema, List<String> projectedFields) {
       mFamily = family;
       mQualifier = qualifier;
       mMaxVersions = maxVersions;
       mFilter = filter;
       mPageSize = pageSize;
+      mPagePrefetch = pagePrefetch;
+      mReaderSchema = readerSchema;
+      mReaderSchemaJson = (null != readerSchema) ? readerSchema.toString() : null;
+      mProjectedFields = (null != projectedFields)
+          ? Collections.unmodifiableList(new ArrayList<String>(projectedFields))
+          : null;
     }
 
     /**
@@ -199,6 +233,51 @@ public final class KijiDataRequest implements Serializable {
       return 0 != mPageSize;
     }
 
+    /**
+     * Determines whether pagers on this column prefetch the next page asynchronously.
+     *
+     * <p> See {@link KijiDataRequestBuilder.ColumnsDef#withPagePrefetch(boolean)}. </p>
+     *
+     * @return Whether page prefetching is enabled.
+     */
+    public boolean isPagePrefetchEnabled() {
+      return mPagePrefetch;
+    }
+
+    /**
+     * Gets the Avro reader schema to decode the cells of this column with,
+     * or null to use the reader schema from the table layout.
+     *
+     * @return The Avro reader schema, or null.
+     */
+    public Schema getReaderSchema() {
+      if ((null == mReaderSchema) && (null != mReaderSchemaJson)) {
+        mReaderSchema = new Schema.Parser().parse(mReaderSchemaJson);
+      }
+      return mReaderSchema;
+    }
+
+    /**
+     * Gets the dot-separated paths of the record fields to decode,
+     * or null if entire cells should be decoded.
+     *
+     * <p> See {@link KijiDataRequestBuilder.ColumnsDef#withProjectedFields(String...)}. </p>
+     *
+     * @return The projected record fields, or null.
+     */
+    public List<String> getProjectedFields() {
+      return mProjectedFields;
+    }
+
+    /**
+     * Determines whether this column decodes cells with a custom reader schema or projection.
+     *
+     * @return Whether a reader schema or a projection is specified for this column.
+     */
+    public boolean isProjected() {
+      return (null != mReaderSchemaJson) || (null != mProjectedFields);
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean equals(Object other) {
@@ -210,6 +289,9 @@ public final class KijiDataRequest implements Serializable {
           .append(getName(), otherCol.getName())
           .append(mMaxVersions, otherCol.mMaxVersions)
           .append(mPageSize, otherCol.mPageSize)
+          .append(mPagePrefetch, otherCol.mPagePrefetch)
+          .append(mReaderSchemaJson, otherCol.mReaderSchemaJson)
+          .append(mProjectedFields, otherCol.mProjectedFields)
           .isEquals();
     }
 
@@ -227,6 +309,9 @@ public final class KijiDataRequest implements Serializable {
           .add("maxVersions", getMaxVersions())
           .add("filter", getFilter())
           .add("pageSize", getPageSize())
+          .add("pagePrefetch", isPagePrefetchEnabled())
+          .add("readerSchema", mReaderSchemaJson)
+          .add("projectedFields", mProjectedFields)
           .toString();
     }
   }
@@ -315,7 +400,23 @@ public final class KijiDataRequest implements Serializable {
 
     int maxVersions = Math.max(col1.getMaxVersions(), col2.getMaxVersions());
 
-    return new Column(family, qualifier, maxVersions, null, pageSize);
+    if (!Objects.equal(col1.mReaderSchemaJson, col2.mReaderSchemaJson)) {
+      throw new IllegalStateException("Invalid merge request: "
+          + col1.getName() + " and " + col2.getName() + " have different reader schemas.");
+    }
+
+    // Decode the union of both projections, or entire cells if either column is not projected:
+    List<String> projectedFields = null;
+    if ((null != col1.getProjectedFields()) && (null != col2.getProjectedFields())) {
+      final Set<String> fields = new LinkedHashSet<String>(col1.getProjectedFields());
+      fields.addAll(col2.getProjectedFields());
+      projectedFields = new ArrayList<String>(fields);
+    }
+
+    final boolean pagePrefetch = col1.isPagePrefetchEnabled() || col2.isPagePrefetchEnabled();
+
+    return new Column(family, qualifier, maxVersions, null, pageSize, pagePrefetch,
+        col1.getReaderSchema(), projectedFields);
   }
 
   /**
@@ -337,6 +438,10 @@ public final class KijiDataRequest implements Serializable {
    *       value is chosen.</li>
    *   <li>When pageSize differs for the same column in both requests, the lesser value
    *       is chosen.</li>
+   *   <li>When projected fields differ for the same column in both requests, the union of
+   *       the projections is chosen; columns without projection decode entire cells.
+   *       Data requests with different reader schemas for the same column cannot be merged,
+   *       and a RuntimeException is thrown.</li>
    *   <li>If either request contains KijiColumnFilter definitions attached to a column,
    *      this is considered an error, and a RuntimeException is thrown. Data requests with
    *      filters cannot be merged.</li>
@@ -19,6 +19,8 @@
 
 package org.kiji.schema;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -26,6 +28,7 @@ import java.util.Set;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import org.apache.avro.Schema;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
@@ -164,6 +167,18 @@ public final class KijiDataRequestBuilder {
     /** The number of cells per page (zero means no paging). */
     private Integer mPageSize;
 
+    /** Whether pagers prefetch the next page asynchronously (null means not set). */
+    private Boolean mPagePrefetch = null;
+
+    /** Avro reader schema to decode cells with (may be null). */
+    private Schema mReaderSchema = null;
+
+    /** Becomes true once the reader schema is set. */
+    private boolean mReaderSchemaInitialized = false;
+
+    /** Record fields to decode (null means all fields). */
+    private List<String> mProjectedFields = null;
+
     /** Columns in this definition. */
     private List<KijiColumnName> mColumns = Lists.newArrayList();
 
@@ -261,6 +276,95 @@ public final class KijiDataRequestBuilder {
       return this;
     }
 
+    /**
+     * Configures whether pagers prefetch the next page asynchronously.
+     *
+     * <p>
+     *   When enabled, a {@link KijiPager} on a map-type family fetches the next page of
+     *   qualifiers in the background while the caller processes the current page.
+     *   This only has an effect when paging is enabled with {@link #withPageSize(int)}.
+     * </p>
+     * <p> Defaults to false, which means pages are fetched on demand. </p>
+     *
+     * @param pagePrefetch Whether to prefetch the next page asynchronously.
+     * @return This column request instance.
+     */
+    public ColumnsDef withPagePrefetch(boolean pagePrefetch) {
+      checkNoCols();
+      Preconditions.checkState(mPagePrefetch == null,
+          "Cannot set page prefetch to %s, page prefetch already set to %s.",
+          pagePrefetch, mPagePrefetch);
+
+      mPagePrefetch = pagePrefetch;
+      return this;
+    }
+
+    /**
+     * Sets the Avro reader schema to decode the cells of the columns with.
+     *
+     * <p>
+     *   The reader schema must be compatible with the schemas the cells were written with.
+     *   Cells are decoded as generic records when a reader schema is set.
+     *   Defaults to null, which means the reader schema from the table layout is used.
+     * </p>
+     *
+     * @param readerSchema Avro reader schema, or null to use the reader schema from the layout.
+     * @return This column request builder instance.
+     */
+    public ColumnsDef withReaderSchema(Schema readerSchema) {
+      checkNoCols();
+      Preconditions.checkState(!mReaderSchemaInitialized,
+          "Cannot set reader schema multiple times");
+
+      mReaderSchema = readerSchema;
+      mReaderSchemaInitialized = true;
+      return this;
+    }
+
+    /**
+     * Restricts the decoding of Avro records to the specified fields.
+     *
+     * <p>
+     *   Field paths are dot-separated record field names, eg. {@code "address.zip_code"}.
+     *   Cells are decoded with a reader schema pruned down to the requested fields: the other
+     *   fields are skipped without being materialized, which greatly reduces the decoding cost
+     *   of large records when only a few fields are needed. Cells are decoded as generic
+     *   records that only contain the requested fields.
+     * </p>
+     *
+     * @param fieldPaths Dot-separated paths of the record fields to decode.
+     * @return This column request builder instance.
+     */
+    public ColumnsDef withProjectedFields(String... fieldPaths) {
+      return withProjectedFields(Arrays.asList(fieldPaths));
+    }
+
+    /**
+     * Restricts the decoding of Avro records to the specified fields.
+     *
+     * <p> See {@link #withProjectedFields(String...)}. </p>
+     *
+     * @param fieldPaths Dot-separated paths of the record fields to decode,
+     *     or null to decode entire records.
+     * @return This column request builder instance.
+     */
+    public ColumnsDef withProjectedFields(Collection<String> fieldPaths) {
+      checkNoCols();
+      Preconditions.checkState(mProjectedFields == null,
+          "Cannot set projected fields to %s, projected fields already set to %s.",
+          fieldPaths, mProjectedFields);
+      if (null != fieldPaths) {
+        Preconditions.checkArgument(!fieldPaths.isEmpty(),
+            "Projected fields must not be empty.");
+        for (String fieldPath : fieldPaths) {
+          Preconditions.checkArgument((null != fieldPath) && !fieldPath.isEmpty(),
+              "Invalid empty field path in projection %s.", fieldPaths);
+        }
+        mProjectedFields = Lists.newArrayList(fieldPaths);
+      }
+      return this;
+    }
+
     /**
      * Adds a column to the data request, using the properties associated with this
      * KijiDataRequestBuilder.ColumnsDef object. Once you call this method, you may not
@@ -332,6 +436,10 @@ public final class KijiDataRequestBuilder {
         mPageSize = 0; // disable paging.
       }
 
+      if (mPagePrefetch == null) {
+        mPagePrefetch = false;
+      }
+
       if (mMaxVersions == null) {
         mMaxVersions = 1;
       }
@@ -339,7 +447,8 @@ public final class KijiDataRequestBuilder {
       final List<KijiDataRequest.Column> columns = Lists.newArrayListWithCapacity(mColumns.size());
       for (KijiColumnName column: mColumns) {
         columns.add(new KijiDataRequest.Column(
-            column.getFamily(), column.getQualifier(), mMaxVersions, mFilter, mPageSize));
+            column.getFamily(), column.getQualifier(), mMaxVersions, mFilter, mPageSize,
+            mPagePrefetch, mReaderSchema, mProjectedFields));
       }
       return columns;
     }
@@ -413,7 +522,10 @@ public final class KijiDataRequestBuilder {
     return newColumnsDef()
         .withFilter(existingColumn.getFilter())
         .withPageSize(existingColumn.getPageSize())
+        .withPagePrefetch(existingColumn.isPagePrefetchEnabled())
         .withMaxVersions(existingColumn.getMaxVersions())
+        .withReaderSchema(existingColumn.getReaderSchema())
+        .withProjectedFields(existingColumn.getProjectedFields())
         .add(existingColumn.getFamily(), existingColumn.getQualifier());
   }
 
@@ -260,6 +260,62 @@ public interface KijiRowData {
   <T> KijiCell<T> getMostRecentCell(String family, String qualifier)
       throws IOException;
 
+  /**
+   * Gets the most recent value of a column holding longs, without boxing it.
+   *
+   * <p> Counters and columns written as Avro ints or longs can be read as longs. </p>
+   *
+   * @param family Column family of the desired value.
+   * @param qualifier Column qualifier of the desired value.
+   * @return the most recent value of the specified column.
+   * @throws IOException If there is an error.
+   * @throws java.util.NoSuchElementException if the column has no cell.
+   */
+  long getMostRecentLong(String family, String qualifier) throws IOException;
+
+  /**
+   * Gets the most recent value of a column holding ints, without boxing it.
+   *
+   * <p> Columns written as Avro ints, and counters whose value fits in an int can be read as ints.
+   * </p>
+   *
+   * @param family Column family of the desired value.
+   * @param qualifier Column qualifier of the desired value.
+   * @return the most recent value of the specified column.
+   * @throws IOException If there is an error.
+   * @throws java.util.NoSuchElementException if the column has no cell.
+   */
+  int getMostRecentInt(String family, String qualifier) throws IOException;
+
+  /**
+   * Gets the most recent value of a column holding numbers, as a double, without boxing it.
+   *
+   * <p> Counters and columns written as Avro ints, longs, floats or doubles can be read as doubles.
+   * </p>
+   *
+   * @param family Column family of the desired value.
+   * @param qualifier Column qualifier of the desired value.
+   * @return the most recent value of the specified column.
+   * @throws IOException If there is an error.
+   * @throws java.util.NoSuchElementException if the column has no cell.
+   */
+  double getMostRecentDouble(String family, String qualifier) throws IOException;
+
+  /**
+   * Gets a cursor over the cells of a column holding primitive values, most recent first.
+   *
+   * <p>
+   *   Values are decoded in place from the row data as the cursor moves, without allocating cells
+   *   or boxing values. The column must be a counter or hold Avro primitive numbers.
+   * </p>
+   *
+   * @param family Column family of the desired cells.
+   * @param qualifier Column qualifier of the desired cells.
+   * @return a cursor over the cells of the specified column.
+   * @throws IOException If there is an error.
+   */
+  PrimitiveCellCursor getPrimitiveCells(String family, String qualifier) throws IOException;
+
   /**
    * Gets the cells in the specified column family flattened to contain only the cells with
    * the latest timestamp in each column.
@@ -76,6 +76,19 @@ public interface KijiRowScanner extends Closeable, Iterable<KijiRowData> {
   @Override
   Iterator<KijiRowData> iterator();
 
+  /**
+   * Reports the fraction of the rows of the scanned ranges this scanner samples.
+   *
+   * <p>
+   *   This may differ slightly from the sampling rate requested with
+   *   {@link KijiTableReader.KijiScannerOptions#setSamplingRate(double)},
+   *   as rows are sampled along row key boundaries.
+   * </p>
+   *
+   * @return the fraction of the rows sampled, in (0, 1]. 1 means all rows are scanned.
+   */
+  double getEffectiveSamplingRate();
+
   /**
    * Closes this scanner and releases any system resources associated with it.
    *
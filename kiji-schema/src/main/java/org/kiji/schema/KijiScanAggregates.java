@@ -0,0 +1,219 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.annotations.ApiStability;
+
+/**
+ * Aggregates of the rows of a Kiji table selected by a scan.
+ *
+ * <p>
+ *   Computed by {@link KijiTableReader#aggregate(KijiDataRequest,
+ *   KijiTableReader.KijiScannerOptions)}. When the scan samples the rows, the aggregates describe
+ *   the sampled rows only: counts may be extrapolated by dividing them by the sampling rate.
+ * </p>
+ */
+@ApiAudience.Public
+@ApiStability.Experimental
+public final class KijiScanAggregates {
+  /** Number of rows. */
+  private final long mRowCount;
+
+  /** Aggregates of each requested column or map-type family. */
+  private final Map<KijiColumnName, ColumnAggregates> mColumns;
+
+  /** Fraction of the selected rows that were aggregated. */
+  private final double mSamplingRate;
+
+  /**
+   * Initializes the aggregates of a scan.
+   *
+   * @param rowCount Number of rows.
+   * @param columns Aggregates of each requested column or map-type family.
+   * @param samplingRate Fraction of the selected rows that were aggregated, in (0, 1].
+   */
+  public KijiScanAggregates(
+      long rowCount,
+      Map<KijiColumnName, ColumnAggregates> columns,
+      double samplingRate) {
+    mRowCount = rowCount;
+    mColumns = Collections.unmodifiableMap(Maps.newLinkedHashMap(columns));
+    mSamplingRate = samplingRate;
+  }
+
+  /**
+   * Reports the number of rows.
+   *
+   * @return the number of rows.
+   */
+  public long getRowCount() {
+    return mRowCount;
+  }
+
+  /**
+   * Reports the fraction of the selected rows that were aggregated.
+   *
+   * @return the fraction of the selected rows that were aggregated. 1 means no sampling.
+   */
+  public double getSamplingRate() {
+    return mSamplingRate;
+  }
+
+  /**
+   * Returns the aggregates of each requested column or map-type family.
+   *
+   * @return the aggregates of each requested column or map-type family.
+   */
+  public Map<KijiColumnName, ColumnAggregates> getColumns() {
+    return mColumns;
+  }
+
+  /**
+   * Returns the aggregates of a requested column or map-type family.
+   *
+   * @param family Family of the requested column.
+   * @param qualifier Qualifier of the requested column, or null for a map-type family.
+   * @return the aggregates of the column, or null if the column was not requested.
+   */
+  public ColumnAggregates getColumn(String family, String qualifier) {
+    return mColumns.get(new KijiColumnName(family, qualifier));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(KijiScanAggregates.class)
+        .add("rowCount", mRowCount)
+        .add("columns", mColumns)
+        .add("samplingRate", mSamplingRate)
+        .toString();
+  }
+
+  /** Aggregates of the cells of a column or map-type family. */
+  @ApiAudience.Public
+  @ApiStability.Experimental
+  public static final class ColumnAggregates {
+    /** Number of cells. */
+    private final long mCellCount;
+
+    /** Estimated number of distinct cell values. */
+    private final long mDistinctValueCount;
+
+    /** Sum of the counters, or null if the column is not a counter. */
+    private final Long mCounterSum;
+
+    /** Minimum counter, or null if the column is not a counter or has no cell. */
+    private final Long mCounterMin;
+
+    /** Maximum counter, or null if the column is not a counter or has no cell. */
+    private final Long mCounterMax;
+
+    /**
+     * Initializes the aggregates of a column.
+     *
+     * @param cellCount Number of cells.
+     * @param distinctValueCount Estimated number of distinct cell values.
+     * @param counterSum Sum of the counters, or null if the column is not a counter.
+     * @param counterMin Minimum counter, or null if the column is not a counter or has no cell.
+     * @param counterMax Maximum counter, or null if the column is not a counter or has no cell.
+     */
+    public ColumnAggregates(
+        long cellCount,
+        long distinctValueCount,
+        Long counterSum,
+        Long counterMin,
+        Long counterMax) {
+      mCellCount = cellCount;
+      mDistinctValueCount = distinctValueCount;
+      mCounterSum = counterSum;
+      mCounterMin = counterMin;
+      mCounterMax = counterMax;
+    }
+
+    /**
+     * Reports the number of cells.
+     *
+     * @return the number of cells.
+     */
+    public long getCellCount() {
+      return mCellCount;
+    }
+
+    /**
+     * Estimates the number of distinct cell values, using a HyperLogLog sketch.
+     *
+     * <p>
+     *   Values are compared in their encoded form: Avro values written with different writer
+     *   schemas (or schema storage) count as distinct values.
+     * </p>
+     *
+     * @return the estimated number of distinct cell values.
+     */
+    public long getDistinctValueCount() {
+      return mDistinctValueCount;
+    }
+
+    /**
+     * Reports the sum of the counters.
+     *
+     * @return the sum of the counters, or null if the column is not a counter.
+     */
+    public Long getCounterSum() {
+      return mCounterSum;
+    }
+
+    /**
+     * Reports the minimum counter.
+     *
+     * @return the minimum counter, or null if the column is not a counter or has no cell.
+     */
+    public Long getCounterMin() {
+      return mCounterMin;
+    }
+
+    /**
+     * Reports the maximum counter.
+     *
+     * @return the maximum counter, or null if the column is not a counter or has no cell.
+     */
+    public Long getCounterMax() {
+      return mCounterMax;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(ColumnAggregates.class)
+          .add("cellCount", mCellCount)
+          .add("distinctValueCount", mDistinctValueCount)
+          .add("counterSum", mCounterSum)
+          .add("counterMin", mCounterMin)
+          .add("counterMax", mCounterMax)
+          .toString();
+    }
+  }
+}
@@ -20,7 +20,9 @@
 package org.kiji.schema;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 
@@ -57,6 +59,16 @@ public interface KijiTableKeyValueDatabase<T extends KijiTableKeyValueDatabase<T
   T putValue(String table, String key, byte[] value) throws
     IOException;
 
+  /**
+   * Associates the specified values with the specified table and keys, in a single operation.
+   *
+   * @param table The kiji table that these key-value pairs will be set with.
+   * @param values Map of the values to associate with each key.
+   * @return The same KijiTableKeyValueDatabase.
+   * @throws IOException If there is an error.
+   */
+  T putValues(String table, Map<String, byte[]> values) throws IOException;
+
   /**
    * Returns the most recent value associated with the specified table and key.
    *
@@ -67,6 +79,18 @@ public interface KijiTableKeyValueDatabase<T extends KijiTableKeyValueDatabase<T
    */
   byte[] getValue(String table, String key) throws IOException;
 
+  /**
+   * Returns the most recent values associated with the specified table and keys, in a single
+   * operation.
+   *
+   * @param table The kiji table.
+   * @param keys The keys to look up the associated values for.
+   * @return A map of the most recent value associated with each key. Keys that do not exist are
+   *     not included in the map.
+   * @throws IOException If there is an error.
+   */
+  Map<String, byte[]> getValues(String table, Collection<String> keys) throws IOException;
+
   /**
    * Gets a list of the most recent specified number of versions of the value corresponding to the
    * specified table and key.
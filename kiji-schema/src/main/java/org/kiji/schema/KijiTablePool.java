@@ -21,14 +21,17 @@ package org.kiji.schema;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +74,9 @@ import org.kiji.schema.util.ResourceUtils;
  *
  * <p>
  *   This class is thread-safe, but the individual KijiTables that are returned from it are not.
+ *   Getting and releasing tables does not take any lock: each table has its own lock-free queue of
+ *   available connections, and the cleanup of idle connections never blocks clients.
+ *   Per-table occupancy and latency figures are reported by {@link #getStatistics}.
  * </p>
  */
 @ApiAudience.Public
@@ -111,13 +117,16 @@ public final class KijiTablePool implements Closeable {
   private final long mIdlePollPeriod;
 
   /** A map from table names to their connection pools. */
-  private final Map<String, Pool> mPoolCache;
+  private final ConcurrentMap<String, Pool> mPoolCache;
+
+  /** Set once the cleanup thread for idle connections has been started. */
+  private final AtomicBoolean mCleanupStarted = new AtomicBoolean(false);
 
   /** A cleanup thread for idle connections. */
-  private IdleTimeoutThread mCleanupThread;
+  private volatile IdleTimeoutThread mCleanupThread;
 
   /** Whether the table pool is open. */
-  private boolean mIsOpen;
+  private volatile boolean mIsOpen;
 
   /**
    * Builder class for KijiTablePool instances.  These should be constructed with
@@ -239,7 +248,7 @@ public final class KijiTablePool implements Closeable {
     mMaxSize = builder.mMaxSize;
     mIdleTimeout = builder.mIdleTimeout;
     mIdlePollPeriod = builder.mIdlePollPeriod;
-    mPoolCache = new HashMap<String, Pool>();
+    mPoolCache = new ConcurrentHashMap<String, Pool>();
     mIsOpen = true;
   }
 
@@ -266,30 +275,42 @@ public final class KijiTablePool implements Closeable {
    * @throws IOException If there is an error.
    * @throws KijiTablePool.NoCapacityException If the table pool is at capacity.
    */
-  public synchronized KijiTable get(String name) throws IOException {
+  public KijiTable get(String name) throws IOException {
+    LOG.debug("Retrieving a connection for {} from the table pool.", name);
+    if (!mIsOpen) {
+      throw new IllegalStateException("Table pool is closed.");
+    }
+
     // Starts a cleanup thread if necessary.
-    if (mIdleTimeout > 0L && null == mCleanupThread) {
+    if (mIdleTimeout > 0L && !mCleanupStarted.get() && mCleanupStarted.compareAndSet(false, true)) {
       LOG.debug("Starting cleanup thread for table pool.");
-      mCleanupThread = new IdleTimeoutThread();
-      mCleanupThread.start();
+      final IdleTimeoutThread cleanupThread = new IdleTimeoutThread();
+      mCleanupThread = cleanupThread;
+      cleanupThread.start();
     }
 
-    LOG.debug("Retrieving a connection for {} from the table pool.", name);
+    Pool pool = mPoolCache.get(name);
+    if (null == pool) {
+      final Pool newPool = new Pool(name);
+      pool = mPoolCache.putIfAbsent(name, newPool);
+      if (null == pool) {
+        pool = newPool;
+      }
+    }
     if (!mIsOpen) {
+      // close() ran concurrently, and may have missed the pool: close it here.
+      mPoolCache.remove(name, pool);
+      ResourceUtils.closeOrLog(pool);
       throw new IllegalStateException("Table pool is closed.");
     }
 
-    if (!mPoolCache.containsKey(name)) {
-      mPoolCache.put(name, new Pool(name));
-    }
-
-    return mPoolCache.get(name).getTable();
+    return pool.getTable();
   }
 
   /**
    * Explicitly force a cleanup of table connections that have been idle too long.
    */
-  synchronized void cleanIdleConnections() {
+  void cleanIdleConnections() {
     if (mIdleTimeout > 0) {
       for (Pool pool: mPoolCache.values()) {
         pool.clean(mIdleTimeout);
@@ -308,6 +329,8 @@ public final class KijiTablePool implements Closeable {
       LOG.warn("Called close() on a KijiTablePool that was already closed.");
       return;
     }
+    // Marked closed first, so that tables released concurrently are not cached any longer.
+    mIsOpen = false;
     if (null != mCleanupThread) {
       mCleanupThread.interrupt();
       try {
@@ -320,7 +343,6 @@ public final class KijiTablePool implements Closeable {
       ResourceUtils.closeOrLog(pool);
     }
     mPoolCache.clear();
-    mIsOpen = false;
   }
 
   @Override
@@ -339,17 +361,182 @@ public final class KijiTablePool implements Closeable {
    * @return The size of the table pool.
    */
   public int getPoolSize(String tableName) {
-    return mPoolCache.get(tableName).getPoolSize();
+    final Pool pool = mPoolCache.get(tableName);
+    return (null == pool) ? 0 : pool.getPoolSize();
+  }
+
+  /**
+   * Reports the occupancy and acquisition latency of the pool for the specified table.
+   *
+   * @param tableName The name of the table you wish to know the statistics of.
+   * @return a snapshot of the statistics of the table pool.
+   */
+  public PoolStatistics getStatistics(String tableName) {
+    final Pool pool = mPoolCache.get(tableName);
+    return (null == pool) ? new PoolStatistics(0, 0, 0, 0, 0, 0) : pool.getStatistics();
+  }
+
+  /**
+   * Snapshot of the occupancy and acquisition latency of the pool for one table.
+   *
+   * <p>
+   *   Counters are sampled without locking the pool: while clients are getting and releasing
+   *   tables, the occupancy figures may be off by the number of operations in flight.
+   * </p>
+   */
+  @ApiAudience.Public
+  @ApiStability.Experimental
+  public static final class PoolStatistics {
+    /** Total number of connections, active and cached. */
+    private final int mPoolSize;
+
+    /** Number of cached connections available for reuse. */
+    private final int mAvailableCount;
+
+    /** Number of successful calls to get(). */
+    private final long mAcquireCount;
+
+    /** Number of calls to get() that failed because the pool was at capacity. */
+    private final long mNoCapacityCount;
+
+    /** Cumulated time spent in successful calls to get(), in nanoseconds. */
+    private final long mTotalAcquireNanos;
+
+    /** Longest time spent in a successful call to get(), in nanoseconds. */
+    private final long mMaxAcquireNanos;
+
+    /**
+     * Initializes a snapshot of the statistics of a table pool.
+     *
+     * @param poolSize Total number of connections, active and cached.
+     * @param availableCount Number of cached connections available for reuse.
+     * @param acquireCount Number of successful calls to get().
+     * @param noCapacityCount Number of calls to get() that failed because the pool was full.
+     * @param totalAcquireNanos Cumulated time spent in successful calls to get(), in nanoseconds.
+     * @param maxAcquireNanos Longest time spent in a successful call to get(), in nanoseconds.
+     */
+    private PoolStatistics(
+        int poolSize,
+        int availableCount,
+        long acquireCount,
+        long noCapacityCount,
+        long totalAcquireNanos,
+        long maxAcquireNanos) {
+      mPoolSize = poolSize;
+      mAvailableCount = availableCount;
+      mAcquireCount = acquireCount;
+      mNoCapacityCount = noCapacityCount;
+      mTotalAcquireNanos = totalAcquireNanos;
+      mMaxAcquireNanos = maxAcquireNanos;
+    }
+
+    /**
+     * Reports the total number of connections, active and cached.
+     *
+     * @return the total number of connections, active and cached.
+     */
+    public int getPoolSize() {
+      return mPoolSize;
+    }
+
+    /**
+     * Reports the number of cached connections available for reuse.
+     *
+     * @return the number of cached connections available for reuse.
+     */
+    public int getAvailableCount() {
+      return mAvailableCount;
+    }
+
+    /**
+     * Reports the number of connections currently handed out to clients.
+     *
+     * @return the number of connections currently handed out to clients.
+     */
+    public int getActiveCount() {
+      return Math.max(0, mPoolSize - mAvailableCount);
+    }
+
+    /**
+     * Reports the number of successful calls to get().
+     *
+     * @return the number of successful calls to get().
+     */
+    public long getAcquireCount() {
+      return mAcquireCount;
+    }
+
+    /**
+     * Reports the number of calls to get() that failed because the pool was at capacity.
+     *
+     * @return the number of calls to get() that failed with a NoCapacityException.
+     */
+    public long getNoCapacityCount() {
+      return mNoCapacityCount;
+    }
+
+    /**
+     * Reports the average time spent in a successful call to get(), including the time spent
+     * opening new connections.
+     *
+     * @return the average acquisition latency, in nanoseconds, or 0 if no table was acquired.
+     */
+    public long getMeanAcquireNanos() {
+      return (0 == mAcquireCount) ? 0 : mTotalAcquireNanos / mAcquireCount;
+    }
+
+    /**
+     * Reports the longest time spent in a successful call to get().
+     *
+     * @return the longest acquisition latency, in nanoseconds.
+     */
+    public long getMaxAcquireNanos() {
+      return mMaxAcquireNanos;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(PoolStatistics.class)
+          .add("poolSize", mPoolSize)
+          .add("availableCount", mAvailableCount)
+          .add("acquireCount", mAcquireCount)
+          .add("noCapacityCount", mNoCapacityCount)
+          .add("meanAcquireNanos", getMeanAcquireNanos())
+          .add("maxAcquireNanos", mMaxAcquireNanos)
+          .toString();
+    }
   }
 
   /**
    * A pool of connections for a single table. Maintains a number of
-   * connections in use, and a queue of available ones for re-use.
+   * connections in use, and a lock-free queue of available ones for re-use.
+   *
+   * <p>
+   *   The pool size is accounted with compare-and-set loops: a slot is reserved before a new
+   *   connection is opened, and released once an idle connection has been removed from the queue.
+   *   An idle connection is closed only by the thread that managed to remove it from the queue,
+   *   so the cleanup never competes with clients for a lock.
+   * </p>
    */
   private final class Pool implements Closeable {
     private final Queue<PooledKijiTable> mConnections;
+
+    // Number of connections in mConnections, as the size of the queue is linear to compute.
+    private final AtomicInteger mAvailableCount;
+
     // The total pool size is the total number of tables in use and available connections.
-    private int mPoolSize;
+    private final AtomicInteger mPoolSize;
+
+    // Number of successful calls to getTable().
+    private final AtomicLong mAcquireCount;
+
+    // Number of calls to getTable() that failed because the pool was at capacity.
+    private final AtomicLong mNoCapacityCount;
+
+    // Cumulated and maximum time spent in successful calls to getTable(), in nanoseconds.
+    private final AtomicLong mTotalAcquireNanos;
+    private final AtomicLong mMaxAcquireNanos;
 
     // The name of the table for this pool.
     private final String mTableName;
@@ -359,8 +546,13 @@ public final class KijiTablePool implements Closeable {
      * @param tableName The name of the table that this pool is for.
      */
     private Pool(String tableName) {
-      mConnections = new ArrayDeque<PooledKijiTable>();
-      mPoolSize = 0;
+      mConnections = new ConcurrentLinkedQueue<PooledKijiTable>();
+      mAvailableCount = new AtomicInteger(0);
+      mPoolSize = new AtomicInteger(0);
+      mAcquireCount = new AtomicLong(0);
+      mNoCapacityCount = new AtomicLong(0);
+      mTotalAcquireNanos = new AtomicLong(0);
+      mMaxAcquireNanos = new AtomicLong(0);
       mTableName = tableName;
     }
 
@@ -372,22 +564,30 @@ public final class KijiTablePool implements Closeable {
      * @throws KijiTablePool.NoCapacityException If there is no more room in the
      *     pool to open a new connection.
      */
-    public synchronized KijiTable getTable() throws IOException {
-      PooledKijiTable availableConnection = mConnections.poll();
+    public KijiTable getTable() throws IOException {
+      final long startNanos = System.nanoTime();
+      final KijiTable table = acquireTable();
+      recordAcquire(System.nanoTime() - startNanos);
+      return table;
+    }
+
+    /**
+     * Takes an available connection from the pool, or opens a new one.
+     *
+     * @return The table connection.
+     * @throws IOException If there is an error opening the table.
+     * @throws KijiTablePool.NoCapacityException If there is no more room in the
+     *     pool to open a new connection.
+     */
+    private KijiTable acquireTable() throws IOException {
+      final PooledKijiTable availableConnection = pollConnection();
       if (null == availableConnection) {
-        if (mPoolSize >= mMaxSize) {
-          throw new NoCapacityException("Reached max pool size for table " + mTableName + ". There"
-            + " are " + mPoolSize + " tables in the pool.");
-        }
+        reserveSlot();
         LOG.debug("Cache miss for table {}", mTableName);
-        KijiTable tableConnection = new PooledKijiTable(mTableFactory.openTable(mTableName), this);
-        mPoolSize++;
-        if (mPoolSize < mMinSize) {
+        final KijiTable tableConnection = openConnection();
+        if (mPoolSize.get() < mMinSize) {
           LOG.debug("Below the min pool size for table {}. Adding to the pool.", mTableName);
-          while (mPoolSize < mMinSize) {
-            mConnections.add(new PooledKijiTable(mTableFactory.openTable(mTableName), this));
-            mPoolSize++;
-          }
+          fillToMinSize();
         }
         return tableConnection;
       }
@@ -400,14 +600,116 @@ public final class KijiTablePool implements Closeable {
       return availableConnection;
     }
 
+    /**
+     * Reserves room in the pool for a new connection.
+     *
+     * @throws KijiTablePool.NoCapacityException If the pool is at capacity.
+     */
+    private void reserveSlot() throws NoCapacityException {
+      while (true) {
+        final int poolSize = mPoolSize.get();
+        if (poolSize >= mMaxSize) {
+          mNoCapacityCount.incrementAndGet();
+          throw new NoCapacityException("Reached max pool size for table " + mTableName + ". There"
+            + " are " + poolSize + " tables in the pool.");
+        }
+        if (mPoolSize.compareAndSet(poolSize, poolSize + 1)) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Opens a new connection into a slot previously reserved with {@link #reserveSlot()}.
+     * The slot is given back if the table cannot be opened.
+     *
+     * @return the new connection.
+     * @throws IOException If there is an error opening the table.
+     */
+    private PooledKijiTable openConnection() throws IOException {
+      boolean opened = false;
+      try {
+        final PooledKijiTable connection =
+            new PooledKijiTable(mTableFactory.openTable(mTableName), this);
+        opened = true;
+        return connection;
+      } finally {
+        if (!opened) {
+          mPoolSize.decrementAndGet();
+        }
+      }
+    }
+
+    /**
+     * Opens available connections until the pool reaches its minimum size.
+     *
+     * @throws IOException If there is an error opening the table.
+     */
+    private void fillToMinSize() throws IOException {
+      while (true) {
+        final int poolSize = mPoolSize.get();
+        if (poolSize >= mMinSize) {
+          return;
+        }
+        if (mPoolSize.compareAndSet(poolSize, poolSize + 1)) {
+          offerConnection(openConnection());
+        }
+      }
+    }
+
+    /**
+     * Records the latency of a successful call to getTable().
+     *
+     * @param nanos Time spent acquiring the table, in nanoseconds.
+     */
+    private void recordAcquire(long nanos) {
+      mAcquireCount.incrementAndGet();
+      mTotalAcquireNanos.addAndGet(nanos);
+      while (true) {
+        final long max = mMaxAcquireNanos.get();
+        if ((nanos <= max) || mMaxAcquireNanos.compareAndSet(max, nanos)) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Takes an available connection from the queue.
+     *
+     * @return an available connection, or null if there is none.
+     */
+    private PooledKijiTable pollConnection() {
+      final PooledKijiTable connection = mConnections.poll();
+      if (null != connection) {
+        mAvailableCount.decrementAndGet();
+      }
+      return connection;
+    }
+
+    /**
+     * Puts an available connection in the queue.
+     *
+     * @param connection The connection to make available.
+     */
+    private void offerConnection(PooledKijiTable connection) {
+      // Count first so that the number of available connections never goes negative:
+      mAvailableCount.incrementAndGet();
+      mConnections.add(connection);
+    }
+
     /**
      * Returns a table back to the pool so it may be reused.  Private so that only a wrapped
      * table can be returned back to the queue.
      *
      * @param table The table to return back into the pool.
      */
-    private synchronized void returnConnection(PooledKijiTable table) {
-      mConnections.add(table);
+    private void returnConnection(PooledKijiTable table) {
+      offerConnection(table);
+      // close() no longer excludes concurrent releases: do not leak tables released afterwards.
+      if (!mIsOpen && mConnections.remove(table)) {
+        mAvailableCount.decrementAndGet();
+        table.releaseUnderlyingKijiTable();
+      }
     }
 
     /** @return the clock used by this KijiTablePool for updating KijiTable access times. */
@@ -422,16 +724,53 @@ public final class KijiTablePool implements Closeable {
      * @param idleTimeout Milliseconds idle required to be closed and
      *     removed from the pool.
      */
-    public synchronized void clean(long idleTimeout) {
-      long currentTime = mClock.getTime();
-      Iterator<PooledKijiTable> iterator = mConnections.iterator();
-      while (iterator.hasNext() && mPoolSize > mMinSize) {
-        PooledKijiTable connection = iterator.next();
-        if (currentTime - connection.getLastAccessTime() > idleTimeout) {
-          LOG.info("Closing idle PooledKijiTable connection to {}.", connection.getURI());
-          iterator.remove();
-          connection.releaseUnderlyingKijiTable();
-          mPoolSize--;
+    public void clean(long idleTimeout) {
+      final long currentTime = mClock.getTime();
+      final Iterator<PooledKijiTable> iterator = mConnections.iterator();
+      while (iterator.hasNext()) {
+        final PooledKijiTable connection = iterator.next();
+        if (currentTime - connection.getLastAccessTime() <= idleTimeout) {
+          continue;
+        }
+        if (mPoolSize.get() <= mMinSize) {
+          return;
+        }
+        // Clients may acquire the connection concurrently: only close it if we removed it.
+        // The connection counts in the pool size until it is out of the queue, so that acquirers
+        // cannot open connections past the maximum size meanwhile.
+        if (!mConnections.remove(connection)) {
+          continue;
+        }
+        mAvailableCount.decrementAndGet();
+        if (currentTime - connection.getLastAccessTime() <= idleTimeout) {
+          // The connection was acquired and released again in the meantime.
+          offerConnection(connection);
+          continue;
+        }
+        if (!releaseSlot()) {
+          // The pool shrank to its minimum size concurrently.
+          offerConnection(connection);
+          return;
+        }
+        LOG.info("Closing idle PooledKijiTable connection to {}.", connection.getURI());
+        connection.releaseUnderlyingKijiTable();
+      }
+    }
+
+    /**
+     * Gives back the slot of an idle connection removed from the queue, unless the pool is at its
+     * minimum size.
+     *
+     * @return whether the slot was given back.
+     */
+    private boolean releaseSlot() {
+      while (true) {
+        final int poolSize = mPoolSize.get();
+        if (poolSize <= mMinSize) {
+          return false;
+        }
+        if (mPoolSize.compareAndSet(poolSize, poolSize - 1)) {
+          return true;
         }
       }
     }
@@ -441,15 +780,32 @@ public final class KijiTablePool implements Closeable {
      *
      * @return The size of the table pool.
      */
-    public synchronized int getPoolSize() {
-        return mPoolSize;
+    public int getPoolSize() {
+        return mPoolSize.get();
+    }
+
+    /**
+     * Takes a snapshot of the statistics of this pool.
+     *
+     * @return a snapshot of the statistics of this pool.
+     */
+    public PoolStatistics getStatistics() {
+      return new PoolStatistics(
+          mPoolSize.get(),
+          mAvailableCount.get(),
+          mAcquireCount.get(),
+          mNoCapacityCount.get(),
+          mTotalAcquireNanos.get(),
+          mMaxAcquireNanos.get());
     }
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void close() throws IOException {
-      while (!mConnections.isEmpty()) {
-        ResourceUtils.releaseOrLog(mConnections.remove().mTable);
+    public void close() throws IOException {
+      PooledKijiTable connection = pollConnection();
+      while (null != connection) {
+        ResourceUtils.releaseOrLog(connection.mTable);
+        connection = pollConnection();
       }
     }
   }
@@ -460,7 +816,7 @@ public final class KijiTablePool implements Closeable {
    */
   private static class PooledKijiTable implements KijiTable {
     private final KijiTable mTable;
-    private long mLastAccessTime;
+    private volatile long mLastAccessTime;
     private Pool mPool;
 
     /** Internal retention count for wrapped pool connections. */
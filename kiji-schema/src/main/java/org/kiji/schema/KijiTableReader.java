@@ -21,8 +21,12 @@ package org.kiji.schema;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
 import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.annotations.Inheritance;
@@ -109,6 +113,32 @@ public interface KijiTableReader extends Closeable {
   List<KijiRowData> bulkGet(List<EntityId> entityIds, KijiDataRequest dataRequest)
       throws IOException;
 
+  /**
+   * Checks whether a list of rows, or a column in each of these rows, exist in the kiji table.
+   *
+   * <p>
+   *   Much cheaper than {@link #bulkGet(List, KijiDataRequest)}: existence checks are sent as one
+   *   batch of key-only gets that only ever return the first cell of each row, and never decode
+   *   cell values.
+   * </p>
+   * <p>
+   *   Existence checks benefit from the bloom filters of the locality groups, configured in the
+   *   table layout with {@link org.kiji.schema.avro.BloomType}: a <code>ROW</code> bloom filter
+   *   lets HBase skip the store files that cannot contain a row, and a <code>ROWCOL</code> bloom
+   *   filter lets HBase skip the store files that cannot contain a fully-qualified column of a
+   *   row. Checks for entire families or rows only benefit from <code>ROW</code> bloom filters.
+   * </p>
+   *
+   * @param entityIds The list of entity ids of the rows to check.
+   * @param column The column to check in each row: a fully-qualified column, an entire family,
+   *     or null to check whether the rows themselves exist (ie. have at least one cell).
+   * @return For each entity id, whether the row has at least one cell in the column.
+   *     If a check fails, then the corresponding element will be null.
+   * @throws IOException If there is an IO error.
+   */
+  List<Boolean> exists(List<EntityId> entityIds, KijiColumnName column)
+      throws IOException;
+
   /**
    * Gets a KijiRowScanner with the specified data request.
    *
@@ -132,11 +162,96 @@ public interface KijiTableReader extends Closeable {
   KijiRowScanner getScanner(KijiDataRequest dataRequest, KijiScannerOptions scannerOptions)
       throws IOException;
 
+  /**
+   * Aggregates the rows selected by scanner options, without returning them.
+   *
+   * <p>
+   *   Computes the number of rows, and for each column of the data request: the number of cells,
+   *   an estimate of the number of distinct cell values, and for counter columns, the sum,
+   *   minimum and maximum of the counters. An empty data request only counts rows.
+   *   Rows are selected as in {@link #getScanner(KijiDataRequest, KijiScannerOptions)},
+   *   and the data request restricts the cells aggregated as it restricts the cells returned by
+   *   a scanner (time range, maximum number of versions, column filters).
+   * </p>
+   * <p>
+   *   The regions of the table are aggregated concurrently, and the partial aggregates merged.
+   *   This is much cheaper than iterating over a scanner: rows are never decoded, and row counts
+   *   only fetch the first key of each row.
+   * </p>
+   *
+   * @param dataRequest Columns to aggregate.
+   * @param scannerOptions Options selecting the rows to aggregate.
+   * @return the aggregates of the selected rows.
+   * @throws IOException If there is an IO error.
+   * @throws KijiDataRequestException If the data request is invalid.
+   */
+  KijiScanAggregates aggregate(KijiDataRequest dataRequest, KijiScannerOptions scannerOptions)
+      throws IOException;
+
   /**
    * Options for KijiRowScanners.
    */
   @ApiAudience.Public
   public static final class KijiScannerOptions {
+    /** Strategies to sample the rows of a table. */
+    public static enum SamplingMode {
+      /**
+       * Scan a random sub-range of the row keys of each region.
+       *
+       * <p>
+       *   Only meaningful when the row keys start with a hash: other row keys fall back to
+       *   sampling individual rows.
+       * </p>
+       */
+      KEY_RANGES,
+
+      /** Scan all the row keys and randomly select individual rows, server-side. */
+      ROWS
+    }
+
+    /**
+     * Range of rows to scan, bounded by a start row (inclusive) and a stop row (exclusive),
+     * or defined by a row key prefix.
+     */
+    public static final class RowRange {
+      /** Start row (inclusive), row key prefix, or null for unbounded. */
+      private final EntityId mStartRow;
+
+      /** Stop row (exclusive), or null for unbounded. Always null for prefixes. */
+      private final EntityId mStopRow;
+
+      /** Whether this range is defined by a row key prefix. */
+      private final boolean mIsPrefix;
+
+      /**
+       * Initializes a row range.
+       *
+       * @param startRow Start row (inclusive), row key prefix, or null for unbounded.
+       * @param stopRow Stop row (exclusive), or null for unbounded.
+       * @param isPrefix Whether the range is defined by a row key prefix.
+       */
+      private RowRange(EntityId startRow, EntityId stopRow, boolean isPrefix) {
+        mStartRow = startRow;
+        mStopRow = stopRow;
+        mIsPrefix = isPrefix;
+      }
+
+      /** @return the start row (inclusive), the row key prefix, or null for unbounded. */
+      public EntityId getStartRow() {
+        return mStartRow;
+      }
+
+      /** @return the stop row (exclusive), or null for unbounded or for prefixes. */
+      public EntityId getStopRow() {
+        return mStopRow;
+      }
+
+      /** @return whether this range is the set of rows whose key starts with a prefix. */
+      public boolean isPrefix() {
+        return mIsPrefix;
+      }
+    }
+
     /** The start row for the scan. */
     private EntityId mStartRow = null;
 
@@ -168,6 +283,24 @@ public interface KijiTableReader extends Closeable {
      */
     private HBaseScanOptions mHBaseScanOptions = new HBaseScanOptions();
 
+    /** Fraction of the rows to sample, in (0, 1]. 1 means no sampling. */
+    private double mSamplingRate = 1.0;
+
+    /** Strategy to sample the rows. */
+    private SamplingMode mSamplingMode = SamplingMode.KEY_RANGES;
+
+    /** Seed for the sampling random generator, or null for a random seed. */
+    private Long mSamplingSeed = null;
+
+    /** Ranges of rows to scan, or empty to scan from the start row to the stop row. */
+    private final List<RowRange> mRowRanges = Lists.newArrayList();
+
+    /** Maximum number of row ranges to scan concurrently. */
+    private int mRowRangeParallelism = 1;
+
+    /** Maximum number of rows prefetched for each group of row ranges scanned concurrently. */
+    private int mRowRangePrefetchSize = 1000;
+
     /**
      * Creates KijiScannerOptions with uninitialized options
      * and default HBaseScanOptions.
@@ -320,5 +453,182 @@ public interface KijiTableReader extends Closeable {
       return mRowCaching;
     }
 
+    /**
+     * Configures the scanner to only read a random sample of the rows.
+     *
+     * <p>
+     *   The fraction of the rows effectively sampled may differ slightly from the requested rate,
+     *   and is reported by the scanner.
+     *   See {@link KijiRowScanner#getEffectiveSamplingRate()}.
+     * </p>
+     *
+     * @param samplingRate Fraction of the rows to sample, in (0, 1]. 1 means no sampling.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions setSamplingRate(double samplingRate) {
+      Preconditions.checkArgument((samplingRate > 0.0) && (samplingRate <= 1.0),
+          "Sampling rate must be in (0, 1], got %s.", samplingRate);
+      mSamplingRate = samplingRate;
+      return this;
+    }
+
+    /**
+     * Reports the fraction of the rows to sample.
+     *
+     * @return the fraction of the rows to sample, in (0, 1]. 1 means no sampling.
+     */
+    public double getSamplingRate() {
+      return mSamplingRate;
+    }
+
+    /**
+     * Configures the strategy to sample the rows. Defaults to {@link SamplingMode#KEY_RANGES}.
+     *
+     * @param samplingMode Strategy to sample the rows.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions setSamplingMode(SamplingMode samplingMode) {
+      mSamplingMode = samplingMode;
+      return this;
+    }
+
+    /**
+     * Reports the strategy to sample the rows.
+     *
+     * @return the strategy to sample the rows.
+     */
+    public SamplingMode getSamplingMode() {
+      return mSamplingMode;
+    }
+
+    /**
+     * Configures the seed of the random generator used to pick the sampled key ranges.
+     *
+     * <p> Row sampling happens server-side and is not reproducible. </p>
+     *
+     * @param samplingSeed Seed of the random generator, or null for a random seed.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions setSamplingSeed(Long samplingSeed) {
+      mSamplingSeed = samplingSeed;
+      return this;
+    }
+
+    /**
+     * Reports the seed of the random generator used to pick the sampled key ranges.
+     *
+     * @return the seed of the random generator, or null for a random seed.
+     */
+    public Long getSamplingSeed() {
+      return mSamplingSeed;
+    }
+
+    /**
+     * Adds the rows whose key starts with a given prefix to the rows to scan.
+     *
+     * <p>
+     *   The prefix is compared against the HBase row keys. For hashed row keys, this is only
+     *   meaningful with a prefix that includes the hash, eg. a formatted entity ID built from
+     *   its leading components.
+     * </p>
+     *
+     * <p>
+     *   Row ranges and prefixes are sorted and merged when they overlap.
+     *   When any row range or prefix is added, the scanner only reads the rows that belong to
+     *   one of them, and to the range bounded by the start and stop rows.
+     * </p>
+     *
+     * @param prefix Entity ID whose HBase row key is the prefix of the rows to scan.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions addRowPrefix(EntityId prefix) {
+      Preconditions.checkNotNull(prefix);
+      mRowRanges.add(new RowRange(prefix, null, true));
+      return this;
+    }
+
+    /**
+     * Adds a range of rows to the rows to scan. See {@link #addRowPrefix(EntityId)}.
+     *
+     * @param startRow First row of the range (inclusive), or null for unbounded.
+     * @param stopRow Row the range stops at (exclusive), or null for unbounded.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions addRowRange(EntityId startRow, EntityId stopRow) {
+      mRowRanges.add(new RowRange(startRow, stopRow, false));
+      return this;
+    }
+
+    /**
+     * Reports the ranges of rows to scan.
+     *
+     * @return the ranges of rows to scan, in the order they were added,
+     *     or an empty list to scan from the start row to the stop row.
+     */
+    public List<RowRange> getRowRanges() {
+      return Collections.unmodifiableList(mRowRanges);
+    }
+
+    /**
+     * Configures the maximum number of row ranges to scan concurrently. Defaults to 1.
+     *
+     * <p>
+     *   With a parallelism of 1, the row ranges are scanned one after the other through a single
+     *   scanner. Otherwise, the row ranges are grouped by region and the groups are prefetched
+     *   concurrently. Either way, rows are returned ordered by row key.
+     * </p>
+     * <p>
+     *   Aggregations always process the regions concurrently: they use this parallelism when
+     *   greater than 1, and a default parallelism otherwise.
+     *   See {@link KijiTableReader#aggregate(KijiDataRequest, KijiScannerOptions)}.
+     * </p>
+     *
+     * @param parallelism Maximum number of row ranges to scan concurrently. At least 1.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions setRowRangeParallelism(int parallelism) {
+      Preconditions.checkArgument(parallelism >= 1,
+          "Row range parallelism must be at least 1, got %s.", parallelism);
+      mRowRangeParallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Reports the maximum number of row ranges to scan concurrently.
+     *
+     * @return the maximum number of row ranges to scan concurrently.
+     */
+    public int getRowRangeParallelism() {
+      return mRowRangeParallelism;
+    }
+
+    /**
+     * Configures the maximum number of rows prefetched for each group of row ranges
+     * scanned concurrently. Defaults to 1000.
+     *
+     * <p>
+     *   Only applies when the row range parallelism is greater than 1.
+     *   See {@link #setRowRangeParallelism(int)}.
+     * </p>
+     *
+     * @param prefetchSize Maximum number of rows to prefetch per group of row ranges. At least 1.
+     * @return this KijiScannerOptions.
+     */
+    public KijiScannerOptions setRowRangePrefetchSize(int prefetchSize) {
+      Preconditions.checkArgument(prefetchSize >= 1,
+          "Row range prefetch size must be at least 1, got %s.", prefetchSize);
+      mRowRangePrefetchSize = prefetchSize;
+      return this;
+    }
+
+    /**
+     * Reports the maximum number of rows prefetched for each group of row ranges.
+     *
+     * @return the maximum number of rows prefetched for each group of row ranges.
+     */
+    public int getRowRangePrefetchSize() {
+      return mRowRangePrefetchSize;
+    }
+
   }
 }
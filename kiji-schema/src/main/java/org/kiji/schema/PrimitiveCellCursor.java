@@ -0,0 +1,101 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema;
+
+import java.io.IOException;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.annotations.ApiStability;
+import org.kiji.annotations.Inheritance;
+
+/**
+ * Cursor over the versions of a column holding primitive values (counters, or Avro ints, longs,
+ * floats and doubles), most recent first.
+ *
+ * <p>
+ *   Unlike {@link KijiRowData#getValues(String, String)} and
+ *   {@link KijiRowData#iterator(String, String)}, a cursor decodes cells directly from the HBase
+ *   result into primitive values, without boxing timestamps or values:
+ * </p>
+ * <pre>
+ *   final PrimitiveCellCursor cursor = row.getPrimitiveCells("info", "visits");
+ *   while (cursor.next()) {
+ *     total += cursor.getLong();
+ *   }
+ * </pre>
+ *
+ * <p>
+ *   Values are decoded according to the schema they were written with: a column written as Avro
+ *   ints may be read with any of the accessors, while a column written as Avro doubles may only
+ *   be read with {@link #getDouble()}, as Avro schema resolution requires.
+ * </p>
+ *
+ * <p> Cursors are not thread-safe. </p>
+ */
+@ApiAudience.Public
+@ApiStability.Experimental
+@Inheritance.Sealed
+public interface PrimitiveCellCursor {
+  /**
+   * Moves the cursor to the next version of the column.
+   *
+   * @return whether there is a next version. The cursor is initially positioned before the
+   *     most recent version.
+   */
+  boolean next();
+
+  /**
+   * Reports the timestamp of the current version.
+   *
+   * @return the timestamp of the current version.
+   * @throws IllegalStateException if the cursor is not positioned on a version.
+   */
+  long getTimestamp();
+
+  /**
+   * Decodes the current version as a long.
+   *
+   * @return the value of the current version, as a long.
+   * @throws IOException on I/O error.
+   * @throws KijiEncodingException if the value cannot be read as a long.
+   * @throws IllegalStateException if the cursor is not positioned on a version.
+   */
+  long getLong() throws IOException;
+
+  /**
+   * Decodes the current version as an int.
+   *
+   * @return the value of the current version, as an int.
+   * @throws IOException on I/O error.
+   * @throws KijiEncodingException if the value cannot be read as an int.
+   * @throws IllegalStateException if the cursor is not positioned on a version.
+   */
+  int getInt() throws IOException;
+
+  /**
+   * Decodes the current version as a double.
+   *
+   * @return the value of the current version, as a double.
+   * @throws IOException on I/O error.
+   * @throws KijiEncodingException if the value cannot be read as a double.
+   * @throws IllegalStateException if the cursor is not positioned on a version.
+   */
+  double getDouble() throws IOException;
+}
@@ -0,0 +1,353 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.KijiSchemaTable;
+import org.kiji.schema.KijiSchemaTable.SchemaEntry;
+import org.kiji.schema.avro.SchemaStorage;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.layout.CellSpec;
+import org.kiji.schema.util.ByteStreamArray;
+import org.kiji.schema.util.BytesKey;
+import org.kiji.schema.util.Hasher;
+
+/**
+ * HBase filter that decodes the most recent cell of a column and evaluates a predicate on it.
+ *
+ * <p>
+ *   Rows where the column has no cell, or where the most recent cell does not match the
+ *   predicate, are filtered out entirely.
+ * </p>
+ *
+ * <p>
+ *   This filter runs on the region servers, which cannot access the Kiji schema table.
+ *   Instead, the filter carries the writer schemas it may encounter: the schema declared by the
+ *   table layout for the column, and the writer schemas the layout registers for the column.
+ *   Cells written with any other schema are considered not matching.
+ *   Cells are decoded with their writer schema, without schema resolution.
+ * </p>
+ *
+ * <p>
+ *   The region servers must have the KijiSchema jar and its Avro dependency on their classpath.
+ *   Do not instantiate directly: use {@link DecodedColumnValueRowFilter}.
+ * </p>
+ */
+@ApiAudience.Private
+public final class DecodedColumnValueHBaseFilter extends FilterBase {
+  private static final Logger LOG = LoggerFactory.getLogger(DecodedColumnValueHBaseFilter.class);
+
+  /** How the cells of the filtered column are encoded. */
+  private static enum CellEncoding {
+    /** 8-byte counters. */
+    COUNTER,
+
+    /** Avro, without writer schema: cells are written with the schema declared by the layout. */
+    FINAL,
+
+    /** Avro, prefixed with the hash of the writer schema. */
+    HASH,
+
+    /** Avro, prefixed with the UID of the writer schema. */
+    UID
+  }
+
+  /** HBase family of the filtered column. */
+  private byte[] mFamily;
+
+  /** HBase qualifier of the filtered column. */
+  private byte[] mQualifier;
+
+  /** How the cells of the filtered column are encoded. */
+  private CellEncoding mEncoding;
+
+  /** Writer schemas that may be encountered. For FINAL columns, only holds the column schema. */
+  private List<SchemaEntry> mWriterSchemas;
+
+  /** Predicate to evaluate on the most recent cell of the column. */
+  private DecodedValuePredicate mPredicate;
+
+  /** Writer schemas, indexed by schema UID. */
+  private final Map<Long, Schema> mSchemasById = Maps.newHashMap();
+
+  /** Writer schemas, indexed by schema hash. */
+  private final Map<BytesKey, Schema> mSchemasByHash = Maps.newHashMap();
+
+  /** Datum readers, indexed by writer schema. */
+  private final Map<Schema, GenericDatumReader<Object>> mReaders = Maps.newHashMap();
+
+  /** Reusable Avro binary decoder. */
+  private BinaryDecoder mDecoder = null;
+
+  /** Whether the current row has a cell in the filtered column. */
+  private boolean mColumnFound = false;
+
+  /** Whether the most recent cell of the column in the current row matches the predicate. */
+  private boolean mColumnMatches = false;
+
+  /** Default constructor, required by HBase to deserialize filters. Do not use. */
+  public DecodedColumnValueHBaseFilter() {
+  }
+
+  /**
+   * Initializes a filter.
+   *
+   * @param column HBase column to filter on.
+   * @param encoding How the cells of the column are encoded.
+   * @param writerSchemas Writer schemas that may be encountered.
+   * @param predicate Predicate to evaluate on the most recent cell of the column.
+   */
+  private DecodedColumnValueHBaseFilter(
+      HBaseColumnName column,
+      CellEncoding encoding,
+      List<SchemaEntry> writerSchemas,
+      DecodedValuePredicate predicate) {
+    mFamily = column.getFamily();
+    mQualifier = column.getQualifier();
+    mEncoding = encoding;
+    mWriterSchemas = writerSchemas;
+    mPredicate = predicate;
+    indexWriterSchemas();
+  }
+
+  /**
+   * Creates a filter for a given column.
+   *
+   * @param column HBase column to filter on.
+   * @param cellSpec Specification of the cell encoding of the column, bound to the schema table.
+   * @param predicate Predicate to evaluate on the most recent cell of the column.
+   * @return a new filter.
+   * @throws IOException on I/O error.
+   */
+  static DecodedColumnValueHBaseFilter create(
+      HBaseColumnName column,
+      CellSpec cellSpec,
+      DecodedValuePredicate predicate)
+      throws IOException {
+    if (cellSpec.isCounter()) {
+      return new DecodedColumnValueHBaseFilter(
+          column, CellEncoding.COUNTER, Lists.<SchemaEntry>newArrayList(), predicate);
+    }
+    final Schema schema = cellSpec.getAvroSchema();
+    Preconditions.checkArgument(null != schema,
+        "Cannot filter on the values of column %s: its Avro schema is not available.", column);
+    final List<SchemaEntry> writerSchemas = Lists.newArrayList();
+    switch (cellSpec.getCellSchema().getStorage()) {
+    case FINAL: {
+      writerSchemas.add(new SchemaEntry(-1, new BytesKey(new byte[0]), schema));
+      return new DecodedColumnValueHBaseFilter(
+          column, CellEncoding.FINAL, writerSchemas, predicate);
+    }
+    case HASH:
+    case UID: {
+      final KijiSchemaTable schemaTable = cellSpec.getSchemaTable();
+      final SchemaEntry entry = schemaTable.getSchemaEntry(schema);
+      // Schema hashes do not require the schema to be registered in the schema table:
+      addSchemaEntry(writerSchemas, (null != entry)
+          ? entry
+          : new SchemaEntry(-1, schemaTable.getSchemaHash(schema), schema));
+      for (List<Long> ids : Arrays.asList(
+          cellSpec.getCellSchema().getWriters(), cellSpec.getCellSchema().getWritten())) {
+        if (null != ids) {
+          for (long id : ids) {
+            addSchemaEntry(writerSchemas, schemaTable.getSchemaEntry(id));
+          }
+        }
+      }
+      final CellEncoding encoding =
+          (cellSpec.getCellSchema().getStorage() == SchemaStorage.HASH)
+          ? CellEncoding.HASH
+          : CellEncoding.UID;
+      return new DecodedColumnValueHBaseFilter(column, encoding, writerSchemas, predicate);
+    }
+    default:
+      throw new RuntimeException(
+          "Unexpected cell schema storage: " + cellSpec.getCellSchema().getStorage());
+    }
+  }
+
+  /**
+   * Adds a schema entry to a list of writer schemas, unless it is null or already listed.
+   *
+   * @param writerSchemas List of writer schemas to update.
+   * @param entry Schema entry to add. May be null.
+   */
+  private static void addSchemaEntry(List<SchemaEntry> writerSchemas, SchemaEntry entry) {
+    if ((null != entry) && !writerSchemas.contains(entry)) {
+      writerSchemas.add(entry);
+    }
+  }
+
+  /** Indexes the writer schemas by UID and by hash. */
+  private void indexWriterSchemas() {
+    mSchemasById.clear();
+    mSchemasByHash.clear();
+    for (SchemaEntry entry : mWriterSchemas) {
+      mSchemasById.put(entry.getId(), entry.getSchema());
+      mSchemasByHash.put(entry.getHash(), entry.getSchema());
+    }
+  }
+
+  /**
+   * Decodes a cell of the filtered column.
+   *
+   * @param bytes Encoded cell.
+   * @return the decoded cell value, or null if the writer schema is unknown.
+   * @throws IOException on decoding error.
+   */
+  private Object decode(byte[] bytes) throws IOException {
+    final Schema writerSchema;
+    int offset = 0;
+    switch (mEncoding) {
+    case COUNTER: return Bytes.toLong(bytes);
+    case FINAL: {
+      writerSchema = mWriterSchemas.get(0).getSchema();
+      break;
+    }
+    case HASH: {
+      writerSchema = mSchemasByHash.get(
+          new BytesKey(Arrays.copyOf(bytes, Hasher.HASH_SIZE_BYTES)));
+      offset = Hasher.HASH_SIZE_BYTES;
+      break;
+    }
+    case UID: {
+      final ByteStreamArray stream = new ByteStreamArray(bytes);
+      writerSchema = mSchemasById.get(stream.readVarInt64());
+      offset = stream.getOffset();
+      break;
+    }
+    default: throw new RuntimeException("Unexpected cell encoding: " + mEncoding);
+    }
+    if (null == writerSchema) {
+      return null;
+    }
+
+    GenericDatumReader<Object> reader = mReaders.get(writerSchema);
+    if (null == reader) {
+      reader = new GenericDatumReader<Object>(writerSchema);
+      mReaders.put(writerSchema, reader);
+    }
+    mDecoder = DecoderFactory.get().binaryDecoder(bytes, offset, bytes.length - offset, mDecoder);
+    return reader.read(null, mDecoder);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void reset() {
+    mColumnFound = false;
+    mColumnMatches = false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ReturnCode filterKeyValue(KeyValue kv) {
+    // Cells of a column are sorted by decreasing timestamp: only evaluate the most recent one.
+    if (!mColumnFound && kv.matchingColumn(mFamily, mQualifier)) {
+      mColumnFound = true;
+      try {
+        final Object decoded = decode(kv.getValue());
+        mColumnMatches = (null != decoded) && mPredicate.matches(decoded);
+      } catch (IOException ioe) {
+        LOG.debug("Unable to decode cell {}: {}", kv, ioe.getMessage());
+        mColumnMatches = false;
+      }
+    }
+    return ReturnCode.INCLUDE;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean hasFilterRow() {
+    return true;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean filterRow() {
+    return !(mColumnFound && mColumnMatches);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(DataOutput out) throws IOException {
+    Bytes.writeByteArray(out, mFamily);
+    Bytes.writeByteArray(out, mQualifier);
+    WritableUtils.writeEnum(out, mEncoding);
+    WritableUtils.writeVInt(out, mWriterSchemas.size());
+    for (SchemaEntry entry : mWriterSchemas) {
+      WritableUtils.writeVLong(out, entry.getId());
+      Bytes.writeByteArray(out, entry.getHash().getBytes());
+      Text.writeString(out, entry.getSchema().toString());
+    }
+    Text.writeString(out, mPredicate.toJson().toString());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    mFamily = Bytes.readByteArray(in);
+    mQualifier = Bytes.readByteArray(in);
+    mEncoding = WritableUtils.readEnum(in, CellEncoding.class);
+    final int nschemas = WritableUtils.readVInt(in);
+    mWriterSchemas = Lists.newArrayListWithCapacity(nschemas);
+    for (int i = 0; i < nschemas; ++i) {
+      final long id = WritableUtils.readVLong(in);
+      final BytesKey hash = new BytesKey(Bytes.readByteArray(in));
+      final Schema schema = new Schema.Parser().parse(Text.readString(in));
+      mWriterSchemas.add(new SchemaEntry(id, hash, schema));
+    }
+    mPredicate = DecodedValuePredicate.fromJson(new ObjectMapper().readTree(Text.readString(in)));
+    mReaders.clear();
+    indexWriterSchemas();
+    reset();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return String.format("%s(%s:%s, %s, %d writer schemas, %s)",
+        getClass().getSimpleName(),
+        Bytes.toStringBinary(mFamily), Bytes.toStringBinary(mQualifier),
+        mEncoding, mWriterSchemas.size(), mPredicate);
+  }
+}
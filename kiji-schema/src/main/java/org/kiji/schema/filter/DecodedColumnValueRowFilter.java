@@ -0,0 +1,218 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.filter;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.annotations.ApiStability;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
+
+/**
+ * A KijiRowFilter that only includes rows where the decoded most recent value of a column,
+ * or of a field of the Avro record stored in a column, satisfies a predicate.
+ *
+ * <p>
+ *   Unlike {@link ColumnValueEqualsRowFilter}, which compares encoded bytes, this filter decodes
+ *   the cells on the region servers: values written with different writer schemas compare
+ *   equal, and the filter may test range and set membership on a single record field.
+ *   Rows without a value in the column are filtered out.
+ * </p>
+ *
+ * <p>
+ *   Operands may be strings, numbers, booleans or enum symbols. Avro strings and enum symbols
+ *   compare as strings; integral numbers as longs and other numbers as doubles.
+ *   Field paths are dot-separated record field names, eg. {@code "address.zip_code"};
+ *   a null field path evaluates the whole cell value. For example:
+ *   <pre>
+ *     // Only includes the rows where info:address.state is "CA" or "WA":
+ *     DecodedColumnValueRowFilter.inSet("info", "address", "state", ImmutableSet.of("CA", "WA"));
+ *   </pre>
+ * </p>
+ *
+ * <p>
+ *   Cells written with a schema other than the column schema or the writer schemas registered in
+ *   the table layout cannot be decoded on the region servers, and are considered not matching.
+ *   See {@link DecodedColumnValueHBaseFilter}.
+ * </p>
+ */
+@ApiAudience.Public
+@ApiStability.Experimental
+public final class DecodedColumnValueRowFilter extends KijiRowFilter {
+  /** The name of the family node. */
+  private static final String FAMILY_NODE = "family";
+
+  /** The name of the qualifier node. */
+  private static final String QUALIFIER_NODE = "qualifier";
+
+  /** The name of the predicate node. */
+  private static final String PREDICATE_NODE = "predicate";
+
+  /** The name of the column family to check for data in. */
+  private final String mFamily;
+
+  /** The name of the column qualifier to check for data in. */
+  private final String mQualifier;
+
+  /** Predicate the most recent value of the column must satisfy. */
+  private final DecodedValuePredicate mPredicate;
+
+  /**
+   * Initializes a new filter.
+   *
+   * @param family The column family of interest.
+   * @param qualifier The column qualifier of interest.
+   * @param predicate Predicate the most recent value of the column must satisfy.
+   */
+  private DecodedColumnValueRowFilter(
+      String family,
+      String qualifier,
+      DecodedValuePredicate predicate) {
+    Preconditions.checkArgument((null != family) && !family.isEmpty(), "family is required");
+    Preconditions.checkArgument((null != qualifier) && !qualifier.isEmpty(),
+        "qualifier is required");
+    mFamily = family;
+    mQualifier = qualifier;
+    mPredicate = predicate;
+  }
+
+  /**
+   * Creates a filter that only includes rows where a column value equals a given value.
+   *
+   * @param family The column family of interest.
+   * @param qualifier The column qualifier of interest.
+   * @param fieldPath Dot-separated path of the record field to compare,
+   *     or null to compare the whole value.
+   * @param value Value the most recent value of the column must equal.
+   * @return a new filter.
+   */
+  public static DecodedColumnValueRowFilter equalTo(
+      String family, String qualifier, String fieldPath, Object value) {
+    return new DecodedColumnValueRowFilter(
+        family, qualifier, DecodedValuePredicate.equalTo(fieldPath, value));
+  }
+
+  /**
+   * Creates a filter that only includes rows where a column value lies within a range.
+   *
+   * @param family The column family of interest.
+   * @param qualifier The column qualifier of interest.
+   * @param fieldPath Dot-separated path of the record field to compare,
+   *     or null to compare the whole value.
+   * @param min Lower bound of the range, or null for unbounded.
+   * @param includeMin Whether to include the lower bound.
+   * @param max Upper bound of the range, or null for unbounded.
+   * @param includeMax Whether to include the upper bound.
+   * @return a new filter.
+   */
+  public static DecodedColumnValueRowFilter inRange(
+      String family, String qualifier, String fieldPath,
+      Object min, boolean includeMin, Object max, boolean includeMax) {
+    return new DecodedColumnValueRowFilter(family, qualifier,
+        DecodedValuePredicate.inRange(fieldPath, min, includeMin, max, includeMax));
+  }
+
+  /**
+   * Creates a filter that only includes rows where a column value belongs to a set of values.
+   *
+   * @param family The column family of interest.
+   * @param qualifier The column qualifier of interest.
+   * @param fieldPath Dot-separated path of the record field to compare,
+   *     or null to compare the whole value.
+   * @param values Set of values the most recent value of the column must belong to.
+   * @return a new filter.
+   */
+  public static DecodedColumnValueRowFilter inSet(
+      String family, String qualifier, String fieldPath, Collection<?> values) {
+    return new DecodedColumnValueRowFilter(
+        family, qualifier, DecodedValuePredicate.inSet(fieldPath, values));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public KijiDataRequest getDataRequest() {
+    return KijiDataRequest.create(mFamily, mQualifier);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Filter toHBaseFilter(Context context) throws IOException {
+    final KijiColumnName column = new KijiColumnName(mFamily, mQualifier);
+    return DecodedColumnValueHBaseFilter.create(
+        context.getHBaseColumnName(column), context.getCellSpec(column), mPredicate);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof DecodedColumnValueRowFilter)) {
+      return false;
+    } else {
+      final DecodedColumnValueRowFilter otherFilter = (DecodedColumnValueRowFilter) other;
+      return Objects.equal(otherFilter.mFamily, this.mFamily)
+          && Objects.equal(otherFilter.mQualifier, this.mQualifier)
+          && Objects.equal(otherFilter.mPredicate, this.mPredicate);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(mFamily, mQualifier, mPredicate);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode toJsonNode() {
+    final ObjectNode root = JsonNodeFactory.instance.objectNode();
+    root.put(FAMILY_NODE, mFamily);
+    root.put(QUALIFIER_NODE, mQualifier);
+    root.put(PREDICATE_NODE, mPredicate.toJson());
+    return root;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected Class<? extends KijiRowFilterDeserializer> getDeserializerClass() {
+    return DecodedColumnValueRowFilterDeserializer.class;
+  }
+
+  /** Deserializes {@code DecodedColumnValueRowFilter}. */
+  public static final class DecodedColumnValueRowFilterDeserializer
+      implements KijiRowFilterDeserializer {
+    /** {@inheritDoc} */
+    @Override
+    public KijiRowFilter createFromJson(JsonNode root) {
+      return new DecodedColumnValueRowFilter(
+          root.path(FAMILY_NODE).getTextValue(),
+          root.path(QUALIFIER_NODE).getTextValue(),
+          DecodedValuePredicate.fromJson(root.path(PREDICATE_NODE)));
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericEnumSymbol;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Predicate on a decoded cell value, or on a field of a decoded Avro record.
+ *
+ * <p>
+ *   Values are compared after normalization: strings, Avro strings and enum symbols compare as
+ *   Java strings; integral numbers as longs and other numbers as doubles; booleans as booleans.
+ *   A value of any other type, a missing field or a null value never matches.
+ * </p>
+ *
+ * <p> Evaluated both client-side and on the HBase region servers. Instances are immutable. </p>
+ */
+@ApiAudience.Private
+final class DecodedValuePredicate {
+  /** Kinds of predicates. */
+  enum Operator {
+    /** The value equals an operand. */
+    EQUALS,
+
+    /** The value lies in a range. Either bound may be null for unbounded. */
+    RANGE,
+
+    /** The value equals one of a set of operands. */
+    IN_SET
+  }
+
+  /** The name of the field path node. */
+  private static final String FIELD_PATH_NODE = "fieldPath";
+
+  /** The name of the operator node. */
+  private static final String OPERATOR_NODE = "operator";
+
+  /** The name of the operands node. */
+  private static final String OPERANDS_NODE = "operands";
+
+  /** The name of the lower bound inclusion node. */
+  private static final String INCLUDE_MIN_NODE = "includeMin";
+
+  /** The name of the upper bound inclusion node. */
+  private static final String INCLUDE_MAX_NODE = "includeMax";
+
+  /** Separates the field names of a field path. */
+  private static final char FIELD_SEPARATOR = '.';
+
+  /** Returned when navigating a field path that does not exist in a value. */
+  private static final Object MISSING = new Object();
+
+  /** Names of the nested record fields to evaluate. Empty to evaluate the whole value. */
+  private final List<String> mFieldPath;
+
+  /** Kind of predicate. */
+  private final Operator mOperator;
+
+  /**
+   * Normalized operands: one value for EQUALS, the lower and upper bounds for RANGE, and the set
+   * members for IN_SET.
+   */
+  private final List<Object> mOperands;
+
+  /** Set of normalized operands, for IN_SET. */
+  private final Set<Object> mOperandSet;
+
+  /** Whether the lower bound is included, for RANGE. */
+  private final boolean mIncludeMin;
+
+  /** Whether the upper bound is included, for RANGE. */
+  private final boolean mIncludeMax;
+
+  /**
+   * Initializes a predicate.
+   *
+   * @param fieldPath Dot-separated path of the record field to evaluate,
+   *     or null or empty to evaluate the whole value.
+   * @param operator Kind of predicate.
+   * @param operands Operands of the predicate. See {@link #mOperands}.
+   * @param includeMin Whether the lower bound is included, for RANGE.
+   * @param includeMax Whether the upper bound is included, for RANGE.
+   */
+  private DecodedValuePredicate(
+      String fieldPath,
+      Operator operator,
+      List<?> operands,
+      boolean includeMin,
+      boolean includeMax) {
+    mFieldPath = ((null == fieldPath) || fieldPath.isEmpty())
+        ? ImmutableList.<String>of()
+        : ImmutableList.copyOf(Splitter.on(FIELD_SEPARATOR).split(fieldPath));
+    mOperator = Preconditions.checkNotNull(operator);
+    final List<Object> normalized = Lists.newArrayListWithCapacity(operands.size());
+    for (Object operand : operands) {
+      if ((null == operand) && (operator == Operator.RANGE)) {
+        normalized.add(null);
+        continue;
+      }
+      final Object value = normalize(operand);
+      Preconditions.checkArgument(null != value,
+          "Unsupported operand '%s': expecting a string, number, boolean or enum symbol.", operand);
+      normalized.add(value);
+    }
+    mOperands = Collections.unmodifiableList(normalized);
+    mOperandSet = (operator == Operator.IN_SET) ? Sets.newHashSet(normalized) : null;
+    // Bounds inclusion is only meaningful for ranges:
+    mIncludeMin = (operator != Operator.RANGE) || includeMin;
+    mIncludeMax = (operator != Operator.RANGE) || includeMax;
+  }
+
+  /**
+   * Creates a predicate matching values equal to an operand.
+   *
+   * @param fieldPath Dot-separated path of the record field to evaluate, or null for the value.
+   * @param operand Value to compare against.
+   * @return a new predicate.
+   */
+  static DecodedValuePredicate equalTo(String fieldPath, Object operand) {
+    Preconditions.checkNotNull(operand, "Operand may not be null.");
+    return new DecodedValuePredicate(
+        fieldPath, Operator.EQUALS, ImmutableList.of(operand), true, true);
+  }
+
+  /**
+   * Creates a predicate matching values within a range.
+   *
+   * @param fieldPath Dot-separated path of the record field to evaluate, or null for the value.
+   * @param min Lower bound, or null for unbounded.
+   * @param includeMin Whether to include the lower bound.
+   * @param max Upper bound, or null for unbounded.
+   * @param includeMax Whether to include the upper bound.
+   * @return a new predicate.
+   */
+  static DecodedValuePredicate inRange(
+      String fieldPath, Object min, boolean includeMin, Object max, boolean includeMax) {
+    Preconditions.checkArgument((null != min) || (null != max),
+        "At least one bound of the range must be specified.");
+    return new DecodedValuePredicate(
+        fieldPath, Operator.RANGE, Arrays.asList(min, max), includeMin, includeMax);
+  }
+
+  /**
+   * Creates a predicate matching values that belong to a set.
+   *
+   * @param fieldPath Dot-separated path of the record field to evaluate, or null for the value.
+   * @param operands Values to compare against.
+   * @return a new predicate.
+   */
+  static DecodedValuePredicate inSet(String fieldPath, Collection<?> operands) {
+    return new DecodedValuePredicate(
+        fieldPath, Operator.IN_SET, ImmutableList.copyOf(operands), true, true);
+  }
+
+  /**
+   * Normalizes a value for comparisons.
+   *
+   * @param value Value to normalize.
+   * @return the normalized value, or null if the value type is not supported.
+   */
+  static Object normalize(Object value) {
+    if ((value instanceof CharSequence) || (value instanceof GenericEnumSymbol)
+        || (value instanceof Enum)) {
+      return value.toString();
+    } else if ((value instanceof Long) || (value instanceof Integer)
+        || (value instanceof Short) || (value instanceof Byte)) {
+      return ((Number) value).longValue();
+    } else if ((value instanceof Double) || (value instanceof Float)) {
+      final double number = ((Number) value).doubleValue();
+      // Integral doubles normalize to longs, so that 3 and 3.0 are equal, in sets too:
+      final long integral = (long) number;
+      return (integral == number) ? (Object) integral : (Object) number;
+    } else if (value instanceof Boolean) {
+      return value;
+    }
+    return null;
+  }
+
+  /**
+   * Compares two normalized values.
+   *
+   * @param value1 First normalized value.
+   * @param value2 Second normalized value.
+   * @return the comparison of the two values, or null if the values are not comparable.
+   */
+  private static Integer compare(Object value1, Object value2) {
+    if ((value1 instanceof Long) && (value2 instanceof Long)) {
+      return ((Long) value1).compareTo((Long) value2);
+    } else if ((value1 instanceof Number) && (value2 instanceof Number)) {
+      return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+    } else if ((value1 instanceof String) && (value2 instanceof String)) {
+      return ((String) value1).compareTo((String) value2);
+    } else if ((value1 instanceof Boolean) && (value2 instanceof Boolean)) {
+      return ((Boolean) value1).compareTo((Boolean) value2);
+    }
+    return null;
+  }
+
+  /**
+   * Navigates the field path of this predicate through a decoded value.
+   *
+   * @param decoded Decoded cell value.
+   * @return the value of the field, or MISSING if the field does not exist.
+   */
+  private Object navigate(Object decoded) {
+    Object value = decoded;
+    for (String fieldName : mFieldPath) {
+      if (value instanceof IndexedRecord) {
+        final IndexedRecord record = (IndexedRecord) value;
+        final Schema.Field field = record.getSchema().getField(fieldName);
+        if (null == field) {
+          return MISSING;
+        }
+        value = record.get(field.pos());
+      } else if (value instanceof Map) {
+        final Map<?, ?> map = (Map<?, ?>) value;
+        final Utf8 key = new Utf8(fieldName);
+        value = map.containsKey(key) ? map.get(key) : map.get(fieldName);
+      } else {
+        return MISSING;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Evaluates this predicate against a decoded cell value.
+   *
+   * @param decoded Decoded cell value: an Avro generic or specific datum.
+   * @return whether the value matches this predicate.
+   */
+  boolean matches(Object decoded) {
+    final Object value = normalize(navigate(decoded));
+    if (null == value) {
+      return false;
+    }
+    switch (mOperator) {
+    case EQUALS: return value.equals(mOperands.get(0));
+    case IN_SET: return mOperandSet.contains(value);
+    case RANGE: {
+      final Object min = mOperands.get(0);
+      if (null != min) {
+        final Integer cmp = compare(value, min);
+        if ((null == cmp) || (cmp < 0) || ((cmp == 0) && !mIncludeMin)) {
+          return false;
+        }
+      }
+      final Object max = mOperands.get(1);
+      if (null != max) {
+        final Integer cmp = compare(value, max);
+        if ((null == cmp) || (cmp > 0) || ((cmp == 0) && !mIncludeMax)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    default: throw new RuntimeException("Unexpected operator: " + mOperator);
+    }
+  }
+
+  /**
+   * Serializes this predicate to JSON.
+   *
+   * @return a JSON node describing this predicate.
+   */
+  JsonNode toJson() {
+    final ObjectNode root = JsonNodeFactory.instance.objectNode();
+    root.put(FIELD_PATH_NODE, Joiner.on(FIELD_SEPARATOR).join(mFieldPath));
+    root.put(OPERATOR_NODE, mOperator.name());
+    final ArrayNode operands = root.putArray(OPERANDS_NODE);
+    for (Object operand : mOperands) {
+      if (null == operand) {
+        operands.addNull();
+      } else if (operand instanceof String) {
+        operands.add((String) operand);
+      } else if (operand instanceof Long) {
+        operands.add((Long) operand);
+      } else if (operand instanceof Double) {
+        operands.add((Double) operand);
+      } else {
+        operands.add((Boolean) operand);
+      }
+    }
+    if (mOperator == Operator.RANGE) {
+      root.put(INCLUDE_MIN_NODE, mIncludeMin);
+      root.put(INCLUDE_MAX_NODE, mIncludeMax);
+    }
+    return root;
+  }
+
+  /**
+   * Deserializes a predicate from JSON.
+   *
+   * @param root JSON node created by {@link #toJson()}.
+   * @return the predicate described by the JSON node.
+   */
+  static DecodedValuePredicate fromJson(JsonNode root) {
+    final List<Object> operands = Lists.newArrayList();
+    for (JsonNode operand : root.path(OPERANDS_NODE)) {
+      if (operand.isNull()) {
+        operands.add(null);
+      } else if (operand.isTextual()) {
+        operands.add(operand.getTextValue());
+      } else if (operand.isIntegralNumber()) {
+        operands.add(operand.getLongValue());
+      } else if (operand.isNumber()) {
+        operands.add(operand.getDoubleValue());
+      } else {
+        operands.add(operand.getBooleanValue());
+      }
+    }
+    return new DecodedValuePredicate(
+        root.path(FIELD_PATH_NODE).getTextValue(),
+        Operator.valueOf(root.path(OPERATOR_NODE).getTextValue()),
+        operands,
+        root.path(INCLUDE_MIN_NODE).getBooleanValue(),
+        root.path(INCLUDE_MAX_NODE).getBooleanValue());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof DecodedValuePredicate)) {
+      return false;
+    }
+    final DecodedValuePredicate predicate = (DecodedValuePredicate) other;
+    return mFieldPath.equals(predicate.mFieldPath)
+        && (mOperator == predicate.mOperator)
+        && mOperands.equals(predicate.mOperands)
+        && (mIncludeMin == predicate.mIncludeMin)
+        && (mIncludeMax == predicate.mIncludeMax);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(mFieldPath, mOperator, mOperands, mIncludeMin, mIncludeMax);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return toJson().toString();
+  }
+}
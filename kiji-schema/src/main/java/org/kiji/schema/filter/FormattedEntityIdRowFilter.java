@@ -23,6 +23,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.common.base.Charsets;
@@ -45,6 +46,7 @@ import org.kiji.annotations.ApiAudience;
 import org.kiji.annotations.ApiStability;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiIOException;
+import org.kiji.schema.avro.ComponentType;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.util.FromJson;
@@ -98,6 +100,12 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
   /** The name of the components node. */
   private static final String COMPONENTS_NODE = "components";
 
+  /**
+   * Maximum size of the hash, in bytes, for which the filter enumerates the possible hash values
+   * to compute the row key prefixes of the matching rows.
+   */
+  private static final int MAX_ENUMERATED_HASH_SIZE = 1;
+
   /** The format of the row key. */
   private final RowKeyFormat2 mRowKeyFormat;
 
@@ -163,8 +171,11 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
     // construct a PrefixFilter that is AND'ed with the RowFilter.  This way,
     // when the scan passes the end of the prefix, it can end the filtering
     // process quickly.
-    boolean addPrefixFilter = false;
-    ByteArrayOutputStream prefixBytes = new ByteArrayOutputStream();
+    final byte[] prefix = getHBaseRowKeyPrefix();
+    if ((null != prefix) && isPrefixExact()) {
+      // The prefix alone decides whether a row matches: skip the per-row regex evaluation.
+      return new FilterList(new PrefixFilter(prefix));
+    }
 
     // Define a regular expression that effectively creates a mask for the row
     // key based on the key format and the components passed in.  Prefix hashes
@@ -182,33 +193,17 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
       if (mRowKeyFormat.getSalt().getHashSize() > 0) {
         // If all of the components included in the hash have been specified,
         // then match on the value of the hash
-        Object[] prefixComponents =
-            getNonNullPrefixComponents(mComponents, mRowKeyFormat.getRangeScanStartIndex());
-        if (prefixComponents.length == mRowKeyFormat.getRangeScanStartIndex()) {
-          ByteArrayOutputStream tohash = new ByteArrayOutputStream();
-          for (Object component : prefixComponents) {
-            byte[] componentBytes = toBytes(component);
-            tohash.write(componentBytes, 0, componentBytes.length);
-          }
-          byte[] hashed = Arrays.copyOfRange(Hasher.hash(tohash.toByteArray()), 0,
-              mRowKeyFormat.getSalt().getHashSize());
+        final byte[] hashed = getHash();
+        if (null != hashed) {
           for (byte hashedByte : hashed) {
             regex.append(String.format("\\x%02x", hashedByte & 0xFF));
           }
-
-          addPrefixFilter = true;
-          // Write the hashed bytes to the prefix buffer
-          prefixBytes.write(hashed, 0, hashed.length);
         } else {
           // match any character exactly 'hash size' number of times
           regex.append(".{").append(mRowKeyFormat.getSalt().getHashSize()).append("}");
         }
       }
     }
-    // Only add to the prefix buffer until we hit a null component.  We do this
-    // here, because the prefix is going to expect to have 0x00 component
-    // terminators, which we put in during this loop but not in the loop above.
-    boolean hitNullComponent = false;
     for (int i = 0; i < mComponents.length; i++) {
       final Object component = mComponents[i];
       switch (mRowKeyFormat.getComponents().get(i).getType()) {
@@ -218,16 +213,12 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
             // the end of the EntityId, otherwise, match the correct number of
             // bytes
             regex.append("(.{").append(Bytes.SIZEOF_INT).append("})?");
-            hitNullComponent = true;
           } else {
             byte[] tempBytes = toBytes((Integer) component);
             // match each byte in the integer using a regex hex sequence
             for (byte tempByte : tempBytes) {
               regex.append(String.format("\\x%02x", tempByte & 0xFF));
             }
-            if (!hitNullComponent) {
-              prefixBytes.write(tempBytes, 0, tempBytes.length);
-            }
           }
           break;
         case LONG:
@@ -236,16 +227,12 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
             // the end of the EntityId, otherwise, match the correct number of
             // bytes
             regex.append("(.{").append(Bytes.SIZEOF_LONG).append("})?");
-            hitNullComponent = true;
           } else {
             byte[] tempBytes = toBytes((Long) component);
             // match each byte in the long using a regex hex sequence
             for (byte tempByte : tempBytes) {
               regex.append(String.format("\\x%02x", tempByte & 0xFF));
             }
-            if (!hitNullComponent) {
-              prefixBytes.write(tempBytes, 0, tempBytes.length);
-            }
           }
           break;
         case STRING:
@@ -254,7 +241,6 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
             // delimiter, or match nothing at all in case the component was at
             // the end of the EntityId and skipped entirely
             regex.append("([^\\x00]+\\x00)?");
-            hitNullComponent = true;
           } else {
             // FormattedEntityId converts a string component to UTF-8 bytes to
             // create the HBase key.  RegexStringComparator will convert the
@@ -264,10 +250,6 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
             byte[] utfBytes = toBytes((String) component);
             String isoString = new String(utfBytes, Charsets.ISO_8859_1);
             regex.append(isoString).append("\\x00");
-            if (!hitNullComponent) {
-              prefixBytes.write(utfBytes, 0, utfBytes.length);
-              prefixBytes.write((byte) 0);
-            }
           }
           break;
         default:
@@ -279,13 +261,142 @@ public final class FormattedEntityIdRowFilter extends KijiRowFilter {
 
     final RegexStringComparator comparator = new RegexStringComparator(regex.toString());
     comparator.setCharset(Charsets.ISO_8859_1);
-    if (addPrefixFilter) {
-      return new FilterList(new PrefixFilter(prefixBytes.toByteArray()),
+    if (null != prefix) {
+      return new FilterList(new PrefixFilter(prefix),
           new RowFilter(CompareOp.EQUAL, comparator));
     }
     return new RowFilter(CompareOp.EQUAL, comparator);
   }
 
+  /**
+   * Computes the HBase row key prefix shared by all the rows this filter matches.
+   *
+   * <p>
+   *   The prefix is made of the hash, when all the components it covers are specified, followed
+   *   by the leading components up to the first unspecified one. Scans using this filter only
+   *   need to read the row keys starting with this prefix.
+   * </p>
+   *
+   * @return the HBase row key prefix of the rows this filter matches,
+   *     or null if the matching rows may have any prefix.
+   */
+  public byte[] getHBaseRowKeyPrefix() {
+    final ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+    if ((null != mRowKeyFormat.getSalt()) && (mRowKeyFormat.getSalt().getHashSize() > 0)) {
+      final byte[] hashed = getHash();
+      if (null == hashed) {
+        return null;
+      }
+      prefix.write(hashed, 0, hashed.length);
+    }
+    final byte[] components = getLeadingComponentsBytes();
+    prefix.write(components, 0, components.length);
+    return (prefix.size() > 0) ? prefix.toByteArray() : null;
+  }
+
+  /**
+   * Computes the HBase row key prefixes covering all the rows this filter matches.
+   *
+   * <p>
+   *   When the hash cannot be computed because some of the components it covers are not
+   *   specified, the leading components that follow the hash are still fixed. If the hash is
+   *   small enough, the matching rows are covered by one prefix per possible hash value.
+   * </p>
+   *
+   * @return the HBase row key prefixes covering the rows this filter matches, ordered and
+   *     disjoint, or null if the matching rows may have any prefix.
+   */
+  public List<byte[]> getHBaseRowKeyPrefixes() {
+    final byte[] prefix = getHBaseRowKeyPrefix();
+    if (null != prefix) {
+      return Collections.singletonList(prefix);
+    }
+    if (null == mRowKeyFormat.getSalt()) {
+      return null;
+    }
+    final int hashSize = mRowKeyFormat.getSalt().getHashSize();
+    final byte[] components = getLeadingComponentsBytes();
+    if ((hashSize <= 0) || (hashSize > MAX_ENUMERATED_HASH_SIZE) || (components.length == 0)) {
+      return null;
+    }
+    final int nhashes = 1 << (8 * hashSize);
+    final List<byte[]> prefixes = Lists.newArrayListWithCapacity(nhashes);
+    for (int hash = 0; hash < nhashes; ++hash) {
+      final byte[] hashedPrefix = new byte[hashSize + components.length];
+      for (int i = 0; i < hashSize; ++i) {
+        hashedPrefix[i] = (byte) (hash >>> (8 * (hashSize - 1 - i)));
+      }
+      System.arraycopy(components, 0, hashedPrefix, hashSize, components.length);
+      prefixes.add(hashedPrefix);
+    }
+    return prefixes;
+  }
+
+  /**
+   * Reports whether the row key prefix alone decides whether a row matches this filter.
+   *
+   * <p> This is the case when no component is specified after the first unspecified one. </p>
+   *
+   * @return whether the row key prefix alone decides whether a row matches this filter.
+   */
+  private boolean isPrefixExact() {
+    boolean hitNullComponent = false;
+    for (Object component : mComponents) {
+      if (null == component) {
+        hitNullComponent = true;
+      } else if (hitNullComponent) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the hash prefix of the matching rows.
+   *
+   * @return the hash prefix of the matching rows, or null if some of the components included in
+   *     the hash are not specified.
+   */
+  private byte[] getHash() {
+    final Object[] prefixComponents =
+        getNonNullPrefixComponents(mComponents, mRowKeyFormat.getRangeScanStartIndex());
+    if (prefixComponents.length != mRowKeyFormat.getRangeScanStartIndex()) {
+      return null;
+    }
+    final ByteArrayOutputStream tohash = new ByteArrayOutputStream();
+    for (Object component : prefixComponents) {
+      byte[] componentBytes = toBytes(component);
+      tohash.write(componentBytes, 0, componentBytes.length);
+    }
+    final byte[] hashInput = tohash.toByteArray();
+    final byte[] hash = new byte[mRowKeyFormat.getSalt().getHashSize()];
+    Hasher.hash(mRowKeyFormat.getSalt().getHashType(),
+        hashInput, 0, hashInput.length, hash, 0, hash.length);
+    return hash;
+  }
+
+  /**
+   * Encodes the leading specified components, up to the first unspecified one.
+   *
+   * @return the HBase encoding of the leading specified components, with 0x00 terminators after
+   *     string components.
+   */
+  private byte[] getLeadingComponentsBytes() {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < mComponents.length; i++) {
+      final Object component = mComponents[i];
+      if (null == component) {
+        break;
+      }
+      final byte[] componentBytes = toBytes(component);
+      bytes.write(componentBytes, 0, componentBytes.length);
+      if (mRowKeyFormat.getComponents().get(i).getType() == ComponentType.STRING) {
+        bytes.write((byte) 0);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
   /**
    * Return the first non-null components up to a total of {@code
    * rangeScanStartIndex}.
@@ -37,6 +37,7 @@ import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.layout.CellSpec;
 
 /**
  * The abstract base class for filters that exclude data from KijiRows.
@@ -135,6 +136,15 @@ public abstract class KijiRowFilter {
      */
     public abstract byte[] getHBaseCellValue(KijiColumnName column, DecodedCell<?> kijiCell)
         throws IOException;
+
+    /**
+     * Reports how the cells of a column are encoded.
+     *
+     * @param column Name of the column.
+     * @return the specification of the cell encoding of the column, bound to the schema table.
+     * @throws IOException If there is an error reading the cell specification.
+     */
+    public abstract CellSpec getCellSpec(KijiColumnName column) throws IOException;
   }
 
   /**
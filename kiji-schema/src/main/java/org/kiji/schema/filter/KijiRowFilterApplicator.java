@@ -20,8 +20,12 @@
 package org.kiji.schema.filter;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
 
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import org.kiji.annotations.ApiAudience;
@@ -38,6 +42,7 @@ import org.kiji.schema.impl.HBaseDataRequestAdapter;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.InvalidLayoutException;
 import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.impl.CellEncoderProvider;
 import org.kiji.schema.layout.impl.ColumnNameTranslator;
 
 /**
@@ -45,6 +50,12 @@ import org.kiji.schema.layout.impl.ColumnNameTranslator;
  *
  * <p>There are several limitations when filtering cells this way, as the filter relies on byte
  * comparisons, which does not play well with Avro records.</p>
+ *
+ * <p>
+ *   The HBase columns the row filter needs are computed the first time it is applied, and reused
+ *   afterwards: an applicator may be shared to apply the same row filter to many scans.
+ *   HBase filters hold per-scan state, so each scan gets its own HBase filter.
+ * </p>
  */
 @ApiAudience.Framework
 @ApiStability.Evolving
@@ -58,6 +69,18 @@ public final class KijiRowFilterApplicator {
   /** Schema table. */
   private final KijiSchemaTable mSchemaTable;
 
+  /** Provider for the encoders of filter values. Null means encoders are created as needed. */
+  private final CellEncoderProvider mCellEncoderProvider;
+
+  /** Translates Kiji column names for the row filter, created with the applicator. */
+  private final KijiRowFilterContext mContext;
+
+  /**
+   * HBase columns the row filter needs, as returned by {@link Scan#getFamilyMap()}.
+   * Null until the row filter is first applied.
+   */
+  private volatile Map<byte[], NavigableSet<byte[]>> mFamilyMap = null;
+
   /**
    * An implementation of KijiRowFilter.Context that translates kiji entityIds, column
    * names, and cell values to their HBase counterparts.
@@ -92,26 +115,43 @@ public final class KijiRowFilterApplicator {
     @Override
     public byte[] getHBaseCellValue(KijiColumnName column, DecodedCell<?> kijiCell)
         throws IOException {
-      final CellSpec cellSpec = mColumnNameTranslator.getTableLayout().getCellSpec(column)
+      if (null != mCellEncoderProvider) {
+        final KijiCellEncoder encoder =
+            mCellEncoderProvider.getEncoder(column.getFamily(), column.getQualifier());
+        if (null != encoder) {
+          // Cell encoders are not thread-safe, and the provider may be shared:
+          synchronized (encoder) {
+            return encoder.encode(kijiCell);
+          }
+        }
+      }
+      return DefaultKijiCellEncoderFactory.get().create(getCellSpec(column)).encode(kijiCell);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CellSpec getCellSpec(KijiColumnName column) throws IOException {
+      return mColumnNameTranslator.getTableLayout().getCellSpec(column)
           .setSchemaTable(mSchemaTable);
-      final KijiCellEncoder encoder = DefaultKijiCellEncoderFactory.get().create(cellSpec);
-      return encoder.encode(kijiCell);
     }
   }
 
   /**
    * Creates a new <code>KijiRowFilterApplicator</code> instance.
-   * This private constructor is used by the <code>create()</code> factory method.
+   * This private constructor is used by the <code>create()</code> factory methods.
    *
    * @param rowFilter The row filter to be applied.
-   * @param schemaTable The kiji schema table.
    * @param tableLayout The layout of the table this filter applies to.
+   * @param schemaTable The kiji schema table.
+   * @param cellEncoderProvider Provider for the encoders of filter values, or null.
    */
   private KijiRowFilterApplicator(KijiRowFilter rowFilter, KijiTableLayout tableLayout,
-      KijiSchemaTable schemaTable) {
+      KijiSchemaTable schemaTable, CellEncoderProvider cellEncoderProvider) {
     mRowFilter = rowFilter;
     mTableLayout = tableLayout;
     mSchemaTable = schemaTable;
+    mCellEncoderProvider = cellEncoderProvider;
+    mContext = new KijiRowFilterContext(new ColumnNameTranslator(tableLayout));
   }
 
   /**
@@ -124,7 +164,41 @@ public final class KijiRowFilterApplicator {
    */
   public static KijiRowFilterApplicator create(KijiRowFilter rowFilter, KijiTableLayout tableLayout,
       KijiSchemaTable schemaTable) {
-    return new KijiRowFilterApplicator(rowFilter, tableLayout, schemaTable);
+    return new KijiRowFilterApplicator(rowFilter, tableLayout, schemaTable, null);
+  }
+
+  /**
+   * Creates a new <code>KijiRowFilterApplicator</code> instance, encoding filter values with the
+   * encoders of a table.
+   *
+   * @param rowFilter The row filter to be applied.
+   * @param tableLayout The layout of the table this filter applies to.
+   * @param schemaTable The kiji schema table.
+   * @param cellEncoderProvider Provider for the cell encoders of the table.
+   *     Must provide encoders for the given table layout.
+   * @return a new KijiRowFilterApplicator instance.
+   */
+  public static KijiRowFilterApplicator create(KijiRowFilter rowFilter, KijiTableLayout tableLayout,
+      KijiSchemaTable schemaTable, CellEncoderProvider cellEncoderProvider) {
+    return new KijiRowFilterApplicator(rowFilter, tableLayout, schemaTable, cellEncoderProvider);
+  }
+
+  /**
+   * Returns the row filter applied by this applicator.
+   *
+   * @return the row filter applied by this applicator.
+   */
+  public KijiRowFilter getRowFilter() {
+    return mRowFilter;
+  }
+
+  /**
+   * Returns the layout of the table the row filter applies to.
+   *
+   * @return the layout of the table the row filter applies to.
+   */
+  public KijiTableLayout getTableLayout() {
+    return mTableLayout;
   }
 
   /**
@@ -139,15 +213,36 @@ public final class KijiRowFilterApplicator {
   public void applyTo(Scan scan) throws IOException {
     // The filter might need to request data that isn't already requested by the scan, so add
     // it here if needed.
+    HBaseDataRequestAdapter.addColumns(scan, getFamilyMap());
+
+    // Set the filter. HBase filters are stateful, and must not be shared across scans:
+    final Filter hbaseFilter = mRowFilter.toHBaseFilter(mContext);
+    scan.setFilter(hbaseFilter);
+  }
+
+  /**
+   * Reports the HBase columns the row filter needs, computing them on first use.
+   *
+   * <p>
+   *   Concurrent first uses may compute the columns more than once:
+   *   the results are equivalent, and only one is retained.
+   * </p>
+   *
+   * @return the HBase columns the row filter needs.
+   */
+  private Map<byte[], NavigableSet<byte[]>> getFamilyMap() {
+    final Map<byte[], NavigableSet<byte[]>> existing = mFamilyMap;
+    if (null != existing) {
+      return existing;
+    }
+    final Map<byte[], NavigableSet<byte[]>> familyMap;
     try {
-      new HBaseDataRequestAdapter(mRowFilter.getDataRequest()).applyToScan(scan, mTableLayout);
+      familyMap = Collections.unmodifiableMap(new HBaseDataRequestAdapter(
+          mRowFilter.getDataRequest()).toScan(mTableLayout).getFamilyMap());
     } catch (InvalidLayoutException e) {
       throw new InternalKijiError(e);
     }
-
-    // Set the filter.
-    final KijiRowFilter.Context context =
-        new KijiRowFilterContext(new ColumnNameTranslator(mTableLayout));
-    scan.setFilter(mRowFilter.toHBaseFilter(context));
+    mFamilyMap = familyMap;
+    return familyMap;
   }
 }
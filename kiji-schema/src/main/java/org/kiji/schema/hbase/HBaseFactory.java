@@ -33,6 +33,7 @@ import org.kiji.delegation.PriorityProvider;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.impl.HBaseAdminFactory;
 import org.kiji.schema.impl.HTableInterfaceFactory;
+import org.kiji.schema.layout.impl.ZooKeeperClient;
 import org.kiji.schema.util.LockFactory;
 
 /** Factory for HBase instances based on URIs. */
@@ -92,4 +93,14 @@ public interface HBaseFactory extends PriorityProvider {
    * @throws IOException on I/O error.
    */
   LockFactory getLockFactory(KijiURI uri, Configuration conf) throws IOException;
+
+  /**
+   * Creates a ZooKeeper client for a given Kiji instance.
+   *
+   * @param uri URI of the Kiji instance to create a ZooKeeper client for.
+   * @return an opened ZooKeeper client, or null if the instance has no ZooKeeper quorum.
+   *     The caller owns the client and must release it.
+   * @throws IOException on I/O error.
+   */
+  ZooKeeperClient getZooKeeperClient(KijiURI uri) throws IOException;
 }
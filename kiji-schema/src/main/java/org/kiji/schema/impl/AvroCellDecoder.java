@@ -21,15 +21,18 @@ package org.kiji.schema.impl;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import com.google.common.base.Preconditions;
 import org.apache.avro.Schema;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.hadoop.hbase.util.Bytes;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.schema.DecodedCell;
 import org.kiji.schema.KijiCellDecoder;
+import org.kiji.schema.KijiEncodingException;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.util.ByteStreamArray;
@@ -45,7 +48,7 @@ import org.kiji.schema.util.Hasher;
  * @param <T> The type of the decoded cell data.
  */
 @ApiAudience.Private
-public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
+public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T>, PrimitiveCellDecoder {
 
   /** Specification of the cell encoding. */
   private final CellSpec mCellSpec;
@@ -80,12 +83,57 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
      * @throws IOException on I/O error.
      */
     Schema decode(ByteStreamArray bsa) throws IOException;
+
+    /**
+     * Decodes a schema in place, from the beginning of an encoded cell.
+     *
+     * @param bytes Array containing the encoded cell.
+     * @param offset Offset of the encoded cell in the array.
+     * @return the decoded schema.
+     * @throws IOException on I/O error.
+     */
+    Schema decode(byte[] bytes, int offset) throws IOException;
+
+    /**
+     * Reports the size of the schema encoded at the beginning of an encoded cell.
+     *
+     * @param bytes Array containing the encoded cell.
+     * @param offset Offset of the encoded cell in the array.
+     * @return the size of the encoded schema, in bytes.
+     */
+    int getEncodedSize(byte[] bytes, int offset);
   }
 
   /** Schema decoder for schema hashes. */
   private static class SchemaHashDecoder implements SchemaDecoder {
     private final KijiSchemaTable mSchemaTable;
 
+    /**
+     * Last schema decoded in place, with its hash. Cells of a column mostly share one schema:
+     * this saves copying schema hashes to look them up. Null until a schema is decoded in place.
+     */
+    private volatile HashedSchema mLastSchema = null;
+
+    /** Schema with its hash. */
+    private static final class HashedSchema {
+      /** Schema hash. */
+      private final byte[] mHash;
+
+      /** Schema. */
+      private final Schema mSchema;
+
+      /**
+       * Pairs a schema with its hash.
+       *
+       * @param hash Schema hash.
+       * @param schema Schema.
+       */
+      private HashedSchema(byte[] hash, Schema schema) {
+        mHash = hash;
+        mSchema = schema;
+      }
+    }
+
     /**
      * Creates a decoder for schemas encoded as hashes.
      *
@@ -106,6 +154,30 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
       }
       return schema;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Schema decode(byte[] bytes, int offset) throws IOException {
+      final HashedSchema last = mLastSchema;
+      if ((null != last) && Bytes.equals(
+          last.mHash, 0, Hasher.HASH_SIZE_BYTES, bytes, offset, Hasher.HASH_SIZE_BYTES)) {
+        return last.mSchema;
+      }
+      final byte[] hash = Arrays.copyOfRange(bytes, offset, offset + Hasher.HASH_SIZE_BYTES);
+      final Schema schema = mSchemaTable.getSchema(new BytesKey(hash));
+      if (null == schema) {
+        throw new IOException(String.format(
+            "Schema with hash %s not found in schema table.", new BytesKey(hash)));
+      }
+      mLastSchema = new HashedSchema(hash, schema);
+      return schema;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEncodedSize(byte[] bytes, int offset) {
+      return Hasher.HASH_SIZE_BYTES;
+    }
   }
 
   /** Schema decoder for schema UIDs. */
@@ -132,6 +204,24 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
       }
       return schema;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Schema decode(byte[] bytes, int offset) throws IOException {
+      final long schemaId = readVarInt64(bytes, offset);
+      final Schema schema = mSchemaTable.getSchema(schemaId);
+      if (null == schema) {
+        throw new IOException(
+            String.format("Schema with ID %d not found in schema table.", schemaId));
+      }
+      return schema;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEncodedSize(byte[] bytes, int offset) {
+      return getVarInt64Size(bytes, offset);
+    }
   }
 
   /** Schema decoder for cells from final columns (schema is not encoded as part of the cell). */
@@ -152,6 +242,52 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
     public Schema decode(ByteStreamArray bsa) throws IOException {
       return mSchema;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Schema decode(byte[] bytes, int offset) throws IOException {
+      return mSchema;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEncodedSize(byte[] bytes, int offset) {
+      return 0;
+    }
+  }
+
+  /**
+   * Reads a variable-length (non zig-zag) encoded integer up to 64 bits, in place.
+   *
+   * @param bytes Array to read from.
+   * @param offset Offset of the encoded integer in the array.
+   * @return the decoded integer.
+   */
+  private static long readVarInt64(byte[] bytes, int offset) {
+    long acc = 0;
+    int shift = 0;
+    int bits;
+    do {
+      bits = bytes[offset++] & 0xff;
+      acc |= (bits & 0x7fL) << shift;
+      shift += 7;
+    } while (bits > 0x7f);
+    return acc;
+  }
+
+  /**
+   * Reports the size of a variable-length encoded integer.
+   *
+   * @param bytes Array to read from.
+   * @param offset Offset of the encoded integer in the array.
+   * @return the size of the encoded integer, in bytes.
+   */
+  private static int getVarInt64Size(byte[] bytes, int offset) {
+    int size = 1;
+    while ((bytes[offset + size - 1] & 0x80) != 0) {
+      size += 1;
+    }
+    return size;
   }
 
   /**
@@ -165,7 +301,10 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
     switch (cellSpec.getCellSchema().getStorage()) {
     case HASH: return new SchemaHashDecoder(cellSpec.getSchemaTable());
     case UID: return new SchemaIdDecoder(cellSpec.getSchemaTable());
-    case FINAL: return new FinalSchemaDecoder(cellSpec.getAvroSchema());
+    case FINAL:
+      // The writer schema of final columns is the schema declared in the layout,
+      // which may differ from the reader schema (eg. with projections):
+      return new FinalSchemaDecoder(CellSpec.readAvroSchema(cellSpec.getCellSchema()));
     default:
       throw new RuntimeException(
           "Unexpected cell schema: " + cellSpec.getCellSchema().getStorage());
@@ -230,6 +369,197 @@ public abstract class AvroCellDecoder<T> implements KijiCellDecoder<T> {
     return new DecodedCell<T>(writerSchema, data);
   }
 
+  /**
+   * Reports the type of the value of an encoded cell, as written.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @return the type of the writer schema of the cell.
+   * @throws IOException on I/O error.
+   */
+  private Schema.Type getWriterType(byte[] bytes, int offset) throws IOException {
+    return mSchemaDecoder.decode(bytes, offset).getType();
+  }
+
+  /**
+   * Builds the exception reporting a cell that cannot be read as a given primitive type.
+   *
+   * @param writerType Type the cell was written with.
+   * @param readerType Primitive type requested.
+   * @return the exception to throw.
+   */
+  private static KijiEncodingException incompatibleTypes(
+      Schema.Type writerType, Schema.Type readerType) {
+    return new KijiEncodingException(String.format(
+        "Cell written as Avro %s cannot be read as Avro %s.", writerType, readerType));
+  }
+
+  /**
+   * Reports whether a cell written with the specified type can be decoded in place.
+   *
+   * <p>
+   *   Cells are decoded in place only when written as Avro numbers and when no schema resolution
+   *   is involved, ie. when the reader schema is the writer schema. Other cells (eg. unions,
+   *   projections or type promotions) go through the regular Avro decoder.
+   * </p>
+   *
+   * @param writerType Type the cell was written with.
+   * @return whether the cell can be decoded in place.
+   */
+  private boolean isDecodableInPlace(Schema.Type writerType) {
+    switch (writerType) {
+    case INT:
+    case LONG:
+    case FLOAT:
+    case DOUBLE:
+      return (null == mReaderSchema) || (mReaderSchema.getType() == writerType);
+    default:
+      return false;
+    }
+  }
+
+  /**
+   * Decodes a cell through the regular Avro decoder, as a number.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @param length Length of the encoded cell, in bytes.
+   * @param readerType Primitive type requested.
+   * @return the decoded number.
+   * @throws IOException on I/O error.
+   */
+  private Number decodeNumber(byte[] bytes, int offset, int length, Schema.Type readerType)
+      throws IOException {
+    final DecodedCell<T> cell = decodeCell(Arrays.copyOfRange(bytes, offset, offset + length));
+    if (!(cell.getData() instanceof Number)) {
+      throw incompatibleValue(cell.getData(), readerType);
+    }
+    return (Number) cell.getData();
+  }
+
+  /**
+   * Builds the exception reporting a decoded cell value that cannot be read as a given
+   * primitive type.
+   *
+   * @param value Decoded cell value.
+   * @param readerType Primitive type requested.
+   * @return the exception to throw.
+   */
+  private static KijiEncodingException incompatibleValue(Object value, Schema.Type readerType) {
+    return new KijiEncodingException(String.format(
+        "Cell decoded as %s cannot be read as Avro %s.",
+        (null == value) ? "null" : value.getClass().getName(), readerType));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long decodeLong(byte[] bytes, int offset, int length) throws IOException {
+    final Schema.Type writerType = getWriterType(bytes, offset);
+    if (!isDecodableInPlace(writerType)) {
+      final Number number = decodeNumber(bytes, offset, length, Schema.Type.LONG);
+      if ((number instanceof Long) || (number instanceof Integer)) {
+        return number.longValue();
+      }
+      throw incompatibleValue(number, Schema.Type.LONG);
+    }
+    switch (writerType) {
+    case INT:
+    case LONG:
+      return readZigZagVarInt64(bytes, getPayloadOffset(bytes, offset), offset + length);
+    default:
+      throw incompatibleTypes(writerType, Schema.Type.LONG);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int decodeInt(byte[] bytes, int offset, int length) throws IOException {
+    final Schema.Type writerType = getWriterType(bytes, offset);
+    if (!isDecodableInPlace(writerType)) {
+      final Number number = decodeNumber(bytes, offset, length, Schema.Type.INT);
+      if (number instanceof Integer) {
+        return number.intValue();
+      }
+      throw incompatibleValue(number, Schema.Type.INT);
+    }
+    switch (writerType) {
+    case INT:
+      return (int) readZigZagVarInt64(bytes, getPayloadOffset(bytes, offset), offset + length);
+    default:
+      throw incompatibleTypes(writerType, Schema.Type.INT);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double decodeDouble(byte[] bytes, int offset, int length) throws IOException {
+    final Schema.Type writerType = getWriterType(bytes, offset);
+    if (!isDecodableInPlace(writerType)) {
+      return decodeNumber(bytes, offset, length, Schema.Type.DOUBLE).doubleValue();
+    }
+    final int payload = getPayloadOffset(bytes, offset);
+    final int end = offset + length;
+    switch (writerType) {
+    case INT:
+    case LONG:
+      return readZigZagVarInt64(bytes, payload, end);
+    case FLOAT:
+      // Avro floats and doubles are little-endian:
+      checkPayloadSize(payload, Bytes.SIZEOF_FLOAT, end);
+      return Float.intBitsToFloat(Integer.reverseBytes(Bytes.toInt(bytes, payload)));
+    case DOUBLE:
+      checkPayloadSize(payload, Bytes.SIZEOF_DOUBLE, end);
+      return Double.longBitsToDouble(Long.reverseBytes(Bytes.toLong(bytes, payload)));
+    default:
+      throw incompatibleTypes(writerType, Schema.Type.DOUBLE);
+    }
+  }
+
+  /**
+   * Reports the offset of the payload of an encoded cell, following the encoded schema.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @return the offset of the payload in the array.
+   */
+  private int getPayloadOffset(byte[] bytes, int offset) {
+    return offset + mSchemaDecoder.getEncodedSize(bytes, offset);
+  }
+
+  /**
+   * Ensures a fixed-size payload fits in an encoded cell.
+   *
+   * @param payload Offset of the payload in the array.
+   * @param size Size of the payload, in bytes.
+   * @param end Offset of the end of the encoded cell in the array (exclusive).
+   * @throws KijiEncodingException if the payload overflows the encoded cell.
+   */
+  private static void checkPayloadSize(int payload, int size, int end) {
+    if (payload + size > end) {
+      throw new KijiEncodingException(String.format(
+          "Truncated cell: expecting %d bytes of payload, got %d.", size, end - payload));
+    }
+  }
+
+  /**
+   * Reads an Avro int or long (variable-length zig-zag encoded integer), in place.
+   *
+   * @param bytes Array to read from.
+   * @param offset Offset of the encoded integer in the array.
+   * @param end Offset of the end of the encoded cell in the array (exclusive).
+   * @return the decoded integer.
+   * @throws KijiEncodingException if the encoded integer overflows the encoded cell.
+   */
+  private static long readZigZagVarInt64(byte[] bytes, int offset, int end) {
+    int size = 1;
+    while ((offset + size <= end) && ((bytes[offset + size - 1] & 0x80) != 0)) {
+      size += 1;
+    }
+    checkPayloadSize(offset, size, end);
+    final long vint64 = readVarInt64(bytes, offset);
+    return (vint64 >>> 1) ^ -(vint64 & 1); // decode zig-zag back to two's-complement
+  }
+
   /**
    * Gets the portion of the encoded byte array from an HBase table cell that has the avro-encoded
    * data payload.
@@ -26,10 +26,11 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.kiji.annotations.ApiAudience;
 import org.kiji.schema.DecodedCell;
 import org.kiji.schema.KijiCellDecoder;
+import org.kiji.schema.KijiEncodingException;
 
 /** Cell decoder for counters. */
 @ApiAudience.Private
-public final class CounterCellDecoder implements KijiCellDecoder<Long> {
+public final class CounterCellDecoder implements KijiCellDecoder<Long>, PrimitiveCellDecoder {
   /** Singleton instance. */
   private static final CounterCellDecoder SINGLETON = new CounterCellDecoder();
 
@@ -53,4 +54,27 @@ public final class CounterCellDecoder implements KijiCellDecoder<Long> {
   public Long decodeValue(byte[] bytes) throws IOException {
     return Bytes.toLong(bytes);
   }
+
+  /** {@inheritDoc} */
+  @Override
+  public long decodeLong(byte[] bytes, int offset, int length) throws IOException {
+    return Bytes.toLong(bytes, offset, length);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int decodeInt(byte[] bytes, int offset, int length) throws IOException {
+    final long counter = Bytes.toLong(bytes, offset, length);
+    if ((counter < Integer.MIN_VALUE) || (counter > Integer.MAX_VALUE)) {
+      throw new KijiEncodingException(
+          String.format("Counter value %d cannot be read as an int.", counter));
+    }
+    return (int) counter;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double decodeDouble(byte[] bytes, int offset, int length) throws IOException {
+    return Bytes.toLong(bytes, offset, length);
+  }
 }
@@ -28,6 +28,7 @@ import org.kiji.annotations.ApiAudience;
 import org.kiji.delegation.Priority;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.hbase.HBaseFactory;
+import org.kiji.schema.layout.impl.ZooKeeperClient;
 import org.kiji.schema.util.LockFactory;
 import org.kiji.schema.util.ZooKeeperLockFactory;
 
@@ -45,7 +46,7 @@ public final class DefaultHBaseFactory implements HBaseFactory {
   /** {@inheritDoc} */
   @Override
   public HTableInterfaceFactory getHTableInterfaceFactory(KijiURI uri) {
-    return DefaultHTableInterfaceFactory.get();
+    return PooledHTableInterfaceFactory.get();
   }
 
   /** {@inheritDoc} */
@@ -60,6 +61,12 @@ public final class DefaultHBaseFactory implements HBaseFactory {
     return new ZooKeeperLockFactory(ZooKeeperLockFactory.zkConnStr(uri));
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public ZooKeeperClient getZooKeeperClient(KijiURI uri) throws IOException {
+    return ZooKeeperLockFactory.newZooKeeper(ZooKeeperLockFactory.zkConnStr(uri));
+  }
+
   /** {@inheritDoc} */
   @Override
   public int getPriority(Map<String, String> runtimeHints) {
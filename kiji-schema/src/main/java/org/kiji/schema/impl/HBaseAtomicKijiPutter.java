@@ -36,8 +36,8 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiCellEncoder;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.impl.HBaseKijiTable.LayoutCapsule;
 import org.kiji.schema.layout.impl.CellEncoderProvider;
-import org.kiji.schema.layout.impl.ColumnNameTranslator;
 
 /**
  * HBase implementation of AtomicKijiPutter.
@@ -63,11 +63,14 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
   /** The HTableInterface associated with the KijiTable. */
   private final HTableInterface mHTable;
 
-  /** HBase column name translator. */
-  private final ColumnNameTranslator mTranslator;
+  /** Provider for cell encoders. Rebuilt when the layout of the table is updated. */
+  private CellEncoderProvider mCellEncoderProvider;
 
-  /** Provider for cell encoders. */
-  private final CellEncoderProvider mCellEncoderProvider;
+  /**
+   * Layout of the table used by the current transaction, so that all the puts of a transaction
+   * are translated and encoded consistently. Null outside of a transaction.
+   */
+  private LayoutCapsule mLayoutCapsule = null;
 
   /** EntityId of the row to mutate atomically. */
   private EntityId mEntityId;
@@ -93,7 +96,6 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
    */
   public HBaseAtomicKijiPutter(HBaseKijiTable table) throws IOException {
     mTable = table;
-    mTranslator = new ColumnNameTranslator(mTable.getLayout());
     mHTable = HBaseKijiTable.createHTableInterface(mTable);
     mCellEncoderProvider =
         new CellEncoderProvider(mTable, DefaultKijiCellEncoderFactory.get());
@@ -105,6 +107,7 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
   /** Resets the current transaction. */
   private void reset() {
     mPut = null;
+    mLayoutCapsule = null;
     mEntityId = null;
     mHopper = null;
     mId = null;
@@ -124,6 +127,24 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
     mId = eid.getHBaseRowKey();
     mHopper = new ArrayList<KeyValue>();
     mPut = new Put(mId);
+    mLayoutCapsule = mTable.getLayoutCapsule();
+  }
+
+  /**
+   * Returns the provider for the cell encoders of the layout used by the current transaction.
+   *
+   * @return the provider for the cell encoders of the layout used by the current transaction.
+   * @throws IOException on I/O error.
+   */
+  private CellEncoderProvider getCellEncoderProvider() throws IOException {
+    if (mCellEncoderProvider.getLayout() != mLayoutCapsule.getLayout()) {
+      // The table layout has been updated since the provider was built:
+      mCellEncoderProvider = new CellEncoderProvider(
+          mLayoutCapsule.getLayout(),
+          mTable.getKiji().getSchemaTable(),
+          DefaultKijiCellEncoderFactory.get());
+    }
+    return mCellEncoderProvider;
   }
 
   /** {@inheritDoc} */
@@ -153,9 +174,10 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
     Preconditions.checkState(mPut != null,
         "checkAndCommit() must be paired with a call to begin()");
     final KijiColumnName kijiColumnName = new KijiColumnName(family, qualifier);
-    final HBaseColumnName columnName = mTranslator.toHBaseColumnName(kijiColumnName);
+    final HBaseColumnName columnName =
+        mLayoutCapsule.getColumnNameTranslator().toHBaseColumnName(kijiColumnName);
 
-    final KijiCellEncoder cellEncoder = mCellEncoderProvider.getEncoder(family, qualifier);
+    final KijiCellEncoder cellEncoder = getCellEncoderProvider().getEncoder(family, qualifier);
     final byte[] encoded = cellEncoder.encode(value);
 
     for (KeyValue kv : mHopper) {
@@ -193,9 +215,10 @@ public final class HBaseAtomicKijiPutter implements AtomicKijiPutter {
     Preconditions.checkState(mPut != null, "calls to put() must be between calls to begin() and "
         + "commit(), checkAndCommit(), or rollback()");
     final KijiColumnName kijiColumnName = new KijiColumnName(family, qualifier);
-    final HBaseColumnName columnName = mTranslator.toHBaseColumnName(kijiColumnName);
+    final HBaseColumnName columnName =
+        mLayoutCapsule.getColumnNameTranslator().toHBaseColumnName(kijiColumnName);
 
-    final KijiCellEncoder cellEncoder = mCellEncoderProvider.getEncoder(family, qualifier);
+    final KijiCellEncoder cellEncoder = getCellEncoderProvider().getEncoder(family, qualifier);
     final byte[] encoded = cellEncoder.encode(value);
 
     mHopper.add(new KeyValue(
@@ -108,11 +108,18 @@ public class HBaseDataRequestAdapter {
    * @throws IOException If there is an error.
    */
   public void applyToScan(Scan scan, KijiTableLayout tableLayout) throws IOException {
-    final Scan newScan = toScan(tableLayout);
+    addColumns(scan, toScan(tableLayout).getFamilyMap());
+  }
 
+  /**
+   * Adds HBase columns to a Scan, preserving the columns it already requests.
+   *
+   * @param scan The existing scan object to add columns to.
+   * @param familyMap HBase columns to add, as returned by {@link Scan#getFamilyMap()}.
+   */
+  public static void addColumns(Scan scan, Map<byte[], NavigableSet<byte[]>> familyMap) {
     // It's okay to put columns into the Scan that are already there.
-    for (Map.Entry<byte[], NavigableSet<byte[]>> columnRequest
-             : newScan.getFamilyMap().entrySet()) {
+    for (Map.Entry<byte[], NavigableSet<byte[]>> columnRequest : familyMap.entrySet()) {
       byte[] family = columnRequest.getKey();
       if (null == columnRequest.getValue()) {
         // Request all columns in the family.
@@ -297,7 +304,7 @@ public class HBaseDataRequestAdapter {
    * A Context for KijiColumnFilters that translates column names to their HBase
    * representation.
    */
-  private static final class NameTranslatingFilterContext extends KijiColumnFilter.Context {
+  static final class NameTranslatingFilterContext extends KijiColumnFilter.Context {
     /** The translator to use. */
     private final ColumnNameTranslator mTranslator;
 
@@ -306,7 +313,7 @@ public class HBaseDataRequestAdapter {
      *
      * @param translator the translator to use.
      */
-    private NameTranslatingFilterContext(ColumnNameTranslator translator) {
+    NameTranslatingFilterContext(ColumnNameTranslator translator) {
       mTranslator = translator;
     }
 
@@ -21,31 +21,47 @@ package org.kiji.schema.impl;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableExistsException;
 import org.apache.hadoop.hbase.TableNotFoundException;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.schema.Kiji;
 import org.kiji.schema.KijiAlreadyExistsException;
+import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiMetaTable;
+import org.kiji.schema.KijiNotInstalledException;
 import org.kiji.schema.KijiRowKeySplitter;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiSystemTable;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableNotFoundException;
 import org.kiji.schema.KijiURI;
+import org.kiji.schema.RuntimeInterruptedException;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat;
 import org.kiji.schema.avro.TableLayoutDesc;
@@ -55,6 +71,8 @@ import org.kiji.schema.layout.InvalidLayoutException;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.impl.ColumnId;
 import org.kiji.schema.layout.impl.HTableSchemaTranslator;
+import org.kiji.schema.layout.impl.TableLayoutMonitor;
+import org.kiji.schema.layout.impl.ZooKeeperClient;
 import org.kiji.schema.util.Debug;
 import org.kiji.schema.util.LockFactory;
 import org.kiji.schema.util.ResourceUtils;
@@ -73,12 +91,30 @@ public final class HBaseKiji implements Kiji {
   private static final Logger CLEANUP_LOG =
       LoggerFactory.getLogger("cleanup." + HBaseKiji.class.getName());
 
+  /**
+   * Name of the system property enabling the parallel opening of the schema, system and meta
+   * tables when a Kiji instance is opened. By default, these tables are opened lazily, on first
+   * use.
+   */
+  public static final String PARALLEL_OPEN_PROPERTY =
+      "org.kiji.schema.impl.HBaseKiji.PARALLEL_OPEN";
+
+  /**
+   * Kiji instances whose data version has been validated by this process, as
+   * "[ZooKeeper quorum]:[ZooKeeper client port]/[instance name]".
+   */
+  private static final Set<String> VALIDATED_INSTANCES =
+      Collections.newSetFromMap(Maps.<String, Boolean>newConcurrentMap());
+
   /** The hadoop configuration. */
   private final Configuration mConf;
 
   /** Factory for HTable instances. */
   private final HTableInterfaceFactory mHTableFactory;
 
+  /** Whether this instance retains the HBase resources shared by its pooled HTables. */
+  private final boolean mRetainsPooledResources;
+
   /** Factory for locks. */
   private final LockFactory mLockFactory;
 
@@ -88,14 +124,41 @@ public final class HBaseKiji implements Kiji {
   /** Admin interface. */
   private HBaseAdmin mAdmin;
 
-  /** The schema table for this kiji instance, or null if it has not been opened yet. */
-  private HBaseSchemaTable mSchemaTable;
+  /**
+   * The schema table for this kiji instance, or null if it has not been opened yet.
+   * Opened under mSchemaTableLock.
+   */
+  private volatile HBaseSchemaTable mSchemaTable;
+
+  /**
+   * The system table for this kiji instance, or null if it has not been opened yet.
+   * Opened under mSystemTableLock.
+   */
+  private volatile HBaseSystemTable mSystemTable;
+
+  /**
+   * The meta table for this kiji instance, or null if it has not been opened yet.
+   * Opened under mMetaTableLock.
+   */
+  private volatile HBaseMetaTable mMetaTable;
+
+  /** Lock guarding the opening of the schema table. */
+  private final Object mSchemaTableLock = new Object();
 
-  /** The system table for this kiji instance, or null if it has not been opened yet. */
-  private HBaseSystemTable mSystemTable;
+  /** Lock guarding the opening of the system table. */
+  private final Object mSystemTableLock = new Object();
 
-  /** The meta table for this kiji instance, or null if it has not been opened yet. */
-  private HBaseMetaTable mMetaTable;
+  /** Lock guarding the opening of the meta table. */
+  private final Object mMetaTableLock = new Object();
+
+  /**
+   * Monitor for the layouts of the tables of this instance.
+   * Null until first used, or if the layouts of this instance cannot be monitored.
+   */
+  private TableLayoutMonitor mLayoutMonitor;
+
+  /** Whether the layout monitor has been initialized. */
+  private boolean mLayoutMonitorInitialized = false;
 
   /** Whether the kiji instance is open. */
   private AtomicBoolean mIsOpen;
@@ -103,6 +166,9 @@ public final class HBaseKiji implements Kiji {
   /** Retain counter. When decreased to 0, the HBase Kiji may be closed and disposed of. */
   private AtomicInteger mRetainCount = new AtomicInteger(1);
 
+  /** Open tables, shared by the openTable() calls, by table name. Guarded by itself. */
+  private final Map<String, HBaseKijiTable> mOpenTables = Maps.newHashMap();
+
   /**
    * String representation of the call stack at the time this object is constructed.
    * Used for debugging
@@ -123,7 +189,7 @@ public final class HBaseKiji implements Kiji {
     this(kijiURI,
         conf,
         true,
-        DefaultHTableInterfaceFactory.get(),
+        PooledHTableInterfaceFactory.get(),
         new ZooKeeperLockFactory(ZooKeeperLockFactory.zkConnStr(kijiURI)));
   }
 
@@ -187,17 +253,44 @@ public final class HBaseKiji implements Kiji {
 
     // Validate configuration settings.
     Preconditions.checkArgument(
-        getConf().get("hbase.zookeeper.property.clientPort") != null,
+        mConf.get("hbase.zookeeper.property.clientPort") != null,
         String.format(
             "Configuration for Kiji instance '%s' "
             + "lacks HBase resources (hbase-default.xml, hbase-site.xml), "
             + "use HBaseConfiguration.create().",
             mURI));
 
-    if (validateVersion) {
-      // Make sure the data version for the client matches the cluster.
-      LOG.debug("Validating version...");
-      VersionInfo.validateVersion(this);
+    // Keep the connection and thread pool of the pooled HTables until this instance is closed:
+    mRetainsPooledResources = (mHTableFactory instanceof PooledHTableInterfaceFactory);
+    if (mRetainsPooledResources) {
+      PooledHTableInterfaceFactory.retainResources(mConf);
+    }
+
+    boolean opened = false;
+    try {
+      if (Boolean.parseBoolean(System.getProperty(PARALLEL_OPEN_PROPERTY, "false"))) {
+        openSystemTables();
+      }
+
+      if (validateVersion) {
+        // Make sure the data version for the client matches the cluster.
+        // Compatible versions are validated once per process and Kiji instance.
+        final String instanceKey = String.format("%s:%d/%s",
+            Joiner.on(',').join(mURI.getZookeeperQuorumOrdered()),
+            mURI.getZookeeperClientPort(),
+            mURI.getInstance());
+        if (!VALIDATED_INSTANCES.contains(instanceKey)) {
+          LOG.debug("Validating version...");
+          VersionInfo.validateVersion(this);
+          VALIDATED_INSTANCES.add(instanceKey);
+        }
+      }
+      opened = true;
+    } finally {
+      if (!opened) {
+        // Release the system tables opened so far:
+        close();
+      }
     }
 
     if (CLEANUP_LOG.isDebugEnabled()) {
@@ -209,7 +302,8 @@ public final class HBaseKiji implements Kiji {
   /** {@inheritDoc} */
   @Override
   public Configuration getConf() {
-    return mConf;
+    // Kiji instances are shared: callers must not alter the configuration of other users.
+    return new Configuration(mConf);
   }
 
   /** {@inheritDoc} */
@@ -218,34 +312,160 @@ public final class HBaseKiji implements Kiji {
     return mURI;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * Opens the schema, system and meta tables concurrently.
+   *
+   * <p>
+   *   Opening an HTable requires several round-trips to locate its regions: opening the system
+   *   HTables concurrently rather than on first use reduces the latency of cold starts.
+   * </p>
+   *
+   * @throws IOException on I/O error.
+   */
+  private void openSystemTables() throws IOException {
+    final ExecutorService executor = Executors.newFixedThreadPool(3,
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("kiji-open-" + mURI.getInstance() + "-%d")
+            .build());
+    try {
+      final Future<KijiSchemaTable> schemaTable = executor.submit(
+          new Callable<KijiSchemaTable>() {
+            /** {@inheritDoc} */
+            @Override
+            public KijiSchemaTable call() throws IOException {
+              return getSchemaTable();
+            }
+          });
+      final Future<KijiSystemTable> systemTable = executor.submit(
+          new Callable<KijiSystemTable>() {
+            /** {@inheritDoc} */
+            @Override
+            public KijiSystemTable call() throws IOException {
+              return getSystemTable();
+            }
+          });
+      // The meta table depends on the schema table, but its HTable can be opened meanwhile:
+      final Future<HTableInterface> metaHTable = executor.submit(
+          new Callable<HTableInterface>() {
+            /** {@inheritDoc} */
+            @Override
+            public HTableInterface call() throws IOException {
+              return HBaseMetaTable.newMetaTable(mURI, mConf, mHTableFactory);
+            }
+          });
+      systemTable.get();
+      final KijiSchemaTable openedSchemaTable = schemaTable.get();
+      final HTableInterface openedMetaHTable = metaHTable.get();
+      synchronized (mMetaTableLock) {
+        if (null == mMetaTable) {
+          mMetaTable = new HBaseMetaTable(
+              mURI, mConf, openedSchemaTable, mHTableFactory, openedMetaHTable);
+        } else {
+          ResourceUtils.closeOrLog(openedMetaHTable);
+        }
+      }
+
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeInterruptedException(ie);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof TableNotFoundException) {
+        throw new KijiNotInstalledException(
+            String.format("Kiji instance '%s' is not installed.", mURI.getInstance()),
+            mURI.getInstance());
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new KijiIOException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p> The schema, system and meta tables are opened independently, under separate locks. </p>
+   */
   @Override
-  public synchronized KijiSchemaTable getSchemaTable() throws IOException {
+  public KijiSchemaTable getSchemaTable() throws IOException {
     Preconditions.checkState(mIsOpen.get());
-    if (null == mSchemaTable) {
-      mSchemaTable = new HBaseSchemaTable(mURI, mConf, mHTableFactory, mLockFactory);
+    HBaseSchemaTable schemaTable = mSchemaTable;
+    if (null == schemaTable) {
+      synchronized (mSchemaTableLock) {
+        schemaTable = mSchemaTable;
+        if (null == schemaTable) {
+          schemaTable = new HBaseSchemaTable(mURI, mConf, mHTableFactory, mLockFactory);
+          mSchemaTable = schemaTable;
+        }
+      }
     }
-    return mSchemaTable;
+    return schemaTable;
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized KijiSystemTable getSystemTable() throws IOException {
+  public KijiSystemTable getSystemTable() throws IOException {
     Preconditions.checkState(mIsOpen.get());
-    if (null == mSystemTable) {
-      mSystemTable = new HBaseSystemTable(mURI, mConf, mHTableFactory);
+    HBaseSystemTable systemTable = mSystemTable;
+    if (null == systemTable) {
+      synchronized (mSystemTableLock) {
+        systemTable = mSystemTable;
+        if (null == systemTable) {
+          systemTable = new HBaseSystemTable(mURI, mConf, mHTableFactory);
+          mSystemTable = systemTable;
+        }
+      }
     }
-    return mSystemTable;
+    return systemTable;
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized KijiMetaTable getMetaTable() throws IOException {
+  public HBaseMetaTable getMetaTable() throws IOException {
     Preconditions.checkState(mIsOpen.get());
-    if (null == mMetaTable) {
-      mMetaTable = new HBaseMetaTable(mURI, mConf, getSchemaTable(), mHTableFactory);
+    HBaseMetaTable metaTable = mMetaTable;
+    if (null == metaTable) {
+      synchronized (mMetaTableLock) {
+        metaTable = mMetaTable;
+        if (null == metaTable) {
+          metaTable = new HBaseMetaTable(mURI, mConf, getSchemaTable(), mHTableFactory);
+          mMetaTable = metaTable;
+        }
+      }
     }
-    return mMetaTable;
+    return metaTable;
+  }
+
+  /**
+   * Returns the monitor for the layouts of the tables of this instance, creating it on first use.
+   *
+   * @return the monitor for the layouts of the tables of this instance,
+   *     or null if this instance has no ZooKeeper quorum to monitor layouts through.
+   * @throws IOException on I/O error.
+   */
+  synchronized TableLayoutMonitor getLayoutMonitor() throws IOException {
+    if (!mLayoutMonitorInitialized) {
+      mLayoutMonitorInitialized = true;
+      final ZooKeeperClient zkClient = HBaseFactory.Provider.get().getZooKeeperClient(mURI);
+      if (null != zkClient) {
+        try {
+          mLayoutMonitor = new TableLayoutMonitor(zkClient);
+        } catch (KeeperException ke) {
+          throw new IOException(ke);
+        } finally {
+          // The monitor retains its own reference on the ZooKeeper client:
+          zkClient.release();
+        }
+      }
+    }
+    return mLayoutMonitor;
   }
 
   /**
@@ -259,15 +479,115 @@ public final class HBaseKiji implements Kiji {
     Preconditions.checkState(mIsOpen.get());
     if (null == mAdmin) {
       final HBaseFactory hbaseFactory = HBaseFactory.Provider.get();
-      mAdmin = hbaseFactory.getHBaseAdminFactory(mURI).create(getConf());
+      mAdmin = hbaseFactory.getHBaseAdminFactory(mURI).create(mConf);
     }
     return mAdmin;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   *   Opened tables are shared: opening a table that is already open retains and returns the
+   *   open table, with its layout, entity ID factory and cell decoders. Tables are closed when
+   *   all their handles are released. Deleting a table through this Kiji instance stops sharing
+   *   the open table: subsequent opens reload the table.
+   * </p>
+   *
+   * <p>
+   *   Open tables track the updates of their layout: updates applied through this Kiji instance
+   *   are visible as soon as they complete, updates applied by other processes are reported
+   *   through ZooKeeper.
+   * </p>
+   */
   @Override
   public KijiTable openTable(String tableName) throws IOException {
-    return new HBaseKijiTable(this, tableName, mConf, mHTableFactory);
+    synchronized (mOpenTables) {
+      final HBaseKijiTable openTable = mOpenTables.get(tableName);
+      if ((null != openTable) && openTable.tryRetain()) {
+        return openTable;
+      }
+    }
+
+    // Opening a table reads the meta table, opens an HTable and registers with ZooKeeper:
+    // do not block the opens and releases of other tables meanwhile.
+    final HBaseKijiTable table = new HBaseKijiTable(this, tableName, mConf, mHTableFactory);
+
+    HBaseKijiTable openTable = null;
+    synchronized (mOpenTables) {
+      openTable = mOpenTables.get(tableName);
+      if ((null == openTable) || !openTable.tryRetain()) {
+        mOpenTables.put(tableName, table);
+        return table;
+      }
+    }
+    // Another thread opened the same table concurrently: share its table, discard ours.
+    table.release();
+    return openTable;
+  }
+
+  /**
+   * Stops sharing an open table, when it is being closed.
+   *
+   * @param table Table being closed.
+   */
+  void removeOpenTable(HBaseKijiTable table) {
+    synchronized (mOpenTables) {
+      if (mOpenTables.get(table.getName()) == table) {
+        mOpenTables.remove(table.getName());
+      }
+    }
+  }
+
+  /**
+   * Stops sharing the open table with a given name, if any, so that subsequent opens reload it.
+   *
+   * @param tableName Name of the table to stop sharing.
+   */
+  private void invalidateOpenTable(String tableName) {
+    synchronized (mOpenTables) {
+      mOpenTables.remove(tableName);
+    }
+  }
+
+  /**
+   * Propagates a layout update to the users of a table.
+   *
+   * <p>
+   *   The open table shared by this instance, if any, reloads its layout immediately.
+   *   Users of the table in other processes are notified through ZooKeeper.
+   * </p>
+   *
+   * @param tableName Name of the table whose layout has been updated.
+   * @param layout New layout of the table.
+   * @throws IOException on I/O error.
+   */
+  private void propagateTableLayout(String tableName, KijiTableLayout layout) throws IOException {
+    HBaseKijiTable openTable = null;
+    synchronized (mOpenTables) {
+      openTable = mOpenTables.get(tableName);
+      if ((null != openTable) && !openTable.tryRetain()) {
+        openTable = null;
+      }
+    }
+    if (null != openTable) {
+      try {
+        openTable.reloadLayout();
+      } finally {
+        openTable.release();
+      }
+    }
+
+    final TableLayoutMonitor monitor = getLayoutMonitor();
+    if (null != monitor) {
+      final KijiURI tableURI = KijiURI.newBuilder(mURI).withTableName(tableName).build();
+      try {
+        monitor.notifyNewTableLayout(
+            tableURI, Bytes.toBytes(layout.getDesc().getLayoutId()), -1);
+      } catch (KeeperException ke) {
+        throw new IOException(ke);
+      }
+    }
   }
 
   /** {@inheritDoc} */
@@ -550,6 +870,10 @@ public final class HBaseKiji implements Kiji {
       }
     }
 
+    if (!dryRun) {
+      propagateTableLayout(tableName, newLayout);
+    }
+
     return newLayout;
   }
 
@@ -564,6 +888,7 @@ public final class HBaseKiji implements Kiji {
 
     // Delete from the meta table.
     getMetaTable().deleteTable(tableName);
+    invalidateOpenTable(tableName);
 
     // If the table persists immediately after deletion attempt, then give up.
     if (getHBaseAdmin().tableExists(hbaseTable)) {
@@ -589,14 +914,20 @@ public final class HBaseKiji implements Kiji {
     }
 
     LOG.debug("Closing resource '{}'.", mURI);
+    HBaseKijiFactory.removeOpenInstance(this);
     ResourceUtils.closeOrLog(mMetaTable);
     ResourceUtils.closeOrLog(mSystemTable);
     ResourceUtils.closeOrLog(mSchemaTable);
     ResourceUtils.closeOrLog(mAdmin);
+    ResourceUtils.closeOrLog(mLayoutMonitor);
+    mLayoutMonitor = null;
     mSchemaTable = null;
     mMetaTable = null;
     mSystemTable = null;
     mAdmin = null;
+    if (mRetainsPooledResources) {
+      PooledHTableInterfaceFactory.releaseResources(mConf);
+    }
     LOG.debug("resource '{}' closed.", mURI);
   }
 
@@ -609,6 +940,23 @@ public final class HBaseKiji implements Kiji {
     return this;
   }
 
+  /**
+   * Retains this Kiji instance, unless it is being closed.
+   *
+   * @return whether this Kiji instance was retained.
+   */
+  boolean tryRetain() {
+    while (true) {
+      final int counter = mRetainCount.get();
+      if (counter <= 0) {
+        return false;
+      }
+      if (mRetainCount.compareAndSet(counter, counter + 1)) {
+        return true;
+      }
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void release() throws IOException {
@@ -53,6 +53,7 @@ import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiTableNotFoundException;
 import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.impl.HBaseKijiTable.LayoutCapsule;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout.ColumnLayout;
 import org.kiji.schema.layout.impl.CellEncoderProvider;
@@ -75,11 +76,8 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
   /** KijiTable this writer is attached to. */
   private final HBaseKijiTable mTable;
 
-  /** Column name translator to use. */
-  private final ColumnNameTranslator mTranslator;
-
-  /** Provider for cell encoders. */
-  private final CellEncoderProvider mCellEncoderProvider;
+  /** Provider for cell encoders. Rebuilt when the layout of the table is updated. */
+  private volatile CellEncoderProvider mCellEncoderProvider;
 
   /** Local write buffers. */
   private Map<EntityId, Put> mPutBuffer = new HashMap<EntityId, Put>();
@@ -115,7 +113,6 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     } catch (TableNotFoundException e) {
       throw new KijiTableNotFoundException(table.getName());
     }
-    mTranslator = new ColumnNameTranslator(mTable.getLayout());
     mCellEncoderProvider =
         new CellEncoderProvider(mTable, DefaultKijiCellEncoderFactory.get());
 
@@ -125,6 +122,27 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     mIsOpen.set(true);
   }
 
+  /**
+   * Returns the provider for the cell encoders of a layout of the table.
+   *
+   * @param capsule Current layout of the table.
+   * @return the provider for the cell encoders of the specified layout.
+   * @throws IOException on I/O error.
+   */
+  private CellEncoderProvider getCellEncoderProvider(LayoutCapsule capsule) throws IOException {
+    final CellEncoderProvider provider = mCellEncoderProvider;
+    if (provider.getLayout() == capsule.getLayout()) {
+      return provider;
+    }
+    // The table layout has been updated since the provider was built:
+    final CellEncoderProvider updated = new CellEncoderProvider(
+        capsule.getLayout(),
+        mTable.getKiji().getSchemaTable(),
+        DefaultKijiCellEncoderFactory.get());
+    mCellEncoderProvider = updated;
+    return updated;
+  }
+
   // ----------------------------------------------------------------------------------------------
   // Puts
 
@@ -173,10 +191,13 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     Preconditions.checkState(mIsOpen.get(),
         "HBaseKijiBufferedWriter for %s is closed.", mTable.getURI());
 
+    final LayoutCapsule capsule = mTable.getLayoutCapsule();
     final KijiColumnName columnName = new KijiColumnName(family, qualifier);
-    final HBaseColumnName hbaseColumnName = mTranslator.toHBaseColumnName(columnName);
+    final HBaseColumnName hbaseColumnName =
+        capsule.getColumnNameTranslator().toHBaseColumnName(columnName);
 
-    final KijiCellEncoder cellEncoder = mCellEncoderProvider.getEncoder(family, qualifier);
+    final KijiCellEncoder cellEncoder =
+        getCellEncoderProvider(capsule).getEncoder(family, qualifier);
     final byte[] encoded = cellEncoder.encode(value);
 
     updateBuffer(entityId, hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), timestamp,
@@ -234,7 +255,9 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     Preconditions.checkState(mIsOpen.get(),
         "HBaseKijiBufferedWriter for %s is closed.", mTable.getURI());
 
-    final FamilyLayout familyLayout = mTable.getLayout().getFamilyMap().get(family);
+    final LayoutCapsule capsule = mTable.getLayoutCapsule();
+    final ColumnNameTranslator translator = capsule.getColumnNameTranslator();
+    final FamilyLayout familyLayout = capsule.getLayout().getFamilyMap().get(family);
     if (null == familyLayout) {
       throw new NoSuchColumnException(String.format("Family '%s' not found.", family));
     }
@@ -242,9 +265,9 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     if (familyLayout.getLocalityGroup().getFamilyMap().size() > 1) {
       // There are multiple families within the locality group, so we need to be clever.
       if (familyLayout.isGroupType()) {
-        deleteGroupFamily(entityId, familyLayout, upToTimestamp);
+        deleteGroupFamily(translator, entityId, familyLayout, upToTimestamp);
       } else if (familyLayout.isMapType()) {
-        deleteMapFamily(entityId, familyLayout, upToTimestamp);
+        deleteMapFamily(translator, entityId, familyLayout, upToTimestamp);
       } else {
         throw new RuntimeException("Internal error: family is neither map-type nor group-type.");
       }
@@ -253,7 +276,7 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
 
     // The only data in this HBase family is the one Kiji family, so we can delete everything.
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family));
+        translator.toHBaseColumnName(new KijiColumnName(family));
     final Delete delete = new Delete(entityId.getHBaseRowKey());
     delete.deleteFamily(hbaseColumnName.getFamily(), upToTimestamp);
 
@@ -265,12 +288,14 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
    * Deletes all cells from a group-type family with a timestamp less than or equal to a
    * specified timestamp.
    *
+   * @param translator Column name translator for the layout of the family.
    * @param entityId The entity (row) to delete from.
    * @param familyLayout The family layout.
    * @param upToTimestamp A timestamp.
    * @throws IOException If there is an IO error.
    */
   private void deleteGroupFamily(
+      ColumnNameTranslator translator,
       EntityId entityId,
       FamilyLayout familyLayout,
       long upToTimestamp)
@@ -282,7 +307,7 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     for (ColumnLayout columnLayout : familyLayout.getColumnMap().values()) {
       final String qualifier = columnLayout.getName();
       final KijiColumnName column = new KijiColumnName(familyName, qualifier);
-      final HBaseColumnName hbaseColumnName = mTranslator.toHBaseColumnName(column);
+      final HBaseColumnName hbaseColumnName = translator.toHBaseColumnName(column);
       delete.deleteColumns(
           hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), upToTimestamp);
     }
@@ -297,12 +322,17 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
    *
    * <p>This call requires an HBase row lock, so it should be used with care.</p>
    *
+   * @param translator Column name translator for the layout of the family.
    * @param entityId The entity (row) to delete from.
    * @param familyLayout A family layout.
    * @param upToTimestamp A timestamp.
    * @throws IOException If there is an IO error.
    */
-  private void deleteMapFamily(EntityId entityId, FamilyLayout familyLayout, long upToTimestamp)
+  private void deleteMapFamily(
+      ColumnNameTranslator translator,
+      EntityId entityId,
+      FamilyLayout familyLayout,
+      long upToTimestamp)
       throws IOException {
 
     // Since multiple Kiji column families are mapped into a single HBase column family,
@@ -314,7 +344,7 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
 
     final String familyName = familyLayout.getName();
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(familyName));
+        translator.toHBaseColumnName(new KijiColumnName(familyName));
     final byte[] hbaseRow = entityId.getHBaseRowKey();
 
     // Lock the row.
@@ -365,7 +395,7 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     Preconditions.checkState(mIsOpen.get(),
         "HBaseKijiBufferedWriter for %s is closed.", mTable.getURI());
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+        mTable.getColumnNameTranslator().toHBaseColumnName(new KijiColumnName(family, qualifier));
     final Delete delete = new Delete(entityId.getHBaseRowKey())
         .deleteColumns(hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), upToTimestamp);
     updateBuffer(delete);
@@ -386,7 +416,7 @@ public class HBaseKijiBufferedWriter implements KijiBufferedWriter {
     Preconditions.checkState(mIsOpen.get(),
         "HBaseKijiBufferedWriter for %s is closed.", mTable.getURI());
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+        mTable.getColumnNameTranslator().toHBaseColumnName(new KijiColumnName(family, qualifier));
     final Delete delete = new Delete(entityId.getHBaseRowKey())
         .deleteColumn(hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), timestamp);
     updateBuffer(delete);
@@ -20,21 +20,96 @@
 package org.kiji.schema.impl;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HConstants;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.delegation.Priority;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiFactory;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.hbase.HBaseFactory;
 
-/** Factory for constructing instances of HBaseKiji. */
+/**
+ * Factory for constructing instances of HBaseKiji.
+ *
+ * <p>
+ *   Kiji instances are shared within the process: opening a Kiji instance that is already open
+ *   with the same ZooKeeper parent node and HBase client settings retains and returns the open
+ *   instance, with its HBase admin, ZooKeeper lock factory, system tables and open tables.
+ *   Other settings of the configuration are those of the first open. Instances are closed when
+ *   all their handles are released. Sharing may be disabled by setting the system property
+ *   {@link #SHARE_INSTANCES_PROPERTY} to "false".
+ * </p>
+ */
 @ApiAudience.Private
 public final class HBaseKijiFactory implements KijiFactory {
+  /** System property to disable the sharing of open Kiji instances within the process. */
+  public static final String SHARE_INSTANCES_PROPERTY =
+      "org.kiji.schema.impl.HBaseKijiFactory.SHARE_INSTANCES";
+
+  /**
+   * Open Kiji instances, shared by the open() calls. Guarded by itself for registering.
+   *
+   * <p> Values are weakly referenced so that leaked instances are still finalized. </p>
+   */
+  private static final ConcurrentMap<InstanceKey, HBaseKiji> OPEN_INSTANCES =
+      new MapMaker().weakValues().makeMap();
+
+  /**
+   * Key of a shared Kiji instance: Kiji instance URI, with the settings of the configuration
+   * that select the HBase cluster (the URI provides the ZooKeeper quorum) and the HBase client.
+   */
+  private static final class InstanceKey {
+    /** URI of the Kiji instance, without table or columns. */
+    private final KijiURI mURI;
+
+    /** ZooKeeper parent node of the HBase cluster. */
+    private final String mZNodeParent;
+
+    /** HBase client settings the Kiji instance is opened with. */
+    private final String mClientSettings;
+
+    /**
+     * Initializes a key for a shared Kiji instance.
+     *
+     * @param uri URI of the Kiji instance, without table or columns.
+     * @param conf Configuration the Kiji instance is opened with.
+     */
+    private InstanceKey(KijiURI uri, Configuration conf) {
+      mURI = uri;
+      mZNodeParent = conf.get(
+          HConstants.ZOOKEEPER_ZNODE_PARENT, HConstants.DEFAULT_ZOOKEEPER_ZNODE_PARENT);
+      mClientSettings = PooledHTableInterfaceFactory.getClientSettingsKey(conf);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof InstanceKey)) {
+        return false;
+      }
+      final InstanceKey other = (InstanceKey) object;
+      return mURI.equals(other.mURI)
+          && mZNodeParent.equals(other.mZNodeParent)
+          && mClientSettings.equals(other.mClientSettings);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mURI, mZNodeParent, mClientSettings);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public Kiji open(KijiURI uri) throws IOException {
@@ -44,6 +119,60 @@ public final class HBaseKijiFactory implements KijiFactory {
   /** {@inheritDoc} */
   @Override
   public Kiji open(KijiURI uri, Configuration conf) throws IOException {
+    // Table and columns are irrelevant to the Kiji instance:
+    final KijiURI instanceURI = KijiURI.newBuilder(uri)
+        .withTableName(null)
+        .withColumnNames(Collections.<KijiColumnName>emptyList())
+        .build();
+    if (!Boolean.parseBoolean(System.getProperty(SHARE_INSTANCES_PROPERTY, "true"))) {
+      return newKiji(instanceURI, conf);
+    }
+
+    final InstanceKey key = new InstanceKey(instanceURI, conf);
+    HBaseKiji openKiji = OPEN_INSTANCES.get(key);
+    if ((null != openKiji) && openKiji.tryRetain()) {
+      return openKiji;
+    }
+
+    // Opening a Kiji instance opens its system tables and checks its version:
+    // do not block the opens of other Kiji instances meanwhile.
+    final HBaseKiji kiji = newKiji(instanceURI, conf);
+
+    synchronized (OPEN_INSTANCES) {
+      openKiji = OPEN_INSTANCES.get(key);
+      if ((null == openKiji) || !openKiji.tryRetain()) {
+        OPEN_INSTANCES.put(key, kiji);
+        return kiji;
+      }
+    }
+    // Another thread opened the same Kiji instance concurrently: share it, discard ours.
+    kiji.release();
+    return openKiji;
+  }
+
+  /**
+   * Stops sharing an open Kiji instance, when it is being closed.
+   *
+   * @param kiji Kiji instance being closed.
+   */
+  static void removeOpenInstance(HBaseKiji kiji) {
+    for (Map.Entry<InstanceKey, HBaseKiji> entry : OPEN_INSTANCES.entrySet()) {
+      if (entry.getValue() == kiji) {
+        // Values are compared by identity:
+        OPEN_INSTANCES.remove(entry.getKey(), kiji);
+      }
+    }
+  }
+
+  /**
+   * Creates a new HBaseKiji instance.
+   *
+   * @param uri URI of the Kiji instance to open.
+   * @param conf Configuration to open the Kiji instance with.
+   * @return a new HBaseKiji instance.
+   * @throws IOException on I/O error.
+   */
+  private static HBaseKiji newKiji(KijiURI uri, Configuration conf) throws IOException {
     final HBaseFactory hbaseFactory = HBaseFactory.Provider.get();
     final Configuration confCopy = new Configuration(conf);
     return new HBaseKiji(
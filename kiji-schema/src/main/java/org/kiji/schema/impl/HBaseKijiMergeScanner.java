@@ -0,0 +1,398 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.HBaseEntityId;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiIOException;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.RuntimeInterruptedException;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * Scans the same row key range of several Kiji tables and merges the rows by row key.
+ *
+ * <p>
+ *   The tables must share the same row key format. Each table is scanned with its own data request
+ *   and the scanners are advanced in lockstep: every merged row groups the rows of all the tables
+ *   with the same HBase row key, with null for the tables where the row does not exist.
+ *   This allows streaming joins of co-keyed tables without shuffling the rows.
+ * </p>
+ *
+ * <p>
+ *   {@link #getCoPartitionedRanges(List)} splits the key space along the region boundaries of all
+ *   the tables, so that each range is served by exactly one region of each table.
+ *   {@link #scanInParallel} merges the ranges concurrently.
+ * </p>
+ *
+ * <p> Example:
+ *   <pre>
+ *     final HBaseKijiMergeScanner scanner = new HBaseKijiMergeScanner(
+ *         ImmutableList.of(profiles, events),
+ *         ImmutableList.of(profilesRequest, eventsRequest),
+ *         HBaseRowKeyRange.ALL);
+ *     try {
+ *       while (scanner.hasNext()) {
+ *         final MergedRow row = scanner.next();
+ *         // Use: row.getEntityId(), row.getRow(0), row.getRow(1)
+ *       }
+ *     } finally {
+ *       scanner.close();
+ *     }
+ *   </pre>
+ * </p>
+ */
+@ApiAudience.Private
+public final class HBaseKijiMergeScanner implements Iterator<HBaseKijiMergeScanner.MergedRow>,
+    Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseKijiMergeScanner.class);
+
+  /** Rows of the merged tables sharing the same row key. */
+  public static final class MergedRow {
+    /** Entity ID of the merged row. */
+    private final EntityId mEntityId;
+
+    /** Row of each table, in table order; null where the table has no such row. */
+    private final KijiRowData[] mRows;
+
+    /**
+     * Initializes a merged row.
+     *
+     * @param entityId Entity ID of the merged row.
+     * @param rows Row of each table, in table order; null where the table has no such row.
+     */
+    private MergedRow(EntityId entityId, KijiRowData[] rows) {
+      mEntityId = entityId;
+      mRows = rows;
+    }
+
+    /** @return the entity ID of the merged row. */
+    public EntityId getEntityId() {
+      return mEntityId;
+    }
+
+    /**
+     * Returns the row of a given table.
+     *
+     * @param index Index of the table, in the order the tables were given to the scanner.
+     * @return the row of the table, or null if the table has no such row.
+     */
+    public KijiRowData getRow(int index) {
+      return mRows[index];
+    }
+
+    /** @return the number of tables merged. */
+    public int size() {
+      return mRows.length;
+    }
+  }
+
+  /** Processes the merged rows produced by {@link #scanInParallel}. */
+  public interface MergedRowHandler {
+    /**
+     * Processes a merged row.
+     *
+     * <p> Invoked concurrently from multiple threads: implementations must be thread-safe. </p>
+     *
+     * @param row Merged row to process.
+     * @throws IOException on I/O error.
+     */
+    void process(MergedRow row) throws IOException;
+  }
+
+  /** Readers of the tables being merged, in table order. */
+  private final List<KijiTableReader> mReaders = Lists.newArrayList();
+
+  /** Scanners of the tables being merged, in table order. */
+  private final List<KijiRowScanner> mScanners = Lists.newArrayList();
+
+  /** Iterators of the scanners, in table order. */
+  private final List<Iterator<KijiRowData>> mIterators = Lists.newArrayList();
+
+  /** Next row of each table not merged yet, in table order; null when a scanner is exhausted. */
+  private final KijiRowData[] mHeads;
+
+  /** Whether the scanner is open. */
+  private final AtomicBoolean mIsOpen = new AtomicBoolean(false);
+
+  /**
+   * Opens a merge scanner over a range of row keys.
+   *
+   * @param tables Tables to merge. Must share the same row key format.
+   * @param dataRequests Data request for each table, in table order.
+   * @param range Range of HBase row keys to scan.
+   * @throws IOException on I/O error.
+   */
+  public HBaseKijiMergeScanner(
+      List<HBaseKijiTable> tables,
+      List<KijiDataRequest> dataRequests,
+      HBaseRowKeyRange range)
+      throws IOException {
+    checkMergeable(tables, dataRequests);
+    mHeads = new KijiRowData[tables.size()];
+    try {
+      for (int i = 0; i < tables.size(); ++i) {
+        final KijiScannerOptions options = new KijiScannerOptions();
+        if (null != range.getStartKey()) {
+          options.setStartRow(HBaseEntityId.fromHBaseRowKey(range.getStartKey()));
+        }
+        if (null != range.getStopKey()) {
+          options.setStopRow(HBaseEntityId.fromHBaseRowKey(range.getStopKey()));
+        }
+        final KijiTableReader reader = tables.get(i).openTableReader();
+        mReaders.add(reader);
+        final KijiRowScanner scanner = reader.getScanner(dataRequests.get(i), options);
+        mScanners.add(scanner);
+        final Iterator<KijiRowData> iterator = scanner.iterator();
+        mIterators.add(iterator);
+        mHeads[i] = iterator.hasNext() ? iterator.next() : null;
+      }
+    } catch (IOException ioe) {
+      closeResources();
+      throw ioe;
+    } catch (RuntimeException re) {
+      closeResources();
+      throw re;
+    }
+    mIsOpen.set(true);
+  }
+
+  /**
+   * Validates that tables can be merged.
+   *
+   * @param tables Tables to merge.
+   * @param dataRequests Data request for each table.
+   */
+  private static void checkMergeable(
+      List<HBaseKijiTable> tables,
+      List<KijiDataRequest> dataRequests) {
+    Preconditions.checkArgument(!tables.isEmpty(), "No table to merge.");
+    Preconditions.checkArgument(tables.size() == dataRequests.size(),
+        "Got %s tables but %s data requests.", tables.size(), dataRequests.size());
+    final Object keysFormat = tables.get(0).getLayout().getDesc().getKeysFormat();
+    for (HBaseKijiTable table : tables) {
+      Preconditions.checkArgument(
+          keysFormat.equals(table.getLayout().getDesc().getKeysFormat()),
+          "Cannot merge table %s with row key format %s and table %s with row key format %s.",
+          tables.get(0).getURI(), keysFormat,
+          table.getURI(), table.getLayout().getDesc().getKeysFormat());
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean hasNext() {
+    for (KijiRowData head : mHeads) {
+      if (null != head) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public MergedRow next() {
+    // Find the smallest row key among the heads of the scanners:
+    byte[] minRowKey = null;
+    EntityId minEntityId = null;
+    for (KijiRowData head : mHeads) {
+      if (null == head) {
+        continue;
+      }
+      final byte[] rowKey = head.getEntityId().getHBaseRowKey();
+      if ((null == minRowKey) || (Bytes.compareTo(rowKey, minRowKey) < 0)) {
+        minRowKey = rowKey;
+        minEntityId = head.getEntityId();
+      }
+    }
+    if (null == minRowKey) {
+      throw new NoSuchElementException();
+    }
+
+    // Pop the rows with the smallest row key:
+    final KijiRowData[] rows = new KijiRowData[mHeads.length];
+    for (int i = 0; i < mHeads.length; ++i) {
+      final KijiRowData head = mHeads[i];
+      if ((null != head) && Bytes.equals(head.getEntityId().getHBaseRowKey(), minRowKey)) {
+        rows[i] = head;
+        final Iterator<KijiRowData> iterator = mIterators.get(i);
+        mHeads[i] = iterator.hasNext() ? iterator.next() : null;
+      }
+    }
+    return new MergedRow(minEntityId, rows);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("HBaseKijiMergeScanner.remove() is not supported.");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    final boolean closing = mIsOpen.compareAndSet(true, false);
+    Preconditions.checkState(closing, "Cannot close merge scanner: scanner is not open.");
+    closeResources();
+  }
+
+  /** Closes the scanners and readers opened so far. */
+  private void closeResources() {
+    for (KijiRowScanner scanner : mScanners) {
+      ResourceUtils.closeOrLog(scanner);
+    }
+    for (KijiTableReader reader : mReaders) {
+      ResourceUtils.closeOrLog(reader);
+    }
+    mScanners.clear();
+    mReaders.clear();
+    mIterators.clear();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Splits the row key space along the region boundaries of all the given tables.
+   *
+   * <p>
+   *   Each returned range is contained in exactly one region of each table, so that the ranges
+   *   can be merged in parallel without any two merge scanners reading the same region.
+   * </p>
+   *
+   * @param tables Tables to merge.
+   * @return the co-partitioned key ranges, ordered by row key, covering the whole key space.
+   * @throws IOException on I/O error.
+   */
+  public static List<HBaseRowKeyRange> getCoPartitionedRanges(List<HBaseKijiTable> tables)
+      throws IOException {
+    final SortedSet<byte[]> boundaries = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    for (HBaseKijiTable table : tables) {
+      final HBaseAdmin admin = ((HBaseKiji) table.getKiji()).getHBaseAdmin();
+      for (HRegionInfo region : admin.getTableRegions(table.getHTable().getTableName())) {
+        if (region.getStartKey().length > 0) {
+          boundaries.add(region.getStartKey());
+        }
+      }
+    }
+
+    final List<HBaseRowKeyRange> ranges = Lists.newArrayListWithCapacity(boundaries.size() + 1);
+    byte[] startKey = null;
+    for (byte[] boundary : boundaries) {
+      ranges.add(new HBaseRowKeyRange(startKey, boundary));
+      startKey = boundary;
+    }
+    ranges.add(new HBaseRowKeyRange(startKey, null));
+    return ranges;
+  }
+
+  /**
+   * Merges the co-partitioned ranges of several tables concurrently.
+   *
+   * <p>
+   *   Each co-partitioned range is merged by a task submitted to the given executor.
+   *   Rows are processed in row key order within a range, but ranges are processed concurrently.
+   *   The first failure cancels the tasks that are not complete yet and is re-thrown.
+   * </p>
+   *
+   * @param tables Tables to merge. Must share the same row key format.
+   * @param dataRequests Data request for each table, in table order.
+   * @param executor Executor to run the merge tasks.
+   * @param handler Processes the merged rows. Must be thread-safe.
+   * @throws IOException on I/O error.
+   */
+  public static void scanInParallel(
+      final List<HBaseKijiTable> tables,
+      final List<KijiDataRequest> dataRequests,
+      ExecutorService executor,
+      final MergedRowHandler handler)
+      throws IOException {
+    checkMergeable(tables, dataRequests);
+    final List<HBaseRowKeyRange> ranges = getCoPartitionedRanges(tables);
+    LOG.debug("Merging {} tables over {} co-partitioned ranges.", tables.size(), ranges.size());
+
+    final List<Future<Void>> futures = Lists.newArrayListWithCapacity(ranges.size());
+    for (final HBaseRowKeyRange range : ranges) {
+      futures.add(executor.submit(new Callable<Void>() {
+        /** {@inheritDoc} */
+        @Override
+        public Void call() throws IOException {
+          final HBaseKijiMergeScanner scanner =
+              new HBaseKijiMergeScanner(tables, dataRequests, range);
+          try {
+            while (scanner.hasNext()) {
+              handler.process(scanner.next());
+            }
+          } finally {
+            scanner.close();
+          }
+          return null;
+        }
+      }));
+    }
+
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException ie) {
+      throw new RuntimeInterruptedException(ie);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw new KijiIOException(cause);
+      }
+    } finally {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+}
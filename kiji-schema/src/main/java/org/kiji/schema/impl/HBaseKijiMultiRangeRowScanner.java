@@ -0,0 +1,350 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Scan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiIOException;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.RuntimeInterruptedException;
+import org.kiji.schema.layout.impl.CellDecoderProvider;
+import org.kiji.schema.util.Debug;
+import org.kiji.schema.util.ResourceUtils;
+
+/**
+ * KijiRowScanner running the scans of several row key ranges concurrently.
+ *
+ * <p>
+ *   The row key ranges are split along the region boundaries and grouped by region.
+ *   Each group of ranges is scanned by its own {@link HBaseKijiRowScanner} in a background thread,
+ *   which prefetches the rows into a bounded buffer. Rows are returned in row key order, draining
+ *   the groups one after the other.
+ * </p>
+ */
+@ApiAudience.Private
+final class HBaseKijiMultiRangeRowScanner implements KijiRowScanner {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseKijiMultiRangeRowScanner.class);
+
+  /** Marks the end of the rows of a group of ranges in its buffer. */
+  private static final Object END_OF_GROUP = new Object();
+
+  /** The table being scanned. */
+  private final HBaseKijiTable mTable;
+
+  /** The request used to fetch the row data. */
+  private final KijiDataRequest mDataRequest;
+
+  /** Provider for cell decoders. */
+  private final CellDecoderProvider mCellDecoderProvider;
+
+  /** Whether to reopen the HBase scanners on timeout. */
+  private final boolean mReopenScannerOnTimeout;
+
+  /** Fraction of the rows sampled by the scans. */
+  private final double mSamplingRate;
+
+  /** Executor scanning the groups of ranges. */
+  private final ExecutorService mExecutor;
+
+  /** Buffer of prefetched rows of each group of ranges, ordered by row key. */
+  private final List<BlockingQueue<Object>> mBuffers = Lists.newArrayList();
+
+  /** Task scanning each group of ranges, ordered by row key. */
+  private final List<Future<Void>> mFutures = Lists.newArrayList();
+
+  /** Index of the group of ranges rows are currently returned from. */
+  private int mGroupIndex = 0;
+
+  /** Next row to return, or null if the next row has not been fetched yet. */
+  private KijiRowData mNextRow = null;
+
+  /** Whether the scanner is open. */
+  private final AtomicBoolean mIsOpen = new AtomicBoolean(false);
+
+  /** Stack trace of the constructor, for debugging purposes. */
+  private String mConstructorStack = "";
+
+  /**
+   * Opens a scanner over several row key ranges.
+   *
+   * @param options Options of the scanner. The scans must cover disjoint row key ranges and be
+   *     ordered by row key.
+   * @param regions Regions of the scanned table.
+   * @param parallelism Maximum number of groups of ranges to scan concurrently.
+   * @param prefetchSize Maximum number of rows each group of ranges prefetches.
+   * @throws IOException on I/O error.
+   */
+  HBaseKijiMultiRangeRowScanner(
+      HBaseKijiRowScanner.Options options,
+      List<HRegionInfo> regions,
+      int parallelism,
+      int prefetchSize)
+      throws IOException {
+    if (LOG.isDebugEnabled()) {
+      mConstructorStack = Debug.getStackTrace();
+    }
+    mTable = options.getTable();
+    mDataRequest = options.getDataRequest();
+    mCellDecoderProvider = options.getCellDecoderProvider();
+    mReopenScannerOnTimeout = options.getReopenScannerOnTimeout();
+    mSamplingRate = options.getSamplingRate();
+
+    final List<List<Scan>> groups = groupByRegion(options.getScans(), regions);
+    LOG.debug("Scanning {} ranges in {} groups of ranges, with up to {} concurrent scans.",
+        options.getScans().size(), groups.size(), parallelism);
+    mExecutor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, groups.size())),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("kiji-multi-range-scanner-%d")
+            .build());
+    // The executor runs the tasks in submission order, ie. in row key order:
+    for (List<Scan> group : groups) {
+      final BlockingQueue<Object> buffer = new ArrayBlockingQueue<Object>(prefetchSize);
+      mBuffers.add(buffer);
+      mFutures.add(mExecutor.submit(new GroupScanTask(group, buffer)));
+    }
+    mIsOpen.set(true);
+  }
+
+  /**
+   * Splits ranges along region boundaries and groups them by region.
+   *
+   * @param scans Scans to group. Must cover disjoint row key ranges and be ordered by row key.
+   * @param regions Regions of the scanned table.
+   * @return the non-empty groups of scans, ordered by row key. Each group only covers row keys
+   *     from a single region.
+   * @throws IOException on I/O error.
+   */
+  static List<List<Scan>> groupByRegion(List<Scan> scans, List<HRegionInfo> regions)
+      throws IOException {
+    final List<HRegionInfo> sortedRegions = Lists.newArrayList(regions);
+    Collections.sort(sortedRegions);
+    if (sortedRegions.isEmpty()) {
+      return Collections.singletonList(scans);
+    }
+
+    final List<List<Scan>> groups = Lists.newArrayList();
+    for (HRegionInfo region : sortedRegions) {
+      final HBaseRowKeyRange regionRange =
+          new HBaseRowKeyRange(region.getStartKey(), region.getEndKey());
+      final List<Scan> group = Lists.newArrayList();
+      for (Scan scan : scans) {
+        final HBaseRowKeyRange range = HBaseRowKeyRange.forScan(scan).intersect(regionRange);
+        if (!range.isEmpty()) {
+          group.add(range.restrict(scan));
+        }
+      }
+      if (!group.isEmpty()) {
+        groups.add(group);
+      }
+    }
+    return groups;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getEffectiveSamplingRate() {
+    return mSamplingRate;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Iterator<KijiRowData> iterator() {
+    return new MultiRangeIterator();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    final boolean wasOpen = mIsOpen.getAndSet(false);
+    if (!wasOpen) {
+      LOG.warn("Called HBaseKijiMultiRangeRowScanner.close() more than once.");
+      return;
+    }
+    for (Future<Void> future : mFutures) {
+      future.cancel(true);
+    }
+    mExecutor.shutdownNow();
+    for (BlockingQueue<Object> buffer : mBuffers) {
+      buffer.clear();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void finalize() throws Throwable {
+    if (mIsOpen.get()) {
+      LOG.warn(
+          "Closing HBaseKijiMultiRangeRowScanner in finalize() : please close it explicitly!\n"
+          + "Call stack when the scanner was constructed:\n{}",
+          mConstructorStack);
+      close();
+    }
+    super.finalize();
+  }
+
+  /**
+   * Fetches the next row, moving on to the next group of ranges when the current one is done.
+   *
+   * @return the next row, or null if none.
+   */
+  private KijiRowData fetchNextRow() {
+    while (mGroupIndex < mBuffers.size()) {
+      final Object item;
+      try {
+        item = mBuffers.get(mGroupIndex).take();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeInterruptedException(ie);
+      }
+      if (item != END_OF_GROUP) {
+        return (KijiRowData) item;
+      }
+      // Surfaces the failure of the group, if any:
+      try {
+        mFutures.get(mGroupIndex).get();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        final Throwable cause = ee.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new KijiIOException(cause);
+      }
+      mGroupIndex += 1;
+    }
+    return null;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
+  /** Scans a group of ranges into its buffer. */
+  private final class GroupScanTask implements Callable<Void> {
+    /** Scans of the group of ranges, ordered by row key. */
+    private final List<Scan> mScans;
+
+    /** Buffer to prefetch the rows into. */
+    private final BlockingQueue<Object> mBuffer;
+
+    /**
+     * Initializes a task scanning a group of ranges.
+     *
+     * @param scans Scans of the group of ranges, ordered by row key.
+     * @param buffer Buffer to prefetch the rows into.
+     */
+    private GroupScanTask(List<Scan> scans, BlockingQueue<Object> buffer) {
+      mScans = scans;
+      mBuffer = buffer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Void call() throws Exception {
+      try {
+        // HTable instances must not be shared across threads:
+        final HTableInterface htable = HBaseKijiTable.createHTableInterface(mTable);
+        try {
+          final HBaseKijiRowScanner scanner = new HBaseKijiRowScanner(
+              new HBaseKijiRowScanner.Options()
+                  .withDataRequest(mDataRequest)
+                  .withTable(mTable)
+                  .withHTable(htable)
+                  .withScans(mScans)
+                  .withCellDecoderProvider(mCellDecoderProvider)
+                  .withReopenScannerOnTimeout(mReopenScannerOnTimeout));
+          try {
+            for (KijiRowData row : scanner) {
+              mBuffer.put(row);
+            }
+          } finally {
+            ResourceUtils.closeOrLog(scanner);
+          }
+        } finally {
+          htable.close();
+        }
+      } finally {
+        try {
+          mBuffer.put(END_OF_GROUP);
+        } catch (InterruptedException ie) {
+          // The scanner is being closed: nobody is waiting for the end of the group.
+          Thread.currentThread().interrupt();
+        }
+      }
+      return null;
+    }
+  }
+
+  /** Iterator over the rows of all the groups of ranges. */
+  private final class MultiRangeIterator implements Iterator<KijiRowData> {
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+      if (null == mNextRow) {
+        mNextRow = fetchNextRow();
+      }
+      return (null != mNextRow);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public KijiRowData next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final KijiRowData row = mNextRow;
+      mNextRow = null;
+      return row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("MultiRangeIterator does not support remove().");
+    }
+  }
+}
@@ -45,13 +45,13 @@ import org.kiji.schema.KijiCellDecoder;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiColumnPagingNotEnabledException;
 import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiEncodingException;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiPager;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.NoSuchColumnException;
-import org.kiji.schema.SpecificCellDecoderFactory;
+import org.kiji.schema.PrimitiveCellCursor;
 import org.kiji.schema.hbase.HBaseColumnName;
-import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.impl.CellDecoderProvider;
 import org.kiji.schema.layout.impl.ColumnNameTranslator;
@@ -76,6 +76,9 @@ public final class HBaseKijiRowData implements KijiRowData {
   /** The layout for the table this row data came from. */
   private final KijiTableLayout mTableLayout;
 
+  /** Column name translator for the layout of the table this row data came from. */
+  private final ColumnNameTranslator mColumnNameTranslator;
+
   /** The HBase result providing the data of this object. */
   private Result mResult;
 
@@ -85,22 +88,6 @@ public final class HBaseKijiRowData implements KijiRowData {
   /** A map from kiji family to kiji qualifier to timestamp to raw encoded cell values. */
   private NavigableMap<String, NavigableMap<String, NavigableMap<Long, byte[]>>> mFilteredMap;
 
-  /**
-   * Creates a provider for cell decoders.
-   *
-   * <p> The provider creates decoders for specific Avro records. </p>
-   *
-   * @param table HBase KijiTable to create a CellDecoderProvider for.
-   * @return a new CellDecoderProvider for the specified HBase KijiTable.
-   * @throws IOException on I/O error.
-   */
-  private static CellDecoderProvider createCellProvider(HBaseKijiTable table) throws IOException {
-    return new CellDecoderProvider(
-        table,
-        SpecificCellDecoderFactory.get(),
-        Maps.<KijiColumnName, CellSpec>newHashMap());
-  }
-
   /**
    * Initializes a row data from an HBase Result.
    *
@@ -116,7 +103,7 @@ public final class HBaseKijiRowData implements KijiRowData {
    * @param entityId This row entity ID.
    * @param result HBase result containing the requested cells (and potentially more).
    * @param decoderProvider Provider for cell decoders.
-   *     Null means the row creates its own provider for cell decoders (not recommended).
+   *     Null means the row uses the default cell decoders of the table.
    * @throws IOException on I/O error.
    */
   public HBaseKijiRowData(
@@ -127,11 +114,15 @@ public final class HBaseKijiRowData implements KijiRowData {
       CellDecoderProvider decoderProvider)
       throws IOException {
     mTable = table;
-    mTableLayout = table.getLayout();
+    // Layout, translator and default decoders must all come from the same layout version:
+    final HBaseKijiTable.LayoutCapsule capsule = table.getLayoutCapsule();
+    mTableLayout = capsule.getLayout();
+    mColumnNameTranslator = capsule.getColumnNameTranslator();
     mDataRequest = dataRequest;
     mEntityId = entityId;
     mResult = result;
-    mDecoderProvider = (decoderProvider != null) ? decoderProvider : createCellProvider(table);
+    mDecoderProvider =
+        (decoderProvider != null) ? decoderProvider : capsule.getCellDecoderProvider();
   }
 
   /**
@@ -171,9 +162,9 @@ public final class HBaseKijiRowData implements KijiRowData {
         throws IOException {
       mColumn = columnName;
       // Initialize column name translator.
-      mColumnNameTranslator = new ColumnNameTranslator(rowdata.mTableLayout);
+      mColumnNameTranslator = rowdata.mColumnNameTranslator;
       // Get cell decoder.
-      mDecoder = rowdata.mDecoderProvider.getDecoder(mColumn.getFamily(), mColumn.getQualifier());
+      mDecoder = rowdata.getDecoder(mColumn.getFamily(), mColumn.getQualifier());
       // Get info about the data request for this column.
       KijiDataRequest.Column columnRequest = rowdata.mDataRequest.getColumn(mColumn.getFamily(),
           mColumn.getQualifier());
@@ -322,6 +313,114 @@ public final class HBaseKijiRowData implements KijiRowData {
     }
   }
 
+  /**
+   * Cursor over the cells of a column holding primitive values, decoded in place from the
+   * KeyValues of the HBase result.
+   */
+  private static final class HBasePrimitiveCellCursor implements PrimitiveCellCursor {
+    /** Decoder for the cells of the column. */
+    private final PrimitiveCellDecoder mDecoder;
+
+    /** KeyValues of the HBase result. */
+    private final KeyValue[] mKVs;
+
+    /** HBase family of the column. */
+    private final byte[] mFamily;
+
+    /** HBase qualifier of the column. */
+    private final byte[] mQualifier;
+
+    /** Maximum number of versions to visit. */
+    private final int mMaxVersions;
+
+    /** Index of the current KeyValue, or of the first KeyValue of the column before next(). */
+    private int mIndex;
+
+    /** Number of versions visited so far. */
+    private int mNumVersions = 0;
+
+    /** Current KeyValue, or null if the cursor is not positioned on a version. */
+    private KeyValue mCurrent = null;
+
+    /**
+     * Initializes a cursor over the cells of a column.
+     *
+     * @param decoder Decoder for the cells of the column.
+     * @param kvs KeyValues of the HBase result, sorted.
+     * @param rowKey HBase row key.
+     * @param column HBase column name.
+     * @param maxVersions Maximum number of versions to visit.
+     */
+    private HBasePrimitiveCellCursor(
+        PrimitiveCellDecoder decoder,
+        KeyValue[] kvs,
+        byte[] rowKey,
+        HBaseColumnName column,
+        int maxVersions) {
+      mDecoder = decoder;
+      mKVs = kvs;
+      mFamily = column.getFamily();
+      mQualifier = column.getQualifier();
+      mMaxVersions = maxVersions;
+      mIndex = KijiCellIterator.findInsertionPoint(mKVs,
+          new KeyValue(rowKey, mFamily, mQualifier)) - 1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean next() {
+      mCurrent = null;
+      if ((mNumVersions >= mMaxVersions) || (mIndex + 1 >= mKVs.length)) {
+        return false;
+      }
+      final KeyValue kv = mKVs[mIndex + 1];
+      if (!kv.matchingColumn(mFamily, mQualifier)) {
+        return false;
+      }
+      mIndex += 1;
+      mNumVersions += 1;
+      mCurrent = kv;
+      return true;
+    }
+
+    /**
+     * Returns the current KeyValue.
+     *
+     * @return the current KeyValue.
+     */
+    private KeyValue getCurrent() {
+      Preconditions.checkState(null != mCurrent, "Cursor is not positioned on a cell.");
+      return mCurrent;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTimestamp() {
+      return getCurrent().getTimestamp();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getLong() throws IOException {
+      final KeyValue kv = getCurrent();
+      return mDecoder.decodeLong(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getInt() throws IOException {
+      final KeyValue kv = getCurrent();
+      return mDecoder.decodeInt(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getDouble() throws IOException {
+      final KeyValue kv = getCurrent();
+      return mDecoder.decodeDouble(kv.getBuffer(), kv.getValueOffset(), kv.getValueLength());
+    }
+  }
+
   /**
    * An iterable of cells in a column.
    *
@@ -402,7 +501,7 @@ public final class HBaseKijiRowData implements KijiRowData {
       return mFilteredMap;
     }
 
-    final ColumnNameTranslator columnNameTranslator = new ColumnNameTranslator(mTableLayout);
+    final ColumnNameTranslator columnNameTranslator = mColumnNameTranslator;
     // Loop over the families in the HTable.
     for (NavigableMap.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> familyEntry
              : map.entrySet()) {
@@ -567,6 +666,91 @@ public final class HBaseKijiRowData implements KijiRowData {
     return qmap.get(qualifier);
   }
 
+  /**
+   * Gets the decoder for the cells of a column, honoring the reader schema and the projection
+   * requested for this column.
+   *
+   * @param family Family of the column.
+   * @param qualifier Qualifier of the column.
+   * @return the decoder for the cells of the column.
+   * @throws IOException on I/O error.
+   *
+   * @param <T> Type of the data to decode.
+   */
+  private <T> KijiCellDecoder<T> getDecoder(String family, String qualifier) throws IOException {
+    KijiDataRequest.Column columnRequest = mDataRequest.getColumn(family, qualifier);
+    if ((null == columnRequest) && (null != qualifier)) {
+      columnRequest = mDataRequest.getColumn(family, null);
+    }
+    return mDecoderProvider.getDecoder(family, qualifier, columnRequest);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PrimitiveCellCursor getPrimitiveCells(String family, String qualifier)
+      throws IOException {
+    Preconditions.checkArgument(null != qualifier,
+        "Primitive cells are read from fully-qualified columns, got family '%s'.", family);
+    KijiDataRequest.Column columnRequest = mDataRequest.getColumn(family, qualifier);
+    if (null == columnRequest) {
+      columnRequest = mDataRequest.getColumn(family, null);
+    }
+    Preconditions.checkArgument(null != columnRequest,
+        "Column '%s:%s' was not requested from row %s.", family, qualifier, mEntityId);
+    final KijiCellDecoder<Object> decoder = getDecoder(family, qualifier);
+    if (!(decoder instanceof PrimitiveCellDecoder)) {
+      throw new KijiEncodingException(String.format(
+          "Column '%s:%s' does not hold primitive values.", family, qualifier));
+    }
+    final KeyValue[] kvs = mResult.raw();
+    final int maxVersions = columnRequest.getMaxVersions();
+    final HBaseColumnName column =
+        mColumnNameTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+    return new HBasePrimitiveCellCursor(
+        (PrimitiveCellDecoder) decoder,
+        (null == kvs) ? new KeyValue[0] : kvs,
+        mEntityId.getHBaseRowKey(),
+        column,
+        maxVersions);
+  }
+
+  /**
+   * Positions a cursor on the most recent cell of a column holding primitive values.
+   *
+   * @param family Column family of the desired cell.
+   * @param qualifier Column qualifier of the desired cell.
+   * @return a cursor positioned on the most recent cell of the column.
+   * @throws IOException on I/O error.
+   * @throws NoSuchElementException if the column has no cell.
+   */
+  private PrimitiveCellCursor getMostRecentPrimitiveCell(String family, String qualifier)
+      throws IOException {
+    final PrimitiveCellCursor cursor = getPrimitiveCells(family, qualifier);
+    if (!cursor.next()) {
+      throw new NoSuchElementException(String.format(
+          "No cell in column '%s:%s' of row %s.", family, qualifier, mEntityId));
+    }
+    return cursor;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMostRecentLong(String family, String qualifier) throws IOException {
+    return getMostRecentPrimitiveCell(family, qualifier).getLong();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getMostRecentInt(String family, String qualifier) throws IOException {
+    return getMostRecentPrimitiveCell(family, qualifier).getInt();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getMostRecentDouble(String family, String qualifier) throws IOException {
+    return getMostRecentPrimitiveCell(family, qualifier).getDouble();
+  }
+
   /**
    * Reports the encoded content of a given cell.
    *
@@ -586,7 +770,7 @@ public final class HBaseKijiRowData implements KijiRowData {
   /** {@inheritDoc} */
   @Override
   public <T> T getValue(String family, String qualifier, long timestamp) throws IOException {
-    final KijiCellDecoder<T> decoder = mDecoderProvider.getDecoder(family, qualifier);
+    final KijiCellDecoder<T> decoder = getDecoder(family, qualifier);
     final byte[] bytes = getRawCell(family, qualifier, timestamp);
     return decoder.decodeValue(bytes);
   }
@@ -595,7 +779,7 @@ public final class HBaseKijiRowData implements KijiRowData {
   @Override
   public <T> KijiCell<T> getCell(String family, String qualifier, long timestamp)
       throws IOException {
-    final KijiCellDecoder<T> decoder = mDecoderProvider.getDecoder(family, qualifier);
+    final KijiCellDecoder<T> decoder = getDecoder(family, qualifier);
     final byte[] bytes = getRawCell(family, qualifier, timestamp);
     return new KijiCell<T>(family, qualifier, timestamp, decoder.decodeCell(bytes));
   }
@@ -603,7 +787,7 @@ public final class HBaseKijiRowData implements KijiRowData {
   /** {@inheritDoc} */
   @Override
   public <T> T getMostRecentValue(String family, String qualifier) throws IOException {
-    final KijiCellDecoder<T> decoder = mDecoderProvider.getDecoder(family, qualifier);
+    final KijiCellDecoder<T> decoder = getDecoder(family, qualifier);
     final NavigableMap<Long, byte[]> tmap = getRawTimestampMap(family, qualifier);
     if (null == tmap) {
       return null;
@@ -659,7 +843,7 @@ public final class HBaseKijiRowData implements KijiRowData {
   /** {@inheritDoc} */
   @Override
   public <T> KijiCell<T> getMostRecentCell(String family, String qualifier) throws IOException {
-    final KijiCellDecoder<T> decoder = mDecoderProvider.getDecoder(family,  qualifier);
+    final KijiCellDecoder<T> decoder = getDecoder(family, qualifier);
     final NavigableMap<Long, byte[]> tmap = getRawTimestampMap(family, qualifier);
     if (null == tmap) {
       return null;
@@ -690,7 +874,7 @@ public final class HBaseKijiRowData implements KijiRowData {
   @Override
   public <T> NavigableMap<Long, KijiCell<T>> getCells(String family, String qualifier)
       throws IOException {
-    final KijiCellDecoder<T> decoder = mDecoderProvider.getDecoder(family,  qualifier);
+    final KijiCellDecoder<T> decoder = getDecoder(family, qualifier);
 
     final NavigableMap<Long, KijiCell<T>> result = Maps.newTreeMap(TimestampComparator.INSTANCE);
     final NavigableMap<Long, byte[]> tmap = getRawTimestampMap(family, qualifier);
@@ -780,6 +964,6 @@ public final class HBaseKijiRowData implements KijiRowData {
         + "The column family '%s' is a group type column family. "
         + "Please use the getPager(String family, String qualifier) method.",
         family);
-    return new HBaseMapFamilyPager(mEntityId, mDataRequest, mTable, kijiFamily);
+    return new HBaseMapFamilyPager(mEntityId, mDataRequest, mTable, kijiFamily, mDecoderProvider);
   }
 }
@@ -21,10 +21,14 @@ package org.kiji.schema.impl;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
@@ -65,8 +69,20 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
   /** The table being scanned. */
   private final HBaseKijiTable mTable;
 
-  /** HBase scan specification. */
-  private final Scan mScan;
+  /** The HTable being scanned. */
+  private final HTableInterface mHTable;
+
+  /** HBase scans to run sequentially. */
+  private final List<Scan> mScans;
+
+  /** Index of the HBase scan currently running. */
+  private int mScanIndex = 0;
+
+  /** HBase scan specification currently running. */
+  private Scan mScan;
+
+  /** Fraction of the rows sampled by the scans. */
+  private final double mSamplingRate;
 
   /** Provider for cell decoders. */
   private final CellDecoderProvider mCellDecoderProvider;
@@ -101,8 +117,11 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
     private KijiDataRequest mDataRequest;
     private HBaseKijiTable mTable;
     private Scan mScan;
+    private List<Scan> mScans;
     private CellDecoderProvider mCellDecoderProvider;
     private boolean mReopenScannerOnTimeout;
+    private double mSamplingRate = 1.0;
+    private HTableInterface mHTable;
 
     /**
      * Sets the data request used to generate the KijiRowScanner.
@@ -126,6 +145,19 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
       return this;
     }
 
+    /**
+     * Sets the HTable to scan, instead of the HTable shared by the Kiji table.
+     *
+     * <p> Required when scanning from a thread that does not own the Kiji table. </p>
+     *
+     * @param htable HTable to scan. Not closed by the scanner.
+     * @return This options instance.
+     */
+    public Options withHTable(HTableInterface htable) {
+      mHTable = htable;
+      return this;
+    }
+
     /**
      * Sets the HBase scan specification.
      *
@@ -137,6 +169,30 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
       return this;
     }
 
+    /**
+     * Sets several HBase scan specifications to run sequentially, instead of a single scan.
+     *
+     * <p> The scans must cover disjoint row key ranges and be ordered by row key. </p>
+     *
+     * @param scans HBase scan specifications.
+     * @return This options instance.
+     */
+    public Options withScans(List<Scan> scans) {
+      mScans = scans;
+      return this;
+    }
+
+    /**
+     * Sets the fraction of the rows sampled by the scans.
+     *
+     * @param samplingRate Fraction of the rows sampled by the scans.
+     * @return This options instance.
+     */
+    public Options withSamplingRate(double samplingRate) {
+      mSamplingRate = samplingRate;
+      return this;
+    }
+
     /**
      * Sets whether the HBase scanner should be reopened on timeout.
      *
@@ -177,6 +233,15 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
       return mTable;
     }
 
+    /**
+     * Gets the HTable to scan.
+     *
+     * @return the HTable to scan, or null to scan the HTable shared by the Kiji table.
+     */
+    public HTableInterface getHTable() {
+      return mHTable;
+    }
+
     /**
      * Gets the HBase scan specification.
      *
@@ -186,6 +251,24 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
       return mScan;
     }
 
+    /**
+     * Gets the HBase scan specifications to run sequentially.
+     *
+     * @return the HBase scan specifications, or null if a single scan is configured.
+     */
+    public List<Scan> getScans() {
+      return mScans;
+    }
+
+    /**
+     * Gets the fraction of the rows sampled by the scans.
+     *
+     * @return the fraction of the rows sampled by the scans.
+     */
+    public double getSamplingRate() {
+      return mSamplingRate;
+    }
+
     /**
      * Gets the provider for cell decoders.
      *
@@ -220,14 +303,21 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
 
     mDataRequest = options.getDataRequest();
     mTable = options.getTable();
-    mScan = options.getScan();
+    mHTable = (null != options.getHTable()) ? options.getHTable() : mTable.getHTable();
+    mScans = (null != options.getScans())
+        ? ImmutableList.copyOf(options.getScans())
+        : Collections.singletonList(options.getScan());
     mCellDecoderProvider = options.getCellDecoderProvider();
     mReopenScannerOnTimeout = options.getReopenScannerOnTimeout();
+    mSamplingRate = options.getSamplingRate();
 
     mEntityIdFactory = EntityIdFactory.getFactory(mTable.getLayout());
 
-    mResultScanner = mTable.getHTable().getScanner(mScan);
-    mNextResult = getNextResult();
+    if (!mScans.isEmpty()) {
+      mScan = mScans.get(0);
+      mResultScanner = mHTable.getScanner(mScan);
+      mNextResult = getNextResult();
+    }
 
     mIsOpen.set(true);
   }
@@ -258,12 +348,18 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
       }
       LOG.debug("Opening HBase result scanner with start row key: '{}'.",
           Bytes.toStringBinary(mScan.getStartRow()));
-      return mTable.getHTable().getScanner(mScan);
+      return mHTable.getScanner(mScan);
     } catch (IOException ioe) {
       throw new KijiIOException(ioe);
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public double getEffectiveSamplingRate() {
+    return mSamplingRate;
+  }
+
   /** {@inheritDoc} */
   @Override
   public KijiRowIterator iterator() {
@@ -280,7 +376,9 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
           Debug.getStackTrace());
       return;
     }
-    mResultScanner.close();
+    if (null != mResultScanner) {
+      mResultScanner.close();
+    }
   }
 
   /** {@inheritDoc} */
@@ -297,13 +395,33 @@ public class HBaseKijiRowScanner implements KijiRowScanner {
   }
 
   /**
-   * Fetches the next HBase result.
-   *
-   * <p> Handles HBase scanner timeouts. </p>
+   * Fetches the next HBase result, moving on to the next HBase scan when the current one is done.
    *
    * @return the next HBase result, or null if none.
    */
   private Result getNextResult() {
+    while (true) {
+      final Result result = getNextResultFromCurrentScan();
+      if ((null != result) || (mScanIndex + 1 >= mScans.size())) {
+        return result;
+      }
+      mResultScanner.close();
+      mScanIndex += 1;
+      mScan = mScans.get(mScanIndex);
+      // Scans are ordered: rows of the previous scan must not affect where the next scan starts.
+      mLastReturnedKey = null;
+      mResultScanner = openResultScanner();
+    }
+  }
+
+  /**
+   * Fetches the next HBase result from the current HBase scan.
+   *
+   * <p> Handles HBase scanner timeouts. </p>
+   *
+   * @return the next HBase result from the current HBase scan, or null if none.
+   */
+  private Result getNextResultFromCurrentScan() {
     for (int nretries = 0; nretries < MAX_RETRIES_ON_TIMEOUT; ++nretries) {
       try {
         return mResultScanner.next();
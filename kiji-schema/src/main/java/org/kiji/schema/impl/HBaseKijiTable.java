@@ -20,12 +20,18 @@
 package org.kiji.schema.impl;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
@@ -33,6 +39,8 @@ import org.apache.hadoop.hbase.TableNotFoundException;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,19 +49,31 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.EntityIdFactory;
 import org.kiji.schema.InternalKijiError;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiReaderFactory;
 import org.kiji.schema.KijiRegion;
+import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableNotFoundException;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiTableWriter;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.KijiWriterFactory;
+import org.kiji.schema.SpecificCellDecoderFactory;
 import org.kiji.schema.avro.RowKeyFormat;
 import org.kiji.schema.avro.RowKeyFormat2;
+import org.kiji.schema.filter.KijiRowFilter;
+import org.kiji.schema.filter.KijiRowFilterApplicator;
 import org.kiji.schema.hbase.KijiManagedHBaseTableName;
+import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.impl.CellDecoderProvider;
+import org.kiji.schema.layout.impl.CellEncoderProvider;
+import org.kiji.schema.layout.impl.ColumnNameTranslator;
+import org.kiji.schema.layout.impl.TableLayoutMonitor;
+import org.kiji.schema.layout.impl.TableLayoutMonitor.LayoutTracker;
+import org.kiji.schema.layout.impl.TableLayoutMonitor.LayoutUpdateHandler;
 import org.kiji.schema.util.Debug;
 import org.kiji.schema.util.ResourceUtils;
 
@@ -70,6 +90,9 @@ public final class HBaseKijiTable implements KijiTable {
   private static final Logger CLEANUP_LOG =
       LoggerFactory.getLogger("cleanup." + HBaseKijiTable.class.getName());
 
+  /** Maximum number of compiled row filters cached by a table. */
+  private static final int MAX_CACHED_ROW_FILTERS = 256;
+
   /** The kiji instance this table belongs to. */
   private final HBaseKiji mKiji;
 
@@ -85,18 +108,46 @@ public final class HBaseKijiTable implements KijiTable {
   /** String representation of the call stack at the time this object is constructed. */
   private final String mConstructorStack;
 
-  /** The underlying HTable that stores this Kiji table's data. */
-  private final HTableInterface mHTable;
+  /** Name of the underlying HTable that stores this Kiji table's data. */
+  private final String mHBaseTableName;
+
+  /**
+   * HTable handle of each thread using this table.
+   *
+   * <p> HTables are not thread-safe: each thread using this table gets its own handle. </p>
+   */
+  private final ThreadLocal<HTableInterface> mThreadHTable = new ThreadLocal<HTableInterface>();
+
+  /**
+   * HTable handles created by this table, keyed by the thread using them.
+   *
+   * <p>
+   *   Handles are closed when this table is closed. Handles of threads that died are closed
+   *   whenever a new handle is created, so that the number of handles is bounded by the number
+   *   of live threads using this table.
+   * </p>
+   */
+  private final Map<Thread, HTableInterface> mHTables = Maps.newHashMap();
 
   /** HTableInterfaceFactory for creating new HTables associated with this KijiTable. */
   private final HTableInterfaceFactory mHTableFactory;
 
-  /** The layout of the Kiji table. */
-  private final KijiTableLayout mTableLayout;
+  /**
+   * Current layout of the table, with the state derived from it.
+   *
+   * <p> Swapped atomically when the layout of the table is updated. </p>
+   */
+  private volatile LayoutCapsule mLayoutCapsule;
 
-  /** The factory for EntityIds. */
+  /** The factory for EntityIds. Row key formats cannot be updated. */
   private final EntityIdFactory mEntityIdFactory;
 
+  /** ID of this table as a registered user of its layout. */
+  private final String mLayoutUserId;
+
+  /** Tracker for the layout updates of this table, or null if layouts are not monitored. */
+  private LayoutTracker mLayoutTracker = null;
+
   /** Retain counter. When decreased to 0, the HBase KijiTable may be closed and disposed of. */
   private final AtomicInteger mRetainCount = new AtomicInteger(1);
 
@@ -109,6 +160,96 @@ public final class HBaseKijiTable implements KijiTable {
   /** Reader factory for this table. */
   private final KijiReaderFactory mReaderFactory;
 
+  /** Applicators for the row filters of this table, shared by its readers. */
+  private final Cache<KijiRowFilter, KijiRowFilterApplicator> mRowFilterApplicators =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ROW_FILTERS).build();
+
+  /**
+   * Layout of a table, with the immutable state derived from it.
+   *
+   * <p>
+   *   Readers and writers fetch the capsule once per operation, so that each operation sees a
+   *   consistent layout, translator and cell codecs, even if the layout is updated meanwhile.
+   * </p>
+   */
+  public static final class LayoutCapsule {
+    /** Layout of the table. */
+    private final KijiTableLayout mLayout;
+
+    /** Column name translator for the layout. */
+    private final ColumnNameTranslator mColumnNameTranslator;
+
+    /** Schema table to resolve the Avro schemas of the cell codecs. */
+    private final KijiSchemaTable mSchemaTable;
+
+    /** Provider for the default cell decoders. Null until first used. Guarded by this. */
+    private CellDecoderProvider mCellDecoderProvider = null;
+
+    /** Provider for the encoders of row filter values. Null until first used. Guarded by this. */
+    private CellEncoderProvider mRowFilterEncoderProvider = null;
+
+    /**
+     * Initializes the capsule of a table layout.
+     *
+     * @param layout Layout of the table.
+     * @param schemaTable Schema table to resolve the Avro schemas of the cell codecs.
+     */
+    private LayoutCapsule(KijiTableLayout layout, KijiSchemaTable schemaTable) {
+      mLayout = layout;
+      mColumnNameTranslator = new ColumnNameTranslator(layout);
+      mSchemaTable = schemaTable;
+    }
+
+    /**
+     * Returns the layout of the table.
+     *
+     * @return the layout of the table.
+     */
+    public KijiTableLayout getLayout() {
+      return mLayout;
+    }
+
+    /**
+     * Returns the column name translator for the layout.
+     *
+     * @return the column name translator for the layout.
+     */
+    public ColumnNameTranslator getColumnNameTranslator() {
+      return mColumnNameTranslator;
+    }
+
+    /**
+     * Returns the provider for the default cell decoders of the layout, creating it on first use.
+     *
+     * @return the provider for the default cell decoders of the layout.
+     * @throws IOException on I/O error.
+     */
+    public synchronized CellDecoderProvider getCellDecoderProvider() throws IOException {
+      if (null == mCellDecoderProvider) {
+        mCellDecoderProvider = new CellDecoderProvider(
+            mLayout,
+            mSchemaTable,
+            SpecificCellDecoderFactory.get(),
+            Maps.<KijiColumnName, CellSpec>newHashMap());
+      }
+      return mCellDecoderProvider;
+    }
+
+    /**
+     * Returns the provider for the encoders of row filter values, creating it on first use.
+     *
+     * @return the provider for the encoders of row filter values.
+     * @throws IOException on I/O error.
+     */
+    private synchronized CellEncoderProvider getRowFilterEncoderProvider() throws IOException {
+      if (null == mRowFilterEncoderProvider) {
+        mRowFilterEncoderProvider =
+            new CellEncoderProvider(mLayout, mSchemaTable, DefaultKijiCellEncoderFactory.get());
+      }
+      return mRowFilterEncoderProvider;
+    }
+  }
+
   /**
    * Construct an opened Kiji table stored in HBase.
    *
@@ -119,7 +260,7 @@ public final class HBaseKijiTable implements KijiTable {
    * @throws IOException On an HBase error.
    */
   HBaseKijiTable(HBaseKiji kiji, String name, Configuration conf) throws IOException {
-    this(kiji, name, conf, DefaultHTableInterfaceFactory.get());
+    this(kiji, name, conf, PooledHTableInterfaceFactory.get());
   }
 
   /**
@@ -145,34 +286,135 @@ public final class HBaseKijiTable implements KijiTable {
     mKiji = kiji;
     mName = name;
     mTableURI = KijiURI.newBuilder(mKiji.getURI()).withTableName(mName).build();
-    mTableLayout = mKiji.getMetaTable().getTableLayout(name);
+    final KijiTableLayout layout = mKiji.getMetaTable().getTableLayout(name);
+    mLayoutCapsule = new LayoutCapsule(layout, mKiji.getSchemaTable());
     mWriterFactory = new HBaseKijiWriterFactory(this);
     mReaderFactory = new HBaseKijiReaderFactory(this);
     mHTableFactory = htableFactory;
     mConf = conf;
+    mHBaseTableName =
+        KijiManagedHBaseTableName.getKijiTableName(kiji.getURI().getInstance(), name).toString();
     try {
-      mHTable = htableFactory.create(conf,
-          KijiManagedHBaseTableName.getKijiTableName(kiji.getURI().getInstance(), name).toString());
+      // Open the HTable handle of the opening thread, to check that the HTable exists:
+      createThreadHTable();
     } catch (TableNotFoundException e) {
       release();
       throw new KijiTableNotFoundException(name);
     }
 
-    if (mTableLayout.getDesc().getKeysFormat() instanceof RowKeyFormat) {
-      mEntityIdFactory = EntityIdFactory.getFactory((RowKeyFormat) mTableLayout.getDesc()
+    if (layout.getDesc().getKeysFormat() instanceof RowKeyFormat) {
+      mEntityIdFactory = EntityIdFactory.getFactory((RowKeyFormat) layout.getDesc()
           .getKeysFormat());
-    } else if (mTableLayout.getDesc().getKeysFormat() instanceof RowKeyFormat2) {
-      mEntityIdFactory = EntityIdFactory.getFactory((RowKeyFormat2) mTableLayout.getDesc()
+    } else if (layout.getDesc().getKeysFormat() instanceof RowKeyFormat2) {
+      mEntityIdFactory = EntityIdFactory.getFactory((RowKeyFormat2) layout.getDesc()
           .getKeysFormat());
     } else {
       throw new RuntimeException("Invalid Row Key format found in Kiji Table");
     }
+    mLayoutUserId = String.format("%s-%s",
+        ManagementFactory.getRuntimeMXBean().getName(),
+        Integer.toHexString(System.identityHashCode(this)));
 
     mConstructorStack = CLEANUP_LOG.isDebugEnabled() ? Debug.getStackTrace() : null;
 
     // Retain the Kiji instance only if open succeeds:
     mKiji.retain();
     mIsOpen.set(true);
+
+    startLayoutTracking();
+  }
+
+  /**
+   * Registers this table as a user of its layout and starts tracking its layout updates.
+   *
+   * <p> Failures are logged: the table remains usable, without live layout updates. </p>
+   */
+  private synchronized void startLayoutTracking() {
+    try {
+      final TableLayoutMonitor monitor = mKiji.getLayoutMonitor();
+      if (null == monitor) {
+        return;
+      }
+      monitor.registerTableUser(mTableURI, mLayoutUserId, getLayout().getDesc().getLayoutId());
+      mLayoutTracker = monitor.newTableLayoutTracker(mTableURI, new LayoutUpdateHandler() {
+        /** {@inheritDoc} */
+        @Override
+        public void update(byte[] layout) {
+          // The first notification reports the current layout ID, if any layout update was ever
+          // notified for this table: there is nothing to reload then.
+          final String layoutId = Bytes.toString(layout);
+          if ((null == layoutId)
+              || layoutId.isEmpty()
+              || layoutId.equals(getLayout().getDesc().getLayoutId())) {
+            return;
+          }
+          try {
+            // The meta table of this process may still cache the previous layout:
+            mKiji.getMetaTable().invalidateTableLayout(mName);
+            reloadLayout();
+          } catch (IOException ioe) {
+            LOG.error("Unable to reload the layout of table {}: {}", mTableURI, ioe.getMessage());
+          }
+        }
+      });
+      mLayoutTracker.open();
+    } catch (IOException ioe) {
+      LOG.warn("Unable to track the layout updates of table {}: {}", mTableURI, ioe.getMessage());
+    } catch (KeeperException ke) {
+      LOG.warn("Unable to track the layout updates of table {}: {}", mTableURI, ke.getMessage());
+    }
+  }
+
+  /**
+   * Reloads the layout of this table from the meta table.
+   *
+   * <p>
+   *   If the layout changed, swaps in the layout with the state derived from it: in-flight
+   *   operations complete with the previous layout, subsequent operations use the new one.
+   * </p>
+   *
+   * @throws IOException on I/O error.
+   */
+  synchronized void reloadLayout() throws IOException {
+    if (!mIsOpen.get()) {
+      return;
+    }
+    final KijiTableLayout layout = mKiji.getMetaTable().getTableLayout(mName);
+    final String layoutId = layout.getDesc().getLayoutId();
+    if (layoutId.equals(getLayout().getDesc().getLayoutId())) {
+      return;
+    }
+    LOG.debug("Updating layout of table {} to layout ID {}.", mTableURI, layoutId);
+    mLayoutCapsule = new LayoutCapsule(layout, mKiji.getSchemaTable());
+
+    final TableLayoutMonitor monitor = mKiji.getLayoutMonitor();
+    if (null != monitor) {
+      try {
+        monitor.unregisterTableUser(mTableURI, mLayoutUserId);
+        monitor.registerTableUser(mTableURI, mLayoutUserId, layoutId);
+      } catch (KeeperException ke) {
+        LOG.warn("Unable to report layout ID {} for table {}: {}",
+            layoutId, mTableURI, ke.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops tracking the layout updates of this table and unregisters it as a layout user.
+   *
+   * @throws IOException on I/O error.
+   */
+  private synchronized void stopLayoutTracking() throws IOException {
+    if (null == mLayoutTracker) {
+      return;
+    }
+    ResourceUtils.closeOrLog(mLayoutTracker);
+    mLayoutTracker = null;
+    try {
+      mKiji.getLayoutMonitor().unregisterTableUser(mTableURI, mLayoutUserId);
+    } catch (KeeperException ke) {
+      LOG.warn("Unable to unregister user of table {}: {}", mTableURI, ke.getMessage());
+    }
   }
 
   /** {@inheritDoc} */
@@ -215,7 +457,47 @@ public final class HBaseKijiTable implements KijiTable {
   /** {@inheritDoc} */
   @Override
   public KijiTableLayout getLayout() {
-    return mTableLayout;
+    return mLayoutCapsule.getLayout();
+  }
+
+  /**
+   * Returns the current layout of this table, with the state derived from it.
+   *
+   * @return the current layout capsule of this table.
+   */
+  public LayoutCapsule getLayoutCapsule() {
+    return mLayoutCapsule;
+  }
+
+  /**
+   * Returns an applicator for a row filter, compiled against a layout of this table.
+   *
+   * <p>
+   *   Applicators are cached and shared by the readers of this table: scans with equal row
+   *   filters only resolve the columns the row filter needs once per table layout.
+   *   Each scan still gets its own HBase filter, as HBase filters are stateful.
+   * </p>
+   *
+   * @param rowFilter Row filter to apply.
+   * @param layout Layout of this table to compile the row filter against.
+   * @return an applicator for the row filter.
+   * @throws IOException on I/O error.
+   */
+  public KijiRowFilterApplicator getRowFilterApplicator(
+      KijiRowFilter rowFilter, KijiTableLayout layout)
+      throws IOException {
+    final KijiRowFilterApplicator cached = mRowFilterApplicators.getIfPresent(rowFilter);
+    if ((null != cached) && (cached.getTableLayout() == layout)) {
+      return cached;
+    }
+    final LayoutCapsule capsule = mLayoutCapsule;
+    final KijiRowFilterApplicator applicator = KijiRowFilterApplicator.create(
+        rowFilter,
+        layout,
+        mKiji.getSchemaTable(),
+        (layout == capsule.getLayout()) ? capsule.getRowFilterEncoderProvider() : null);
+    mRowFilterApplicators.put(rowFilter, applicator);
+    return applicator;
   }
 
   /** {@inheritDoc} */
@@ -264,17 +546,14 @@ public final class HBaseKijiTable implements KijiTable {
     final List<KijiRegion> result = Lists.newArrayList();
 
     // If we can get the concrete HTable, we can get location information.
+    // The HTable is the handle of the calling thread, owned by this table: do not close it.
     if (hbaseTable instanceof HTable) {
       LOG.debug("Casting HTableInterface to an HTable.");
       final HTable concreteHBaseTable = (HTable) hbaseTable;
-      try {
-        for (HRegionInfo region: regions) {
-          List<HRegionLocation> hLocations =
-              concreteHBaseTable.getRegionsInRange(region.getStartKey(), region.getEndKey());
-          result.add(new HBaseKijiRegion(region, hLocations));
-        }
-      } finally {
-        ResourceUtils.closeOrLog(concreteHBaseTable);
+      for (HRegionInfo region: regions) {
+        List<HRegionLocation> hLocations =
+            concreteHBaseTable.getRegionsInRange(region.getStartKey(), region.getEndKey());
+        result.add(new HBaseKijiRegion(region, hLocations));
       }
     } else {
       LOG.warn("Unable to cast HTableInterface {} to an HTable.  "
@@ -287,9 +566,78 @@ public final class HBaseKijiTable implements KijiTable {
     return result;
   }
 
-  /** @return The underlying HTable instance. */
+  /**
+   * Returns the HTable handle of the calling thread.
+   *
+   * <p>
+   *   HTables are not thread-safe: each thread gets its own handle, created on first use and
+   *   closed when this table is closed. Callers must not close the handle.
+   * </p>
+   *
+   * @return The underlying HTable instance for the calling thread.
+   */
   public HTableInterface getHTable() {
-    return mHTable;
+    final HTableInterface htable = mThreadHTable.get();
+    if (null != htable) {
+      return htable;
+    }
+    try {
+      return createThreadHTable();
+    } catch (IOException ioe) {
+      throw new KijiIOException(ioe);
+    }
+  }
+
+  /**
+   * Creates the HTable handle of the calling thread.
+   *
+   * @return the HTable handle of the calling thread.
+   * @throws IOException on I/O error.
+   */
+  private HTableInterface createThreadHTable() throws IOException {
+    final HTableInterface htable = mHTableFactory.create(mConf, mHBaseTableName);
+    final List<HTableInterface> orphans = Lists.newArrayList();
+    synchronized (mHTables) {
+      final Iterator<Map.Entry<Thread, HTableInterface>> it = mHTables.entrySet().iterator();
+      while (it.hasNext()) {
+        final Map.Entry<Thread, HTableInterface> entry = it.next();
+        if (!entry.getKey().isAlive()) {
+          orphans.add(entry.getValue());
+          it.remove();
+        }
+      }
+      mHTables.put(Thread.currentThread(), htable);
+    }
+    // No other thread uses the handles of dead threads: close them outside the lock.
+    for (HTableInterface orphan : orphans) {
+      ResourceUtils.closeOrLog(orphan);
+    }
+    mThreadHTable.set(htable);
+    return htable;
+  }
+
+  /**
+   * Returns the column name translator for the current layout of this table.
+   *
+   * @return the column name translator for the current layout of this table.
+   */
+  public ColumnNameTranslator getColumnNameTranslator() {
+    return mLayoutCapsule.getColumnNameTranslator();
+  }
+
+  /**
+   * Returns the provider for the default cell decoders of the current layout of this table.
+   *
+   * <p>
+   *   Decoders are thread-safe: the provider is created on first use and shared by all the
+   *   readers of this table that do not override column specifications.
+   * </p>
+   *
+   * @return the provider for the default cell decoders of the current layout of this table.
+   * @throws IOException on I/O error.
+   */
+  public CellDecoderProvider getCellDecoderProvider() throws IOException {
+    return mLayoutCapsule.getCellDecoderProvider();
   }
 
   /**
@@ -303,9 +651,15 @@ public final class HBaseKijiTable implements KijiTable {
         "HBaseKijiTable.release() on table '%s' already closed.", mTableURI);
 
     LOG.debug("Closing HBaseKijiTable '{}'.", mTableURI);
-    if (null != mHTable) {
-      mHTable.close();
+    mKiji.removeOpenTable(this);
+    stopLayoutTracking();
+    synchronized (mHTables) {
+      for (HTableInterface htable : mHTables.values()) {
+        ResourceUtils.closeOrLog(htable);
+      }
+      mHTables.clear();
     }
+    mThreadHTable.remove();
 
     mKiji.release();
     LOG.debug("HBaseKijiTable '{}' closed.", mTableURI);
@@ -320,6 +674,23 @@ public final class HBaseKijiTable implements KijiTable {
     return this;
   }
 
+  /**
+   * Retains this table, unless it is already closed or being closed.
+   *
+   * @return whether this table was retained.
+   */
+  boolean tryRetain() {
+    while (true) {
+      final int counter = mRetainCount.get();
+      if (counter <= 0) {
+        return false;
+      }
+      if (mRetainCount.compareAndSet(counter, counter + 1)) {
+        return true;
+      }
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void release() throws IOException {
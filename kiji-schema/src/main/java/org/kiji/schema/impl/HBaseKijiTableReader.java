@@ -25,10 +25,17 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,13 +44,18 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.InternalKijiError;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequestBuilder;
 import org.kiji.schema.KijiDataRequestValidator;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiScanAggregates;
 import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions.RowRange;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions.SamplingMode;
 import org.kiji.schema.SpecificCellDecoderFactory;
+import org.kiji.schema.filter.FormattedEntityIdRowFilter;
 import org.kiji.schema.filter.KijiRowFilter;
-import org.kiji.schema.filter.KijiRowFilterApplicator;
+import org.kiji.schema.hbase.HBaseColumnName;
 import org.kiji.schema.hbase.HBaseScanOptions;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.InvalidLayoutException;
@@ -60,8 +72,14 @@ public class HBaseKijiTableReader implements KijiTableReader {
   /** HBase KijiTable to read from. */
   private final HBaseKijiTable mTable;
 
-  /** Provider for cell decoders. */
-  private final CellDecoderProvider mCellDecoderProvider;
+  /** Column specifications overriding the table layout. Empty when there is no override. */
+  private final Map<KijiColumnName, CellSpec> mLayoutOverride;
+
+  /**
+   * Provider for the cell decoders of the overridden columns, rebuilt when the table layout is
+   * updated. Null when there is no override: the table provides the cell decoders.
+   */
+  private volatile CellDecoderProvider mOverrideCellDecoderProvider;
 
   /**
    * Creates a new <code>HBaseKijiTableReader</code> instance that sends the read requests
@@ -87,13 +105,40 @@ public class HBaseKijiTableReader implements KijiTableReader {
       Map<KijiColumnName, CellSpec> layoutOverride)
       throws IOException {
     mTable = table;
-    mCellDecoderProvider =
-        new CellDecoderProvider(mTable, SpecificCellDecoderFactory.get(), layoutOverride);
+    mLayoutOverride = layoutOverride;
+    mOverrideCellDecoderProvider = layoutOverride.isEmpty()
+        ? null
+        : new CellDecoderProvider(mTable, SpecificCellDecoderFactory.get(), layoutOverride);
 
     // Retain the table only when everything succeeds.
     mTable.retain();
   }
 
+  /**
+   * Returns the provider for the cell decoders of the current table layout.
+   *
+   * @return the provider for the cell decoders of the current table layout.
+   * @throws IOException on I/O error.
+   */
+  private CellDecoderProvider getCellDecoderProvider() throws IOException {
+    final CellDecoderProvider provider = mOverrideCellDecoderProvider;
+    if (null == provider) {
+      return mTable.getCellDecoderProvider();
+    }
+    final HBaseKijiTable.LayoutCapsule capsule = mTable.getLayoutCapsule();
+    if (provider.getLayout() == capsule.getLayout()) {
+      return provider;
+    }
+    // The table layout has been updated since the provider was built:
+    final CellDecoderProvider updated = new CellDecoderProvider(
+        capsule.getLayout(),
+        mTable.getKiji().getSchemaTable(),
+        SpecificCellDecoderFactory.get(),
+        mLayoutOverride);
+    mOverrideCellDecoderProvider = updated;
+    return updated;
+  }
+
   /** {@inheritDoc} */
   @Override
   public KijiRowData get(EntityId entityId, KijiDataRequest dataRequest)
@@ -117,7 +162,7 @@ public class HBaseKijiTableReader implements KijiTableReader {
     final Result result = hbaseGet.hasFamilies() ? mTable.getHTable().get(hbaseGet) : new Result();
 
     // Parse the result.
-    return new HBaseKijiRowData(mTable, dataRequest, entityId, result, mCellDecoderProvider);
+    return new HBaseKijiRowData(mTable, dataRequest, entityId, result, getCellDecoderProvider());
   }
 
   /** {@inheritDoc} */
@@ -147,6 +192,57 @@ public class HBaseKijiTableReader implements KijiTableReader {
     return rowDataList;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public List<Boolean> exists(List<EntityId> entityIds, KijiColumnName column)
+      throws IOException {
+    final Filter existsFilter;
+    final HBaseColumnName hbaseColumnName;
+    if (null == column) {
+      existsFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+          new FirstKeyOnlyFilter(), new KeyOnlyFilter());
+      hbaseColumnName = null;
+    } else {
+      hbaseColumnName = mTable.getColumnNameTranslator().toHBaseColumnName(column);
+      if (column.isFullyQualified()) {
+        existsFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+            new FirstKeyOnlyFilter(), new KeyOnlyFilter());
+      } else {
+        // The prefix filter must come first: FirstKeyOnlyFilter only lets the first cell it sees
+        // through, and filters in a MUST_PASS_ALL list only see the cells accepted before them.
+        existsFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+            new ColumnPrefixFilter(hbaseColumnName.getQualifier()),
+            new FirstKeyOnlyFilter(),
+            new KeyOnlyFilter());
+      }
+    }
+
+    final List<Get> hbaseGetList = new ArrayList<Get>(entityIds.size());
+    for (EntityId entityId : entityIds) {
+      final Get get = new Get(entityId.getHBaseRowKey());
+      if (null != hbaseColumnName) {
+        if (column.isFullyQualified()) {
+          // Gets on explicit columns allow HBase to use ROWCOL bloom filters:
+          get.addColumn(hbaseColumnName.getFamily(), hbaseColumnName.getQualifier());
+        } else {
+          get.addFamily(hbaseColumnName.getFamily());
+        }
+      }
+      get.setFilter(existsFilter);
+      hbaseGetList.add(get);
+    }
+
+    LOG.debug("Sending {} HBase existence Gets for column {}.", hbaseGetList.size(), column);
+    final Result[] results = mTable.getHTable().get(hbaseGetList);
+    assert entityIds.size() == results.length;
+
+    final List<Boolean> exists = new ArrayList<Boolean>(results.length);
+    for (Result result : results) {
+      exists.add((null == result) ? null : !result.isEmpty());
+    }
+    return exists;
+  }
+
   /** {@inheritDoc} */
   @Override
   public KijiRowScanner getScanner(KijiDataRequest dataRequest) throws IOException {
@@ -161,35 +257,100 @@ public class HBaseKijiTableReader implements KijiTableReader {
       throws IOException {
 
     try {
-      EntityId startRow = kijiScannerOptions.getStartRow();
-      EntityId stopRow = kijiScannerOptions.getStopRow();
-      KijiRowFilter rowFilter = kijiScannerOptions.getKijiRowFilter();
-      HBaseScanOptions scanOptions = kijiScannerOptions.getHBaseScanOptions();
-
       HBaseDataRequestAdapter dataRequestAdapter = new HBaseDataRequestAdapter(dataRequest);
       KijiTableLayout tableLayout = getTableLayout(dataRequest);
-      Scan scan = dataRequestAdapter.toScan(tableLayout, scanOptions);
+      Scan scan = dataRequestAdapter.toScan(tableLayout, kijiScannerOptions.getHBaseScanOptions());
+      final ScanPlan plan = planScans(scan, kijiScannerOptions, tableLayout, null);
 
-      if (null != startRow) {
-        scan.setStartRow(startRow.getHBaseRowKey());
-      }
-      if (null != stopRow) {
-        scan.setStopRow(stopRow.getHBaseRowKey());
+      final HBaseKijiRowScanner.Options scannerOptions = new HBaseKijiRowScanner.Options()
+          .withDataRequest(dataRequest)
+          .withTable(mTable)
+          .withScans(plan.mScans)
+          .withSamplingRate(plan.mSamplingRate)
+          .withCellDecoderProvider(getCellDecoderProvider())
+          .withReopenScannerOnTimeout(kijiScannerOptions.getReopenScannerOnTimeout());
+      if (kijiScannerOptions.getRowRangeParallelism() > 1) {
+        return new HBaseKijiMultiRangeRowScanner(
+            scannerOptions,
+            getRegions(),
+            kijiScannerOptions.getRowRangeParallelism(),
+            kijiScannerOptions.getRowRangePrefetchSize());
       }
-      scan.setCaching(kijiScannerOptions.getRowCaching());
+      return new HBaseKijiRowScanner(scannerOptions);
+    } catch (InvalidLayoutException e) {
+      // The table layout should never be invalid at this point, since we got it from a valid
+      // opened table.  If it is, there's something seriously wrong.
+      throw new InternalKijiError(e);
+    }
+  }
 
-      if (null != rowFilter) {
-        final KijiRowFilterApplicator applicator = KijiRowFilterApplicator.create(
-            rowFilter, tableLayout, mTable.getKiji().getSchemaTable());
-        applicator.applyTo(scan);
-      }
+  /** {@inheritDoc} */
+  @Override
+  public KijiScanAggregates aggregate(
+      KijiDataRequest dataRequest,
+      KijiScannerOptions kijiScannerOptions)
+      throws IOException {
+    final ScanPlan plan = planAggregation(dataRequest, kijiScannerOptions);
+    final int parallelism = (kijiScannerOptions.getRowRangeParallelism() > 1)
+        ? kijiScannerOptions.getRowRangeParallelism()
+        : HBaseScanAggregator.DEFAULT_PARALLELISM;
+    return new HBaseScanAggregator(mTable, dataRequest)
+        .aggregate(plan.mScans, getRegions(), parallelism, plan.mSamplingRate);
+  }
 
-      return new HBaseKijiRowScanner(new HBaseKijiRowScanner.Options()
-          .withDataRequest(dataRequest)
-          .withTable(mTable)
-          .withScan(scan)
-          .withCellDecoderProvider(mCellDecoderProvider)
-          .withReopenScannerOnTimeout(kijiScannerOptions.getReopenScannerOnTimeout()));
+  /**
+   * Lists the scans an aggregation runs. Package-private for testing.
+   *
+   * @param dataRequest Data request for the columns to aggregate.
+   * @param kijiScannerOptions Options selecting the rows to aggregate.
+   * @return the scans the aggregation runs.
+   * @throws IOException on I/O error.
+   */
+  List<Scan> getAggregationScans(
+      KijiDataRequest dataRequest,
+      KijiScannerOptions kijiScannerOptions)
+      throws IOException {
+    return planAggregation(dataRequest, kijiScannerOptions).mScans;
+  }
+
+  /**
+   * Plans the scans of an aggregation.
+   *
+   * @param dataRequest Data request for the columns to aggregate.
+   * @param kijiScannerOptions Options selecting the rows to aggregate.
+   * @return the scans covering the rows to aggregate.
+   * @throws IOException on I/O error.
+   */
+  private ScanPlan planAggregation(
+      KijiDataRequest dataRequest,
+      KijiScannerOptions kijiScannerOptions)
+      throws IOException {
+    try {
+      final KijiTableLayout tableLayout = getTableLayout(dataRequest);
+      final HBaseScanOptions scanOptions = kijiScannerOptions.getHBaseScanOptions();
+      final Scan scan;
+      Filter keysOnlyFilter = null;
+      if (dataRequest.isEmpty()) {
+        // Only counting rows: fetch the keys of the rows, without their values.
+        scan = new Scan();
+        scan.setTimeRange(dataRequest.getMinTimestamp(), dataRequest.getMaxTimestamp());
+        if (null == kijiScannerOptions.getKijiRowFilter()) {
+          keysOnlyFilter = new FilterList(FilterList.Operator.MUST_PASS_ALL,
+              Lists.<Filter>newArrayList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        } else {
+          // FirstKeyOnlyFilter skips the rest of a row after its first cell: the row filter
+          // would not see the columns it tests. Only strip the values the row filter has seen.
+          keysOnlyFilter = new KeyOnlyFilter();
+        }
+      } else {
+        // Cells are aggregated as they stream in: paged columns are read as any other column.
+        scan = new HBaseDataRequestAdapter(withoutPaging(dataRequest))
+            .toScan(tableLayout, scanOptions);
+      }
+      // Aggregations read each row once: do not evict hot blocks from the region server caches.
+      scan.setCacheBlocks(
+          (null != scanOptions.getCacheBlocks()) ? scanOptions.getCacheBlocks() : false);
+      return planScans(scan, kijiScannerOptions, tableLayout, keysOnlyFilter);
     } catch (InvalidLayoutException e) {
       // The table layout should never be invalid at this point, since we got it from a valid
       // opened table.  If it is, there's something seriously wrong.
@@ -197,6 +358,166 @@ public class HBaseKijiTableReader implements KijiTableReader {
     }
   }
 
+  /**
+   * Copies a data request, disabling paging on all its columns.
+   *
+   * @param dataRequest Data request to copy.
+   * @return a copy of the data request, without paging.
+   */
+  private static KijiDataRequest withoutPaging(KijiDataRequest dataRequest) {
+    if (!dataRequest.isPagingEnabled()) {
+      return dataRequest;
+    }
+    final KijiDataRequestBuilder builder = KijiDataRequest.builder()
+        .withTimeRange(dataRequest.getMinTimestamp(), dataRequest.getMaxTimestamp());
+    for (KijiDataRequest.Column column : dataRequest.getColumns()) {
+      builder.newColumnsDef()
+          .withFilter(column.getFilter())
+          .withMaxVersions(column.getMaxVersions())
+          .withReaderSchema(column.getReaderSchema())
+          .withProjectedFields(column.getProjectedFields())
+          .add(column.getColumnName());
+    }
+    return builder.build();
+  }
+
+  /** Scans covering the rows selected by some scanner options. */
+  private static final class ScanPlan {
+    /** Scans covering disjoint row key ranges, ordered by row key. */
+    private final List<Scan> mScans;
+
+    /** Fraction of the selected rows the scans sample. */
+    private final double mSamplingRate;
+
+    /**
+     * Initializes a scan plan.
+     *
+     * @param scans Scans covering disjoint row key ranges, ordered by row key.
+     * @param samplingRate Fraction of the selected rows the scans sample.
+     */
+    private ScanPlan(List<Scan> scans, double samplingRate) {
+      mScans = scans;
+      mSamplingRate = samplingRate;
+    }
+  }
+
+  /**
+   * Plans the scans covering the rows selected by scanner options.
+   *
+   * @param scan Scan of the requested data, over the entire table.
+   * @param kijiScannerOptions Options selecting the rows to scan.
+   * @param tableLayout Layout of the table.
+   * @param keysOnlyFilter Filter stripping the cells to return, evaluated after the row filter,
+   *     or null.
+   * @return the scans covering the selected rows.
+   * @throws IOException on I/O error.
+   */
+  private ScanPlan planScans(
+      Scan scan,
+      KijiScannerOptions kijiScannerOptions,
+      KijiTableLayout tableLayout,
+      Filter keysOnlyFilter)
+      throws IOException {
+    EntityId startRow = kijiScannerOptions.getStartRow();
+    EntityId stopRow = kijiScannerOptions.getStopRow();
+    KijiRowFilter rowFilter = kijiScannerOptions.getKijiRowFilter();
+
+    if (null != startRow) {
+      scan.setStartRow(startRow.getHBaseRowKey());
+    }
+    if (null != stopRow) {
+      scan.setStopRow(stopRow.getHBaseRowKey());
+    }
+    scan.setCaching(kijiScannerOptions.getRowCaching());
+
+    if (null != rowFilter) {
+      mTable.getRowFilterApplicator(rowFilter, tableLayout).applyTo(scan);
+    }
+    if (null != keysOnlyFilter) {
+      // The row filter comes first, so that it sees the cells before they are stripped:
+      scan.setFilter((null == scan.getFilter())
+          ? keysOnlyFilter
+          : new FilterList(FilterList.Operator.MUST_PASS_ALL,
+              Lists.<Filter>newArrayList(scan.getFilter(), keysOnlyFilter)));
+    }
+
+    // Only scan the requested row key ranges the row filter may match:
+    List<HBaseRowKeyRange> ranges = getRowKeyRanges(
+        kijiScannerOptions.getRowRanges(), HBaseRowKeyRange.forScan(scan));
+    if (rowFilter instanceof FormattedEntityIdRowFilter) {
+      final List<byte[]> prefixes =
+          ((FormattedEntityIdRowFilter) rowFilter).getHBaseRowKeyPrefixes();
+      if (null != prefixes) {
+        final List<HBaseRowKeyRange> prefixRanges = Lists.newArrayList();
+        for (byte[] prefix : prefixes) {
+          prefixRanges.add(HBaseRowKeyRange.forPrefix(prefix));
+        }
+        ranges = HBaseRowKeyRange.intersectAll(ranges, prefixRanges);
+      }
+    }
+    List<Scan> scans = Lists.newArrayListWithCapacity(ranges.size());
+    for (HBaseRowKeyRange range : ranges) {
+      scans.add(range.restrict(scan));
+    }
+    LOG.debug("Scanning {} row key ranges.", scans.size());
+
+    double samplingRate = 1.0;
+    if (kijiScannerOptions.getSamplingRate() < 1.0) {
+      final HBaseScanSampler sampler = new HBaseScanSampler(
+          kijiScannerOptions.getSamplingRate(), kijiScannerOptions.getSamplingSeed());
+      final boolean sampleKeyRanges =
+          (kijiScannerOptions.getSamplingMode() == SamplingMode.KEY_RANGES)
+          && (HBaseScanSampler.getHashPrefixSize(tableLayout) > 0);
+      final List<HRegionInfo> regions =
+          sampleKeyRanges ? getRegions() : Collections.<HRegionInfo>emptyList();
+      final List<Scan> sampledScans = Lists.newArrayList();
+      for (Scan rangeScan : scans) {
+        sampledScans.addAll(sampler.sample(
+            rangeScan, kijiScannerOptions.getSamplingMode(), tableLayout, regions));
+      }
+      scans = sampledScans;
+      samplingRate = sampler.getEffectiveRate();
+    }
+    return new ScanPlan(scans, samplingRate);
+  }
+
+  /**
+   * Computes the row key ranges to scan.
+   *
+   * @param rowRanges Ranges of rows requested, or an empty list for no restriction.
+   * @param scanRange Range of row keys bounded by the start and stop rows of the scan.
+   * @return the disjoint row key ranges to scan, ordered by row key.
+   */
+  private static List<HBaseRowKeyRange> getRowKeyRanges(
+      List<RowRange> rowRanges,
+      HBaseRowKeyRange scanRange) {
+    if (rowRanges.isEmpty()) {
+      return Collections.singletonList(scanRange);
+    }
+    final List<HBaseRowKeyRange> ranges = Lists.newArrayListWithCapacity(rowRanges.size());
+    for (RowRange rowRange : rowRanges) {
+      if (rowRange.isPrefix()) {
+        ranges.add(HBaseRowKeyRange.forPrefix(rowRange.getStartRow().getHBaseRowKey()));
+      } else {
+        ranges.add(new HBaseRowKeyRange(
+            (null == rowRange.getStartRow()) ? null : rowRange.getStartRow().getHBaseRowKey(),
+            (null == rowRange.getStopRow()) ? null : rowRange.getStopRow().getHBaseRowKey()));
+      }
+    }
+    return HBaseRowKeyRange.intersectAll(ranges, Collections.singletonList(scanRange));
+  }
+
+  /**
+   * Lists the regions of the table.
+   *
+   * @return the regions of the table.
+   * @throws IOException on I/O error.
+   */
+  private List<HRegionInfo> getRegions() throws IOException {
+    return ((HBaseKiji) mTable.getKiji()).getHBaseAdmin()
+        .getTableRegions(mTable.getHTable().getTableName());
+  }
+
   /**
    * Parses an array of hbase Results, returned from a bulk get, to a List of
    * KijiRowData.
@@ -211,6 +532,7 @@ public class HBaseKijiTableReader implements KijiTableReader {
   private List<KijiRowData> parseResults(Result[] results, List<EntityId> entityIds,
       KijiDataRequest dataRequest, KijiTableLayout tableLayout) throws IOException {
     List<KijiRowData> rowDataList = new ArrayList<KijiRowData>(results.length);
+    final CellDecoderProvider decoderProvider = getCellDecoderProvider();
 
     for (int i = 0; i < results.length; i++) {
       Result result = results[i];
@@ -218,7 +540,7 @@ public class HBaseKijiTableReader implements KijiTableReader {
 
       final HBaseKijiRowData rowData = (null == result)
           ? null
-          : new HBaseKijiRowData(mTable, dataRequest, entityId, result, mCellDecoderProvider);
+          : new HBaseKijiRowData(mTable, dataRequest, entityId, result, decoderProvider);
       rowDataList.add(rowData);
     }
     return rowDataList;
@@ -49,6 +49,8 @@ import org.kiji.schema.KijiTableWriter;
 import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.avro.SchemaType;
 import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.impl.HBaseKijiTable.LayoutCapsule;
+import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout.ColumnLayout;
 import org.kiji.schema.layout.impl.CellEncoderProvider;
@@ -65,11 +67,8 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   /** The kiji table instance. */
   private final HBaseKijiTable mTable;
 
-  /** The column name translator to use. */
-  private final ColumnNameTranslator mTranslator;
-
-  /** Provider for cell encoders. */
-  private final CellEncoderProvider mCellEncoderProvider;
+  /** Provider for cell encoders. Rebuilt when the layout of the table is updated. */
+  private volatile CellEncoderProvider mCellEncoderProvider;
 
     /**
    * Creates a non-buffered kiji table writer that sends modifications directly to Kiji.
@@ -79,7 +78,6 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
    */
   public HBaseKijiTableWriter(HBaseKijiTable table) {
     mTable = table;
-    mTranslator = new ColumnNameTranslator(mTable.getLayout());
     try {
       mCellEncoderProvider =
           new CellEncoderProvider(mTable, DefaultKijiCellEncoderFactory.get());
@@ -91,6 +89,27 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
     mTable.retain();
   }
 
+  /**
+   * Returns the provider for the cell encoders of a layout of the table.
+   *
+   * @param capsule Current layout of the table.
+   * @return the provider for the cell encoders of the specified layout.
+   * @throws IOException on I/O error.
+   */
+  private CellEncoderProvider getCellEncoderProvider(LayoutCapsule capsule) throws IOException {
+    final CellEncoderProvider provider = mCellEncoderProvider;
+    if (provider.getLayout() == capsule.getLayout()) {
+      return provider;
+    }
+    // The table layout has been updated since the provider was built:
+    final CellEncoderProvider updated = new CellEncoderProvider(
+        capsule.getLayout(),
+        mTable.getKiji().getSchemaTable(),
+        DefaultKijiCellEncoderFactory.get());
+    mCellEncoderProvider = updated;
+    return updated;
+  }
+
   /** {@inheritDoc} */
   @Override
   public <T> void put(EntityId entityId, String family, String qualifier, T value)
@@ -102,10 +121,13 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   @Override
   public <T> void put(EntityId entityId, String family, String qualifier, long timestamp, T value)
       throws IOException {
+    final LayoutCapsule capsule = mTable.getLayoutCapsule();
     final KijiColumnName columnName = new KijiColumnName(family, qualifier);
-    final HBaseColumnName hbaseColumnName = mTranslator.toHBaseColumnName(columnName);
+    final HBaseColumnName hbaseColumnName =
+        capsule.getColumnNameTranslator().toHBaseColumnName(columnName);
 
-    final KijiCellEncoder cellEncoder = mCellEncoderProvider.getEncoder(family, qualifier);
+    final KijiCellEncoder cellEncoder =
+        getCellEncoderProvider(capsule).getEncoder(family, qualifier);
     final byte[] encoded = cellEncoder.encode(value);
 
     final Put put = new Put(entityId.getHBaseRowKey())
@@ -121,11 +143,12 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   public KijiCell<Long> increment(EntityId entityId, String family, String qualifier, long amount)
       throws IOException {
 
-    verifyIsCounter(family, qualifier);
+    final LayoutCapsule capsule = mTable.getLayoutCapsule();
+    verifyIsCounter(capsule.getLayout(), family, qualifier);
 
     // Translate the Kiji column name to an HBase column name.
-    final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+    final HBaseColumnName hbaseColumnName = capsule.getColumnNameTranslator()
+        .toHBaseColumnName(new KijiColumnName(family, qualifier));
 
     // Send the increment to the HBase HTable.
     final Increment increment = new Increment(entityId.getHBaseRowKey());
@@ -148,13 +171,15 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   /**
    * Verifies that a column is a counter.
    *
+   * @param layout Layout of the table.
    * @param family A column family.
    * @param qualifier A column qualifier.
    * @throws IOException If the column is not a counter, or it does not exist.
    */
-  private void verifyIsCounter(String family, String qualifier) throws IOException {
+  private static void verifyIsCounter(KijiTableLayout layout, String family, String qualifier)
+      throws IOException {
     final KijiColumnName column = new KijiColumnName(family, qualifier);
-    if (mTable.getLayout().getCellSchema(column).getType() != SchemaType.COUNTER) {
+    if (layout.getCellSchema(column).getType() != SchemaType.COUNTER) {
       throw new IOException(String.format("Column '%s' is not a counter", column));
     }
   }
@@ -186,7 +211,9 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   public void deleteFamily(EntityId entityId, String family, long upToTimestamp)
       throws IOException {
 
-    final FamilyLayout familyLayout = mTable.getLayout().getFamilyMap().get(family);
+    final LayoutCapsule capsule = mTable.getLayoutCapsule();
+    final ColumnNameTranslator translator = capsule.getColumnNameTranslator();
+    final FamilyLayout familyLayout = capsule.getLayout().getFamilyMap().get(family);
     if (null == familyLayout) {
       throw new NoSuchColumnException(String.format("Family '%s' not found.", family));
     }
@@ -194,9 +221,9 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
     if (familyLayout.getLocalityGroup().getFamilyMap().size() > 1) {
       // There are multiple families within the locality group, so we need to be clever.
       if (familyLayout.isGroupType()) {
-        deleteGroupFamily(entityId, familyLayout, upToTimestamp);
+        deleteGroupFamily(translator, entityId, familyLayout, upToTimestamp);
       } else if (familyLayout.isMapType()) {
-        deleteMapFamily(entityId, familyLayout, upToTimestamp);
+        deleteMapFamily(translator, entityId, familyLayout, upToTimestamp);
       } else {
         throw new RuntimeException("Internal error: family is neither map-type nor group-type.");
       }
@@ -205,7 +232,7 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
 
     // The only data in this HBase family is the one Kiji family, so we can delete everything.
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family));
+        translator.toHBaseColumnName(new KijiColumnName(family));
     final Delete delete = new Delete(entityId.getHBaseRowKey());
     delete.deleteFamily(hbaseColumnName.getFamily(), upToTimestamp);
 
@@ -217,12 +244,14 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
    * Deletes all cells from a group-type family with a timestamp less than or equal to a
    * specified timestamp.
    *
+   * @param translator Column name translator for the layout of the family.
    * @param entityId The entity (row) to delete from.
    * @param familyLayout The family layout.
    * @param upToTimestamp A timestamp.
    * @throws IOException If there is an IO error.
    */
   private void deleteGroupFamily(
+      ColumnNameTranslator translator,
       EntityId entityId,
       FamilyLayout familyLayout,
       long upToTimestamp)
@@ -233,7 +262,7 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
     for (ColumnLayout columnLayout : familyLayout.getColumnMap().values()) {
       final String qualifier = columnLayout.getName();
       final KijiColumnName column = new KijiColumnName(familyName, qualifier);
-      final HBaseColumnName hbaseColumnName = mTranslator.toHBaseColumnName(column);
+      final HBaseColumnName hbaseColumnName = translator.toHBaseColumnName(column);
       delete.deleteColumns(
           hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), upToTimestamp);
     }
@@ -248,12 +277,17 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
    *
    * <p>This call requires an HBase row lock, so it should be used with care.</p>
    *
+   * @param translator Column name translator for the layout of the family.
    * @param entityId The entity (row) to delete from.
    * @param familyLayout A family layout.
    * @param upToTimestamp A timestamp.
    * @throws IOException If there is an IO error.
    */
-  private void deleteMapFamily(EntityId entityId, FamilyLayout familyLayout, long upToTimestamp)
+  private void deleteMapFamily(
+      ColumnNameTranslator translator,
+      EntityId entityId,
+      FamilyLayout familyLayout,
+      long upToTimestamp)
       throws IOException {
     // Since multiple Kiji column families are mapped into a single HBase column family,
     // we have to do this delete in a two-step transaction:
@@ -264,7 +298,7 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
 
     final String familyName = familyLayout.getName();
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(familyName));
+        translator.toHBaseColumnName(new KijiColumnName(familyName));
     final byte[] hbaseRow = entityId.getHBaseRowKey();
 
     // Lock the row.
@@ -311,7 +345,7 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   public void deleteColumn(EntityId entityId, String family, String qualifier, long upToTimestamp)
       throws IOException {
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+        mTable.getColumnNameTranslator().toHBaseColumnName(new KijiColumnName(family, qualifier));
     final Delete delete = new Delete(entityId.getHBaseRowKey())
         .deleteColumns(hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), upToTimestamp);
     mTable.getHTable().delete(delete);
@@ -328,7 +362,7 @@ public final class HBaseKijiTableWriter implements KijiTableWriter {
   public void deleteCell(EntityId entityId, String family, String qualifier, long timestamp)
       throws IOException {
     final HBaseColumnName hbaseColumnName =
-        mTranslator.toHBaseColumnName(new KijiColumnName(family, qualifier));
+        mTable.getColumnNameTranslator().toHBaseColumnName(new KijiColumnName(family, qualifier));
     final Delete delete = new Delete(entityId.getHBaseRowKey())
         .deleteColumn(hbaseColumnName.getFamily(), hbaseColumnName.getQualifier(), timestamp);
     mTable.getHTable().delete(delete);
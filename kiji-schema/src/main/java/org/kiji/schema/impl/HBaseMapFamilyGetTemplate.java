@@ -0,0 +1,165 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.ColumnPaginationFilter;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.ColumnRangeFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.filter.KijiColumnFilter;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.impl.ColumnNameTranslator;
+
+/**
+ * Compiled HBase Get template to page through the qualifiers of a map-type family.
+ *
+ * <p>
+ *   The column name translation and the data request are processed once, when the template is
+ *   built. Each page is then a Get for qualifiers strictly greater than the last HBase qualifier
+ *   of the previous page, which can be read from the raw HBase Result with
+ *   {@link #getLastQualifier(Result)}, without decoding the page.
+ * </p>
+ */
+@ApiAudience.Private
+final class HBaseMapFamilyGetTemplate {
+  /** HBase row key of the row being paged through. */
+  private final byte[] mRowKey;
+
+  /** HBase family (locality group) holding the map-type family. */
+  private final byte[] mHBaseFamily;
+
+  /** Prefix of the HBase qualifiers holding the map-type family. */
+  private final byte[] mHBaseQualifierPrefix;
+
+  /** Name of the map-type family being paged through. */
+  private final KijiColumnName mFamily;
+
+  /** User column filter, or null. */
+  private final KijiColumnFilter mUserFilter;
+
+  /** Context to compile the user column filter into an HBase filter. */
+  private final KijiColumnFilter.Context mFilterContext;
+
+  /** Min timestamp (inclusive) of the cells to fetch. */
+  private final long mMinTimestamp;
+
+  /** Max timestamp (exclusive) of the cells to fetch. */
+  private final long mMaxTimestamp;
+
+  /** Translates HBase column names into Kiji column names. */
+  private final ColumnNameTranslator mColumnNameTranslator;
+
+  /**
+   * Compiles a Get template for a map-type family.
+   *
+   * @param entityId Entity ID of the row to page through.
+   * @param dataRequest Data request the paged family belongs to.
+   * @param family Name of the map-type family to page through.
+   * @param layout Layout of the table.
+   * @throws IOException on I/O error.
+   */
+  HBaseMapFamilyGetTemplate(
+      EntityId entityId,
+      KijiDataRequest dataRequest,
+      KijiColumnName family,
+      KijiTableLayout layout)
+      throws IOException {
+    Preconditions.checkArgument(!family.isFullyQualified());
+    mRowKey = entityId.getHBaseRowKey();
+    mFamily = family;
+    mColumnNameTranslator = new ColumnNameTranslator(layout);
+    final HBaseColumnName hbaseColumn = mColumnNameTranslator.toHBaseColumnName(family);
+    mHBaseFamily = hbaseColumn.getFamily();
+    mHBaseQualifierPrefix = hbaseColumn.getQualifier();
+    mUserFilter = dataRequest.getColumn(family.getFamily(), null).getFilter();
+    mFilterContext =
+        new HBaseDataRequestAdapter.NameTranslatingFilterContext(mColumnNameTranslator);
+    mMinTimestamp = dataRequest.getMinTimestamp();
+    mMaxTimestamp = dataRequest.getMaxTimestamp();
+  }
+
+  /** @return the translator for the column names of the table. */
+  ColumnNameTranslator getColumnNameTranslator() {
+    return mColumnNameTranslator;
+  }
+
+  /**
+   * Builds the Get for a page of qualifiers.
+   *
+   * <p>
+   *   The Get only fetches the most recent version of each qualifier, stripped from its value.
+   *   HBase filters carry per-request state and are therefore built for each page,
+   *   while the column names and bounds are compiled once.
+   * </p>
+   *
+   * @param minQualifier HBase qualifier of the last cell of the previous page (exclusive lower
+   *     bound), or null to start from the first qualifier.
+   * @param pageSize Maximum number of qualifiers to fetch.
+   * @return the Get for the page.
+   * @throws IOException on I/O error.
+   */
+  Get newPageGet(byte[] minQualifier, int pageSize) throws IOException {
+    final FilterList filter = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+    // Order matters: the pagination filter must only count the cells accepted by other filters.
+    filter.addFilter(new ColumnPrefixFilter(mHBaseQualifierPrefix));
+    if (null != minQualifier) {
+      filter.addFilter(new ColumnRangeFilter(minQualifier, false, null, false));
+    }
+    if (null != mUserFilter) {
+      filter.addFilter(mUserFilter.toHBaseFilter(mFamily, mFilterContext));
+    }
+    filter.addFilter(new ColumnPaginationFilter(pageSize, 0));
+    filter.addFilter(new KeyOnlyFilter());
+
+    final Get get = new Get(mRowKey);
+    get.addFamily(mHBaseFamily);
+    get.setFilter(filter);
+    get.setTimeRange(mMinTimestamp, mMaxTimestamp);
+    get.setMaxVersions(1);  // HBase pagination filter forces max-versions to 1
+    return get;
+  }
+
+  /**
+   * Reports the HBase qualifier of the last cell in a page.
+   *
+   * @param result Raw HBase result for a page.
+   * @return the HBase qualifier of the last cell in the page, or null if the page is empty.
+   */
+  static byte[] getLastQualifier(Result result) {
+    final KeyValue[] kvs = result.raw();
+    if ((null == kvs) || (kvs.length == 0)) {
+      return null;
+    }
+    return kvs[kvs.length - 1].getQualifier();
+  }
+}
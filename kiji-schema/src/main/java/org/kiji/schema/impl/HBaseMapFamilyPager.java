@@ -21,10 +21,18 @@ package org.kiji.schema.impl;
 
 import java.io.IOException;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,10 +46,10 @@ import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiIOException;
 import org.kiji.schema.KijiPager;
 import org.kiji.schema.KijiRowData;
-import org.kiji.schema.filter.Filters;
-import org.kiji.schema.filter.KijiColumnFilter;
-import org.kiji.schema.filter.KijiColumnRangeFilter;
-import org.kiji.schema.filter.StripValueColumnFilter;
+import org.kiji.schema.RuntimeInterruptedException;
+import org.kiji.schema.SpecificCellDecoderFactory;
+import org.kiji.schema.layout.CellSpec;
+import org.kiji.schema.layout.impl.CellDecoderProvider;
 import org.kiji.schema.util.Debug;
 
 /**
@@ -53,6 +61,14 @@ import org.kiji.schema.util.Debug;
  * </p>
  *
  * <p>
+ *   The HBase Get for each page is derived from a template compiled when the pager is created,
+ *   and the low bound of the next page is read directly from the raw HBase Result.
+ *   When page prefetching is enabled on the column request (see
+ *   {@link ColumnsDef#withPagePrefetch(boolean)}), the pager fetches the next page
+ *   asynchronously while the caller processes the current one.
+ * </p>
+ *
+ * <p>
  *   This pager conforms to the KijiPager interface, in order to implement
  *   {@link KijiRowData#getPager(String)}.
  *   More straightforward interfaces are available using {@link HBaseQualifierPager} and
@@ -66,6 +82,13 @@ import org.kiji.schema.util.Debug;
 public final class HBaseMapFamilyPager implements KijiPager {
   private static final Logger LOG = LoggerFactory.getLogger(HBaseMapFamilyPager.class);
 
+  /** Executor running the asynchronous page prefetches, shared by all pagers. */
+  private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("kiji-map-family-pager-%d")
+          .build());
+
   /** Entity ID of the row being paged through. */
   private final EntityId mEntityId;
 
@@ -75,12 +98,27 @@ public final class HBaseMapFamilyPager implements KijiPager {
   /** Name of the map-type family being paged through. */
   private final KijiColumnName mFamily;
 
-  /** Full data request. */
-  private final KijiDataRequest mDataRequest;
-
   /** Column data request for the map-type family to page through. */
   private final KijiDataRequest.Column mColumnRequest;
 
+  /** Data request describing the content of the pages. */
+  private final KijiDataRequest mPageDataRequest;
+
+  /** Compiled HBase Get template for the pages. */
+  private final HBaseMapFamilyGetTemplate mGetTemplate;
+
+  /** Provider for cell decoders, shared with the row this pager was created from. */
+  private final CellDecoderProvider mCellDecoderProvider;
+
+  /** Whether to prefetch the next page asynchronously. */
+  private final boolean mPrefetch;
+
+  /**
+   * HTable to read from. When prefetching, this is a dedicated HTable, as HTable instances
+   * must not be shared across threads.
+   */
+  private final HTableInterface mHTable;
+
   /** Flag to determine if the pager is open or closed. */
   private final AtomicBoolean mIsOpen = new AtomicBoolean(false);
 
@@ -88,10 +126,16 @@ public final class HBaseMapFamilyPager implements KijiPager {
   private boolean mHasNext;
 
   /**
-   * Highest qualifier (according to the HBase bytes comparator) returned so far.
+   * HBase qualifier of the last cell returned so far.
    * This is the low bound (exclusive) for qualifiers to retrieve next.
    */
-  private String mMinQualifier = null;
+  private byte[] mMinQualifier = null;
+
+  /** Pending prefetch of the next page, or null. */
+  private Future<Result> mPrefetchedPage = null;
+
+  /** Page size of the pending prefetch. */
+  private int mPrefetchedPageSize;
 
   /**
    * Initializes a pager for a map-type family.
@@ -104,21 +148,23 @@ public final class HBaseMapFamilyPager implements KijiPager {
    * @param dataRequest The requested data.
    * @param table The Kiji table that this row belongs to.
    * @param family Iterate through the qualifiers from this map-type family.
+   * @param cellDecoderProvider Provider for cell decoders.
+   *     Null means the pager creates its own provider for cell decoders (not recommended).
    * @throws KijiColumnPagingNotEnabledException If paging is not enabled for the specified family.
    */
   HBaseMapFamilyPager(
       EntityId entityId,
       KijiDataRequest dataRequest,
       HBaseKijiTable table,
-      KijiColumnName family)
+      KijiColumnName family,
+      CellDecoderProvider cellDecoderProvider)
       throws KijiColumnPagingNotEnabledException {
 
     Preconditions.checkArgument(!family.isFullyQualified(),
         "Must use HBaseQualifierPager on a map-type family, but got '{}'.", family);
     mFamily = family;
 
-    mDataRequest = dataRequest;
-    mColumnRequest = mDataRequest.getColumn(family.getFamily(), null);
+    mColumnRequest = dataRequest.getColumn(family.getFamily(), null);
     if (!mColumnRequest.isPagingEnabled()) {
       throw new KijiColumnPagingNotEnabledException(
         String.format("Paging is not enabled for column [%s].", family));
@@ -126,8 +172,32 @@ public final class HBaseMapFamilyPager implements KijiPager {
 
     mEntityId = entityId;
     mTable = table;
+    mPrefetch = mColumnRequest.isPagePrefetchEnabled();
     mHasNext = true;  // there might be no page to read, but we don't know until we issue an RPC
 
+    mPageDataRequest = KijiDataRequest.builder()
+        .withTimeRange(dataRequest.getMinTimestamp(), dataRequest.getMaxTimestamp())
+        .addColumns(ColumnsDef.create()
+            .withMaxVersions(1)  // HBase pagination filter forces max-versions to 1
+            .withReaderSchema(mColumnRequest.getReaderSchema())
+            .withProjectedFields(mColumnRequest.getProjectedFields())
+            .add(mFamily))
+        .build();
+
+    try {
+      mGetTemplate =
+          new HBaseMapFamilyGetTemplate(mEntityId, dataRequest, mFamily, mTable.getLayout());
+      mCellDecoderProvider = (null != cellDecoderProvider)
+          ? cellDecoderProvider
+          : new CellDecoderProvider(
+              mTable,
+              SpecificCellDecoderFactory.get(),
+              Maps.<KijiColumnName, CellSpec>newHashMap());
+      mHTable = mPrefetch ? HBaseKijiTable.createHTableInterface(mTable) : mTable.getHTable();
+    } catch (IOException ioe) {
+      throw new KijiIOException(ioe);
+    }
+
     // Only retain the table if everything else ran fine:
     mTable.retain();
 
@@ -154,46 +224,24 @@ public final class HBaseMapFamilyPager implements KijiPager {
     }
     Preconditions.checkArgument(pageSize > 0, "Page size must be >= 1, got %s", pageSize);
 
-    // Clone the column data request template, adjusting the filters to restrict the range
-    // and the number of qualifiers to fetch.
-
-    final KijiColumnFilter filter = Filters.and(
-        new KijiColumnRangeFilter(mMinQualifier, false, null, false),  // qualifier > mMinQualifier
-        mColumnRequest.getFilter(),  // user filter
-        new KijiPaginationFilter(pageSize),  // Select at most one version / qualifier.
-        new StripValueColumnFilter());  // discard the cell content, we just need the qualifiers
-
-    final KijiDataRequest nextPageDataRequest = KijiDataRequest.builder()
-        .withTimeRange(mDataRequest.getMinTimestamp(), mDataRequest.getMaxTimestamp())
-        .addColumns(ColumnsDef.create()
-            .withFilter(filter)
-            .withMaxVersions(1)  // HBase pagination filter forces max-versions to 1
-            .add(mFamily))
-        .build();
-
-    LOG.debug("HBaseMapPager data request: {} and page size {}", nextPageDataRequest, pageSize);
-
-    final HBaseDataRequestAdapter adapter = new HBaseDataRequestAdapter(nextPageDataRequest);
     try {
-      final Get hbaseGet = adapter.toGet(mEntityId, mTable.getLayout());
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Sending HBase Get: {} with filter {}",
-            hbaseGet, Debug.toDebugString(hbaseGet.getFilter()));
-      }
-      final Result result = mTable.getHTable().get(hbaseGet);
+      final Result result = fetchPage(pageSize);
       LOG.debug("Got {} cells over {} requested", result.size(), pageSize);
 
       final KijiRowData page =
-          // No cell is being decoded here so we don't need a cell decoder provider:
-          new HBaseKijiRowData(mTable, nextPageDataRequest, mEntityId, result, null);
+          new HBaseKijiRowData(mTable, mPageDataRequest, mEntityId, result, mCellDecoderProvider);
 
       // There is an HBase bug that leads to less KeyValue being returned than expected.
       // An empty result appears to be a reliable way to detect the end of the iteration.
-      if (result.isEmpty()) {
+      final byte[] lastQualifier = HBaseMapFamilyGetTemplate.getLastQualifier(result);
+      if (null == lastQualifier) {
         mHasNext = false;
       } else {
         // Update the low qualifier bound for the next iteration:
-        mMinQualifier = page.getQualifiers(mFamily.getFamily()).last();
+        mMinQualifier = lastQualifier;
+        if (mPrefetch) {
+          prefetchPage(mColumnRequest.getPageSize());
+        }
       }
 
       return page;
@@ -203,6 +251,74 @@ public final class HBaseMapFamilyPager implements KijiPager {
     }
   }
 
+  /**
+   * Fetches the page following the last qualifier returned so far.
+   *
+   * <p> Uses the pending prefetched page, if it has the requested page size. </p>
+   *
+   * @param pageSize Maximum number of qualifiers to fetch.
+   * @return the raw HBase result for the page.
+   * @throws IOException on I/O error.
+   */
+  private Result fetchPage(int pageSize) throws IOException {
+    final Future<Result> prefetched = mPrefetchedPage;
+    mPrefetchedPage = null;
+    if (null != prefetched) {
+      // Always wait for the prefetch to complete, as it uses the same HTable:
+      final Result result = waitFor(prefetched);
+      if (mPrefetchedPageSize == pageSize) {
+        return result;
+      }
+      LOG.debug("Discarding prefetched page of size {}, {} requested.",
+          mPrefetchedPageSize, pageSize);
+    }
+    final Get get = mGetTemplate.newPageGet(mMinQualifier, pageSize);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Sending HBase Get: {} with filter {}", get, Debug.toDebugString(get.getFilter()));
+    }
+    return mHTable.get(get);
+  }
+
+  /**
+   * Starts fetching the page following the last qualifier returned so far.
+   *
+   * @param pageSize Maximum number of qualifiers to fetch.
+   * @throws IOException on I/O error.
+   */
+  private void prefetchPage(int pageSize) throws IOException {
+    final Get get = mGetTemplate.newPageGet(mMinQualifier, pageSize);
+    mPrefetchedPageSize = pageSize;
+    mPrefetchedPage = PREFETCH_EXECUTOR.submit(new Callable<Result>() {
+      /** {@inheritDoc} */
+      @Override
+      public Result call() throws IOException {
+        return mHTable.get(get);
+      }
+    });
+  }
+
+  /**
+   * Waits for a prefetched page.
+   *
+   * @param future Future result of the prefetch.
+   * @return the raw HBase result for the prefetched page.
+   * @throws IOException on I/O error.
+   */
+  private static Result waitFor(Future<Result> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeInterruptedException(ie);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new KijiIOException(cause);
+    }
+  }
+
    /** {@inheritDoc} */
   @Override
   public void remove() {
@@ -214,6 +330,21 @@ public final class HBaseMapFamilyPager implements KijiPager {
   public void close() throws IOException {
     final boolean closing = mIsOpen.compareAndSet(true, false);
     Preconditions.checkState(closing, "Cannot close pager: pager is not open.");
-    mTable.release();
+    try {
+      if (mPrefetch) {
+        final Future<Result> prefetched = mPrefetchedPage;
+        mPrefetchedPage = null;
+        if (null != prefetched) {
+          try {
+            waitFor(prefetched);
+          } catch (IOException ioe) {
+            LOG.debug("Ignoring error from discarded page prefetch: {}", ioe.getMessage());
+          }
+        }
+        mHTable.close();
+      }
+    } finally {
+      mTable.release();
+    }
   }
 }
@@ -20,13 +20,24 @@
 package org.kiji.schema.impl;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
@@ -49,10 +60,27 @@ import org.kiji.schema.hbase.KijiManagedHBaseTableName;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayoutDatabase;
 import org.kiji.schema.layout.impl.HBaseTableLayoutDatabase;
+import org.kiji.schema.util.ResourceUtils;
 
 /**
  * An implementation of the KijiMetaTable that uses the 'kiji-meta' HBase table as the backing
  * store.
+ *
+ * <p>
+ *   HTables are not thread-safe. Writes go through the HTable of the meta table and are
+ *   serialized. When the meta table is given an HTableInterfaceFactory, each thread reads
+ *   through its own HTable handle, and reads only exclude writes, not each other. Otherwise,
+ *   reads share the HTable of the meta table and are serialized with the writes.
+ * </p>
+ *
+ * <p>
+ *   The current layouts of the tables and the latest key/value entries may be cached for a short
+ *   period of time (see {@link #CACHE_TTL_PROPERTY}). Caching is disabled by default. Cached
+ *   entries are invalidated by writes through this meta table, and layouts by
+ *   {@link #invalidateTableLayout(String)} when ZooKeeper reports a layout update from another
+ *   process. Key/value entries written by other processes are not invalidated: they may be read
+ *   stale until they expire.
+ * </p>
  */
 @ApiAudience.Private
 public class HBaseMetaTable implements KijiMetaTable {
@@ -66,19 +94,143 @@ public class HBaseMetaTable implements KijiMetaTable {
   /** The HBase column family that will store user defined metadata. */
   private static final String META_COLUMN_FAMILY = "meta";
 
+  /**
+   * System property with the time, in milliseconds, entries are cached for.
+   * 0, the default, disables caching.
+   */
+  public static final String CACHE_TTL_PROPERTY =
+      "org.kiji.schema.impl.HBaseMetaTable.CACHE_TTL_MS";
+
+  /** Default time, in milliseconds, entries are cached for: caching is opt-in. */
+  private static final long DEFAULT_CACHE_TTL_MS = 0;
+
+  /** Maximum number of cached table layouts. */
+  private static final int MAX_CACHED_LAYOUTS = 1024;
+
+  /** Maximum number of cached key/value entries. */
+  private static final int MAX_CACHED_VALUES = 4096;
+
+  /** Key of a key/value entry in the cache. */
+  private static final class ValueKey {
+    /** Name of the Kiji table. */
+    private final String mTable;
+
+    /** Key of the entry. */
+    private final String mKey;
+
+    /**
+     * Initializes a key for a key/value entry.
+     *
+     * @param table Name of the Kiji table.
+     * @param key Key of the entry.
+     */
+    private ValueKey(String table, String key) {
+      mTable = table;
+      mKey = key;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof ValueKey)) {
+        return false;
+      }
+      final ValueKey other = (ValueKey) object;
+      return mTable.equals(other.mTable) && mKey.equals(other.mKey);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mTable, mKey);
+    }
+  }
+
+  /** Delegates through which a thread reads the meta table, with the lock that guards them. */
+  private static final class Reader {
+    /** HTable handle owned by this reader, or null if the reader uses the shared delegates. */
+    private final HTableInterface mHTable;
+
+    /** Lock to hold while reading through the delegates. */
+    private final Lock mLock;
+
+    /** Layout database to read layouts from. */
+    private final KijiTableLayoutDatabase mLayouts;
+
+    /** Key/value database to read key/value entries from. */
+    private final KijiTableKeyValueDatabase<?> mValues;
+
+    /**
+     * Initializes a reader.
+     *
+     * @param htable HTable handle owned by this reader, or null.
+     * @param lock Lock to hold while reading through the delegates.
+     * @param layouts Layout database to read layouts from.
+     * @param values Key/value database to read key/value entries from.
+     */
+    private Reader(
+        HTableInterface htable,
+        Lock lock,
+        KijiTableLayoutDatabase layouts,
+        KijiTableKeyValueDatabase<?> values) {
+      mHTable = htable;
+      mLock = lock;
+      mLayouts = layouts;
+      mValues = values;
+    }
+  }
+
   /**  The HBase table that stores Kiji metadata. */
   private final HTableInterface mTable;
 
   /** Whether the table is open. */
-  private boolean mIsOpen;
+  private volatile boolean mIsOpen;
 
   /** The layout table that we delegate the work of storing table layout metadata to. */
 
   private final KijiTableLayoutDatabase mTableLayoutDatabase;
   /** The table we delegate storing per table meta data, in the form of key value pairs.  */
   private final KijiTableKeyValueDatabase<?> mTableKeyValueDatabase;
-  // TODO: Make KijiTableLayoutDatabase thread-safe,
-  //     so we can call HBaseMetaTable thread-safe, too.
+
+  /**
+   * Excludes the writes from each other and from the reads.
+   * Also orders the cache fills after the invalidations by concurrent writes.
+   */
+  private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+
+  /** Write lock of mLock, held by writes and by reads through the shared delegates. */
+  private final Lock mWriteLock = mLock.writeLock();
+
+  /** Reader through the delegates of the meta table, used when no factory is available. */
+  private final Reader mSharedReader;
+
+  /** Factory for the HTable handles of the readers, or null to read through mSharedReader. */
+  private final HTableInterfaceFactory mHTableFactory;
+
+  /** Configuration to create the HTable handles of the readers with. */
+  private final Configuration mConf;
+
+  /** Schema table the layout databases of the readers decode layouts with. */
+  private final KijiSchemaTable mSchemaTable;
+
+  /** Reader of each thread using this meta table, when mHTableFactory is not null. */
+  private final ThreadLocal<Reader> mThreadReader = new ThreadLocal<Reader>();
+
+  /**
+   * Readers created by this meta table, keyed by the thread using them.
+   *
+   * <p>
+   *   Readers are closed when this meta table is closed. Readers of threads that died are closed
+   *   whenever a new reader is created.
+   * </p>
+   */
+  private final Map<Thread, Reader> mReaders = Maps.newHashMap();
+
+  /** Current layouts of the tables, by table name. Filled under the lock, read without it. */
+  private final Cache<String, KijiTableLayout> mLayoutCache;
+
+  /** Latest key/value entries. Filled under the lock, read without it. */
+  private final Cache<ValueKey, byte[]> mValueCache;
 
   /**
    * Creates an HTableInterface for the specified table.
@@ -114,7 +266,31 @@ public class HBaseMetaTable implements KijiMetaTable {
       KijiSchemaTable schemaTable,
       HTableInterfaceFactory factory)
       throws IOException {
-    this(newMetaTable(kijiURI, conf, factory), schemaTable);
+    this(kijiURI, conf, schemaTable, factory, newMetaTable(kijiURI, conf, factory));
+  }
+
+  /**
+   * Create a connection to a Kiji meta table backed by an HTable within HBase.
+   *
+   * <p>This class takes ownership of the HTable. It will be closed when this instance is
+   * closed. Each thread reading the meta table gets its own HTable, created by the factory.</p>
+   *
+   * @param kijiURI The KijiURI.
+   * @param conf The Hadoop configuration.
+   * @param schemaTable The Kiji schema table.
+   * @param factory HTableInterface factory, used to create the HTables of the readers.
+   * @param htable The HTable to use for writing Kiji meta data, opened with newMetaTable().
+   */
+  public HBaseMetaTable(
+      KijiURI kijiURI,
+      Configuration conf,
+      KijiSchemaTable schemaTable,
+      HTableInterfaceFactory factory,
+      HTableInterface htable) {
+    this(htable,
+        new HBaseTableLayoutDatabase(htable, LAYOUT_COLUMN_FAMILY, schemaTable),
+        new HBaseTableKeyValueDatabase(htable, META_COLUMN_FAMILY),
+        conf, schemaTable, factory);
   }
 
   /**
@@ -145,78 +321,281 @@ public class HBaseMetaTable implements KijiMetaTable {
    */
   public HBaseMetaTable(HTableInterface htable, KijiTableLayoutDatabase tableLayoutDatabase,
     KijiTableKeyValueDatabase tableKeyValueDatabase) {
+    this(htable, tableLayoutDatabase, tableKeyValueDatabase, null, null, null);
+  }
+
+  /**
+   * Create a connection to a Kiji meta table backed by an HTable within HBase.
+   *
+   * @param htable The HTable to use for storing Kiji meta data.
+   * @param tableLayoutDatabase A database of table layouts to delegate layout storage to.
+   * @param tableKeyValueDatabase A database of key-value pairs to delegate metadata storage to.
+   * @param conf Configuration to create the HTables of the readers with, or null.
+   * @param schemaTable Schema table for the layout databases of the readers, or null.
+   * @param factory Factory for the HTables of the readers, or null to read through the HTable
+   *     and the delegates given here.
+   */
+  private HBaseMetaTable(
+      HTableInterface htable,
+      KijiTableLayoutDatabase tableLayoutDatabase,
+      KijiTableKeyValueDatabase<?> tableKeyValueDatabase,
+      Configuration conf,
+      KijiSchemaTable schemaTable,
+      HTableInterfaceFactory factory) {
     mIsOpen = true;
     mTable = htable;
     mTableLayoutDatabase = tableLayoutDatabase;
     mTableKeyValueDatabase = tableKeyValueDatabase;
+    mSharedReader = new Reader(null, mWriteLock, tableLayoutDatabase, tableKeyValueDatabase);
+    mConf = conf;
+    mSchemaTable = schemaTable;
+    mHTableFactory = factory;
+
+    final long cacheTTL = Long.parseLong(
+        System.getProperty(CACHE_TTL_PROPERTY, Long.toString(DEFAULT_CACHE_TTL_MS)));
+    mLayoutCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_LAYOUTS)
+        .expireAfterWrite(cacheTTL, TimeUnit.MILLISECONDS)
+        .build();
+    mValueCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_VALUES)
+        .expireAfterWrite(cacheTTL, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the reader of the calling thread.
+   *
+   * @return the reader of the calling thread.
+   * @throws IOException on I/O error.
+   */
+  private Reader getReader() throws IOException {
+    if (null == mHTableFactory) {
+      return mSharedReader;
+    }
+    final Reader reader = mThreadReader.get();
+    if (null != reader) {
+      return reader;
+    }
+    return createThreadReader();
+  }
+
+  /**
+   * Creates the reader of the calling thread, with its own HTable handle.
+   *
+   * @return the reader of the calling thread.
+   * @throws IOException on I/O error.
+   */
+  private Reader createThreadReader() throws IOException {
+    final HTableInterface htable =
+        mHTableFactory.create(mConf, Bytes.toString(mTable.getTableName()));
+    final Reader reader = new Reader(
+        htable,
+        mLock.readLock(),
+        new HBaseTableLayoutDatabase(htable, LAYOUT_COLUMN_FAMILY, mSchemaTable),
+        new HBaseTableKeyValueDatabase(htable, META_COLUMN_FAMILY));
+    final List<HTableInterface> orphans = Lists.newArrayList();
+    final boolean isOpen;
+    synchronized (mReaders) {
+      isOpen = mIsOpen;
+      final Iterator<Map.Entry<Thread, Reader>> it = mReaders.entrySet().iterator();
+      while (it.hasNext()) {
+        final Map.Entry<Thread, Reader> entry = it.next();
+        if (!entry.getKey().isAlive()) {
+          orphans.add(entry.getValue().mHTable);
+          it.remove();
+        }
+      }
+      if (isOpen) {
+        mReaders.put(Thread.currentThread(), reader);
+      } else {
+        orphans.add(htable);
+      }
+    }
+    // No other thread uses the handles of dead threads: close them outside the lock.
+    for (HTableInterface orphan : orphans) {
+      ResourceUtils.closeOrLog(orphan);
+    }
+    Preconditions.checkState(isOpen, "Cannot read from a closed KijiMetaTable.");
+    mThreadReader.set(reader);
+    return reader;
+  }
+
+  /**
+   * Invalidates the cached layout of a table.
+   *
+   * <p> Used when a layout update of the table is reported by another process. </p>
+   *
+   * @param table Name of the table whose layout changed.
+   */
+  public void invalidateTableLayout(String table) {
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(table);
+    } finally {
+      mWriteLock.unlock();
+    }
+  }
+
+  /**
+   * Invalidates the cached key/value entries of a table. Must hold the lock.
+   *
+   * @param table Name of the table whose entries to invalidate.
+   */
+  private void invalidateValues(String table) {
+    for (ValueKey key : mValueCache.asMap().keySet()) {
+      if (key.mTable.equals(table)) {
+        mValueCache.invalidate(key);
+      }
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized void deleteTable(String table) throws IOException {
-    mTableLayoutDatabase.removeAllTableLayoutVersions(table);
-    mTableKeyValueDatabase.removeAllValues(table);
+  public void deleteTable(String table) throws IOException {
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(table);
+      invalidateValues(table);
+      mTableLayoutDatabase.removeAllTableLayoutVersions(table);
+      mTableKeyValueDatabase.removeAllValues(table);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized KijiTableLayout updateTableLayout(String table, TableLayoutDesc layoutUpdate)
+  public KijiTableLayout updateTableLayout(String table, TableLayoutDesc layoutUpdate)
     throws IOException {
-    return mTableLayoutDatabase.updateTableLayout(table, layoutUpdate);
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(table);
+      return mTableLayoutDatabase.updateTableLayout(table, layoutUpdate);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
   /** {@inheritDoc} */
   @Override
-  public synchronized KijiTableLayout getTableLayout(String table) throws IOException {
-    return mTableLayoutDatabase.getTableLayout(table);
+  public KijiTableLayout getTableLayout(String table) throws IOException {
+    final KijiTableLayout cached = mLayoutCache.getIfPresent(table);
+    if (null != cached) {
+      return cached;
+    }
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      // Another thread may have filled the cache while this thread waited for the lock:
+      final KijiTableLayout filled = mLayoutCache.getIfPresent(table);
+      if (null != filled) {
+        return filled;
+      }
+      final KijiTableLayout layout = reader.mLayouts.getTableLayout(table);
+      mLayoutCache.put(table, layout);
+      return layout;
+    } finally {
+      reader.mLock.unlock();
+    }
   }
   /** {@inheritDoc} */
   @Override
-  public synchronized List<KijiTableLayout> getTableLayoutVersions(String table, int numVersions)
+  public List<KijiTableLayout> getTableLayoutVersions(String table, int numVersions)
     throws IOException {
-    return mTableLayoutDatabase.getTableLayoutVersions(table, numVersions);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mLayouts.getTableLayoutVersions(table, numVersions);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized NavigableMap<Long, KijiTableLayout> getTimedTableLayoutVersions(String table,
+  public NavigableMap<Long, KijiTableLayout> getTimedTableLayoutVersions(String table,
     int numVersions) throws IOException {
-    return mTableLayoutDatabase.getTimedTableLayoutVersions(table, numVersions);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mLayouts.getTimedTableLayoutVersions(table, numVersions);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized void removeAllTableLayoutVersions(String table) throws IOException {
-    mTableLayoutDatabase.removeAllTableLayoutVersions(table);
+  public void removeAllTableLayoutVersions(String table) throws IOException {
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(table);
+      mTableLayoutDatabase.removeAllTableLayoutVersions(table);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized void removeRecentTableLayoutVersions(String table, int numVersions)
+  public void removeRecentTableLayoutVersions(String table, int numVersions)
     throws IOException {
-    mTableLayoutDatabase.removeRecentTableLayoutVersions(table, numVersions);
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(table);
+      mTableLayoutDatabase.removeRecentTableLayoutVersions(table, numVersions);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized List<String> listTables() throws IOException {
-    return mTableLayoutDatabase.listTables();
+  public List<String> listTables() throws IOException {
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mLayouts.listTables();
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized boolean tableExists(String tableName) throws IOException {
-    return mTableLayoutDatabase.tableExists(tableName);
+  public boolean tableExists(String tableName) throws IOException {
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mLayouts.tableExists(tableName);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized void close() throws IOException {
-    mTable.close();
-    if (!mIsOpen) {
-      LOG.warn("close() called on a KijiMetaTable that was already closed.");
-      return;
+  public void close() throws IOException {
+    mWriteLock.lock();
+    try {
+      mTable.close();
+      if (!mIsOpen) {
+        LOG.warn("close() called on a KijiMetaTable that was already closed.");
+        return;
+      }
+      mIsOpen = false;
+      mLayoutCache.invalidateAll();
+      mValueCache.invalidateAll();
+    } finally {
+      mWriteLock.unlock();
+    }
+    synchronized (mReaders) {
+      for (Reader reader : mReaders.values()) {
+        ResourceUtils.closeOrLog(reader.mHTable);
+      }
+      mReaders.clear();
     }
-    mIsOpen = false;
+    mThreadReader.remove();
   }
 
   /** {@inheritDoc} */
@@ -231,40 +610,135 @@ public class HBaseMetaTable implements KijiMetaTable {
 
   /** {@inheritDoc} */
   @Override
-  public synchronized byte[] getValue(String table, String key) throws IOException {
-    return mTableKeyValueDatabase.getValue(table, key);
+  public byte[] getValue(String table, String key) throws IOException {
+    final ValueKey valueKey = new ValueKey(table, key);
+    byte[] value = mValueCache.getIfPresent(valueKey);
+    if (null == value) {
+      final Reader reader = getReader();
+      reader.mLock.lock();
+      try {
+        value = mValueCache.getIfPresent(valueKey);
+        if (null == value) {
+          value = reader.mValues.getValue(table, key);
+          mValueCache.put(valueKey, value);
+        }
+      } finally {
+        reader.mLock.unlock();
+      }
+    }
+    // Callers may modify the returned array:
+    return value.clone();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, byte[]> getValues(String table, Collection<String> keys)
+      throws IOException {
+    final Map<String, byte[]> values = Maps.newHashMap();
+    final List<String> uncachedKeys = Lists.newArrayList();
+    for (String key : keys) {
+      final byte[] value = mValueCache.getIfPresent(new ValueKey(table, key));
+      if (null != value) {
+        values.put(key, value);
+      } else {
+        uncachedKeys.add(key);
+      }
+    }
+    if (!uncachedKeys.isEmpty()) {
+      final Reader reader = getReader();
+      reader.mLock.lock();
+      try {
+        final Map<String, byte[]> fetched = reader.mValues.getValues(table, uncachedKeys);
+        for (Map.Entry<String, byte[]> entry : fetched.entrySet()) {
+          mValueCache.put(new ValueKey(table, entry.getKey()), entry.getValue());
+        }
+        values.putAll(fetched);
+      } finally {
+        reader.mLock.unlock();
+      }
+    }
+    // Callers may modify the returned arrays:
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      entry.setValue(entry.getValue().clone());
+    }
+    return values;
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized KijiMetaTable putValue(String table, String key, byte[] value)
+  public KijiMetaTable putValues(String table, Map<String, byte[]> values) throws IOException {
+    mWriteLock.lock();
+    try {
+      for (String key : values.keySet()) {
+        mValueCache.invalidate(new ValueKey(table, key));
+      }
+      mTableKeyValueDatabase.putValues(table, values);
+    } finally {
+      mWriteLock.unlock();
+    }
+    return this; // Don't expose the delegate object.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public KijiMetaTable putValue(String table, String key, byte[] value)
     throws IOException {
-    mTableKeyValueDatabase.putValue(table, key, value);
+    mWriteLock.lock();
+    try {
+      mValueCache.invalidate(new ValueKey(table, key));
+      mTableKeyValueDatabase.putValue(table, key, value);
+    } finally {
+      mWriteLock.unlock();
+    }
     return this; // Don't expose the delegate object.
   }
 
   /** {@inheritDoc} */
   @Override
-  public synchronized void removeValues(String table, String key) throws IOException {
-    mTableKeyValueDatabase.removeValues(table, key);
+  public void removeValues(String table, String key) throws IOException {
+    mWriteLock.lock();
+    try {
+      mValueCache.invalidate(new ValueKey(table, key));
+      mTableKeyValueDatabase.removeValues(table, key);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public Set<String> tableSet() throws IOException {
-    return mTableKeyValueDatabase.tableSet();
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mValues.tableSet();
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public Set<String> keySet(String table) throws IOException {
-    return mTableKeyValueDatabase.keySet(table);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mValues.keySet(table);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public void removeAllValues(String table) throws IOException {
-    mTableKeyValueDatabase.removeAllValues(table);
+    mWriteLock.lock();
+    try {
+      invalidateValues(table);
+      mTableKeyValueDatabase.removeAllValues(table);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   /**
@@ -303,16 +777,22 @@ public class HBaseMetaTable implements KijiMetaTable {
   @Override
   public MetaTableBackup toBackup() throws IOException {
     Map<String, TableBackup> backupEntries = new HashMap<String, TableBackup>();
-    List<String> tables = listTables();
-    for (String table : tables) {
-      TableLayoutsBackup layouts = mTableLayoutDatabase.layoutsToBackup(table);
-      KeyValueBackup keyValues = mTableKeyValueDatabase.keyValuesToBackup(table);
-      final TableBackup tableBackup = TableBackup.newBuilder()
-          .setName(table)
-          .setTableLayoutsBackup(layouts)
-          .setKeyValueBackup(keyValues)
-          .build();
-      backupEntries.put(table, tableBackup);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      List<String> tables = reader.mLayouts.listTables();
+      for (String table : tables) {
+        TableLayoutsBackup layouts = reader.mLayouts.layoutsToBackup(table);
+        KeyValueBackup keyValues = reader.mValues.keyValuesToBackup(table);
+        final TableBackup tableBackup = TableBackup.newBuilder()
+            .setName(table)
+            .setTableLayoutsBackup(layouts)
+            .setKeyValueBackup(keyValues)
+            .build();
+        backupEntries.put(table, tableBackup);
+      }
+    } finally {
+      reader.mLock.unlock();
     }
     return MetaTableBackup.newBuilder().setTables(backupEntries).build();
   }
@@ -322,55 +802,96 @@ public class HBaseMetaTable implements KijiMetaTable {
   public void fromBackup(MetaTableBackup backup) throws IOException {
     LOG.info(String.format("Restoring meta table from backup with %d entries.",
         backup.getTables().size()));
-    for (Map.Entry<String, TableBackup> tableEntry: backup.getTables().entrySet()) {
-      final String tableName = tableEntry.getKey();
-      final TableBackup tableBackup = tableEntry.getValue();
-      Preconditions.checkState(tableName.equals(tableBackup.getName()), String.format(
-          "Inconsistent table backup: entry '%s' does not match table name '%s'.",
-          tableName, tableBackup.getName()));
-      restoreLayoutsFromBackup(tableName, tableBackup.getTableLayoutsBackup());
-      restoreKeyValuesFromBackup(tableName, tableBackup.getKeyValueBackup());
-    }
-    mTable.flushCommits();
+    mWriteLock.lock();
+    try {
+      for (Map.Entry<String, TableBackup> tableEntry: backup.getTables().entrySet()) {
+        final String tableName = tableEntry.getKey();
+        final TableBackup tableBackup = tableEntry.getValue();
+        Preconditions.checkState(tableName.equals(tableBackup.getName()), String.format(
+            "Inconsistent table backup: entry '%s' does not match table name '%s'.",
+            tableName, tableBackup.getName()));
+        restoreLayoutsFromBackup(tableName, tableBackup.getTableLayoutsBackup());
+        restoreKeyValuesFromBackup(tableName, tableBackup.getKeyValueBackup());
+      }
+      mTable.flushCommits();
+    } finally {
+      mWriteLock.unlock();
+    }
     LOG.info("Flushing commits to table '{}'", Bytes.toString(mTable.getTableName()));
   }
 
   /** {@inheritDoc} */
   @Override
   public TableLayoutsBackup layoutsToBackup(String table) throws IOException {
-    return mTableLayoutDatabase.layoutsToBackup(table);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mLayouts.layoutsToBackup(table);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public List<byte[]> getValues(String table, String key, int numVersions) throws IOException {
-    return mTableKeyValueDatabase.getValues(table, key, numVersions);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mValues.getValues(table, key, numVersions);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public NavigableMap<Long, byte[]> getTimedValues(String table, String key, int numVersions)
     throws IOException {
-    return mTableKeyValueDatabase.getTimedValues(table, key, numVersions);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mValues.getTimedValues(table, key, numVersions);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public KeyValueBackup keyValuesToBackup(String table) throws IOException {
-    return mTableKeyValueDatabase.keyValuesToBackup(table);
+    final Reader reader = getReader();
+    reader.mLock.lock();
+    try {
+      return reader.mValues.keyValuesToBackup(table);
+    } finally {
+      reader.mLock.unlock();
+    }
   }
 
   /** {@inheritDoc} */
   @Override
   public void restoreKeyValuesFromBackup(String table, KeyValueBackup tableBackup) throws
       IOException {
-    mTableKeyValueDatabase.restoreKeyValuesFromBackup(table, tableBackup);
+    mWriteLock.lock();
+    try {
+      invalidateValues(table);
+      mTableKeyValueDatabase.restoreKeyValuesFromBackup(table, tableBackup);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
   @Override
   public void restoreLayoutsFromBackup(String tableName, TableLayoutsBackup tableBackup) throws
       IOException {
-    mTableLayoutDatabase.restoreLayoutsFromBackup(tableName, tableBackup);
+    mWriteLock.lock();
+    try {
+      mLayoutCache.invalidate(tableName);
+      mTableLayoutDatabase.restoreLayoutsFromBackup(tableName, tableBackup);
+    } finally {
+      mWriteLock.unlock();
+    }
   }
 
 }
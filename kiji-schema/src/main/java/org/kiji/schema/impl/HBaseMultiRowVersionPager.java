@@ -0,0 +1,364 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.EntityId;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiColumnPagingNotEnabledException;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiDataRequest.Column;
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.KijiIOException;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.SpecificCellDecoderFactory;
+import org.kiji.schema.filter.KijiColumnFilter;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.layout.CellSpec;
+import org.kiji.schema.layout.impl.CellDecoderProvider;
+import org.kiji.schema.layout.impl.ColumnNameTranslator;
+
+/**
+ * Pages through the versions of a fully-qualified column across many rows in lockstep.
+ *
+ * <p>
+ *   Each row keeps its own paging cursor, exactly like {@link HBaseVersionPager}: a max-timestamp
+ *   bound and the number of versions returned so far. Each call to {@link #next()} sends a
+ *   single multi-get containing one Get per row that still has versions to page through.
+ *   Rows whose versions are exhausted drop out of the subsequent pages.
+ * </p>
+ *
+ * <p> Example:
+ *   <pre>
+ *     final KijiDataRequest dataRequest = KijiDataRequest.builder()
+ *         .addColumns(ColumnsDef.create()
+ *             .withMaxVersions(HConstants.ALL_VERSIONS)
+ *             .withPageSize(100)
+ *             .add("info", "events"))
+ *         .build();
+ *     final HBaseMultiRowVersionPager pager = new HBaseMultiRowVersionPager(
+ *         entityIds, dataRequest, table, new KijiColumnName("info", "events"), null);
+ *     try {
+ *       while (pager.hasNext()) {
+ *         for (Map.Entry&lt;EntityId, KijiRowData&gt; entry : pager.next().entrySet()) {
+ *           // Use: entry.getValue().getValues("info", "events")
+ *         }
+ *       }
+ *     } finally {
+ *       pager.close();
+ *     }
+ *   </pre>
+ * </p>
+ */
+@ApiAudience.Private
+public final class HBaseMultiRowVersionPager
+    implements Iterator<Map<EntityId, KijiRowData>>, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseMultiRowVersionPager.class);
+
+  /** Paging cursor of one row. */
+  private static final class RowCursor {
+    /** Entity ID of the row. */
+    private final EntityId mEntityId;
+
+    /** Max timestamp bound (exclusive) on the versions to fetch next. */
+    private long mPageMaxTimestamp;
+
+    /** Number of versions returned so far. */
+    private int mVersionsCount = 0;
+
+    /**
+     * Initializes a cursor for a row.
+     *
+     * @param entityId Entity ID of the row.
+     * @param maxTimestamp Initial max timestamp bound (exclusive).
+     */
+    private RowCursor(EntityId entityId, long maxTimestamp) {
+      mEntityId = entityId;
+      mPageMaxTimestamp = maxTimestamp;
+    }
+  }
+
+  /** HBase KijiTable to read from. */
+  private final HBaseKijiTable mTable;
+
+  /** Name of the column being paged through. */
+  private final KijiColumnName mColumnName;
+
+  /** HBase name of the column being paged through. */
+  private final HBaseColumnName mHBaseColumnName;
+
+  /** Data request details for the fully-qualified column. */
+  private final Column mColumnRequest;
+
+  /** Min timestamp (inclusive) of the versions to fetch. */
+  private final long mMinTimestamp;
+
+  /** Max timestamp (exclusive) of the versions to fetch. */
+  private final long mMaxTimestamp;
+
+  /** Total number of versions to return for each row. */
+  private final int mTotalVersions;
+
+  /** Default page size for this column. */
+  private final int mDefaultPageSize;
+
+  /** Context to compile the user column filter into HBase filters. */
+  private final KijiColumnFilter.Context mFilterContext;
+
+  /** Provider for cell decoders. */
+  private final CellDecoderProvider mCellDecoderProvider;
+
+  /** Cursors of the rows that still have versions to page through, in the original order. */
+  private final List<RowCursor> mActiveRows;
+
+  /** Whether the pager is open. */
+  private final AtomicBoolean mIsOpen = new AtomicBoolean(false);
+
+  /**
+   * Initializes a pager for a fully-qualified column across many rows.
+   *
+   * @param entityIds Entity IDs of the rows to page through.
+   * @param dataRequest The requested data. Paging must be enabled on the column.
+   * @param table The Kiji table the rows belong to.
+   * @param colName Name of the paged column.
+   * @param cellDecoderProvider Provider for cell decoders.
+   *     Null means the pager creates its own provider for cell decoders (not recommended).
+   * @throws KijiColumnPagingNotEnabledException If paging is not enabled for the specified column.
+   */
+  public HBaseMultiRowVersionPager(
+      List<EntityId> entityIds,
+      KijiDataRequest dataRequest,
+      HBaseKijiTable table,
+      KijiColumnName colName,
+      CellDecoderProvider cellDecoderProvider)
+      throws KijiColumnPagingNotEnabledException {
+    Preconditions.checkArgument(colName.isFullyQualified());
+
+    Column columnRequest = dataRequest.getColumn(colName.getFamily(), colName.getQualifier());
+    if (columnRequest == null) {
+      // Paging is allowed if this column belongs to a map-type family with paging enabled.
+      columnRequest = dataRequest.getColumn(colName.getFamily(), null);
+      Preconditions.checkArgument(columnRequest != null,
+          "Couldn't create pager: No data request for column %s from table %s.",
+          colName, table.getURI());
+      Preconditions.checkArgument(
+          table.getLayout().getFamilyMap().get(colName.getFamily()).isMapType(),
+          "Couldn't create pager: "
+          + "Can only generate version pagers from a column family data request for map families. "
+          + "Requested paging on qualifier %s from group family %s in table %s.",
+          colName.getQualifier(), colName.getFamily(), table.getURI());
+    }
+    if (!columnRequest.isPagingEnabled()) {
+      throw new KijiColumnPagingNotEnabledException(
+        String.format("Paging is not enabled for column '%s' from table %s.",
+            colName, table.getURI()));
+    }
+
+    mTable = table;
+    mColumnName = colName;
+    mColumnRequest = columnRequest;
+    mMinTimestamp = dataRequest.getMinTimestamp();
+    mMaxTimestamp = dataRequest.getMaxTimestamp();
+    mTotalVersions = columnRequest.getMaxVersions();
+    mDefaultPageSize = columnRequest.getPageSize();
+
+    final ColumnNameTranslator translator = new ColumnNameTranslator(mTable.getLayout());
+    mFilterContext = new HBaseDataRequestAdapter.NameTranslatingFilterContext(translator);
+    try {
+      mHBaseColumnName = translator.toHBaseColumnName(mColumnName);
+      mCellDecoderProvider = (null != cellDecoderProvider)
+          ? cellDecoderProvider
+          : new CellDecoderProvider(
+              mTable,
+              SpecificCellDecoderFactory.get(),
+              Maps.<KijiColumnName, CellSpec>newHashMap());
+    } catch (IOException ioe) {
+      throw new KijiIOException(ioe);
+    }
+
+    // There might be no page to read, but we don't know until we issue an RPC:
+    mActiveRows = Lists.newLinkedList();
+    for (EntityId entityId : entityIds) {
+      mActiveRows.add(new RowCursor(entityId, mMaxTimestamp));
+    }
+
+    // Only retain the table if everything else ran fine:
+    mTable.retain();
+    mIsOpen.set(true);
+  }
+
+  /**
+   * Reports whether some rows still have versions to page through.
+   *
+   * @return whether some rows still have versions to page through.
+   */
+  @Override
+  public boolean hasNext() {
+    return !mActiveRows.isEmpty();
+  }
+
+  /**
+   * Fetches the next page of versions, using the default page size of the column.
+   *
+   * @return the next page of each row that had versions left to page through.
+   */
+  @Override
+  public Map<EntityId, KijiRowData> next() {
+    return next(mDefaultPageSize);
+  }
+
+  /**
+   * Fetches the next page of versions for all the rows that have versions left to page through.
+   *
+   * <p>
+   *   The page of a row may contain fewer versions than the page size, even when more versions
+   *   follow. Rows that no longer have versions to page through are not included in the pages
+   *   returned by subsequent calls.
+   * </p>
+   *
+   * @param pageSize Maximum number of versions to fetch for each row.
+   * @return the next page of each row that had versions left to page through, in the order
+   *     of the entity IDs the pager was created with.
+   */
+  public Map<EntityId, KijiRowData> next(int pageSize) {
+    Preconditions.checkArgument(pageSize > 0, "Page size must be >= 1, got %s", pageSize);
+    if (mActiveRows.isEmpty()) {
+      throw new NoSuchElementException();
+    }
+
+    // All rows in a page share this data request: the Gets enforce the per-row bounds.
+    final KijiDataRequest pageDataRequest = KijiDataRequest.builder()
+        .withTimeRange(mMinTimestamp, mMaxTimestamp)
+        .addColumns(ColumnsDef.create()
+            .withFilter(mColumnRequest.getFilter())
+            .withMaxVersions(pageSize)
+            .withReaderSchema(mColumnRequest.getReaderSchema())
+            .withProjectedFields(mColumnRequest.getProjectedFields())
+            .add(mColumnName))
+        .build();
+
+    try {
+      final List<Get> gets = Lists.newArrayListWithCapacity(mActiveRows.size());
+      final int[] maxVersions = new int[mActiveRows.size()];
+      int index = 0;
+      for (RowCursor cursor : mActiveRows) {
+        maxVersions[index] = Math.min(mTotalVersions - cursor.mVersionsCount, pageSize);
+        gets.add(newPageGet(cursor, maxVersions[index]));
+        index += 1;
+      }
+
+      LOG.debug("Sending HBase multi-get for {} rows with page size {}.", gets.size(), pageSize);
+      final Result[] results = mTable.getHTable().get(gets);
+
+      final Map<EntityId, KijiRowData> page = Maps.newLinkedHashMap();
+      final Iterator<RowCursor> it = mActiveRows.iterator();
+      for (int i = 0; i < results.length; ++i) {
+        final RowCursor cursor = it.next();
+        final Result result = results[i];
+        if (null == result) {
+          throw new IOException(String.format(
+              "Error fetching versions of column %s for row %s.", mColumnName, cursor.mEntityId));
+        }
+        page.put(cursor.mEntityId, new HBaseKijiRowData(
+            mTable, pageDataRequest, cursor.mEntityId, result, mCellDecoderProvider));
+        if (!advance(cursor, result, maxVersions[i])) {
+          it.remove();
+        }
+      }
+      return page;
+
+    } catch (IOException ioe) {
+      throw new KijiIOException(ioe);
+    }
+  }
+
+  /**
+   * Builds the Get for the next page of a row.
+   *
+   * @param cursor Paging cursor of the row.
+   * @param maxVersions Maximum number of versions to fetch.
+   * @return the Get for the next page of the row.
+   * @throws IOException on I/O error.
+   */
+  private Get newPageGet(RowCursor cursor, int maxVersions) throws IOException {
+    final Get get = new Get(cursor.mEntityId.getHBaseRowKey());
+    get.addColumn(mHBaseColumnName.getFamily(), mHBaseColumnName.getQualifier());
+    get.setTimeRange(mMinTimestamp, cursor.mPageMaxTimestamp);
+    get.setMaxVersions(maxVersions);
+    final KijiColumnFilter userFilter = mColumnRequest.getFilter();
+    if (null != userFilter) {
+      get.setFilter(userFilter.toHBaseFilter(mColumnName, mFilterContext));
+    }
+    return get;
+  }
+
+  /**
+   * Advances the cursor of a row past the versions of a page.
+   *
+   * @param cursor Paging cursor of the row.
+   * @param result Page of versions fetched for the row.
+   * @param maxVersions Number of versions requested for the page.
+   * @return whether the row may have more versions to page through.
+   */
+  private boolean advance(RowCursor cursor, Result result, int maxVersions) {
+    if (result.size() < maxVersions) {
+      // We got fewer versions than the number we expected, that means there are no more
+      // versions to page through:
+      return false;
+    }
+    final KeyValue[] kvs = result.raw();
+    cursor.mPageMaxTimestamp = kvs[kvs.length - 1].getTimestamp();  // max-timestamp is exclusive
+    cursor.mVersionsCount += kvs.length;
+    return (cursor.mPageMaxTimestamp > mMinTimestamp) && (cursor.mVersionsCount < mTotalVersions);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException(
+        "HBaseMultiRowVersionPager.remove() is not supported.");
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void close() throws IOException {
+    final boolean closing = mIsOpen.compareAndSet(true, false);
+    Preconditions.checkState(closing, "Cannot close pager: pager is not open.");
+    mActiveRows.clear();
+    mTable.release();
+  }
+}
@@ -36,12 +36,7 @@ import org.kiji.schema.EntityId;
 import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiColumnPagingNotEnabledException;
 import org.kiji.schema.KijiDataRequest;
-import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.KijiIOException;
-import org.kiji.schema.filter.Filters;
-import org.kiji.schema.filter.KijiColumnFilter;
-import org.kiji.schema.filter.KijiColumnRangeFilter;
-import org.kiji.schema.filter.StripValueColumnFilter;
 import org.kiji.schema.hbase.HBaseColumnName;
 import org.kiji.schema.layout.impl.ColumnNameTranslator;
 import org.kiji.schema.util.Debug;
@@ -67,23 +62,23 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
   /** Name of the map-type family being paged through. */
   private final KijiColumnName mFamily;
 
-  /** Full data request. */
-  private final KijiDataRequest mDataRequest;
-
   /** Column data request for the map-type family to page through. */
   private final KijiDataRequest.Column mColumnRequest;
 
   /** Converts HBase and Kiji column names. */
   private final ColumnNameTranslator mColumnNameTranslator;
 
+  /** Compiled HBase Get template for the pages. */
+  private final HBaseMapFamilyGetTemplate mGetTemplate;
+
   /** True only if there is another page of data to read through {@link #next()}. */
   private boolean mHasNext;
 
   /**
-   * Highest qualifier (according to the HBase bytes comparator) returned so far.
+   * Highest HBase qualifier (according to the HBase bytes comparator) returned so far.
    * This is the low bound (exclusive) for qualifiers to retrieve next.
    */
-  private String mMinQualifier = null;
+  private byte[] mMinQualifier = null;
 
   /**
    * Initializes a qualifier pager.
@@ -105,8 +100,7 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
         "Must use HBaseQualifierPager on a map-type family, but got '{}'.", family);
     mFamily = family;
 
-    mDataRequest = dataRequest;
-    mColumnRequest = mDataRequest.getColumn(family.getFamily(), null);
+    mColumnRequest = dataRequest.getColumn(family.getFamily(), null);
     if (!mColumnRequest.isPagingEnabled()) {
       throw new KijiColumnPagingNotEnabledException(
         String.format("Paging is not enabled for column [%s].", family));
@@ -116,7 +110,13 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
     mTable = table;
     mHasNext = true;  // there might be no page to read, but we don't know until we issue an RPC
 
-    mColumnNameTranslator = new ColumnNameTranslator(mTable.getLayout());
+    try {
+      mGetTemplate =
+          new HBaseMapFamilyGetTemplate(mEntityId, dataRequest, mFamily, mTable.getLayout());
+    } catch (IOException ioe) {
+      throw new KijiIOException(ioe);
+    }
+    mColumnNameTranslator = mGetTemplate.getColumnNameTranslator();
 
     // Only retain the table if everything else ran fine:
     mTable.retain();
@@ -146,28 +146,8 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
     }
     Preconditions.checkArgument(pageSize > 0, "Page size must be >= 1, got %s", pageSize);
 
-    // Clone the column data request template, adjusting the filters to restrict the range
-    // and the number of qualifiers to fetch.
-
-    final KijiColumnFilter filter = Filters.and(
-        new KijiColumnRangeFilter(mMinQualifier, false, null, false),  // qualifier > mMinQualifier
-        mColumnRequest.getFilter(),  // user filter
-        new KijiPaginationFilter(pageSize),  // Select at most 1 version per qualifier
-        new StripValueColumnFilter());  // discard the cell content, we just need the qualifiers
-
-    final KijiDataRequest nextPageDataRequest = KijiDataRequest.builder()
-        .withTimeRange(mDataRequest.getMinTimestamp(), mDataRequest.getMaxTimestamp())
-        .addColumns(ColumnsDef.create()
-            .withFilter(filter)
-            .withMaxVersions(1)  // HBase pagination filter forces max-versions to 1
-            .add(mFamily))
-        .build();
-
-    LOG.debug("HBaseMapPager data request: {} and page size {}", nextPageDataRequest, pageSize);
-
-    final HBaseDataRequestAdapter adapter = new HBaseDataRequestAdapter(nextPageDataRequest);
     try {
-      final Get hbaseGet = adapter.toGet(mEntityId, mTable.getLayout());
+      final Get hbaseGet = mGetTemplate.newPageGet(mMinQualifier, pageSize);
       if (LOG.isDebugEnabled()) {
         LOG.debug("Sending HBase Get: {} with filter {}",
             hbaseGet, Debug.toDebugString(hbaseGet.getFilter()));
@@ -190,7 +170,7 @@ public final class HBaseQualifierPager implements Iterator<String[]>, Closeable
         mHasNext = false;
       } else {
         // Update the low qualifier bound for the next iteration:
-        mMinQualifier = qualifiers[qualifiers.length - 1];
+        mMinQualifier = HBaseMapFamilyGetTemplate.getLastQualifier(result);
       }
 
       return qualifiers;
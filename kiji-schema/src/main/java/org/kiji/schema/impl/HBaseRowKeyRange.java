@@ -0,0 +1,263 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Range of HBase row keys, bounded by a start key (inclusive) and a stop key (exclusive).
+ *
+ * <p> Null or empty bounds mean unbounded, as in HBase scans. Instances are immutable. </p>
+ */
+@ApiAudience.Private
+public final class HBaseRowKeyRange {
+  /** Range covering all the row keys. */
+  public static final HBaseRowKeyRange ALL = new HBaseRowKeyRange(null, null);
+
+  /** Orders ranges by start key, unbounded first. */
+  private static final Comparator<HBaseRowKeyRange> START_KEY_ORDER =
+      new Comparator<HBaseRowKeyRange>() {
+        /** {@inheritDoc} */
+        @Override
+        public int compare(HBaseRowKeyRange range1, HBaseRowKeyRange range2) {
+          return Bytes.compareTo(range1.getStartRow(), range2.getStartRow());
+        }
+      };
+
+  /** Start row key (inclusive), or null for unbounded. */
+  private final byte[] mStartKey;
+
+  /** Stop row key (exclusive), or null for unbounded. */
+  private final byte[] mStopKey;
+
+  /**
+   * Initializes a key range.
+   *
+   * @param startKey HBase row key the range starts at (inclusive). Null or empty for unbounded.
+   * @param stopKey HBase row key the range stops at (exclusive). Null or empty for unbounded.
+   */
+  public HBaseRowKeyRange(byte[] startKey, byte[] stopKey) {
+    mStartKey = ((null == startKey) || (startKey.length == 0)) ? null : startKey;
+    mStopKey = ((null == stopKey) || (stopKey.length == 0)) ? null : stopKey;
+  }
+
+  /**
+   * Creates the range of the row keys starting with a given prefix.
+   *
+   * @param prefix Row key prefix.
+   * @return the range of the row keys starting with the prefix.
+   */
+  public static HBaseRowKeyRange forPrefix(byte[] prefix) {
+    return new HBaseRowKeyRange(prefix, getPrefixStopKey(prefix));
+  }
+
+  /**
+   * Creates the range covered by an HBase scan.
+   *
+   * @param scan HBase scan.
+   * @return the range of row keys covered by the scan.
+   */
+  public static HBaseRowKeyRange forScan(Scan scan) {
+    return new HBaseRowKeyRange(scan.getStartRow(), scan.getStopRow());
+  }
+
+  /** @return the start row key (inclusive), or null for unbounded. */
+  public byte[] getStartKey() {
+    return mStartKey;
+  }
+
+  /** @return the stop row key (exclusive), or null for unbounded. */
+  public byte[] getStopKey() {
+    return mStopKey;
+  }
+
+  /** @return the start row key as an HBase scan start row (empty for unbounded). */
+  public byte[] getStartRow() {
+    return (null == mStartKey) ? new byte[0] : mStartKey;
+  }
+
+  /** @return the stop row key as an HBase scan stop row (empty for unbounded). */
+  public byte[] getStopRow() {
+    return (null == mStopKey) ? new byte[0] : mStopKey;
+  }
+
+  /** @return whether this range contains no row key. */
+  public boolean isEmpty() {
+    return (null != mStopKey) && (Bytes.compareTo(getStartRow(), mStopKey) >= 0);
+  }
+
+  /**
+   * Reports whether a row key belongs to this range.
+   *
+   * @param rowKey HBase row key.
+   * @return whether the row key belongs to this range.
+   */
+  public boolean contains(byte[] rowKey) {
+    return (Bytes.compareTo(getStartRow(), rowKey) <= 0)
+        && ((null == mStopKey) || (Bytes.compareTo(rowKey, mStopKey) < 0));
+  }
+
+  /**
+   * Intersects this range with another range.
+   *
+   * @param other Other range.
+   * @return the intersection of the two ranges. May be empty.
+   */
+  public HBaseRowKeyRange intersect(HBaseRowKeyRange other) {
+    final byte[] startKey = (Bytes.compareTo(getStartRow(), other.getStartRow()) >= 0)
+        ? mStartKey
+        : other.mStartKey;
+    final byte[] stopKey;
+    if (null == mStopKey) {
+      stopKey = other.mStopKey;
+    } else if (null == other.mStopKey) {
+      stopKey = mStopKey;
+    } else {
+      stopKey = (Bytes.compareTo(mStopKey, other.mStopKey) <= 0) ? mStopKey : other.mStopKey;
+    }
+    return new HBaseRowKeyRange(startKey, stopKey);
+  }
+
+  /**
+   * Restricts a copy of an HBase scan to this range.
+   *
+   * @param scan HBase scan. Not modified.
+   * @return a copy of the scan, restricted to this range.
+   * @throws IOException on I/O error.
+   */
+  public Scan restrict(Scan scan) throws IOException {
+    final Scan restricted = new Scan(scan);
+    restricted.setStartRow(getStartRow());
+    restricted.setStopRow(getStopRow());
+    return restricted;
+  }
+
+  /**
+   * Sorts ranges and merges the ranges that overlap or are adjacent. Empty ranges are dropped.
+   *
+   * @param ranges Ranges to merge.
+   * @return the disjoint ranges covering the same row keys, ordered by row key.
+   */
+  public static List<HBaseRowKeyRange> coalesce(Collection<HBaseRowKeyRange> ranges) {
+    final List<HBaseRowKeyRange> sorted = Lists.newArrayList();
+    for (HBaseRowKeyRange range : ranges) {
+      if (!range.isEmpty()) {
+        sorted.add(range);
+      }
+    }
+    Collections.sort(sorted, START_KEY_ORDER);
+
+    final List<HBaseRowKeyRange> merged = Lists.newArrayList();
+    HBaseRowKeyRange current = null;
+    for (HBaseRowKeyRange range : sorted) {
+      if (null == current) {
+        current = range;
+      } else if ((null == current.mStopKey)
+          || (Bytes.compareTo(range.getStartRow(), current.mStopKey) <= 0)) {
+        // Overlapping or adjacent ranges:
+        final boolean isLonger = (null != current.mStopKey)
+            && ((null == range.mStopKey)
+                || (Bytes.compareTo(range.mStopKey, current.mStopKey) > 0));
+        if (isLonger) {
+          current = new HBaseRowKeyRange(current.mStartKey, range.mStopKey);
+        }
+      } else {
+        merged.add(current);
+        current = range;
+      }
+    }
+    if (null != current) {
+      merged.add(current);
+    }
+    return merged;
+  }
+
+  /**
+   * Intersects two sets of ranges.
+   *
+   * @param ranges1 First set of ranges.
+   * @param ranges2 Second set of ranges.
+   * @return the disjoint ranges covering the row keys that belong to both sets of ranges,
+   *     ordered by row key.
+   */
+  public static List<HBaseRowKeyRange> intersectAll(
+      Collection<HBaseRowKeyRange> ranges1,
+      Collection<HBaseRowKeyRange> ranges2) {
+    final List<HBaseRowKeyRange> intersections = Lists.newArrayList();
+    for (HBaseRowKeyRange range1 : ranges1) {
+      for (HBaseRowKeyRange range2 : ranges2) {
+        intersections.add(range1.intersect(range2));
+      }
+    }
+    return coalesce(intersections);
+  }
+
+  /**
+   * Computes the smallest row key greater than all the row keys starting with a prefix.
+   *
+   * @param prefix Row key prefix.
+   * @return the smallest row key greater than all the row keys starting with the prefix,
+   *     or an empty array (unbounded) if there is none.
+   */
+  static byte[] getPrefixStopKey(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; --i) {
+      if (prefix[i] != (byte) 0xff) {
+        final byte[] stopKey = Arrays.copyOf(prefix, i + 1);
+        stopKey[i] += 1;
+        return stopKey;
+      }
+    }
+    return new byte[0];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof HBaseRowKeyRange)) {
+      return false;
+    }
+    final HBaseRowKeyRange range = (HBaseRowKeyRange) other;
+    return Arrays.equals(mStartKey, range.mStartKey) && Arrays.equals(mStopKey, range.mStopKey);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(mStartKey) + Arrays.hashCode(mStopKey);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString() {
+    return String.format("[%s, %s)",
+        Bytes.toStringBinary(getStartRow()), Bytes.toStringBinary(getStopRow()));
+  }
+}
@@ -0,0 +1,396 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiIOException;
+import org.kiji.schema.KijiScanAggregates;
+import org.kiji.schema.KijiScanAggregates.ColumnAggregates;
+import org.kiji.schema.NoSuchColumnException;
+import org.kiji.schema.RuntimeInterruptedException;
+import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.impl.ColumnNameTranslator;
+import org.kiji.schema.util.HyperLogLog;
+
+/**
+ * Aggregates the rows of a Kiji table covered by a set of scans, without decoding them.
+ *
+ * <p>
+ *   The scans are split along region boundaries, and the regions are aggregated concurrently,
+ *   each with its own HTable. The partial aggregates of the regions are then merged.
+ * </p>
+ *
+ * <p>
+ *   Kiji does not deploy coprocessors to the region servers: the regions are aggregated on the
+ *   client, and only the cells requested by the data request are transferred.
+ * </p>
+ */
+@ApiAudience.Private
+final class HBaseScanAggregator {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseScanAggregator.class);
+
+  /** Name of the system property for the default number of regions to aggregate concurrently. */
+  public static final String PARALLELISM_PROPERTY =
+      "org.kiji.schema.impl.HBaseScanAggregator.PARALLELISM";
+
+  /** Default number of regions to aggregate concurrently. */
+  public static final int DEFAULT_PARALLELISM =
+      Integer.parseInt(System.getProperty(PARALLELISM_PROPERTY, "8"));
+
+  /** The table being aggregated. */
+  private final HBaseKijiTable mTable;
+
+  /** Translates HBase column names into Kiji column names. */
+  private final ColumnNameTranslator mColumnNameTranslator;
+
+  /** Requested columns, keyed by column name. */
+  private final Map<String, KijiDataRequest.Column> mColumnRequests = Maps.newLinkedHashMap();
+
+  /** Names of the requested columns that are counters. */
+  private final List<String> mCounterColumns = Lists.newArrayList();
+
+  /**
+   * Initializes an aggregator.
+   *
+   * @param table Table to aggregate.
+   * @param dataRequest Columns to aggregate. The data request must be valid for the table.
+   * @throws IOException on I/O error.
+   */
+  HBaseScanAggregator(HBaseKijiTable table, KijiDataRequest dataRequest) throws IOException {
+    mTable = table;
+    final KijiTableLayout layout = table.getLayout();
+    mColumnNameTranslator = new ColumnNameTranslator(layout);
+    for (KijiDataRequest.Column columnRequest : dataRequest.getColumns()) {
+      final KijiColumnName column = columnRequest.getColumnName();
+      mColumnRequests.put(column.getName(), columnRequest);
+      // Entire group-type families may mix counters and other columns:
+      final boolean isCounter =
+          (column.isFullyQualified() || layout.getFamilyMap().get(column.getFamily()).isMapType())
+          && (layout.getCellSchema(column).getType() == SchemaType.COUNTER);
+      if (isCounter) {
+        mCounterColumns.add(column.getName());
+      }
+    }
+  }
+
+  /**
+   * Aggregates the rows covered by a set of scans.
+   *
+   * @param scans Scans covering disjoint row key ranges, ordered by row key.
+   * @param regions Regions of the table.
+   * @param parallelism Maximum number of regions to aggregate concurrently.
+   * @param samplingRate Fraction of the selected rows the scans sample.
+   * @return the aggregates of the rows covered by the scans.
+   * @throws IOException on I/O error.
+   */
+  KijiScanAggregates aggregate(
+      List<Scan> scans,
+      List<HRegionInfo> regions,
+      int parallelism,
+      double samplingRate)
+      throws IOException {
+    final List<List<Scan>> groups = HBaseKijiMultiRangeRowScanner.groupByRegion(scans, regions);
+    LOG.debug("Aggregating {} ranges in {} regions, with up to {} concurrent scans.",
+        scans.size(), groups.size(), parallelism);
+    final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, groups.size())),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("kiji-scan-aggregator-%d")
+            .build());
+    try {
+      final List<Future<PartialAggregates>> futures = Lists.newArrayList();
+      for (List<Scan> group : groups) {
+        futures.add(executor.submit(new GroupAggregationTask(group)));
+      }
+      final PartialAggregates aggregates = new PartialAggregates();
+      for (Future<PartialAggregates> future : futures) {
+        aggregates.merge(future.get());
+      }
+      return aggregates.toScanAggregates(samplingRate);
+
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeInterruptedException(ie);
+    } catch (ExecutionException ee) {
+      final Throwable cause = ee.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new KijiIOException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
+  /** Aggregates of the cells of a requested column, for a subset of the rows. */
+  private static final class PartialColumnAggregates {
+    /** Maximum number of versions to aggregate per HBase column. */
+    private final int mMaxVersions;
+
+    /** Whether the cells are counters. */
+    private final boolean mIsCounter;
+
+    /** Number of cells. */
+    private long mCellCount = 0;
+
+    /** Sketch of the distinct cell values. */
+    private final HyperLogLog mDistinctValues = new HyperLogLog();
+
+    /** Sum of the counters. */
+    private long mCounterSum = 0;
+
+    /** Minimum counter. */
+    private long mCounterMin = Long.MAX_VALUE;
+
+    /** Maximum counter. */
+    private long mCounterMax = Long.MIN_VALUE;
+
+    /**
+     * Initializes empty aggregates for a column.
+     *
+     * @param maxVersions Maximum number of versions to aggregate per HBase column.
+     * @param isCounter Whether the cells are counters.
+     */
+    private PartialColumnAggregates(int maxVersions, boolean isCounter) {
+      mMaxVersions = maxVersions;
+      mIsCounter = isCounter;
+    }
+
+    /**
+     * Aggregates a cell.
+     *
+     * @param value Encoded content of the cell.
+     */
+    private void add(byte[] value) {
+      mCellCount += 1;
+      mDistinctValues.offer(value);
+      if (mIsCounter) {
+        final long counter = Bytes.toLong(value);
+        mCounterSum += counter;
+        mCounterMin = Math.min(mCounterMin, counter);
+        mCounterMax = Math.max(mCounterMax, counter);
+      }
+    }
+
+    /**
+     * Merges the aggregates of another subset of the rows into these aggregates.
+     *
+     * @param other Aggregates of the same column for another subset of the rows.
+     */
+    private void merge(PartialColumnAggregates other) {
+      mCellCount += other.mCellCount;
+      mDistinctValues.merge(other.mDistinctValues);
+      mCounterSum += other.mCounterSum;
+      mCounterMin = Math.min(mCounterMin, other.mCounterMin);
+      mCounterMax = Math.max(mCounterMax, other.mCounterMax);
+    }
+
+    /**
+     * Builds the final aggregates of the column.
+     *
+     * @return the final aggregates of the column.
+     */
+    private ColumnAggregates toColumnAggregates() {
+      final boolean hasCounters = mIsCounter && (mCellCount > 0);
+      return new ColumnAggregates(
+          mCellCount,
+          mDistinctValues.estimate(),
+          mIsCounter ? mCounterSum : null,
+          hasCounters ? mCounterMin : null,
+          hasCounters ? mCounterMax : null);
+    }
+  }
+
+  /** Aggregates of a subset of the rows. */
+  private final class PartialAggregates {
+    /** Number of rows. */
+    private long mRowCount = 0;
+
+    /** Aggregates of each requested column, keyed by column name. */
+    private final Map<String, PartialColumnAggregates> mColumns = Maps.newLinkedHashMap();
+
+    /** Last cell aggregated. Scanner batches may split a row, or a column, across results. */
+    private KeyValue mLastKeyValue = null;
+
+    /** Aggregates of the requested column the last cell belongs to (may be null). */
+    private PartialColumnAggregates mLastColumn = null;
+
+    /** Number of versions of the HBase column of the last cell seen so far. */
+    private int mLastColumnVersions = 0;
+
+    /** Initializes empty aggregates. */
+    private PartialAggregates() {
+      for (KijiDataRequest.Column columnRequest : mColumnRequests.values()) {
+        mColumns.put(columnRequest.getName(), new PartialColumnAggregates(
+            columnRequest.getMaxVersions(), mCounterColumns.contains(columnRequest.getName())));
+      }
+    }
+
+    /**
+     * Aggregates the cells of a row, or of a batch of cells from a row.
+     *
+     * @param result HBase cells, ordered by column then by decreasing timestamp.
+     */
+    private void add(Result result) {
+      final KeyValue[] kvs = result.raw();
+      if ((null == mLastKeyValue) || !mLastKeyValue.matchingRow(kvs[0])) {
+        mRowCount += 1;
+        mLastKeyValue = null;
+      }
+      if (mColumns.isEmpty()) {
+        mLastKeyValue = kvs[kvs.length - 1];
+        return;
+      }
+      for (KeyValue kv : kvs) {
+        if ((null == mLastKeyValue)
+            || !mLastKeyValue.matchingColumn(kv.getFamily(), kv.getQualifier())) {
+          mLastColumn = getColumnAggregates(kv);
+          mLastColumnVersions = 0;
+        }
+        mLastKeyValue = kv;
+        mLastColumnVersions += 1;
+        if ((null != mLastColumn) && (mLastColumnVersions <= mLastColumn.mMaxVersions)) {
+          mLastColumn.add(kv.getValue());
+        }
+      }
+    }
+
+    /**
+     * Finds the aggregates of the requested column an HBase cell belongs to.
+     *
+     * @param kv HBase cell.
+     * @return the aggregates of the requested column the cell belongs to,
+     *     or null if the cell does not belong to a requested column (eg. read by a row filter).
+     */
+    private PartialColumnAggregates getColumnAggregates(KeyValue kv) {
+      final KijiColumnName column;
+      try {
+        column = mColumnNameTranslator.toKijiColumnName(
+            new HBaseColumnName(kv.getFamily(), kv.getQualifier()));
+      } catch (NoSuchColumnException nsce) {
+        // Cells from columns that are no longer in the layout:
+        return null;
+      }
+      final PartialColumnAggregates aggregates = mColumns.get(column.getName());
+      return (null != aggregates) ? aggregates : mColumns.get(column.getFamily());
+    }
+
+    /**
+     * Merges the aggregates of another subset of the rows into these aggregates.
+     *
+     * @param other Aggregates of another subset of the rows.
+     */
+    private void merge(PartialAggregates other) {
+      mRowCount += other.mRowCount;
+      for (Map.Entry<String, PartialColumnAggregates> entry : mColumns.entrySet()) {
+        entry.getValue().merge(other.mColumns.get(entry.getKey()));
+      }
+    }
+
+    /**
+     * Builds the final aggregates.
+     *
+     * @param samplingRate Fraction of the selected rows that were aggregated.
+     * @return the final aggregates.
+     */
+    private KijiScanAggregates toScanAggregates(double samplingRate) {
+      final Map<KijiColumnName, ColumnAggregates> columns = Maps.newLinkedHashMap();
+      for (KijiDataRequest.Column columnRequest : mColumnRequests.values()) {
+        columns.put(columnRequest.getColumnName(),
+            mColumns.get(columnRequest.getName()).toColumnAggregates());
+      }
+      return new KijiScanAggregates(mRowCount, columns, samplingRate);
+    }
+  }
+
+  /** Aggregates the rows of a group of ranges within a region. */
+  private final class GroupAggregationTask implements Callable<PartialAggregates> {
+    /** Scans of the group of ranges. */
+    private final List<Scan> mScans;
+
+    /**
+     * Initializes a task aggregating a group of ranges.
+     *
+     * @param scans Scans of the group of ranges.
+     */
+    private GroupAggregationTask(List<Scan> scans) {
+      mScans = scans;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PartialAggregates call() throws Exception {
+      final PartialAggregates aggregates = new PartialAggregates();
+      // HTable instances must not be shared across threads:
+      final HTableInterface htable = HBaseKijiTable.createHTableInterface(mTable);
+      try {
+        for (Scan scan : mScans) {
+          final ResultScanner scanner = htable.getScanner(scan);
+          try {
+            for (Result result : scanner) {
+              if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+              }
+              aggregates.add(result);
+            }
+          } finally {
+            scanner.close();
+          }
+        }
+      } finally {
+        htable.close();
+      }
+      return aggregates;
+    }
+  }
+}
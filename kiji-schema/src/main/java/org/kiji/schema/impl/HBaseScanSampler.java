@@ -0,0 +1,331 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.RandomRowFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions.SamplingMode;
+import org.kiji.schema.avro.RowKeyEncoding;
+import org.kiji.schema.avro.RowKeyFormat;
+import org.kiji.schema.avro.RowKeyFormat2;
+import org.kiji.schema.layout.KijiTableLayout;
+
+/**
+ * Turns an HBase scan into scans over a random sample of the rows of a table.
+ *
+ * <p>
+ *   When the row keys start with a hash, the rows are uniformly distributed over the hash space.
+ *   A uniform sample is then obtained by scanning, in each region, a random sub-range of the hash
+ *   space whose width is the sampling rate times the width of the region. Only the sampled rows
+ *   are read from disk, and the load is spread across all the regions.
+ * </p>
+ * <p>
+ *   Otherwise, or when explicitly requested, every row is considered and kept with a probability
+ *   equal to the sampling rate, using a server-side HBase filter. This avoids shipping the rows
+ *   that are not sampled, but the region servers still read all of them.
+ * </p>
+ */
+@ApiAudience.Private
+final class HBaseScanSampler {
+  private static final Logger LOG = LoggerFactory.getLogger(HBaseScanSampler.class);
+
+  /** Maximum number of leading hash bytes used to pick the sampled key ranges. */
+  private static final int MAX_HASH_PREFIX_SIZE = 8;
+
+  /** Fraction of the rows to sample, in (0, 1]. */
+  private final double mSamplingRate;
+
+  /** Random generator used to pick the sampled key ranges. */
+  private final Random mRandom;
+
+  /** Width of the hash space covered by the sampled key ranges, across all the scans sampled. */
+  private BigInteger mSampledWidth = BigInteger.ZERO;
+
+  /** Width of the hash space covered by the scans sampled into key ranges. */
+  private BigInteger mScannedWidth = BigInteger.ZERO;
+
+  /**
+   * Initializes a sampler.
+   *
+   * @param samplingRate Fraction of the rows to sample, in (0, 1].
+   * @param seed Seed for the random generator, or null for a random seed.
+   */
+  HBaseScanSampler(double samplingRate, Long seed) {
+    Preconditions.checkArgument((samplingRate > 0.0) && (samplingRate <= 1.0),
+        "Sampling rate must be in (0, 1], got %s.", samplingRate);
+    mSamplingRate = samplingRate;
+    mRandom = (null != seed) ? new Random(seed) : new Random();
+  }
+
+  /**
+   * Reports the fraction of the rows effectively sampled by all the scans computed so far.
+   *
+   * <p>
+   *   When sampling key ranges, this is the total width of the sampled ranges over the total width
+   *   of the scanned ranges, measured in the hash space. It differs from the requested rate due to
+   *   rounding, and because each region is sampled by a single contiguous range which may only
+   *   partially overlap the scanned ranges.
+   * </p>
+   *
+   * @return the fraction of the rows effectively sampled.
+   */
+  double getEffectiveRate() {
+    if (mScannedWidth.signum() == 0) {
+      // Only sampled individual rows, or no scanned range intersects any region:
+      return mSamplingRate;
+    }
+    return mSampledWidth.doubleValue() / mScannedWidth.doubleValue();
+  }
+
+  /**
+   * Reports the number of leading bytes of the row keys that are uniformly distributed.
+   *
+   * @param layout Layout of the table.
+   * @return the number of leading hash bytes in the row keys, or 0 if row keys are not hashed.
+   */
+  static int getHashPrefixSize(KijiTableLayout layout) {
+    final Object keysFormat = layout.getDesc().getKeysFormat();
+    if (keysFormat instanceof RowKeyFormat) {
+      final RowKeyFormat format = (RowKeyFormat) keysFormat;
+      switch (format.getEncoding()) {
+        case HASH:
+          // Row keys are entirely made of the hash:
+          return MAX_HASH_PREFIX_SIZE;
+        case HASH_PREFIX:
+          return format.getHashSize();
+        default:
+          return 0;
+      }
+    } else if (keysFormat instanceof RowKeyFormat2) {
+      final RowKeyFormat2 format = (RowKeyFormat2) keysFormat;
+      if ((format.getEncoding() == RowKeyEncoding.FORMATTED) && (null != format.getSalt())) {
+        return format.getSalt().getHashSize();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Computes the scans that read a random sample of the rows covered by a scan.
+   *
+   * @param scan Scan to sample. Not modified.
+   * @param mode Requested sampling strategy.
+   * @param layout Layout of the table.
+   * @param regions Regions of the table. Only used when sampling key ranges.
+   * @return the scans to run sequentially, ordered by row key.
+   * @throws IOException on I/O error.
+   */
+  List<Scan> sample(
+      Scan scan,
+      SamplingMode mode,
+      KijiTableLayout layout,
+      List<HRegionInfo> regions)
+      throws IOException {
+    final int hashPrefixSize = Math.min(getHashPrefixSize(layout), MAX_HASH_PREFIX_SIZE);
+    if ((mode == SamplingMode.ROWS) || (hashPrefixSize == 0)) {
+      if (mode == SamplingMode.KEY_RANGES) {
+        LOG.debug("Row keys of table {} are not hashed: sampling individual rows instead.",
+            layout.getName());
+      }
+      return Collections.singletonList(sampleRows(scan));
+    }
+    return sampleKeyRanges(scan, regions, hashPrefixSize);
+  }
+
+  /**
+   * Adds server-side row sampling to a scan.
+   *
+   * @param scan Scan to sample. Not modified.
+   * @return a copy of the scan that keeps each row with a probability equal to the sampling rate.
+   * @throws IOException on I/O error.
+   */
+  private Scan sampleRows(Scan scan) throws IOException {
+    final Scan sampled = new Scan(scan);
+    final Filter rowSampler = new RandomRowFilter((float) mSamplingRate);
+    if (null == scan.getFilter()) {
+      sampled.setFilter(rowSampler);
+    } else {
+      // Sample first, so that other filters are only evaluated on the sampled rows:
+      sampled.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL,
+          Lists.newArrayList(rowSampler, scan.getFilter())));
+    }
+    return sampled;
+  }
+
+  /**
+   * Restricts a scan to a random sub-range of the hash space of each region.
+   *
+   * @param scan Scan to sample. Not modified.
+   * @param regions Regions of the table.
+   * @param hashPrefixSize Number of leading bytes of the row keys to interpret as a hash.
+   * @return the scans to run sequentially, ordered by row key.
+   * @throws IOException on I/O error.
+   */
+  private List<Scan> sampleKeyRanges(Scan scan, List<HRegionInfo> regions, int hashPrefixSize)
+      throws IOException {
+    final BigInteger hashSpace = BigInteger.ONE.shiftLeft(8 * hashPrefixSize);
+    final FixedPointRate rate = new FixedPointRate(mSamplingRate);
+    final List<HRegionInfo> sortedRegions = Lists.newArrayList(regions);
+    Collections.sort(sortedRegions);
+
+    // Range of the hash space covered by the scan, at the resolution of the hash prefix:
+    final BigInteger scanStart = toHashValue(scan.getStartRow(), hashPrefixSize);
+    final BigInteger scanStop = (scan.getStopRow().length == 0)
+        ? hashSpace
+        : toHashValue(scan.getStopRow(), hashPrefixSize)
+            .add((scan.getStopRow().length > hashPrefixSize) ? BigInteger.ONE : BigInteger.ZERO)
+            .min(hashSpace);
+
+    final List<Scan> scans = Lists.newArrayList();
+    BigInteger sampledWidth = BigInteger.ZERO;
+    BigInteger scannedWidth = BigInteger.ZERO;
+    for (HRegionInfo region : sortedRegions) {
+      final BigInteger regionStart = toHashValue(region.getStartKey(), hashPrefixSize);
+      final BigInteger regionEnd = (region.getEndKey().length == 0)
+          ? hashSpace
+          : toHashValue(region.getEndKey(), hashPrefixSize);
+      final BigInteger regionWidth = regionEnd.subtract(regionStart);
+      if (regionWidth.signum() <= 0) {
+        // Region is narrower than the hash prefix resolution: no row to sample from.
+        continue;
+      }
+
+      final BigInteger width = rate.applyTo(regionWidth);
+      final BigInteger slack = regionWidth.subtract(width);
+      final BigInteger offset = (slack.signum() == 0)
+          ? BigInteger.ZERO
+          : new BigInteger(slack.bitLength() + 8, mRandom).mod(slack.add(BigInteger.ONE));
+      final BigInteger start = regionStart.add(offset);
+      final BigInteger stop = start.add(width);
+      scannedWidth = scannedWidth.add(getOverlap(regionStart, regionEnd, scanStart, scanStop));
+      sampledWidth = sampledWidth.add(getOverlap(start, stop, scanStart, scanStop));
+
+      final HBaseRowKeyRange range = new HBaseRowKeyRange(
+          (start.signum() == 0) ? null : toRowKey(start, hashPrefixSize),
+          stop.equals(hashSpace) ? null : toRowKey(stop, hashPrefixSize))
+          .intersect(HBaseRowKeyRange.forScan(scan));
+      if (range.isEmpty()) {
+        // Sampled range does not intersect the scanned range.
+        continue;
+      }
+      scans.add(range.restrict(scan));
+    }
+
+    mSampledWidth = mSampledWidth.add(sampledWidth);
+    mScannedWidth = mScannedWidth.add(scannedWidth);
+    LOG.debug("Sampling {} key ranges covering {} of the scanned hash space.",
+        scans.size(), (scannedWidth.signum() == 0)
+            ? 0.0
+            : sampledWidth.doubleValue() / scannedWidth.doubleValue());
+    return scans;
+  }
+
+  /**
+   * Computes the width of the intersection of two ranges of the hash space.
+   *
+   * @param start1 Start of the first range, inclusive.
+   * @param stop1 End of the first range, exclusive.
+   * @param start2 Start of the second range, inclusive.
+   * @param stop2 End of the second range, exclusive.
+   * @return the width of the intersection of the two ranges, or 0 if they do not intersect.
+   */
+  private static BigInteger getOverlap(
+      BigInteger start1,
+      BigInteger stop1,
+      BigInteger start2,
+      BigInteger stop2) {
+    return stop1.min(stop2).subtract(start1.max(start2)).max(BigInteger.ZERO);
+  }
+
+  /**
+   * Interprets the leading bytes of a row key as an unsigned integer.
+   *
+   * @param rowKey HBase row key. Shorter keys are right-padded with zeros.
+   * @param size Number of leading bytes to interpret.
+   * @return the unsigned integer value of the leading bytes of the row key.
+   */
+  static BigInteger toHashValue(byte[] rowKey, int size) {
+    return new BigInteger(1, Arrays.copyOf(rowKey, size));
+  }
+
+  /**
+   * Encodes an unsigned integer into a row key prefix.
+   *
+   * @param value Unsigned integer, lower than 2^(8 * size).
+   * @param size Number of bytes of the row key prefix.
+   * @return the row key prefix.
+   */
+  static byte[] toRowKey(BigInteger value, int size) {
+    final byte[] bytes = value.toByteArray();  // Big-endian, with an optional sign byte.
+    final byte[] rowKey = new byte[size];
+    final int length = Math.min(bytes.length, size);
+    System.arraycopy(bytes, bytes.length - length, rowKey, size - length, length);
+    return rowKey;
+  }
+
+  /** Applies a sampling rate to arbitrarily large integers. */
+  private static final class FixedPointRate {
+    /** Fixed-point precision of the rate, in bits. */
+    private static final int PRECISION = 30;
+
+    /** Sampling rate, as a fixed-point integer. */
+    private final BigInteger mFixedPointRate;
+
+    /**
+     * Initializes a fixed-point rate.
+     *
+     * @param rate Rate, in (0, 1].
+     */
+    private FixedPointRate(double rate) {
+      mFixedPointRate = BigInteger.valueOf((long) Math.ceil(rate * (1L << PRECISION)));
+    }
+
+    /**
+     * Applies the rate to a width, rounding up.
+     *
+     * @param width Width to apply the rate to. Must be positive.
+     * @return the rate times the width, rounded up, between 1 and the width.
+     */
+    private BigInteger applyTo(BigInteger width) {
+      final BigInteger product = width.multiply(mFixedPointRate);
+      BigInteger result = product.shiftRight(PRECISION);
+      if (result.shiftLeft(PRECISION).compareTo(product) < 0) {
+        result = result.add(BigInteger.ONE);
+      }
+      return result.min(width).max(BigInteger.ONE);
+    }
+  }
+}
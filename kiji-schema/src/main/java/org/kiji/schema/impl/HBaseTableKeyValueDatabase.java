@@ -21,6 +21,7 @@ package org.kiji.schema.impl;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -39,6 +40,8 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
 import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.slf4j.Logger;
@@ -52,7 +55,8 @@ import org.kiji.schema.util.ResourceUtils;
 
  /**
  * Manages key-value pairs on a per table basis. Storage of these key-value pairs is provided by
- * a column family of an HTable.
+ * a column family of an HTable: each Kiji table has one row, with one column per key.
+ * Operations on several keys of a table are therefore single-row operations.
  */
 @ApiAudience.Private
 public class HBaseTableKeyValueDatabase
@@ -90,6 +94,28 @@ public class HBaseTableKeyValueDatabase
     return values.get(0);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, byte[]> getValues(String table, Collection<String> keys)
+      throws IOException {
+    final Map<String, byte[]> values = Maps.newHashMap();
+    if (keys.isEmpty()) {
+      return values;
+    }
+    final Get get = new Get(Bytes.toBytes(table));
+    for (String key : keys) {
+      get.addColumn(mFamilyBytes, Bytes.toBytes(key));
+    }
+    final Result result = mTable.get(get);
+    if (result.isEmpty()) {
+      return values;
+    }
+    for (Map.Entry<byte[], byte[]> entry : result.getFamilyMap(mFamilyBytes).entrySet()) {
+      values.put(Bytes.toString(entry.getKey()), entry.getValue());
+    }
+    return values;
+  }
+
   /** {@inheritDoc} */
   @Override
   public List<byte[]> getValues(String table, String key, int numVersions) throws IOException {
@@ -152,6 +178,21 @@ public class HBaseTableKeyValueDatabase
     return this;
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public HBaseTableKeyValueDatabase putValues(String table, Map<String, byte[]> values)
+      throws IOException {
+    if (values.isEmpty()) {
+      return this;
+    }
+    final Put put = new Put(Bytes.toBytes(table));
+    for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+      put.add(mFamilyBytes, Bytes.toBytes(entry.getKey()), entry.getValue());
+    }
+    mTable.put(put);
+    return this;
+  }
+
   /** {@inheritDoc} */
   @Override
   public void removeValues(String table, String key) throws IOException {
@@ -165,7 +206,8 @@ public class HBaseTableKeyValueDatabase
   public Set<String> keySet(String table) throws IOException {
     Set<String> keys = new HashSet<String>();
     Get get = new Get(Bytes.toBytes(table));
-    get.addFamily(mFamilyBytes);
+    // Only the qualifiers are needed, not the values:
+    get.addFamily(mFamilyBytes).setFilter(new KeyOnlyFilter());
     Result result = mTable.get(get);
     if (result.isEmpty()) {
       return keys;
@@ -183,7 +225,9 @@ public class HBaseTableKeyValueDatabase
   @Override
   public Set<String> tableSet() throws IOException {
     Scan scan = new Scan();
-    scan.addFamily(mFamilyBytes).setFilter(new KeyOnlyFilter());
+    // Only the row keys are needed: one key per row, without value.
+    scan.addFamily(mFamilyBytes).setFilter(new FilterList(
+        FilterList.Operator.MUST_PASS_ALL, new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
     ResultScanner resultScanner = mTable.getScanner(scan);
     if (null == resultScanner) {
       LOG.debug("No results were returned when you scanned for the {} family",
@@ -204,10 +248,9 @@ public class HBaseTableKeyValueDatabase
   /** {@inheritDoc} */
   @Override
   public void removeAllValues(String table) throws IOException {
-    Set<String> keysToRemove = keySet(table);
-    for (String key : keysToRemove) {
-      removeValues(table, key);
-    }
+    final Delete delete = new Delete(Bytes.toBytes(table));
+    delete.deleteFamily(mFamilyBytes);
+    mTable.delete(delete);
   }
 
   /** {@inheritDoc} */
@@ -235,6 +278,7 @@ public class HBaseTableKeyValueDatabase
       throws IOException {
     LOG.debug(String.format("Restoring '%s' key-value(s) from backup for table '%s'.",
         keyValueBackup.getKeyValues().size(), tableName));
+    final List<Put> puts = Lists.newArrayList();
     for (KeyValueBackupEntry kvRecord : keyValueBackup.getKeyValues()) {
       final byte[] key = Bytes.toBytes(kvRecord.getKey());
       final ByteBuffer valueBuffer = kvRecord.getValue(); // Read in ByteBuffer of values
@@ -245,9 +289,9 @@ public class HBaseTableKeyValueDatabase
           + ", timestamp '%s', and value '%s' to the" + " meta table named '%s'.", tableName,
           Bytes.toString(mFamilyBytes), Bytes.toString(key), "" + timestamp, Bytes.toString(value),
           Bytes.toString(mTable.getTableName())));
-      final Put put = new Put(Bytes.toBytes(tableName)).add(mFamilyBytes, key, timestamp, value);
-      mTable.put(put);
+      puts.add(new Put(Bytes.toBytes(tableName)).add(mFamilyBytes, key, timestamp, value));
     }
+    mTable.put(puts);
     LOG.debug("Flushing commits to restore key-values from backup.");
     mTable.flushCommits();
   }
@@ -192,6 +192,8 @@ public final class HBaseVersionPager implements KijiPager {
         .addColumns(ColumnsDef.create()
             .withFilter(mColumnRequest.getFilter())
             .withMaxVersions(maxVersions)
+            .withReaderSchema(mColumnRequest.getReaderSchema())
+            .withProjectedFields(mColumnRequest.getProjectedFields())
             .add(mColumnName))
         .build();
 
@@ -0,0 +1,311 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.HConnection;
+import org.apache.hadoop.hbase.client.HConnectionManager;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.platform.SchemaPlatformBridge;
+
+/**
+ * Factory for HTableInterface that creates lightweight HTable handles sharing resources.
+ *
+ * <p>
+ *   All the handles created with equivalent configurations share one HBase connection, with its
+ *   region location cache, and one thread pool for their batch operations. Configurations are
+ *   equivalent when they point to the same HBase cluster (see {@link #getClusterKey}) with the
+ *   same client settings: the settings HBase keys its connections with (pause, retries, timeouts,
+ *   prefetch, meta scanner caching and client instance ID), the settings handles read from the
+ *   configuration of the connection (operation timeout and maximum cell size), and the thread
+ *   pool settings. Each handle still has its own write buffer, and takes its write buffer size
+ *   and scanner caching from the configuration it is created with.
+ * </p>
+ *
+ * <p>
+ *   Closing a handle releases neither the connection nor the thread pool. Users of the handles,
+ *   such as Kiji instances, retain the shared resources of their configuration with
+ *   {@link #retainResources} and release them with {@link #releaseResources} once their handles
+ *   are closed: the resources are released with the last retention. Resources never retained
+ *   live until {@link #shutdown()} is called; the threads of the pool expire when idle.
+ *   On platforms whose HTables cannot use an external connection and thread pool, no shared
+ *   resource is created and handles are regular HTables.
+ * </p>
+ */
+@ApiAudience.Private
+public final class PooledHTableInterfaceFactory implements HTableInterfaceFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(PooledHTableInterfaceFactory.class);
+
+  /** Singleton. */
+  private static final PooledHTableInterfaceFactory POOLED = new PooledHTableInterfaceFactory();
+
+  /** Client settings that select a distinct HBase connection, in addition to the cluster. */
+  private static final List<String> CONNECTION_SETTINGS = ImmutableList.of(
+      "hbase.client.pause",
+      "hbase.client.retries.number",
+      "hbase.rpc.timeout",
+      "hbase.client.prefetch.limit",
+      "hbase.meta.scanner.caching",
+      "hbase.client.instance.id",
+      "hbase.client.operation.timeout",
+      "hbase.client.keyvalue.maxsize",
+      "hbase.htable.threads.max",
+      "hbase.htable.threads.keepalivetime");
+
+  /** Client settings applied to each handle, which do not select a distinct connection. */
+  private static final List<String> HANDLE_SETTINGS = ImmutableList.of(
+      "hbase.client.write.buffer",
+      "hbase.client.scanner.caching");
+
+  /** @return the pooled factory singleton. */
+  public static HTableInterfaceFactory get() {
+    return POOLED;
+  }
+
+  /**
+   * Retains the resources shared by the handles created with a configuration.
+   *
+   * <p> Must be paired with a call to {@link #releaseResources} with an equivalent configuration.
+   *
+   * @param conf Configuration of the HBase cluster.
+   * @throws IOException on I/O error.
+   */
+  public static void retainResources(Configuration conf) throws IOException {
+    if (SchemaPlatformBridge.get().supportsSharedHTableResources()) {
+      POOLED.getSharedResources(conf, true);
+    }
+  }
+
+  /**
+   * Releases the resources shared by the handles created with a configuration.
+   *
+   * <p>
+   *   The resources are released with their last retention: the handles created with
+   *   equivalent configurations must no longer be used.
+   * </p>
+   *
+   * @param conf Configuration of the HBase cluster, equivalent to the one retained.
+   */
+  public static void releaseResources(Configuration conf) {
+    if (SchemaPlatformBridge.get().supportsSharedHTableResources()) {
+      POOLED.release(getResourcesKey(conf));
+    }
+  }
+
+  /**
+   * Releases the connections and thread pools shared by the handles created so far.
+   *
+   * <p>
+   *   Handles created before must no longer be used. Handles created afterwards use new shared
+   *   resources.
+   * </p>
+   */
+  public static void shutdown() {
+    POOLED.releaseAll();
+  }
+
+  /**
+   * Identifies the HBase cluster a configuration points to.
+   *
+   * @param conf Configuration of the HBase cluster.
+   * @return the identity of the HBase cluster: "[ZooKeeper quorum]:[client port][znode parent]".
+   */
+  public static String getClusterKey(Configuration conf) {
+    return String.format("%s:%s%s",
+        conf.get(HConstants.ZOOKEEPER_QUORUM),
+        conf.get(HConstants.ZOOKEEPER_CLIENT_PORT),
+        conf.get(HConstants.ZOOKEEPER_ZNODE_PARENT, HConstants.DEFAULT_ZOOKEEPER_ZNODE_PARENT));
+  }
+
+  /**
+   * Identifies the shared resources a configuration selects: HBase cluster and client settings.
+   *
+   * @param conf Configuration of the HBase cluster.
+   * @return the key of the shared resources the configuration selects.
+   */
+  static String getResourcesKey(Configuration conf) {
+    return getClusterKey(conf) + getSettingsKey(conf, CONNECTION_SETTINGS);
+  }
+
+  /**
+   * Identifies the HBase client settings of a configuration, regardless of the cluster.
+   *
+   * @param conf Configuration of the HBase cluster.
+   * @return the key of the client settings of the configuration, including the handle settings.
+   */
+  static String getClientSettingsKey(Configuration conf) {
+    return getSettingsKey(conf, CONNECTION_SETTINGS) + getSettingsKey(conf, HANDLE_SETTINGS);
+  }
+
+  /**
+   * Identifies the values of some settings of a configuration.
+   *
+   * @param conf Configuration to read the settings from.
+   * @param settings Names of the settings.
+   * @return the key of the values of the settings.
+   */
+  private static String getSettingsKey(Configuration conf, List<String> settings) {
+    final StringBuilder key = new StringBuilder();
+    for (String setting : settings) {
+      key.append(';').append(setting).append('=').append(conf.get(setting));
+    }
+    return key.toString();
+  }
+
+  /** Resources shared by the HTable handles created with equivalent configurations. */
+  private static final class SharedResources {
+    /** Configuration the connection was obtained with, to release it. */
+    private final Configuration mConf;
+
+    /** Connection to the HBase cluster. */
+    private final HConnection mConnection;
+
+    /** Thread pool running the batch operations of the HTable handles. */
+    private final ThreadPoolExecutor mPool;
+
+    /** Number of retentions of these resources. Guarded by mResources. */
+    private int mRetainCount = 0;
+
+    /**
+     * Initializes the shared resources for a configuration.
+     *
+     * @param conf Configuration of the HBase cluster.
+     * @throws IOException on I/O error.
+     */
+    private SharedResources(Configuration conf) throws IOException {
+      mConf = new Configuration(conf);
+      mConnection = HConnectionManager.getConnection(mConf);
+
+      // Same settings as the thread pool of a standalone HTable:
+      final int maxThreads =
+          Math.max(1, conf.getInt("hbase.htable.threads.max", Integer.MAX_VALUE));
+      final long keepAliveSecs = conf.getLong("hbase.htable.threads.keepalivetime", 60);
+      mPool = new ThreadPoolExecutor(
+          1, maxThreads,
+          keepAliveSecs, TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("htable-pool-%d")
+              .setDaemon(true)
+              .build());
+      mPool.allowCoreThreadTimeOut(true);
+    }
+
+    /** Releases the connection reference and shuts the thread pool down. */
+    private void release() {
+      mPool.shutdown();
+      HConnectionManager.deleteConnection(mConf, true);
+    }
+  }
+
+  /** Shared resources, by resources key (see {@link #getResourcesKey}). Guarded by itself. */
+  private final Map<String, SharedResources> mResources = Maps.newHashMap();
+
+  /** Disallow new instances, enforce singleton. */
+  private PooledHTableInterfaceFactory() {
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public HTableInterface create(Configuration conf, String hbaseTableName) throws IOException {
+    final SchemaPlatformBridge bridge = SchemaPlatformBridge.get();
+    if (!bridge.supportsSharedHTableResources()) {
+      return bridge.newHTable(hbaseTableName, conf, null, null);
+    }
+    final SharedResources resources = getSharedResources(conf, false);
+    return bridge.newHTable(hbaseTableName, conf, resources.mConnection, resources.mPool);
+  }
+
+  /**
+   * Returns the resources shared by the HTable handles created with a configuration.
+   *
+   * @param conf Configuration of the HBase cluster.
+   * @param retain Whether to retain the resources.
+   * @return the resources shared by the HTable handles created with the configuration.
+   * @throws IOException on I/O error.
+   */
+  private SharedResources getSharedResources(Configuration conf, boolean retain)
+      throws IOException {
+    final String key = getResourcesKey(conf);
+    synchronized (mResources) {
+      SharedResources resources = mResources.get(key);
+      if (null == resources) {
+        LOG.debug("Creating shared HBase connection and thread pool for {}.", key);
+        resources = new SharedResources(conf);
+        mResources.put(key, resources);
+      }
+      if (retain) {
+        resources.mRetainCount += 1;
+      }
+      return resources;
+    }
+  }
+
+  /**
+   * Releases a retention of shared resources, and the resources with their last retention.
+   *
+   * @param key Key of the shared resources (see {@link #getResourcesKey}).
+   */
+  private void release(String key) {
+    final SharedResources released;
+    synchronized (mResources) {
+      final SharedResources resources = mResources.get(key);
+      if ((null == resources) || (resources.mRetainCount <= 0)) {
+        // Released by shutdown() in the meantime:
+        return;
+      }
+      resources.mRetainCount -= 1;
+      if (resources.mRetainCount > 0) {
+        return;
+      }
+      mResources.remove(key);
+      released = resources;
+    }
+    LOG.debug("Releasing shared HBase connection and thread pool for {}.", key);
+    released.release();
+  }
+
+  /** Releases all the shared resources. */
+  private void releaseAll() {
+    final List<SharedResources> released;
+    synchronized (mResources) {
+      released = Lists.newArrayList(mResources.values());
+      mResources.clear();
+    }
+    for (SharedResources resources : released) {
+      resources.release();
+    }
+  }
+}
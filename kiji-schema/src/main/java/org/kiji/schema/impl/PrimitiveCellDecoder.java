@@ -0,0 +1,68 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import java.io.IOException;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Decodes Kiji cells holding primitive values, without boxing them.
+ *
+ * <p>
+ *   Encoded cells are read in place, from a range of a byte array, so that cells may be decoded
+ *   directly from the backing buffers of HBase KeyValues.
+ * </p>
+ */
+@ApiAudience.Private
+public interface PrimitiveCellDecoder {
+  /**
+   * Decodes a cell as a long.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @param length Length of the encoded cell.
+   * @return the decoded long.
+   * @throws IOException on I/O error.
+   */
+  long decodeLong(byte[] bytes, int offset, int length) throws IOException;
+
+  /**
+   * Decodes a cell as an int.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @param length Length of the encoded cell.
+   * @return the decoded int.
+   * @throws IOException on I/O error.
+   */
+  int decodeInt(byte[] bytes, int offset, int length) throws IOException;
+
+  /**
+   * Decodes a cell as a double.
+   *
+   * @param bytes Array containing the encoded cell.
+   * @param offset Offset of the encoded cell in the array.
+   * @param length Length of the encoded cell.
+   * @return the decoded double.
+   * @throws IOException on I/O error.
+   */
+  double decodeDouble(byte[] bytes, int offset, int length) throws IOException;
+}
@@ -53,6 +53,7 @@ import org.kiji.schema.NoSuchColumnException;
 import org.kiji.schema.avro.CellSchema;
 import org.kiji.schema.avro.ColumnDesc;
 import org.kiji.schema.avro.FamilyDesc;
+import org.kiji.schema.avro.HashType;
 import org.kiji.schema.avro.LocalityGroupDesc;
 import org.kiji.schema.avro.RowKeyComponent;
 import org.kiji.schema.avro.RowKeyEncoding;
@@ -262,7 +263,10 @@ public final class KijiTableLayout {
   // ProtocolVersions specifying when different features were added to layout functionality.
 
   /** Maximum layout version we can recognize. */
-  private static final ProtocolVersion MAX_LAYOUT_VER = ProtocolVersion.parse("layout-1.2.0");
+  private static final ProtocolVersion MAX_LAYOUT_VER = ProtocolVersion.parse("layout-1.3.0");
+
+  /** First version where the MURMUR3 {@link org.kiji.schema.avro.HashType} was supported. */
+  private static final ProtocolVersion MURMUR3_LAYOUT_VER = ProtocolVersion.parse("layout-1.3.0");
 
   /** First version where {@link org.kiji.schema.avro.BloomType}, max_filesize,
       memstore_flushsize and block_size were supported. */
@@ -908,6 +912,22 @@ public final class KijiTableLayout {
   /** All primary column names in the table (including names for map-type families). */
   private final ImmutableSet<KijiColumnName> mColumnNames;
 
+  /**
+   * Reports the hashing method of a row key format.
+   *
+   * @param keysFormat Row key format, either a RowKeyFormat or a RowKeyFormat2.
+   * @return the hashing method of the row key format, or null if the format has none.
+   */
+  private static HashType getRowKeyHashType(Object keysFormat) {
+    if (keysFormat instanceof RowKeyFormat) {
+      return ((RowKeyFormat) keysFormat).getHashType();
+    } else if ((keysFormat instanceof RowKeyFormat2)
+        && (null != ((RowKeyFormat2) keysFormat).getSalt())) {
+      return ((RowKeyFormat2) keysFormat).getSalt().getHashType();
+    }
+    return null;
+  }
+
   /**
    * Ensure a row key format (version 1) specified in a layout file is sane.
    * @param format The RowKeyFormat created from the layout file for a table.
@@ -1087,6 +1107,14 @@ public final class KijiTableLayout {
           + RKF2_LAYOUT_VER.toString());
     }
 
+    // MURMUR3 row key hashing was introduced in version 1.3.
+    if ((MURMUR3_LAYOUT_VER.compareTo(layoutVersion) > 0)
+        && (getRowKeyHashType(mDesc.getKeysFormat()) == HashType.MURMUR3)) {
+      throw new InvalidLayoutException(
+          "Support for MURMUR3 row key hashing begins with layout version "
+          + MURMUR3_LAYOUT_VER.toString());
+    }
+
     if (!isValidName(getName())) {
       throw new InvalidLayoutException(String.format("Invalid table name: '%s'.", getName()));
     }
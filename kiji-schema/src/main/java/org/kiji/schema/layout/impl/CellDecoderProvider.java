@@ -21,22 +21,28 @@ package org.kiji.schema.layout.impl;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.apache.avro.Schema;
 
 import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.GenericCellDecoderFactory;
 import org.kiji.schema.InternalKijiError;
 import org.kiji.schema.KijiCellDecoder;
 import org.kiji.schema.KijiCellDecoderFactory;
 import org.kiji.schema.KijiColumnName;
+import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiSchemaTable;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout;
 import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout.ColumnLayout;
+import org.kiji.schema.util.AvroUtils;
 
 /**
  * Provider for cell decoders of a given table.
@@ -59,6 +65,12 @@ import org.kiji.schema.layout.KijiTableLayout.LocalityGroupLayout.FamilyLayout.C
  *     <li> using the Avro writer schema (this forces using generic records). </li>
  *   </ul>
  * </p>
+ * <p>
+ *   Column requests may further specify a reader schema or a projection onto a subset of the
+ *   record fields (see {@link KijiDataRequest.Column#getProjectedFields()}).
+ *   Decoders for such requests are created on demand, using a reader schema pruned down to the
+ *   requested fields, and are cached for as long as the column request is in use.
+ * </p>
  */
 @ApiAudience.Private
 public final class CellDecoderProvider {
@@ -75,6 +87,16 @@ public final class CellDecoderProvider {
   /** Maps column names to decoders. */
   private final ImmutableMap<String, KijiCellDecoder<?>> mDecoderMap;
 
+  /** Maps column names to cell specifications. */
+  private final ImmutableMap<String, CellSpec> mCellSpecMap;
+
+  /**
+   * Decoders for projected column requests, keyed by column request (weakly, by identity),
+   * then by column name.
+   */
+  private final ConcurrentMap<KijiDataRequest.Column, ConcurrentMap<String, KijiCellDecoder<?>>>
+      mProjectedDecoderMap = new MapMaker().weakKeys().makeMap();
+
   /**
    * Initializes a provider for cell decoders.
    *
@@ -89,9 +111,28 @@ public final class CellDecoderProvider {
       KijiCellDecoderFactory cellDecoderFactory,
       Map<KijiColumnName, CellSpec> cellSpecs)
       throws IOException {
+    this(table.getLayout(), table.getKiji().getSchemaTable(), cellDecoderFactory, cellSpecs);
+  }
+
+  /**
+   * Initializes a provider for cell decoders of a given table layout.
+   *
+   * @param layout Layout of the table to provide cell decoders for.
+   * @param schemaTable Schema table to resolve Avro schemas.
+   * @param cellDecoderFactory Default factory for cell decoders.
+   * @param cellSpecs Column specification overlay/override map.
+   *     Specifications from this map override the actual specification from the table.
+   * @throws IOException on I/O error.
+   */
+  public CellDecoderProvider(
+      KijiTableLayout layout,
+      KijiSchemaTable schemaTable,
+      KijiCellDecoderFactory cellDecoderFactory,
+      Map<KijiColumnName, CellSpec> cellSpecs)
+      throws IOException {
 
-    mLayout = table.getLayout();
-    mSchemaTable = table.getKiji().getSchemaTable();
+    mLayout = layout;
+    mSchemaTable = schemaTable;
     mCellDecoderFactory = cellDecoderFactory;
 
     // Compute the set of all the column names (map-type families and fully-qualified columns).
@@ -113,6 +154,7 @@ public final class CellDecoderProvider {
 
     // Pro-actively build cell decoders for all columns in the table:
     final Map<String, KijiCellDecoder<?>> decoderMap = Maps.newHashMap();
+    final Map<String, CellSpec> cellSpecMap = Maps.newHashMap();
     for (KijiColumnName column : columns) {
       // Gets the specification for this column,
       // from the overlay map or else from the actual table layout:
@@ -132,13 +174,24 @@ public final class CellDecoderProvider {
 
       final KijiCellDecoder<?> decoder = cellSpec.getDecoderFactory().create(cellSpec);
       decoderMap.put(column.getName(), decoder);
+      cellSpecMap.put(column.getName(), cellSpec);
     }
     mDecoderMap = ImmutableMap.copyOf(decoderMap);
+    mCellSpecMap = ImmutableMap.copyOf(cellSpecMap);
   }
 
   // -----------------------------------------------------------------------------------------------
   // Public interface
 
+  /**
+   * Returns the table layout this provider provides cell decoders for.
+   *
+   * @return the table layout this provider provides cell decoders for.
+   */
+  public KijiTableLayout getLayout() {
+    return mLayout;
+  }
+
   /**
    * Gets a cell decoder for the specified column or (map-type) family.
    *
@@ -174,4 +227,92 @@ public final class CellDecoderProvider {
 
     return null;
   }
+
+  /**
+   * Gets a cell decoder for the specified column or (map-type) family, honoring the reader
+   * schema and the projection of a column request.
+   *
+   * <p>
+   *   Projected cells are decoded as generic records that only contain the requested fields.
+   *   Projections only apply to Avro columns: counters are decoded as usual.
+   * </p>
+   *
+   * @param family Family of the column to look up.
+   * @param qualifier Qualifier of the column to look up.
+   *     Null means no qualifier, ie. get a decoder for a (map-type) family.
+   * @param columnRequest Request for the column. Null means decode cells as usual.
+   * @return a cell decoder for the specified column.
+   *     Null if the column does not exist or if the family is not map-type.
+   * @throws IOException on I/O error.
+   *
+   * @param <T> Type of the data to decode.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> KijiCellDecoder<T> getDecoder(
+      String family, String qualifier, KijiDataRequest.Column columnRequest)
+      throws IOException {
+    if ((null == columnRequest) || !columnRequest.isProjected()) {
+      return getDecoder(family, qualifier);
+    }
+
+    ConcurrentMap<String, KijiCellDecoder<?>> decoders = mProjectedDecoderMap.get(columnRequest);
+    if (null == decoders) {
+      final ConcurrentMap<String, KijiCellDecoder<?>> newDecoders = Maps.newConcurrentMap();
+      decoders = mProjectedDecoderMap.putIfAbsent(columnRequest, newDecoders);
+      if (null == decoders) {
+        decoders = newDecoders;
+      }
+    }
+
+    final String column = (qualifier != null) ? (family + ":" + qualifier) : family;
+    final KijiCellDecoder<T> decoder = (KijiCellDecoder<T>) decoders.get(column);
+    if (decoder != null) {
+      return decoder;
+    }
+
+    CellSpec cellSpec = mCellSpecMap.get(column);
+    if ((null == cellSpec) && (null != qualifier)) {
+      // Try the family (this will only work for map-type families):
+      cellSpec = mCellSpecMap.get(family);
+    }
+    if (null == cellSpec) {
+      return null;
+    }
+    if (!cellSpec.isAvro()) {
+      return getDecoder(family, qualifier);
+    }
+
+    final KijiCellDecoder<T> projectedDecoder = (KijiCellDecoder<T>)
+        GenericCellDecoderFactory.get().create(getProjectedCellSpec(cellSpec, columnRequest));
+    final KijiCellDecoder<T> existing =
+        (KijiCellDecoder<T>) decoders.putIfAbsent(column, projectedDecoder);
+    return (null != existing) ? existing : projectedDecoder;
+  }
+
+  /**
+   * Builds the specification to decode the cells of an Avro column for a projected request.
+   *
+   * @param cellSpec Specification of the column.
+   * @param columnRequest Request for the column, with a reader schema and/or a projection.
+   * @return the specification to decode the projected cells with.
+   * @throws IOException on I/O error.
+   */
+  private static CellSpec getProjectedCellSpec(
+      CellSpec cellSpec, KijiDataRequest.Column columnRequest)
+      throws IOException {
+    Schema readerSchema = columnRequest.getReaderSchema();
+    if (null == readerSchema) {
+      readerSchema = cellSpec.getAvroSchema();
+    }
+    if (null == readerSchema) {
+      // The column decodes using writer schemas: project the schema declared in the layout.
+      readerSchema = CellSpec.readAvroSchema(cellSpec.getCellSchema());
+    }
+    if (null != columnRequest.getProjectedFields()) {
+      readerSchema = AvroUtils.projectSchema(readerSchema, columnRequest.getProjectedFields());
+    }
+    return CellSpec.copy(cellSpec)
+        .setReaderSchema(readerSchema)
+        .setDecoderFactory(GenericCellDecoderFactory.get());
+  }
 }
@@ -73,8 +73,24 @@ public final class CellEncoderProvider {
       KijiTable table,
       KijiCellEncoderFactory cellEncoderFactory)
       throws IOException {
-    mLayout = table.getLayout();
-    mSchemaTable = table.getKiji().getSchemaTable();
+    this(table.getLayout(), table.getKiji().getSchemaTable(), cellEncoderFactory);
+  }
+
+  /**
+   * Initializes a provider for cell encoders of a given table layout.
+   *
+   * @param layout Layout of the table to provide cell encoders for.
+   * @param schemaTable Schema table to resolve Avro schemas.
+   * @param cellEncoderFactory is the factory to use to create cell encoders.
+   * @throws IOException on I/O error.
+   */
+  public CellEncoderProvider(
+      KijiTableLayout layout,
+      KijiSchemaTable schemaTable,
+      KijiCellEncoderFactory cellEncoderFactory)
+      throws IOException {
+    mLayout = layout;
+    mSchemaTable = schemaTable;
     mCellEncoderFactory = cellEncoderFactory;
 
     // Compute the set of all the column names (map-type families and fully-qualified columns from
@@ -110,6 +126,15 @@ public final class CellEncoderProvider {
   // -----------------------------------------------------------------------------------------------
   // Public interface
 
+  /**
+   * Returns the table layout this provider provides cell encoders for.
+   *
+   * @return the table layout this provider provides cell encoders for.
+   */
+  public KijiTableLayout getLayout() {
+    return mLayout;
+  }
+
   /**
    * Gets a cell encoder for the specified column or (map-type) family.
    *
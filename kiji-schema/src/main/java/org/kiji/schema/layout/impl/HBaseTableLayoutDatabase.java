@@ -25,10 +25,14 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
@@ -57,6 +61,7 @@ import org.kiji.schema.avro.TableLayoutBackupEntry;
 import org.kiji.schema.avro.TableLayoutDesc;
 import org.kiji.schema.avro.TableLayoutsBackup;
 import org.kiji.schema.impl.AvroCellEncoder;
+import org.kiji.schema.impl.PooledHTableInterfaceFactory;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.InvalidLayoutException;
 import org.kiji.schema.layout.KijiTableLayout;
@@ -106,6 +111,70 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
   public static final String QUALIFIER_LAYOUT_ID = "layout_id";
   private static final byte[] QUALIFIER_LAYOUT_ID_BYTES = Bytes.toBytes(QUALIFIER_LAYOUT_ID);
 
+  /** Maximum number of table layouts cached by the process. */
+  private static final int MAX_CACHED_LAYOUTS = 1024;
+
+  /**
+   * Table layouts built by this process, shared by all the layout databases.
+   *
+   * <p>
+   *   Building a table layout decodes and validates its descriptor, which is expensive.
+   *   Table layouts are immutable, and a layout cell is identified by its table and timestamp:
+   *   cached layouts never need to be invalidated.
+   * </p>
+   */
+  private static final Cache<LayoutKey, KijiTableLayout> LAYOUT_CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_LAYOUTS).build();
+
+  /** Key of a table layout in the cache. */
+  private static final class LayoutKey {
+    /** Layout database the layout belongs to: HBase cluster, table and column family. */
+    private final String mScope;
+
+    /** Name of the Kiji table. */
+    private final String mTable;
+
+    /** Timestamp of the layout cell. */
+    private final long mTimestamp;
+
+    /** ID of the layout. */
+    private final String mLayoutId;
+
+    /**
+     * Initializes a key for a table layout.
+     *
+     * @param scope Layout database the layout belongs to.
+     * @param table Name of the Kiji table.
+     * @param timestamp Timestamp of the layout cell.
+     * @param layoutId ID of the layout.
+     */
+    private LayoutKey(String scope, String table, long timestamp, String layoutId) {
+      mScope = scope;
+      mTable = table;
+      mTimestamp = timestamp;
+      mLayoutId = layoutId;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof LayoutKey)) {
+        return false;
+      }
+      final LayoutKey other = (LayoutKey) object;
+      return (mTimestamp == other.mTimestamp)
+          && mLayoutId.equals(other.mLayoutId)
+          && mTable.equals(other.mTable)
+          && mScope.equals(other.mScope);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(mScope, mTable, mTimestamp, mLayoutId);
+    }
+  }
+
   /** The HTable to use to store the layouts. */
   private final HTableInterface mTable;
 
@@ -115,6 +184,9 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
   /** HBase column family, as bytes. */
   private final byte[] mFamilyBytes;
 
+  /** Scope of the layouts of this database in the layout cache. */
+  private final String mCacheScope;
+
   /** The schema table. */
   private final KijiSchemaTable mSchemaTable;
 
@@ -150,6 +222,13 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
     mTable = Preconditions.checkNotNull(htable);
     mFamily = Preconditions.checkNotNull(family);
     mFamilyBytes = Bytes.toBytes(mFamily);
+    // Layouts are cached by the process: identify the HBase cluster the layouts belong to, so that
+    // instances with the same name on different clusters do not share layouts.
+    final Configuration conf = mTable.getConfiguration();
+    mCacheScope = String.format("%s/%s:%s",
+        (null == conf) ? "" : PooledHTableInterfaceFactory.getClusterKey(conf),
+        Bytes.toString(mTable.getTableName()),
+        mFamily);
     mSchemaTable = Preconditions.checkNotNull(schemaTable);
     final CellSpec cellSpec = CellSpec.fromCellSchema(CELL_SCHEMA, mSchemaTable);
     mCellEncoder = new AvroCellEncoder(cellSpec);
@@ -222,9 +301,27 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
     return tableLayout;
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p>
+   *   Only reads the ID of the most recent layout, unless the layout is not cached yet.
+   * </p>
+   */
   @Override
   public KijiTableLayout getTableLayout(String table) throws IOException {
+    final Get get = new Get(Bytes.toBytes(table))
+        .addColumn(mFamilyBytes, QUALIFIER_LAYOUT_ID_BYTES);
+    final KeyValue layoutId =
+        mTable.get(get).getColumnLatest(mFamilyBytes, QUALIFIER_LAYOUT_ID_BYTES);
+    if (null != layoutId) {
+      final KijiTableLayout cached = LAYOUT_CACHE.getIfPresent(new LayoutKey(
+          mCacheScope, table, layoutId.getTimestamp(), Bytes.toString(layoutId.getValue())));
+      if (null != cached) {
+        return cached;
+      }
+    }
+
     final List<KijiTableLayout> layouts = getTableLayoutVersions(table, 1);
     if (layouts.isEmpty()) {
       throw new KijiTableNotFoundException(table);
@@ -237,17 +334,8 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
   public List<KijiTableLayout> getTableLayoutVersions(String table, int numVersions)
       throws IOException {
     Preconditions.checkArgument(numVersions >= 1,  "numVersions must be positive");
-
-    final Get get = new Get(Bytes.toBytes(table))
-        .addColumn(mFamilyBytes, QUALIFIER_LAYOUT_BYTES)
-        .setMaxVersions(numVersions);
-    final Result result = mTable.get(get);
-
-    final List<KijiTableLayout> layouts = Lists.newArrayList();
-    for (KeyValue column : result.getColumn(mFamilyBytes, QUALIFIER_LAYOUT_BYTES)) {
-      layouts.add(KijiTableLayout.newLayout(decodeTableLayoutDesc(column.getValue())));
-    }
-    return layouts;
+    // Most recent layout first:
+    return Lists.newArrayList(readTableLayouts(table, numVersions).descendingMap().values());
   }
 
   /** {@inheritDoc} */
@@ -255,29 +343,51 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
   public NavigableMap<Long, KijiTableLayout> getTimedTableLayoutVersions(
       String table, int numVersions) throws IOException {
     Preconditions.checkArgument(numVersions >= 1, "numVersions must be positive");
+    return readTableLayouts(table, numVersions);
+  }
 
-    // Gather the layout data from the Htable.
+  /**
+   * Reads the most recent layouts of a table.
+   *
+   * <p>
+   *   Layouts are fetched from the layout cache when possible, and are otherwise decoded, built
+   *   and cached.
+   * </p>
+   *
+   * @param table Name of the table to read the layouts of.
+   * @param numVersions Maximum number of layouts to read.
+   * @return the map from timestamp to table layout.
+   * @throws IOException on I/O error.
+   */
+  private NavigableMap<Long, KijiTableLayout> readTableLayouts(String table, int numVersions)
+      throws IOException {
     final Get get = new Get(Bytes.toBytes(table))
         .addColumn(mFamilyBytes, QUALIFIER_LAYOUT_BYTES)
+        .addColumn(mFamilyBytes, QUALIFIER_LAYOUT_ID_BYTES)
         .setMaxVersions(numVersions);
     final Result result = mTable.get(get);
 
+    // Layout IDs are written along with their layouts, with the same timestamps:
+    final Map<Long, String> layoutIds = Maps.newHashMap();
+    for (KeyValue column : result.getColumn(mFamilyBytes, QUALIFIER_LAYOUT_ID_BYTES)) {
+      layoutIds.put(column.getTimestamp(), Bytes.toString(column.getValue()));
+    }
+
     /** Map from timestamp to table layout. */
     final NavigableMap<Long, KijiTableLayout> timedLayouts = Maps.newTreeMap();
-
-    // Pull out the full map: family -> qualifier -> timestamp -> TableLayoutDesc.
-    // Family and qualifier are already specified : the 2 outer maps must be size 11.
-    final NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> familyMap =
-        result.getMap();
-    Preconditions.checkState(familyMap.size() == 1);
-    final NavigableMap<byte[], NavigableMap<Long, byte[]>> qualifierMap =
-        familyMap.get(familyMap.firstKey());
-    Preconditions.checkState(qualifierMap.size() == 1);
-    final NavigableMap<Long, byte[]> timeSerieMap = qualifierMap.get(qualifierMap.firstKey());
-    for (Map.Entry<Long, byte[]> timeSerieEntry : timeSerieMap.entrySet()) {
-      final long timestamp = timeSerieEntry.getKey();
-      final byte[] bytes = timeSerieEntry.getValue();
-      final KijiTableLayout layout = KijiTableLayout.newLayout(decodeTableLayoutDesc(bytes));
+    for (KeyValue column : result.getColumn(mFamilyBytes, QUALIFIER_LAYOUT_BYTES)) {
+      final long timestamp = column.getTimestamp();
+      final String layoutId = layoutIds.get(timestamp);
+      KijiTableLayout layout = (null == layoutId)
+          ? null
+          : LAYOUT_CACHE.getIfPresent(new LayoutKey(mCacheScope, table, timestamp, layoutId));
+      if (null == layout) {
+        layout = KijiTableLayout.newLayout(decodeTableLayoutDesc(column.getValue()));
+        final String builtLayoutId = layout.getDesc().getLayoutId();
+        if (null != builtLayoutId) {
+          LAYOUT_CACHE.put(new LayoutKey(mCacheScope, table, timestamp, builtLayoutId), layout);
+        }
+      }
       Preconditions.checkState(timedLayouts.put(timestamp, layout) == null);
     }
     return timedLayouts;
@@ -416,6 +526,11 @@ public final class HBaseTableLayoutDatabase implements KijiTableLayoutDatabase {
       final byte[] layoutBytes = encodeTableLayoutDesc(lbe.getLayout());
       final Put put = new Put(Bytes.toBytes(tableName))
           .add(mFamilyBytes, QUALIFIER_LAYOUT_BYTES, layoutBytes);
+      if (lbe.getLayout().getLayoutId() != null) {
+        // Layout IDs identify the most recent layout, and must be restored with their layout:
+        put.add(mFamilyBytes, QUALIFIER_LAYOUT_ID_BYTES,
+            Bytes.toBytes(lbe.getLayout().getLayoutId()));
+      }
       if (lbe.getUpdate() != null) {
         final byte[] updateBytes = encodeTableLayoutDesc(lbe.getUpdate());
         final long timestamp = lbe.getTimestamp();
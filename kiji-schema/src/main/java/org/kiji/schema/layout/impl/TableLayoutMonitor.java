@@ -38,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import org.kiji.annotations.ApiAudience;
 import org.kiji.schema.KijiURI;
+import org.kiji.schema.RuntimeInterruptedException;
 import org.kiji.schema.util.Lock;
 import org.kiji.schema.util.ZooKeeperLock;
 
@@ -309,6 +310,9 @@ public final class TableLayoutMonitor implements Closeable {
     private final AtomicBoolean mOpened = new AtomicBoolean(false);
     private final AtomicBoolean mClosed = new AtomicBoolean(false);
 
+    /** Thread registering the first watcher, interrupted when the tracker is closed. */
+    private volatile Thread mOpenThread = null;
+
     /** Automatically re-registers for new layout updates. */
     private class LayoutWatcher implements Watcher {
       /** {@inheritDoc} */
@@ -344,14 +348,30 @@ public final class TableLayoutMonitor implements Closeable {
       Preconditions.checkState(!mOpened.getAndSet(true),
           "Cannot start LayoutTracker while already started.");
 
-      // Always runs registerWatcher() in a separate thread:
+      // Always runs registerWatcher() in a separate thread. ZooKeeper operations are retried
+      // until they succeed: the thread must not prevent the JVM from exiting, and closing the
+      // tracker interrupts it.
       final Thread thread = new Thread() {
         /** {@inheritDoc} */
         @Override
         public void run() {
-          registerWatcher();
+          try {
+            // The layout node does not exist until the first layout update is notified:
+            TableLayoutMonitor.this.mZKClient.createNodeRecursively(mTableLayoutFile);
+            registerWatcher();
+          } catch (KeeperException ke) {
+            LOG.error("Unrecoverable ZooKeeper error: {}", ke.getMessage());
+            throw new RuntimeException(ke);
+          } catch (RuntimeInterruptedException rie) {
+            LOG.debug("LayoutTracker for table {} interrupted while opening.", mTableURI);
+          } finally {
+            mOpenThread = null;
+          }
         }
       };
+      thread.setName(String.format("kiji-layout-tracker-%s", mTableURI.getTable()));
+      thread.setDaemon(true);
+      mOpenThread = thread;
       thread.start();
     }
 
@@ -365,6 +385,10 @@ public final class TableLayoutMonitor implements Closeable {
       try {
         final byte[] layoutUpdate =
             TableLayoutMonitor.this.mZKClient.getData(mTableLayoutFile, mWatcher, mLayoutStat);
+        if (mClosed.get()) {
+          LOG.debug("LayoutTracker is closed : dropping layout update.");
+          return;
+        }
         LOG.info("Received layout update for table {}: {}.",
             mTableURI, Bytes.toStringBinary(layoutUpdate));
 
@@ -384,6 +408,10 @@ public final class TableLayoutMonitor implements Closeable {
           "Cannot stop a LayoutTracker that has not been started.");
       Preconditions.checkState(!mClosed.getAndSet(true),
           "Cannot stop a LayoutTracker multiple times.");
+      final Thread openThread = mOpenThread;
+      if (null != openThread) {
+        openThread.interrupt();
+      }
     }
   }
 
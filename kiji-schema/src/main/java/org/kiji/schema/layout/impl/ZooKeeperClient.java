@@ -22,11 +22,17 @@ package org.kiji.schema.layout.impl;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
@@ -51,6 +57,17 @@ import org.kiji.schema.util.Time;
 
 /**
  * ZooKeeper client interface.
+ *
+ * <p>
+ *   Watchers registered through this client are dispatched on a small pool of threads owned by
+ *   the client, rather than on the ZooKeeper event thread: a slow watcher does not delay the
+ *   processing of other ZooKeeper events, including the session events.
+ * </p>
+ *
+ * <p>
+ *   Use {@link #getZooKeeperClient(String)} to share a single ZooKeeper session per quorum
+ *   within the process.
+ * </p>
  */
 @ApiAudience.Private
 public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
@@ -62,6 +79,48 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
   /** Time interval, in seconds, between ZooKeeper retries on error. */
   private static final double ZOOKEEPER_RETRY_DELAY = 1.0;
 
+  /** Timeout for the shared ZooKeeper sessions, in milliseconds. */
+  private static final int SHARED_SESSION_TIMEOUT_MS = 60 * 1000;
+
+  /** Maximum number of threads dispatching the watcher notifications of a client. */
+  private static final int WATCHER_THREADS = 4;
+
+  /**
+   * Maximum number of watcher notifications queued for dispatch by a client.
+   * Once full, notifications are processed on the ZooKeeper event thread.
+   */
+  private static final int WATCHER_QUEUE_SIZE = 1024;
+
+  /**
+   * ZooKeeper clients shared by the getZooKeeperClient() calls, by ZooKeeper quorum address.
+   * Guarded by itself.
+   */
+  private static final Map<String, ZooKeeperClient> SHARED_CLIENTS = Maps.newHashMap();
+
+  /**
+   * Returns a ZooKeeper client connected to the specified quorum, shared within the process.
+   *
+   * <p>
+   *   The ZooKeeper client is opened if necessary, and retained: the caller must release it.
+   *   The ZooKeeper client is closed when all its handles are released.
+   * </p>
+   *
+   * @param zkAddress Address of the ZooKeeper quorum, as a comma-separated list of "host:port".
+   * @return a retained ZooKeeper client connected to the specified quorum.
+   */
+  public static ZooKeeperClient getZooKeeperClient(String zkAddress) {
+    synchronized (SHARED_CLIENTS) {
+      final ZooKeeperClient sharedClient = SHARED_CLIENTS.get(zkAddress);
+      if ((null != sharedClient) && sharedClient.tryRetain()) {
+        return sharedClient;
+      }
+      final ZooKeeperClient client = new ZooKeeperClient(zkAddress, SHARED_SESSION_TIMEOUT_MS);
+      client.open();
+      SHARED_CLIENTS.put(zkAddress, client);
+      return client;
+    }
+  }
+
   // -----------------------------------------------------------------------------------------------
 
   /**
@@ -121,6 +180,62 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
 
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Watcher dispatching the notifications of a user watcher on the watcher executor.
+   *
+   * <p>
+   *   ZooKeeper triggers equal watchers only once: dispatching watchers are equal when the
+   *   watchers they dispatch to are equal.
+   * </p>
+   */
+  private final class DispatchingWatcher implements Watcher {
+    /** Watcher to dispatch the notifications to. */
+    private final Watcher mWatcher;
+
+    /**
+     * Initializes a watcher dispatching notifications to another watcher.
+     *
+     * @param watcher Watcher to dispatch the notifications to.
+     */
+    private DispatchingWatcher(Watcher watcher) {
+      mWatcher = watcher;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void process(final WatchedEvent event) {
+      // Notifications received after the client is closed are discarded:
+      mWatcherExecutor.execute(new Runnable() {
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+          try {
+            mWatcher.process(event);
+          } catch (RuntimeException re) {
+            LOG.error(String.format("Error while processing ZooKeeper event %s.", event), re);
+          }
+        }
+      });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof DispatchingWatcher)) {
+        return false;
+      }
+      return mWatcher.equals(((DispatchingWatcher) object).mWatcher);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+      return mWatcher.hashCode();
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+
   /** Address of the ZooKeeper quorum to interact with. */
   private final String mZKAddress;
 
@@ -147,8 +262,13 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
    * <p> Even when this ZooKeeper client session is non null, it might not be established yet or
    *   may be dead.
    * </p>
+   *
+   * <p> Replaced under the monitor of this ZooKeeperClient, may be read without locking. </p>
    */
-  private ZooKeeper mZKClient = null;
+  private volatile ZooKeeper mZKClient = null;
+
+  /** Executor dispatching the notifications of the watchers registered through this client. */
+  private final ThreadPoolExecutor mWatcherExecutor;
 
   // -----------------------------------------------------------------------------------------------
 
@@ -164,6 +284,18 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
     this.mZKAddress = zkAddress;
     this.mSessionTimeoutMS = sessionTimeoutMS;
     this.mRetainCount = new AtomicInteger(1);
+    this.mWatcherExecutor = new ThreadPoolExecutor(
+        WATCHER_THREADS,
+        WATCHER_THREADS,
+        60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(WATCHER_QUEUE_SIZE),
+        new ThreadFactoryBuilder()
+            .setNameFormat("zookeeper-watcher-%d")
+            .setDaemon(true)
+            .build(),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    // Idle clients do not hold any thread:
+    this.mWatcherExecutor.allowCoreThreadTimeOut(true);
   }
 
   /**
@@ -204,6 +336,12 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
   public ZooKeeper getZKClient(double timeout) {
     Preconditions.checkState(mOpened.get());
 
+    // Fast path, without locking, when the session client is alive:
+    final ZooKeeper zkClient = mZKClient;
+    if ((zkClient != null) && zkClient.getState().isAlive()) {
+      return zkClient;
+    }
+
     // Absolute deadline, in seconds since the Epoch:
     final double absoluteDeadline = (timeout > 0) ? (Time.now() + timeout) : 0.0;
 
@@ -249,6 +387,23 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
     return this;
   }
 
+  /**
+   * Retains this ZooKeeper client, unless it is already closed or being closed.
+   *
+   * @return whether this ZooKeeper client was retained.
+   */
+  private boolean tryRetain() {
+    while (true) {
+      final int counter = mRetainCount.get();
+      if (counter <= 0) {
+        return false;
+      }
+      if (mRetainCount.compareAndSet(counter, counter + 1)) {
+        return true;
+      }
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void release() throws IOException {
@@ -270,6 +425,13 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
     Preconditions.checkState(!mClosed.getAndSet(true),
         "Cannot close ZooKeeperClient multiple times.");
 
+    synchronized (SHARED_CLIENTS) {
+      if (SHARED_CLIENTS.get(mZKAddress) == this) {
+        SHARED_CLIENTS.remove(mZKAddress);
+      }
+    }
+    mWatcherExecutor.shutdownNow();
+
     synchronized (this) {
       if (mZKClient == null) {
         // Nothing to close:
@@ -284,6 +446,16 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
     }
   }
 
+  /**
+   * Wraps a watcher so that its notifications are dispatched on the watcher executor.
+   *
+   * @param watcher Watcher to wrap. May be null.
+   * @return a watcher dispatching notifications to the specified watcher, or null.
+   */
+  private Watcher dispatch(Watcher watcher) {
+    return (null == watcher) ? null : new DispatchingWatcher(watcher);
+  }
+
   /**
    * See {@link ZooKeeper#create(String, byte[], List, CreateMode)}.
    *
@@ -359,7 +531,7 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
   public Stat exists(File path, Watcher watcher) throws KeeperException {
     while (true) {
       try {
-        return getZKClient().exists(path.toString(), watcher);
+        return getZKClient().exists(path.toString(), dispatch(watcher));
       } catch (InterruptedException ie) {
         throw new RuntimeInterruptedException(ie);
       } catch (ConnectionLossException ke) {
@@ -389,7 +561,7 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
       throws KeeperException {
     while (true) {
       try {
-        return getZKClient().getData(path.toString(), watcher, stat);
+        return getZKClient().getData(path.toString(), dispatch(watcher), stat);
       } catch (InterruptedException ie) {
         throw new RuntimeInterruptedException(ie);
       } catch (ConnectionLossException ke) {
@@ -446,7 +618,7 @@ public class ZooKeeperClient implements ReferenceCountable<ZooKeeperClient> {
       throws KeeperException {
     while (true) {
       try {
-        return getZKClient().getChildren(path.toString(), watcher, stat);
+        return getZKClient().getChildren(path.toString(), dispatch(watcher), stat);
       } catch (InterruptedException ie) {
         throw new RuntimeInterruptedException(ie);
       } catch (ConnectionLossException ke) {
@@ -37,6 +37,12 @@ public final class KijiConfKeys {
   /** Serialized input data request. */
   public static final String INPUT_DATA_REQUEST = "kiji.input.request";
 
+  /**
+   * Whether input splits locality hints are weighted by the HDFS block locations of the
+   * regions' store files. Enabled by default.
+   */
+  public static final String INPUT_SPLIT_BLOCK_LOCALITY = "kiji.input.split.block.locality";
+
   /** Utility class may not be instantiated. */
   private KijiConfKeys() {
   }
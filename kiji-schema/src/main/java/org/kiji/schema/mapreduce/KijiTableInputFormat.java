@@ -24,12 +24,16 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.SerializationUtils;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.mapreduce.TableSplit;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -54,8 +58,10 @@ import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiTableReader.KijiScannerOptions;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.KijiURIException;
+import org.kiji.schema.impl.HBaseKiji;
 import org.kiji.schema.impl.HBaseKijiRowData;
 import org.kiji.schema.impl.HBaseKijiTable;
+import org.kiji.schema.util.BytesKey;
 import org.kiji.schema.util.ResourceUtils;
 
 /** InputFormat for Hadoop MapReduce jobs reading from a Kiji table. */
@@ -87,27 +93,71 @@ public class KijiTableInputFormat
     return new KijiTableRecordReader(mConf);
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   *
+   * <p> Each split is hinted towards the region server hosting its region, then towards the
+   *   hosts storing most of the region's HDFS blocks (see
+   *   {@link KijiConfKeys#INPUT_SPLIT_BLOCK_LOCALITY}). Splits are ordered such that consecutive
+   *   splits prefer different region servers.
+   * </p>
+   */
   @Override
   public List<InputSplit> getSplits(JobContext context) throws IOException {
     final Configuration conf = context.getConfiguration();
     final KijiURI inputTableURI = getInputTableURI(conf);
     final Kiji kiji = Kiji.Factory.open(inputTableURI, conf);
-    final KijiTable table = kiji.openTable(inputTableURI.getTable());
+    try {
+      final KijiTable table = kiji.openTable(inputTableURI.getTable());
+      try {
+        return getSplits(conf, HBaseKijiTable.downcast(table));
+      } finally {
+        ResourceUtils.releaseOrLog(table);
+      }
+    } finally {
+      ResourceUtils.releaseOrLog(kiji);
+    }
+  }
+
+  /**
+   * Computes the locality-aware input splits of a table.
+   *
+   * @param conf Configuration of the job.
+   * @param table Table to compute the splits of.
+   * @return the input splits, in scheduling order.
+   * @throws IOException on I/O error.
+   */
+  private static List<InputSplit> getSplits(Configuration conf, HBaseKijiTable table)
+      throws IOException {
+    final HTableInterface htable = table.getHTable();
+    final byte[] hbaseTableName = htable.getTableName();
+
+    // Map region start keys to encoded region names (names of the region HDFS directories):
+    final Map<BytesKey, String> encodedRegionNames = Maps.newHashMap();
+    final HBaseAdmin admin = ((HBaseKiji) table.getKiji()).getHBaseAdmin();
+    for (HRegionInfo hregion : admin.getTableRegions(hbaseTableName)) {
+      encodedRegionNames.put(new BytesKey(hregion.getStartKey()), hregion.getEncodedName());
+    }
 
-    final HTableInterface htable = HBaseKijiTable.downcast(table).getHTable();
+    final RegionLocalityHints localityHints = new RegionLocalityHints(
+        conf,
+        Bytes.toString(hbaseTableName),
+        conf.getBoolean(KijiConfKeys.INPUT_SPLIT_BLOCK_LOCALITY, true));
 
-    final List<InputSplit> splits = Lists.newArrayList();
+    final List<Map.Entry<String, InputSplit>> splits = Lists.newArrayList();
     for (KijiRegion region : table.getRegions()) {
       final byte[] startKey = region.getStartKey();
-      // TODO: a smart way to get which location is most relevant.
-      final String location =
+      final String regionServer =
           region.getLocations().isEmpty() ? null : region.getLocations().iterator().next();
-      final TableSplit tableSplit = new TableSplit(
-          htable.getTableName(), startKey, region.getEndKey(), location);
-      splits.add(new KijiTableSplit(tableSplit, startKey));
+      final String encodedRegionName = encodedRegionNames.get(new BytesKey(startKey));
+      final String[] hosts = localityHints.getHosts(encodedRegionName, regionServer);
+      final String location = (hosts.length == 0) ? null : hosts[0];
+      final TableSplit tableSplit =
+          new TableSplit(hbaseTableName, startKey, region.getEndKey(), location);
+      splits.add(Maps.<String, InputSplit>immutableEntry(
+          location, new KijiTableSplit(tableSplit, startKey, hosts)));
     }
-    return splits;
+    return RegionLocalityHints.interleaveByHost(splits);
   }
 
   /**
@@ -44,6 +44,12 @@ class KijiTableSplit extends TableSplit {
   private byte[] mRegionStartKey;
   private long mSplitSize; // lazily calculated and populated via getLength().
 
+  /**
+   * Ordered locality hints, most relevant first. Like FileSplit hosts, these are only used
+   * while scheduling and are not serialized.
+   */
+  private String[] mLocations;
+
   /** The default constructor. */
   public KijiTableSplit() {
     super();
@@ -62,6 +68,28 @@ class KijiTableSplit extends TableSplit {
     mRegionStartKey = regionStartKey;
   }
 
+  /**
+   * Create a new KijiTableSplit instance from an HBase TableSplit, with locality hints.
+   *
+   * @param tableSplit the HBase TableSplit to clone.
+   * @param regionStartKey the starting key of the region associated with this split.
+   * @param locations the hosts where this split should preferably be processed,
+   *     most relevant first.
+   */
+  public KijiTableSplit(TableSplit tableSplit, byte[] regionStartKey, String[] locations) {
+    this(tableSplit, regionStartKey);
+    mLocations = checkNotNull(locations);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String[] getLocations() {
+    if ((null == mLocations) || (0 == mLocations.length)) {
+      return super.getLocations();
+    }
+    return mLocations.clone();
+  }
+
   /**
    * Returns the start key of the region associated with this split.  If this split
    * is the first in the total scan, this may differ from the value returned by
@@ -0,0 +1,256 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.mapreduce;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * Computes the locality hints of the input splits of a Kiji table.
+ *
+ * <p> The preferred location of a split is the region server currently hosting the region.
+ *   When the HBase root directory is readable, the remaining hints are the hosts storing the
+ *   most bytes of the region's store files, ordered by decreasing number of local bytes.
+ *   HDFS block locality is best-effort: any error while listing the region's files leaves the
+ *   region server as the only hint.
+ * </p>
+ */
+@ApiAudience.Private
+final class RegionLocalityHints {
+  private static final Logger LOG = LoggerFactory.getLogger(RegionLocalityHints.class);
+
+  /** Maximum number of location hints reported for one split. */
+  public static final int MAX_HOSTS = 3;
+
+  /** Name of the directory where HBase stores the edits to replay for a region. */
+  private static final String RECOVERED_EDITS_DIR = "recovered.edits";
+
+  /** Directory of the HBase table in HDFS, or null if block locality is not available. */
+  private final Path mTableDir;
+
+  /** File system hosting the HBase root directory, or null if block locality is not available. */
+  private final FileSystem mFS;
+
+  /**
+   * Initializes a locality hint provider for an HBase table.
+   *
+   * @param conf Configuration containing the HBase root directory.
+   * @param hbaseTableName Name of the HBase table.
+   * @param useBlockLocality Whether to weight hosts by HDFS block locality.
+   */
+  RegionLocalityHints(Configuration conf, String hbaseTableName, boolean useBlockLocality) {
+    Path tableDir = null;
+    FileSystem fs = null;
+    final String rootDir = conf.get(HConstants.HBASE_DIR);
+    if (useBlockLocality && (null != rootDir)) {
+      try {
+        final Path rootPath = new Path(rootDir);
+        fs = rootPath.getFileSystem(conf);
+        tableDir = new Path(rootPath, hbaseTableName);
+      } catch (IOException ioe) {
+        LOG.info("Unable to access HBase root directory {}, ignoring HDFS block locality: {}",
+            rootDir, ioe.getMessage());
+        fs = null;
+        tableDir = null;
+      }
+    }
+    mTableDir = tableDir;
+    mFS = fs;
+  }
+
+  /**
+   * Reports the ordered locality hints for a region.
+   *
+   * @param encodedRegionName Encoded name of the region (name of its HDFS directory),
+   *     or null if unknown.
+   * @param regionServer Location of the region server hosting the region, in hostname or
+   *     hostname:port form. May be null if the region is not assigned.
+   * @return the hosts where a task reading the region should preferably run, most relevant first.
+   */
+  public String[] getHosts(String encodedRegionName, String regionServer) {
+    final String regionServerHost = (null == regionServer) ? null : toHostname(regionServer);
+    final Map<String, Long> weights = ((null == mFS) || (null == encodedRegionName))
+        ? Collections.<String, Long>emptyMap()
+        : getBlockWeights(new Path(mTableDir, encodedRegionName));
+    return rankHosts(regionServerHost, weights, MAX_HOSTS);
+  }
+
+  /**
+   * Sums the number of bytes of the region's store files stored on each host.
+   *
+   * @param regionDir HDFS directory of the region.
+   * @return a map from host name to the number of bytes of the region stored on the host.
+   *     Empty if block locations are not available.
+   */
+  @SuppressWarnings("deprecation")
+  private Map<String, Long> getBlockWeights(Path regionDir) {
+    final Map<String, Long> weights = Maps.newHashMap();
+    try {
+      final FileStatus[] families = mFS.listStatus(regionDir);
+      if (null == families) {
+        return weights;
+      }
+      for (FileStatus family : families) {
+        final String familyName = family.getPath().getName();
+        if (!family.isDir() || familyName.startsWith(".")
+            || familyName.equals(RECOVERED_EDITS_DIR)) {
+          continue;
+        }
+        final FileStatus[] storeFiles = mFS.listStatus(family.getPath());
+        if (null == storeFiles) {
+          continue;
+        }
+        for (FileStatus storeFile : storeFiles) {
+          if (storeFile.isDir()) {
+            continue;
+          }
+          final BlockLocation[] blocks =
+              mFS.getFileBlockLocations(storeFile, 0, storeFile.getLen());
+          if (null == blocks) {
+            continue;
+          }
+          for (BlockLocation block : blocks) {
+            for (String host : block.getHosts()) {
+              final Long weight = weights.get(host);
+              weights.put(host, ((null == weight) ? 0L : weight) + block.getLength());
+            }
+          }
+        }
+      }
+    } catch (IOException ioe) {
+      LOG.debug("Unable to compute HDFS block locality for region {}: {}",
+          regionDir, ioe.getMessage());
+      weights.clear();
+    }
+    return weights;
+  }
+
+  /**
+   * Orders the candidate hosts for a region.
+   *
+   * <p> The region server comes first, followed by the hosts with the most local bytes. </p>
+   *
+   * @param regionServerHost Host name of the region server, or null if unknown.
+   * @param weights Number of bytes of the region stored on each host.
+   * @param maxHosts Maximum number of hosts to report.
+   * @return the ordered hosts, at most maxHosts of them.
+   */
+  static String[] rankHosts(
+      String regionServerHost,
+      final Map<String, Long> weights,
+      int maxHosts) {
+    Preconditions.checkArgument(maxHosts > 0);
+    final List<String> hosts = Lists.newArrayList(weights.keySet());
+    Collections.sort(hosts, new Comparator<String>() {
+      /** {@inheritDoc} */
+      @Override
+      public int compare(String host1, String host2) {
+        final int cmp = weights.get(host2).compareTo(weights.get(host1));
+        return (cmp != 0) ? cmp : host1.compareTo(host2);
+      }
+    });
+    if (null != regionServerHost) {
+      hosts.remove(regionServerHost);
+      hosts.add(0, regionServerHost);
+    }
+    final List<String> ranked = hosts.subList(0, Math.min(maxHosts, hosts.size()));
+    return ranked.toArray(new String[ranked.size()]);
+  }
+
+  /**
+   * Strips the port, if any, from a location in hostname:port form.
+   *
+   * <p> The Hadoop schedulers match split locations against task tracker host names. </p>
+   *
+   * @param location Location in hostname or hostname:port form.
+   * @return the host name.
+   */
+  static String toHostname(String location) {
+    final int colon = location.lastIndexOf(':');
+    return (colon < 0) ? location : location.substring(0, colon);
+  }
+
+  /**
+   * Orders splits so that consecutive splits prefer different hosts.
+   *
+   * <p> Splits are grouped by preferred host, and the groups are then drained in a round-robin
+   *   fashion, starting with the largest group. Within a group, the original order is kept.
+   *   Schedulers that launch tasks in split order then spread the initial wave of tasks across
+   *   all region servers instead of saturating the servers hosting the first regions.
+   * </p>
+   *
+   * @param splits Splits, paired with their preferred host (may be null).
+   * @param <T> Type of the splits.
+   * @return the splits, interleaved by preferred host.
+   */
+  static <T> List<T> interleaveByHost(Collection<Map.Entry<String, T>> splits) {
+    final Map<String, Deque<T>> groups = Maps.newLinkedHashMap();
+    for (Map.Entry<String, T> entry : splits) {
+      Deque<T> group = groups.get(entry.getKey());
+      if (null == group) {
+        group = Lists.newLinkedList();
+        groups.put(entry.getKey(), group);
+      }
+      group.add(entry.getValue());
+    }
+
+    final List<Deque<T>> queues = Lists.newArrayList(groups.values());
+    Collections.sort(queues, new Comparator<Deque<T>>() {
+      /** {@inheritDoc} */
+      @Override
+      public int compare(Deque<T> queue1, Deque<T> queue2) {
+        return queue2.size() - queue1.size();
+      }
+    });
+
+    final List<T> interleaved = Lists.newArrayListWithCapacity(splits.size());
+    while (!queues.isEmpty()) {
+      final Iterator<Deque<T>> it = queues.iterator();
+      while (it.hasNext()) {
+        final Deque<T> queue = it.next();
+        interleaved.add(queue.removeFirst());
+        if (queue.isEmpty()) {
+          it.remove();
+        }
+      }
+    }
+    return interleaved;
+  }
+}
@@ -33,9 +33,12 @@ import org.kiji.annotations.ApiAudience;
 import org.kiji.common.flags.Flag;
 import org.kiji.schema.EntityId;
 import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiColumnName;
 import org.kiji.schema.KijiDataRequest;
 import org.kiji.schema.KijiRowData;
 import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiScanAggregates;
+import org.kiji.schema.KijiScanAggregates.ColumnAggregates;
 import org.kiji.schema.KijiTable;
 import org.kiji.schema.KijiTableReader;
 import org.kiji.schema.KijiTableReader.KijiScannerOptions;
@@ -63,6 +66,13 @@ import org.kiji.schema.util.ResourceUtils;
  *       --start-row=hex:50 \
  *       --limit-row=hex:e0
  * </pre>
+ *
+ * Count the rows of table 'table_foo', and the cells of column 'info:email':
+ * <pre>
+ *   kiji scan \
+ *       kiji://.env/default/table_foo/info:email \
+ *       --count
+ * </pre>
  */
 @ApiAudience.Private
 public final class ScanTool extends BaseTool {
@@ -95,6 +105,11 @@ public final class ScanTool extends BaseTool {
   @Flag(name="max-rows", usage="Max number of rows to scan")
   private int mMaxRows = 0;
 
+  @Flag(name="count", usage="Count the rows, and the cells of the specified columns,\n"
+      + "\tinstead of displaying them.\n"
+      + "\tThe regions of the table are counted concurrently.")
+  private boolean mCount = false;
+
   @Flag(name="max-versions", usage="Max number of versions per cell to display")
   private int mMaxVersions = 1;
 
@@ -183,6 +198,42 @@ public final class ScanTool extends BaseTool {
     return SUCCESS;
   }
 
+  /**
+   * Counts the rows of a table, and the cells of the given columns.
+   *
+   * @param reader The reader.
+   * @param request The data request. Empty to only count rows.
+   * @param startRow The first row to include in this count.
+   * @param limitRow The last row to include in this count.
+   * @return A program exit code (zero on success).
+   * @throws IOException If there is an IO error.
+   */
+  private int count(
+      KijiTableReader reader,
+      KijiDataRequest request,
+      EntityId startRow,
+      EntityId limitRow)
+      throws IOException {
+    final KijiScannerOptions scannerOptions =
+        new KijiScannerOptions()
+            .setStartRow(startRow)
+            .setStopRow(limitRow);
+    final KijiScanAggregates aggregates = reader.aggregate(request, scannerOptions);
+    getPrintStream().printf("rows: %d%n", aggregates.getRowCount());
+    for (Map.Entry<KijiColumnName, ColumnAggregates> entry
+             : aggregates.getColumns().entrySet()) {
+      final ColumnAggregates column = entry.getValue();
+      getPrintStream().printf("%s: cells: %d, distinct values: ~%d",
+          entry.getKey(), column.getCellCount(), column.getDistinctValueCount());
+      if (null != column.getCounterSum()) {
+        getPrintStream().printf(", counter sum: %d, min: %s, max: %s",
+            column.getCounterSum(), column.getCounterMin(), column.getCounterMax());
+      }
+      getPrintStream().println();
+    }
+    return SUCCESS;
+  }
+
   /** {@inheritDoc} */
   @Override
   protected int run(List<String> nonFlagArgs) throws Exception {
@@ -203,6 +254,12 @@ public final class ScanTool extends BaseTool {
       return FAILURE;
     }
 
+    if (mCount && (mMaxRows != 0)) {
+      // TODO: Send this error to a future getErrorStream()
+      getPrintStream().printf("--max-rows cannot be used with --count%n");
+      return FAILURE;
+    }
+
     if (mMaxVersions < 1) {
       // TODO: Send this error to a future getErrorStream()
       getPrintStream().printf("--max-versions must be positive, got %d%n", mMaxVersions);
@@ -267,6 +324,13 @@ public final class ScanTool extends BaseTool {
                 Bytes.toStringBinary(limitRow.getHBaseRowKey()));
           }
 
+          if (mCount) {
+            // Without explicit columns, only count rows:
+            final KijiDataRequest countRequest = argURI.getColumns().isEmpty()
+                ? KijiDataRequest.builder().withTimeRange(mMinTimestamp, mMaxTimestamp).build()
+                : request;
+            return count(reader, countRequest, startRow, limitRow);
+          }
           return scan(reader, request, startRow, limitRow, mapTypeFamilies, groupTypeColumns);
         } finally {
           ResourceUtils.closeOrLog(reader);
@@ -21,12 +21,16 @@ package org.kiji.schema.util;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.apache.avro.Schema;
 import org.apache.avro.io.parsing.ResolvingGrammarGenerator;
@@ -68,6 +72,127 @@ public final class AvroUtils {
     }
   }
 
+  /**
+   * Projects a schema onto a subset of its record fields.
+   *
+   * <p>
+   *   Field paths are dot-separated record field names, eg. {@code "address.zip_code"}.
+   *   The projected schema only keeps the requested fields of the records along each path,
+   *   in their original order and with their original names, defaults and aliases.
+   *   Used as a reader schema, it lets the Avro resolver skip the other fields while decoding.
+   *   A path ending on a field keeps the entire field; records nested in unions
+   *   (eg. optional records) are projected branch by branch.
+   * </p>
+   *
+   * @param schema Schema to project.
+   * @param fieldPaths Dot-separated paths of the record fields to keep.
+   * @return the projected schema.
+   * @throws IllegalArgumentException if a path does not name a record field of the schema.
+   */
+  public static Schema projectSchema(Schema schema, Collection<String> fieldPaths) {
+    final List<List<String>> paths = Lists.newArrayListWithCapacity(fieldPaths.size());
+    for (String fieldPath : fieldPaths) {
+      Preconditions.checkArgument((null != fieldPath) && !fieldPath.isEmpty(),
+          "Invalid empty field path in projection %s.", fieldPaths);
+      paths.add(Arrays.asList(fieldPath.split("\\.")));
+    }
+    return projectSchemaPaths(schema, paths);
+  }
+
+  /**
+   * Projects a schema onto the record fields along the specified paths.
+   *
+   * @param schema Schema to project.
+   * @param paths Paths of the record fields to keep, relative to the schema.
+   *     An empty path keeps the entire schema.
+   * @return the projected schema.
+   */
+  private static Schema projectSchemaPaths(Schema schema, List<List<String>> paths) {
+    for (List<String> path : paths) {
+      if (path.isEmpty()) {
+        return schema;
+      }
+    }
+    switch (schema.getType()) {
+      case RECORD: {
+        final Map<String, List<List<String>>> fieldPaths = Maps.newHashMap();
+        for (List<String> path : paths) {
+          final String fieldName = path.get(0);
+          Preconditions.checkArgument(null != schema.getField(fieldName),
+              "Record '%s' has no field named '%s'.", schema.getFullName(), fieldName);
+          List<List<String>> subPaths = fieldPaths.get(fieldName);
+          if (null == subPaths) {
+            subPaths = Lists.newArrayList();
+            fieldPaths.put(fieldName, subPaths);
+          }
+          subPaths.add(path.subList(1, path.size()));
+        }
+
+        final List<Schema.Field> fields = Lists.newArrayList();
+        for (Schema.Field field : schema.getFields()) {
+          final List<List<String>> subPaths = fieldPaths.get(field.name());
+          if (null != subPaths) {
+            final Schema.Field projected = new Schema.Field(
+                field.name(),
+                projectSchemaPaths(field.schema(), subPaths),
+                field.doc(),
+                field.defaultValue(),
+                field.order());
+            for (String alias : field.aliases()) {
+              projected.addAlias(alias);
+            }
+            fields.add(projected);
+          }
+        }
+        final Schema projected = Schema.createRecord(
+            schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+        for (String alias : schema.getAliases()) {
+          projected.addAlias(alias);
+        }
+        projected.setFields(fields);
+        return projected;
+      }
+      case UNION: {
+        final List<Schema> branches = Lists.newArrayList();
+        boolean projected = false;
+        for (Schema branch : schema.getTypes()) {
+          if (hasRecordFields(branch, paths)) {
+            branches.add(projectSchemaPaths(branch, paths));
+            projected = true;
+          } else {
+            branches.add(branch);
+          }
+        }
+        Preconditions.checkArgument(projected,
+            "No branch of union %s has the fields %s.", schema, paths);
+        return Schema.createUnion(branches);
+      }
+      default:
+        throw new IllegalArgumentException(String.format(
+            "Cannot project field '%s' out of non-record schema %s.",
+            Joiner.on('.').join(paths.get(0)), schema));
+    }
+  }
+
+  /**
+   * Reports whether a schema is a record with fields named after the first component of each path.
+   *
+   * @param schema Schema to test.
+   * @param paths Non-empty field paths.
+   * @return whether the schema is a record with the first field of each path.
+   */
+  private static boolean hasRecordFields(Schema schema, List<List<String>> paths) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      return false;
+    }
+    for (List<String> path : paths) {
+      if (null == schema.getField(path.get(0))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Validates that the provided reader schemas can be used to decode data written with the provided
    * writer schema.
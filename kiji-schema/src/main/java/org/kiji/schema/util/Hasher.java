@@ -20,13 +20,25 @@
 package org.kiji.schema.util;
 
 import java.io.UnsupportedEncodingException;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
 import org.kiji.annotations.ApiAudience;
+import org.kiji.schema.avro.HashType;
 
 /**
  * A thread-safe utility for computing hashes of strings.
+ *
+ * <p>
+ *   Hashes of row keys may use any {@link HashType}, and can be written directly into a
+ *   destination buffer, without allocating intermediate arrays.
+ *   Other hashes (eg. schema hashes) always use MD5.
+ * </p>
  */
 @ApiAudience.Private
 public final class Hasher {
@@ -49,6 +61,17 @@ public final class Hasher {
           }
         };
 
+  /** Thread-local buffer for MD5 digests, whose prefixes are copied into row keys. */
+  private static final ThreadLocal<byte[]> DIGEST_BUFFER = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[HASH_SIZE_BYTES];
+    }
+  };
+
+  /** 128-bit MurmurHash3 (x64 variant), with a zero seed. */
+  private static final HashFunction MURMUR3 = Hashing.murmur3_128();
+
   /** Disable constructor for utility class. */
   private Hasher() {}
 
@@ -75,4 +98,61 @@ public final class Hasher {
   public static byte[] hash(byte[] input) {
     return MESSAGE_DIGEST.get().digest(input);
   }
+
+  /**
+   * Hashes the input byte array with the specified hashing method.
+   *
+   * @param hashType Hashing method to use.
+   * @param input The bytes to hash.
+   * @return The 128-bit hash of the input.
+   */
+  public static byte[] hash(HashType hashType, byte[] input) {
+    final byte[] hash = new byte[HASH_SIZE_BYTES];
+    hash(hashType, input, 0, input.length, hash, 0, HASH_SIZE_BYTES);
+    return hash;
+  }
+
+  /**
+   * Hashes a range of bytes with the specified hashing method, and writes a prefix of the hash
+   * into a destination array.
+   *
+   * @param hashType Hashing method to use.
+   * @param input Array containing the bytes to hash.
+   * @param offset Offset of the first byte to hash in the input array.
+   * @param length Number of bytes to hash.
+   * @param dest Array to write the hash prefix into.
+   * @param destOffset Offset in the destination array where to write the hash prefix.
+   * @param hashSize Number of bytes of the hash to write, between 0 and HASH_SIZE_BYTES.
+   */
+  public static void hash(
+      HashType hashType,
+      byte[] input,
+      int offset,
+      int length,
+      byte[] dest,
+      int destOffset,
+      int hashSize) {
+    Preconditions.checkArgument((hashSize >= 0) && (hashSize <= HASH_SIZE_BYTES),
+        "Invalid hash size: %s.", hashSize);
+    switch (hashType) {
+      case MD5: {
+        final MessageDigest digest = MESSAGE_DIGEST.get();
+        digest.update(input, offset, length);
+        final byte[] buffer = DIGEST_BUFFER.get();
+        try {
+          digest.digest(buffer, 0, HASH_SIZE_BYTES);
+        } catch (DigestException de) {
+          throw new RuntimeException(de);
+        }
+        System.arraycopy(buffer, 0, dest, destOffset, hashSize);
+        break;
+      }
+      case MURMUR3: {
+        MURMUR3.hashBytes(input, offset, length).writeBytesTo(dest, destOffset, hashSize);
+        break;
+      }
+      default:
+        throw new RuntimeException(String.format("Unexpected hashing type: '%s'.", hashType));
+    }
+  }
 }
@@ -0,0 +1,154 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import org.kiji.annotations.ApiAudience;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct elements of a stream in constant space.
+ *
+ * <p>
+ *   A sketch with precision p uses 2^p one-byte registers, and estimates cardinalities with a
+ *   relative standard error of about 1.04 / sqrt(2^p), eg. 1.6% for the default precision of 12.
+ *   Sketches with the same precision can be merged, to estimate the number of distinct elements
+ *   of the union of their streams.
+ * </p>
+ *
+ * <p> HyperLogLog sketches are not thread-safe. </p>
+ */
+@ApiAudience.Private
+public final class HyperLogLog {
+  /** Default precision: 4096 registers. */
+  public static final int DEFAULT_PRECISION = 12;
+
+  /** Hash function for the elements of the stream. */
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  /** Number of bits of the hash used to pick a register. */
+  private final int mPrecision;
+
+  /** Registers: maximum rank observed for the hashes mapped to each register. */
+  private final byte[] mRegisters;
+
+  /** Initializes a HyperLogLog sketch with the default precision. */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * Initializes a HyperLogLog sketch.
+   *
+   * @param precision Number of bits of the hash used to pick a register, in [4, 16].
+   */
+  public HyperLogLog(int precision) {
+    Preconditions.checkArgument((precision >= 4) && (precision <= 16),
+        "HyperLogLog precision must be between 4 and 16, got %s.", precision);
+    mPrecision = precision;
+    mRegisters = new byte[1 << precision];
+  }
+
+  /**
+   * Adds an element to the sketch.
+   *
+   * @param bytes Element to add.
+   * @return this sketch.
+   */
+  public HyperLogLog offer(byte[] bytes) {
+    return offerHash(HASH_FUNCTION.hashBytes(bytes).asLong());
+  }
+
+  /**
+   * Adds the 64-bit hash of an element to the sketch.
+   *
+   * @param hash Uniformly distributed 64-bit hash of the element to add.
+   * @return this sketch.
+   */
+  public HyperLogLog offerHash(long hash) {
+    final int index = (int) (hash >>> (Long.SIZE - mPrecision));
+    // The guard bit bounds the rank when the remaining bits are all zero:
+    final long remaining = (hash << mPrecision) | (1L << (mPrecision - 1));
+    final byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > mRegisters[index]) {
+      mRegisters[index] = rank;
+    }
+    return this;
+  }
+
+  /**
+   * Merges another sketch into this sketch.
+   *
+   * @param other Sketch to merge into this one. Must have the same precision.
+   * @return this sketch.
+   */
+  public HyperLogLog merge(HyperLogLog other) {
+    Preconditions.checkArgument(other.mPrecision == mPrecision,
+        "Cannot merge HyperLogLog sketches with precisions %s and %s.",
+        mPrecision, other.mPrecision);
+    for (int i = 0; i < mRegisters.length; ++i) {
+      if (other.mRegisters[i] > mRegisters[i]) {
+        mRegisters[i] = other.mRegisters[i];
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Estimates the number of distinct elements added to this sketch.
+   *
+   * @return the estimated number of distinct elements.
+   */
+  public long estimate() {
+    final int nregisters = mRegisters.length;
+    double sum = 0.0;
+    int nzeros = 0;
+    for (byte register : mRegisters) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        nzeros += 1;
+      }
+    }
+    final double estimate = getAlpha(nregisters) * nregisters * nregisters / sum;
+    if ((estimate <= 2.5 * nregisters) && (nzeros > 0)) {
+      // Small range correction (linear counting):
+      return Math.round(nregisters * Math.log((double) nregisters / nzeros));
+    }
+    // With 64-bit hashes, there is no need for a large range correction.
+    return Math.round(estimate);
+  }
+
+  /**
+   * Returns the bias correction constant for a given number of registers.
+   *
+   * @param nregisters Number of registers.
+   * @return the bias correction constant.
+   */
+  private static double getAlpha(int nregisters) {
+    switch (nregisters) {
+      case 16: return 0.673;
+      case 32: return 0.697;
+      case 64: return 0.709;
+      default: return 0.7213 / (1.0 + 1.079 / nregisters);
+    }
+  }
+}
@@ -37,16 +37,14 @@ import org.kiji.schema.layout.impl.ZooKeeperClient;
 @ApiAudience.Private
 public final class ZooKeeperLockFactory implements LockFactory {
   /**
-   * Creates a ZooKeeper client.
+   * Returns a ZooKeeper client, sharing the process-wide ZooKeeper session to the quorum.
    *
    * @param zkAddress ZooKeeper quorum, as a comma-separated list of ZooKeeper node "host:port".
-   * @return a new ZooKeeper client.
+   * @return a retained ZooKeeper client. The caller must release it.
    * @throws IOException on I/O error.
    */
   public static ZooKeeperClient newZooKeeper(String zkAddress) throws IOException {
-    final ZooKeeperClient zkClient = new ZooKeeperClient(zkAddress, 60000);
-    zkClient.open();
-    return zkClient;
+    return ZooKeeperClient.getZooKeeperClient(zkAddress);
   }
 
   /**
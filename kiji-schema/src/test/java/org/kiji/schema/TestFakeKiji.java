@@ -22,6 +22,9 @@ package org.kiji.schema;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Iterator;
@@ -33,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.impl.HBaseKiji;
 import org.kiji.schema.layout.KijiTableLayouts;
 import org.kiji.schema.util.VersionInfo;
 
@@ -117,4 +121,100 @@ public class TestFakeKiji extends KijiClientTest {
       kiji.release();
     }
   }
+
+  @Test
+  public void testParallelOpen() throws Exception {
+    final KijiURI uri = KijiURI
+        .newBuilder(String.format("kiji://.fake.%s/instance", getTestId()))
+        .build();
+    final Configuration conf = HBaseConfiguration.create();
+    KijiInstaller.get().install(uri, conf);
+
+    System.setProperty(HBaseKiji.PARALLEL_OPEN_PROPERTY, "true");
+    final Kiji kiji;
+    try {
+      kiji = Kiji.Factory.open(uri, conf);
+    } finally {
+      System.clearProperty(HBaseKiji.PARALLEL_OPEN_PROPERTY);
+    }
+    try {
+      assertEquals(VersionInfo.getClientDataVersion(), kiji.getSystemTable().getDataVersion());
+      kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+      assertTrue(kiji.getMetaTable().tableExists("table"));
+    } finally {
+      kiji.release();
+    }
+  }
+
+  @Test(expected = KijiNotInstalledException.class)
+  public void testParallelOpenNotInstalled() throws Exception {
+    final KijiURI uri = KijiURI
+        .newBuilder(String.format("kiji://.fake.%s/instance", getTestId()))
+        .build();
+    System.setProperty(HBaseKiji.PARALLEL_OPEN_PROPERTY, "true");
+    try {
+      Kiji.Factory.open(uri, HBaseConfiguration.create()).release();
+    } finally {
+      System.clearProperty(HBaseKiji.PARALLEL_OPEN_PROPERTY);
+    }
+  }
+
+  @Test
+  public void testOpenKijiIsShared() throws Exception {
+    final KijiURI uri = KijiURI
+        .newBuilder(String.format("kiji://.fake.%s/instance", getTestId()))
+        .build();
+    final Configuration conf = HBaseConfiguration.create();
+    KijiInstaller.get().install(uri, conf);
+
+    final Kiji kiji = Kiji.Factory.open(uri, conf);
+    try {
+      // Same instance and configuration, table is irrelevant:
+      final Kiji shared = Kiji.Factory.open(
+          KijiURI.newBuilder(uri).withTableName("table").build(), HBaseConfiguration.create());
+      try {
+        assertSame(kiji, shared);
+        assertEquals(uri, shared.getURI());
+      } finally {
+        shared.release();
+      }
+
+      // Settings unrelated to the HBase client are irrelevant:
+      final Configuration unrelatedConf = HBaseConfiguration.create();
+      unrelatedConf.set("org.kiji.schema.TestFakeKiji", "other");
+      final Kiji unrelated = Kiji.Factory.open(uri, unrelatedConf);
+      try {
+        assertSame(kiji, unrelated);
+        // The configuration of a shared instance cannot be altered through its users:
+        unrelated.getConf().set("org.kiji.schema.TestFakeKiji", "altered");
+        assertNull(kiji.getConf().get("org.kiji.schema.TestFakeKiji"));
+      } finally {
+        unrelated.release();
+      }
+
+      // Different HBase client settings:
+      final Configuration otherConf = HBaseConfiguration.create();
+      otherConf.setInt("hbase.client.retries.number", 1);
+      final Kiji other = Kiji.Factory.open(uri, otherConf);
+      try {
+        assertNotSame(kiji, other);
+      } finally {
+        other.release();
+      }
+
+      // The shared instance is still usable after the other handles are released:
+      assertNotNull(kiji.getMetaTable().listTables());
+    } finally {
+      kiji.release();
+    }
+
+    // Released instances are not shared anymore:
+    final Kiji reopened = Kiji.Factory.open(uri, conf);
+    try {
+      assertNotSame(kiji, reopened);
+      assertNotNull(reopened.getMetaTable().listTables());
+    } finally {
+      reopened.release();
+    }
+  }
 }
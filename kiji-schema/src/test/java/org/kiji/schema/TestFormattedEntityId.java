@@ -26,7 +26,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.SortedMap;
 
@@ -42,11 +44,13 @@ import org.slf4j.LoggerFactory;
 import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
 import org.kiji.schema.avro.ComponentType;
 import org.kiji.schema.avro.HashSpec;
+import org.kiji.schema.avro.HashType;
 import org.kiji.schema.avro.RowKeyComponent;
 import org.kiji.schema.avro.RowKeyEncoding;
 import org.kiji.schema.avro.RowKeyFormat2;
 import org.kiji.schema.layout.KijiTableLayouts;
 import org.kiji.schema.util.ByteArrayFormatter;
+import org.kiji.schema.util.Hasher;
 
 /** Tests for FormattedEntityId. */
 public class TestFormattedEntityId extends KijiClientTest {
@@ -681,4 +685,88 @@ public class TestFormattedEntityId extends KijiClientTest {
     final FormattedEntityId formattedEntityId = makeId(format, "one");
     assertEquals("hbase=hex:f9", formattedEntityId.toShellString());
   }
+
+  @Test
+  public void testStringEncoding() throws Exception {
+    // Composite hash over the first two components, with 2-byte, 3-byte, 4-byte UTF-8 chars,
+    // and an unpaired surrogate:
+    final RowKeyFormat2 format = RowKeyFormat2.newBuilder()
+        .setEncoding(RowKeyEncoding.FORMATTED)
+        .setSalt(HashSpec.newBuilder().setHashSize(4).build())
+        .setRangeScanStartIndex(2)
+        .setComponents(makeStringRowKeyFormat().getComponents())
+        .build();
+    final String first = "caf\u00e9 \u6771\u4eac";
+    final String second = "\ud83d\ude00 and \ud83d alone";
+    final String third = "";
+    final byte[] firstBytes = first.getBytes("UTF-8");
+    final byte[] secondBytes = second.getBytes("UTF-8");
+
+    final ByteArrayOutputStream hashInput = new ByteArrayOutputStream();
+    hashInput.write(firstBytes);
+    hashInput.write(secondBytes);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(Arrays.copyOf(Hasher.hash(hashInput.toByteArray()), 4));
+    expected.write(firstBytes);
+    expected.write(0);
+    expected.write(secondBytes);
+    expected.write(0);
+    expected.write(0);
+
+    final FormattedEntityId eid = makeId(format, first, second, third);
+    assertArrayEquals(expected.toByteArray(), eid.getHBaseRowKey());
+    // Buffers reused across entity IDs must not leak bytes from one to the next:
+    makeId(format, first + first + first, second, third);
+    assertArrayEquals(expected.toByteArray(), makeId(format, first, second, third)
+        .getHBaseRowKey());
+  }
+
+  @Test
+  public void testMurmur3HashPrefix() {
+    final RowKeyFormat2 md5Format = makeRowKeyFormat();
+    final RowKeyFormat2 murmur3Format = RowKeyFormat2.newBuilder(md5Format)
+        .setSalt(HashSpec.newBuilder().setHashType(HashType.MURMUR3).build())
+        .build();
+    final byte[] md5Key = makeId(md5Format, "one", 1, 7L).getHBaseRowKey();
+    final byte[] murmur3Key = makeId(murmur3Format, "one", 1, 7L).getHBaseRowKey();
+
+    assertEquals(md5Key.length, murmur3Key.length);
+    assertArrayEquals(
+        Hasher.hash(HashType.MURMUR3, Bytes.toBytes("one")),
+        Arrays.copyOf(murmur3Key, Hasher.HASH_SIZE_BYTES));
+    // Only the hash prefix differs:
+    assertArrayEquals(
+        Arrays.copyOfRange(md5Key, Hasher.HASH_SIZE_BYTES, md5Key.length),
+        Arrays.copyOfRange(murmur3Key, Hasher.HASH_SIZE_BYTES, murmur3Key.length));
+
+    final List<Object> components =
+        FormattedEntityId.fromHBaseRowKey(murmur3Key, murmur3Format).getComponents();
+    assertEquals(Lists.<Object>newArrayList("one", 1, 7L), components);
+  }
+
+  @Test
+  public void testLazyDecoding() {
+    final RowKeyFormat2 format = makeRowKeyFormat();
+    final EntityIdFactory factory = EntityIdFactory.getFactory(format);
+    final byte[] hbaseRowKey = makeId(format, "one", 1, 7L).getHBaseRowKey();
+    final byte[] original = hbaseRowKey.clone();
+
+    final EntityId eid = factory.getEntityIdFromHBaseRowKey(hbaseRowKey);
+    assertArrayEquals(original, eid.getHBaseRowKey());
+    assertEquals(7L, (long) eid.<Long>getComponentByIndex(2));
+    assertEquals(Lists.<Object>newArrayList("one", 1, 7L), eid.getComponents());
+    // Decoding must not alter the row key bytes:
+    assertArrayEquals(original, hbaseRowKey);
+
+    // Malformed row keys are only reported when their components are requested:
+    final byte[] truncated = Arrays.copyOf(original, original.length - 1);
+    final EntityId malformed = factory.getEntityIdFromHBaseRowKey(truncated);
+    assertArrayEquals(truncated, malformed.getHBaseRowKey());
+    try {
+      malformed.getComponents();
+      fail("Should fail with EntityIdException");
+    } catch (EntityIdException eie) {
+      assertEquals("Malformed hbase Row Key", eie.getMessage());
+    }
+  }
 }
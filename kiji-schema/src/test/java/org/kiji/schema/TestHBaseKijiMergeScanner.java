@@ -0,0 +1,155 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.impl.HBaseKijiMergeScanner;
+import org.kiji.schema.impl.HBaseKijiMergeScanner.MergedRow;
+import org.kiji.schema.impl.HBaseKijiTable;
+import org.kiji.schema.impl.HBaseRowKeyRange;
+import org.kiji.schema.layout.KijiTableLayouts;
+
+public class TestHBaseKijiMergeScanner extends KijiClientTest {
+  private KijiTable mTable1;
+  private KijiTable mTable2;
+  private List<HBaseKijiTable> mTables;
+  private List<KijiDataRequest> mDataRequests;
+
+  @Before
+  public final void setupTestHBaseKijiMergeScanner() throws Exception {
+    final Kiji kiji = getKiji();
+    final TableLayoutDesc desc1 = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE_UNHASHED);
+    desc1.setName("table1");
+    kiji.createTable(desc1);
+    final TableLayoutDesc desc2 = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE_UNHASHED);
+    desc2.setName("table2");
+    kiji.createTable(desc2);
+
+    mTable1 = kiji.openTable("table1");
+    mTable2 = kiji.openTable("table2");
+    write(mTable1, "a", "b", "c");
+    write(mTable2, "b", "c", "d", "e");
+
+    mTables = ImmutableList.of(HBaseKijiTable.downcast(mTable1), HBaseKijiTable.downcast(mTable2));
+    final KijiDataRequest dataRequest = KijiDataRequest.create("family", "column");
+    mDataRequests = ImmutableList.of(dataRequest, dataRequest);
+  }
+
+  /**
+   * Writes one cell in each of the specified rows.
+   *
+   * @param table Table to write to.
+   * @param rows Rows to write.
+   * @throws IOException on I/O error.
+   */
+  private static void write(KijiTable table, String... rows) throws IOException {
+    final KijiTableWriter writer = table.openTableWriter();
+    try {
+      for (String row : rows) {
+        writer.put(table.getEntityId(row), "family", "column", 1L, table.getName() + "-" + row);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @After
+  public final void teardownTestHBaseKijiMergeScanner() throws IOException {
+    mTable1.release();
+    mTable2.release();
+  }
+
+  @Test
+  public void testMergeScanner() throws IOException {
+    final Map<String, MergedRow> merged = Maps.newHashMap();
+    final HBaseKijiMergeScanner scanner =
+        new HBaseKijiMergeScanner(mTables, mDataRequests, HBaseRowKeyRange.ALL);
+    try {
+      while (scanner.hasNext()) {
+        final MergedRow row = scanner.next();
+        assertEquals(2, row.size());
+        final String key = Bytes.toString(row.getEntityId().getHBaseRowKey());
+        assertNull(merged.put(key, row));
+      }
+      assertFalse(scanner.hasNext());
+    } finally {
+      scanner.close();
+    }
+
+    assertEquals(5, merged.size());
+    assertNull(merged.get("a").getRow(1));
+    assertEquals("table1-a",
+        merged.get("a").getRow(0).getMostRecentValue("family", "column").toString());
+    for (String key : ImmutableList.of("b", "c")) {
+      assertNotNull(merged.get(key).getRow(0));
+      assertEquals("table2-" + key,
+          merged.get(key).getRow(1).getMostRecentValue("family", "column").toString());
+    }
+    for (String key : ImmutableList.of("d", "e")) {
+      assertNull(merged.get(key).getRow(0));
+      assertNotNull(merged.get(key).getRow(1));
+    }
+  }
+
+  @Test
+  public void testScanInParallel() throws IOException {
+    final Map<String, Integer> counts = Maps.newConcurrentMap();
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      HBaseKijiMergeScanner.scanInParallel(mTables, mDataRequests, executor,
+          new HBaseKijiMergeScanner.MergedRowHandler() {
+            @Override
+            public void process(MergedRow row) {
+              int count = 0;
+              for (int i = 0; i < row.size(); ++i) {
+                count += (null != row.getRow(i)) ? 1 : 0;
+              }
+              counts.put(Bytes.toString(row.getEntityId().getHBaseRowKey()), count);
+            }
+          });
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(5, counts.size());
+    assertEquals(1, (int) counts.get("a"));
+    assertEquals(2, (int) counts.get("b"));
+    assertEquals(2, (int) counts.get("c"));
+    assertEquals(1, (int) counts.get("d"));
+    assertEquals(1, (int) counts.get("e"));
+  }
+}
@@ -26,10 +26,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 
 import com.google.common.collect.Lists;
 import org.apache.avro.Schema;
@@ -623,6 +625,116 @@ public class TestHBaseKijiRowData extends KijiClientTest {
     assertFalse(cells.hasNext());
   }
 
+  @Test
+  public void testPrimitiveCells() throws IOException {
+    final List<KeyValue> kvs = Lists.newArrayList();
+    final EntityId eid = mEntityIdFactory.getEntityId("row0");
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual0, 1L, encodeStr("str")));
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual3, 3L, encodeInt(-300)));
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual3, 2L,
+        encodeInt(Integer.MAX_VALUE)));
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual3, 1L, encodeInt(7)));
+    final Result result = new Result(kvs);
+
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().withMaxVersions(2)
+            .add("family", "qual0")
+            .add("family", "qual3"))
+        .build();
+    final HBaseKijiRowData input = new HBaseKijiRowData(mTable, dataRequest, eid, result, null);
+
+    assertEquals(-300, input.getMostRecentInt("family", "qual3"));
+    assertEquals(-300L, input.getMostRecentLong("family", "qual3"));
+    assertEquals(-300.0, input.getMostRecentDouble("family", "qual3"), 0.0);
+
+    final PrimitiveCellCursor cursor = input.getPrimitiveCells("family", "qual3");
+    assertTrue(cursor.next());
+    assertEquals(3L, cursor.getTimestamp());
+    assertEquals(-300, cursor.getInt());
+    assertTrue(cursor.next());
+    assertEquals(2L, cursor.getTimestamp());
+    assertEquals(Integer.MAX_VALUE, cursor.getLong());
+    // Only 2 versions were requested:
+    assertFalse(cursor.next());
+
+    try {
+      input.getMostRecentLong("family", "qual0");
+      fail("Strings should not be readable as longs.");
+    } catch (KijiEncodingException kee) {
+      LOG.debug("Expected exception: {}", kee.getMessage());
+    }
+    try {
+      input.getMostRecentLong("family", "qual1");
+      fail("Columns not requested should not be readable.");
+    } catch (IllegalArgumentException iae) {
+      LOG.debug("Expected exception: {}", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testPrimitiveCellsWithoutCell() throws IOException {
+    final EntityId eid = mEntityIdFactory.getEntityId("row0");
+    final Result result = new Result(Lists.<KeyValue>newArrayList());
+
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().add("family", "qual3"))
+        .build();
+    final HBaseKijiRowData input = new HBaseKijiRowData(mTable, dataRequest, eid, result, null);
+
+    assertFalse(input.getPrimitiveCells("family", "qual3").next());
+    try {
+      input.getMostRecentLong("family", "qual3");
+      fail("Columns without cells should have no most recent value.");
+    } catch (NoSuchElementException nsee) {
+      LOG.debug("Expected exception: {}", nsee.getMessage());
+    }
+  }
+
+  @Test
+  public void testPrimitiveCellsWithReaderSchema() throws IOException {
+    final List<KeyValue> kvs = Lists.newArrayList();
+    final EntityId eid = mEntityIdFactory.getEntityId("row0");
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual3, 3L, encodeInt(-300)));
+    final Result result = new Result(kvs);
+
+    // Ints written to the column are promoted to longs by the reader schema:
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create()
+            .withReaderSchema(Schema.create(Schema.Type.LONG))
+            .add("family", "qual3"))
+        .build();
+    final HBaseKijiRowData input = new HBaseKijiRowData(mTable, dataRequest, eid, result, null);
+
+    assertEquals(-300L, input.getMostRecentLong("family", "qual3"));
+    assertEquals(-300.0, input.getMostRecentDouble("family", "qual3"), 0.0);
+    try {
+      input.getMostRecentInt("family", "qual3");
+      fail("Longs should not be readable as ints.");
+    } catch (KijiEncodingException kee) {
+      LOG.debug("Expected exception: {}", kee.getMessage());
+    }
+  }
+
+  @Test
+  public void testPrimitiveCellsTruncated() throws IOException {
+    final List<KeyValue> kvs = Lists.newArrayList();
+    final EntityId eid = mEntityIdFactory.getEntityId("row0");
+    final byte[] encoded = encodeInt(Integer.MAX_VALUE);
+    kvs.add(new KeyValue(eid.getHBaseRowKey(), mHBaseFamily, mHBaseQual3, 1L,
+        Arrays.copyOf(encoded, encoded.length - 1)));
+    final Result result = new Result(kvs);
+
+    final KijiDataRequest dataRequest = KijiDataRequest.create("family", "qual3");
+    final HBaseKijiRowData input = new HBaseKijiRowData(mTable, dataRequest, eid, result, null);
+
+    try {
+      input.getMostRecentInt("family", "qual3");
+      fail("Truncated cells should not be decoded.");
+    } catch (KijiEncodingException kee) {
+      LOG.debug("Expected exception: {}", kee.getMessage());
+    }
+  }
+
   @Test
   public void testIteratorMapFamilyMaxVersionsTypes() throws IOException {
     new InstanceBuilder(getKiji())
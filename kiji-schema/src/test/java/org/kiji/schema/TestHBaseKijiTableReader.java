@@ -20,7 +20,10 @@
 package org.kiji.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -47,6 +50,8 @@ public class TestHBaseKijiTableReader extends KijiClientTest {
                 .withFamily("info")
                     .withQualifier("name").withValue(1L, "foo-val")
                     .withQualifier("visits").withValue(1L, 42L)
+                .withFamily("experiments")
+                    .withQualifier("exp1").withValue(1L, 1L)
             .withRow("bar")
                 .withFamily("info")
                     .withQualifier("name").withValue(1L, "bar-val")
@@ -83,6 +88,21 @@ public class TestHBaseKijiTableReader extends KijiClientTest {
     assertEquals(42L, actual);
   }
 
+  @Test
+  public void testGetPrimitiveCounter() throws Exception {
+    final KijiDataRequest request = KijiDataRequest.create("info", "visits");
+    final KijiRowData row = mReader.get(mTable.getEntityId("foo"), request);
+    assertEquals(42L, row.getMostRecentLong("info", "visits"));
+    assertEquals(42, row.getMostRecentInt("info", "visits"));
+    assertEquals(42.0, row.getMostRecentDouble("info", "visits"), 0.0);
+
+    final PrimitiveCellCursor cursor = row.getPrimitiveCells("info", "visits");
+    assertTrue(cursor.next());
+    assertEquals(1L, cursor.getTimestamp());
+    assertEquals(42L, cursor.getLong());
+    assertFalse(cursor.next());
+  }
+
   @Test
   public void testBulkGet() throws Exception {
     final EntityId entityId1 = mTable.getEntityId("foo");
@@ -96,4 +116,20 @@ public class TestHBaseKijiTableReader extends KijiClientTest {
     assertEquals("bar-val", actual2);
   }
 
+  @Test
+  public void testExists() throws Exception {
+    final ImmutableList<EntityId> entityIds = ImmutableList.of(
+        mTable.getEntityId("foo"), mTable.getEntityId("bar"), mTable.getEntityId("missing"));
+    assertEquals(ImmutableList.of(true, true, false), mReader.exists(entityIds, null));
+    assertEquals(ImmutableList.of(true, true, false),
+        mReader.exists(entityIds, new KijiColumnName("info", "visits")));
+    assertEquals(ImmutableList.of(true, true, false),
+        mReader.exists(entityIds, new KijiColumnName("info")));
+    assertEquals(ImmutableList.of(true, false, false),
+        mReader.exists(entityIds, new KijiColumnName("experiments")));
+    assertEquals(ImmutableList.of(true, false, false),
+        mReader.exists(entityIds, new KijiColumnName("experiments", "exp1")));
+    assertEquals(ImmutableList.of(false, false, false),
+        mReader.exists(entityIds, new KijiColumnName("experiments", "exp2")));
+  }
 }
@@ -121,6 +121,40 @@ public class TestHBaseMapFamilyPager extends KijiClientTest {
     }
   }
 
+  /** Test a qualifier pager on a map-type family, with asynchronous page prefetching. */
+  @Test
+  public void testQualifiersPagerWithPrefetch() throws IOException {
+    final EntityId eid = mTable.getEntityId("me");
+
+    final int pageSize = 2;
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create()
+            .withPageSize(pageSize)
+            .withPagePrefetch(true)
+            .addFamily("jobs"))
+        .build();
+
+    final KijiRowData row = mReader.get(eid, dataRequest);
+    final KijiPager pager = row.getPager("jobs");
+    try {
+      final List<String> qualifiers = Lists.newArrayList();
+      while (pager.hasNext()) {
+        final NavigableSet<String> page = pager.next().getQualifiers("jobs");
+        assertTrue(page.size() <= pageSize);
+        qualifiers.addAll(page);
+        // Page sizes different from the prefetched one must still be honored:
+        if (pager.hasNext()) {
+          final NavigableSet<String> smallPage = pager.next(1).getQualifiers("jobs");
+          assertTrue(smallPage.size() <= 1);
+          qualifiers.addAll(smallPage);
+        }
+      }
+      assertEquals(Lists.newArrayList("j0", "j1", "j2", "j3", "j4"), qualifiers);
+    } finally {
+      pager.close();
+    }
+  }
+
   /** Test a qualifier pager on a map-type family with a user filter that discards everything. */
   @Test
   public void testQualifiersPagerWithUserFilterEmpty() throws IOException {
@@ -23,6 +23,7 @@ import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
@@ -74,6 +75,49 @@ public class TestHBaseMetaTable {
     verify(mTableLayoutDatabase);
   }
 
+  @Test
+  public void testCachedReads() throws Exception {
+    final TableLayoutDesc desc = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE);
+    final KijiTableLayout layout = KijiTableLayout.newLayout(desc);
+    final byte[] value = new byte[] {1, 2, 3};
+
+    // Each read reaches the delegates once, then after each invalidation:
+    expect(mTableLayoutDatabase.getTableLayout("table")).andReturn(layout).times(3);
+    expect(mTableLayoutDatabase.updateTableLayout("table", desc)).andReturn(layout);
+    expect(mTableKeyValueDatabase.getValue("table", "key")).andReturn(value).times(2);
+    expect(mTableKeyValueDatabase.putValue("table", "key", value)).andReturn(null);
+    mHTable.close();
+
+    replay(mHTable);
+    replay(mTableLayoutDatabase);
+    replay(mTableKeyValueDatabase);
+
+    System.setProperty(HBaseMetaTable.CACHE_TTL_PROPERTY, "60000");
+    final HBaseMetaTable table;
+    try {
+      table = new HBaseMetaTable(mHTable, mTableLayoutDatabase, mTableKeyValueDatabase);
+    } finally {
+      System.clearProperty(HBaseMetaTable.CACHE_TTL_PROPERTY);
+    }
+
+    assertEquals(layout, table.getTableLayout("table"));
+    assertEquals(layout, table.getTableLayout("table"));
+    table.updateTableLayout("table", desc);
+    assertEquals(layout, table.getTableLayout("table"));
+    table.invalidateTableLayout("table");
+    assertEquals(layout, table.getTableLayout("table"));
+    assertEquals(layout, table.getTableLayout("table"));
+
+    assertArrayEquals(value, table.getValue("table", "key"));
+    assertArrayEquals(value, table.getValue("table", "key"));
+    table.putValue("table", "key", value);
+    assertArrayEquals(value, table.getValue("table", "key"));
+    ResourceUtils.closeOrLog(table);
+
+    verify(mHTable);
+    verify(mTableLayoutDatabase);
+    verify(mTableKeyValueDatabase);
+  }
 
   //test keySet, getValue, putValue, removeValues, getTableNameToKeysMap.
 }
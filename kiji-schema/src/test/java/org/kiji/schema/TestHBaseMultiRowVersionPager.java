@@ -0,0 +1,153 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.hbase.HConstants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.schema.KijiDataRequestBuilder.ColumnsDef;
+import org.kiji.schema.impl.HBaseKijiTable;
+import org.kiji.schema.impl.HBaseMultiRowVersionPager;
+import org.kiji.schema.layout.KijiTableLayouts;
+
+public class TestHBaseMultiRowVersionPager extends KijiClientTest {
+  private KijiTable mTable;
+
+  @Before
+  public final void setupTestHBaseMultiRowVersionPager() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.PAGING_TEST));
+
+    mTable = kiji.openTable("user");
+    final KijiTableWriter writer = mTable.openTableWriter();
+    try {
+      for (long ts = 1; ts <= 5; ++ts) {
+        writer.put(mTable.getEntityId("a"), "info", "name", ts, String.format("a-%d", ts));
+      }
+      for (long ts = 1; ts <= 2; ++ts) {
+        writer.put(mTable.getEntityId("b"), "info", "name", ts, String.format("b-%d", ts));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @After
+  public final void teardownTestHBaseMultiRowVersionPager() throws IOException {
+    mTable.release();
+  }
+
+  @Test
+  public void testLockstepPaging() throws IOException {
+    final EntityId eidA = mTable.getEntityId("a");
+    final EntityId eidB = mTable.getEntityId("b");
+    final EntityId eidC = mTable.getEntityId("c");  // no data
+
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create()
+            .withMaxVersions(HConstants.ALL_VERSIONS).withPageSize(2).add("info", "name"))
+        .build();
+
+    final HBaseMultiRowVersionPager pager = new HBaseMultiRowVersionPager(
+        ImmutableList.of(eidA, eidB, eidC),
+        dataRequest,
+        HBaseKijiTable.downcast(mTable),
+        new KijiColumnName("info", "name"),
+        null);
+    try {
+      final Map<EntityId, List<Long>> timestamps = Maps.newHashMap();
+      final List<Integer> pageRowCounts = Lists.newArrayList();
+      while (pager.hasNext()) {
+        final Map<EntityId, KijiRowData> page = pager.next();
+        pageRowCounts.add(page.size());
+        for (Map.Entry<EntityId, KijiRowData> entry : page.entrySet()) {
+          List<Long> rowTimestamps = timestamps.get(entry.getKey());
+          if (null == rowTimestamps) {
+            rowTimestamps = Lists.newArrayList();
+            timestamps.put(entry.getKey(), rowTimestamps);
+          }
+          final Map<Long, CharSequence> values = entry.getValue().getValues("info", "name");
+          assertTrue(values.size() <= 2);
+          rowTimestamps.addAll(values.keySet());
+        }
+      }
+
+      // Row "c" drops out after the first page, "b" after the second:
+      assertEquals(ImmutableList.of(3, 2, 1), pageRowCounts);
+      assertEquals(ImmutableList.of(5L, 4L, 3L, 2L, 1L), timestamps.get(eidA));
+      assertEquals(ImmutableList.of(2L, 1L), timestamps.get(eidB));
+      assertTrue(timestamps.get(eidC).isEmpty());
+
+      assertFalse(pager.hasNext());
+      try {
+        pager.next();
+        Assert.fail("next() should throw NoSuchElementException");
+      } catch (NoSuchElementException nsee) {
+        // Expected
+      }
+    } finally {
+      pager.close();
+    }
+  }
+
+  @Test
+  public void testMaxVersionsBoundsEachRow() throws IOException {
+    final EntityId eidA = mTable.getEntityId("a");
+    final EntityId eidB = mTable.getEntityId("b");
+
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().withMaxVersions(3).withPageSize(2).add("info", "name"))
+        .build();
+
+    final HBaseMultiRowVersionPager pager = new HBaseMultiRowVersionPager(
+        ImmutableList.of(eidA, eidB),
+        dataRequest,
+        HBaseKijiTable.downcast(mTable),
+        new KijiColumnName("info", "name"),
+        null);
+    try {
+      int versionsA = 0;
+      while (pager.hasNext()) {
+        final KijiRowData rowA = pager.next().get(eidA);
+        if (null != rowA) {
+          versionsA += rowA.getValues("info", "name").size();
+        }
+      }
+      assertEquals(3, versionsA);
+    } finally {
+      pager.close();
+    }
+  }
+}
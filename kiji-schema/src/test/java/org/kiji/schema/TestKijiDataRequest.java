@@ -25,6 +25,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -33,6 +34,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -148,6 +150,34 @@ public class TestKijiDataRequest {
     assertEquals("Merge must be symmetric", merged, symmetricMerged);
   }
 
+  @Test
+  public void testProjectedFieldsMerge() throws IOException, ClassNotFoundException {
+    final KijiDataRequestBuilder builder1 = KijiDataRequest.builder();
+    builder1.newColumnsDef().withProjectedFields("a", "b.c").add("foo", "bar");
+    builder1.newColumnsDef().withProjectedFields("a").add("foo", "baz");
+    final KijiDataRequest first = builder1.build();
+
+    final KijiDataRequestBuilder builder2 = KijiDataRequest.builder();
+    builder2.newColumnsDef().withProjectedFields("d", "a").add("foo", "bar");
+    builder2.newColumnsDef().add("foo", "baz");
+    final KijiDataRequest second = builder2.build();
+
+    final KijiDataRequest merged = first.merge(second);
+    assertEquals(Arrays.asList("a", "b.c", "d"),
+        merged.getColumn("foo", "bar").getProjectedFields());
+    // Merging with a request for entire cells cancels the projection:
+    assertNull(merged.getColumn("foo", "baz").getProjectedFields());
+    assertFalse(merged.getColumn("foo", "baz").isProjected());
+
+    // Projections survive Java serialization:
+    final ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    new ObjectOutputStream(outStream).writeObject(first);
+    final KijiDataRequest copy = (KijiDataRequest) new ObjectInputStream(
+        new ByteArrayInputStream(outStream.toByteArray())).readObject();
+    assertEquals(first, copy);
+    assertEquals(Arrays.asList("a", "b.c"), copy.getColumn("foo", "bar").getProjectedFields());
+  }
+
   @Test
   public void testInvalidColumnSpec() {
     // The user really wants 'builder.columns().add("family", "qualifier")'.
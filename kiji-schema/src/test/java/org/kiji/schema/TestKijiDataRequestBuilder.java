@@ -103,7 +103,9 @@ public class TestKijiDataRequestBuilder {
       fail("An exception should have been thrown.");
     } catch (IllegalStateException ise) {
       assertEquals("Duplicate definition for column 'Column{name=info:foo, maxVersions=1, "
-          + "filter=null, pageSize=0}'.", ise.getMessage());
+          + "filter=null, pageSize=0, pagePrefetch=false, readerSchema=null, "
+          + "projectedFields=null}'.",
+          ise.getMessage());
     }
   }
 
@@ -117,7 +119,9 @@ public class TestKijiDataRequestBuilder {
       fail("An exception should have been thrown.");
     } catch (IllegalStateException ise) {
       assertEquals("Duplicate definition for column 'Column{name=info:foo, maxVersions=1, "
-          + "filter=null, pageSize=0}'.", ise.getMessage());
+          + "filter=null, pageSize=0, pagePrefetch=false, readerSchema=null, "
+          + "projectedFields=null}'.",
+          ise.getMessage());
     }
   }
 
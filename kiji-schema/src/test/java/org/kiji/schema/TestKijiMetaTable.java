@@ -25,8 +25,15 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
@@ -155,4 +162,57 @@ public class TestKijiMetaTable extends KijiClientTest {
     assertEquals(0, metaTable.tableSet().size());
   }
 
+  @Test
+  public void testBatchValues() throws InterruptedException, IOException {
+    final KijiMetaTable metaTable = getKiji().getMetaTable();
+
+    final Map<String, byte[]> values = new HashMap<String, byte[]>();
+    values.put("key1", Bytes.toBytes("value1"));
+    values.put("key2", Bytes.toBytes("value2"));
+    assertEquals("putValues() exposes the delegate", metaTable, metaTable.putValues("foo", values));
+    metaTable.putValue("bar", "key1", BYTES_VALUE);
+
+    assertEquals(values.keySet(), metaTable.keySet("foo"));
+    final Map<String, byte[]> read =
+        metaTable.getValues("foo", Arrays.asList("key1", "key2", "missing"));
+    assertEquals(values.keySet(), read.keySet());
+    assertArrayEquals(values.get("key1"), read.get("key1"));
+    assertArrayEquals(values.get("key2"), read.get("key2"));
+    assertTrue(metaTable.getValues("baz", Arrays.asList("key1")).isEmpty());
+
+    metaTable.removeAllValues("foo");
+    assertTrue(metaTable.keySet("foo").isEmpty());
+    assertTrue(metaTable.getValues("foo", values.keySet()).isEmpty());
+    assertEquals(Collections.singleton("bar"), metaTable.tableSet());
+  }
+
+  @Test
+  public void testReadsFromOtherThreads() throws Exception {
+    final KijiMetaTable metaTable = getKiji().getMetaTable();
+    final TableLayoutDesc layout = KijiTableLayouts.getLayout(KijiTableLayouts.FOO_TEST);
+    metaTable.updateTableLayout("foo", layout);
+
+    final Callable<byte[]> read = new Callable<byte[]>() {
+      /** {@inheritDoc} */
+      @Override
+      public byte[] call() throws Exception {
+        assertEquals("foo", metaTable.getTableLayout("foo").getName());
+        return metaTable.getValue("foo", "key");
+      }
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      // Each thread reads through its own HTable, and sees the writes through the meta table:
+      metaTable.putValue("foo", "key", BYTES_VALUE);
+      final Future<byte[]> first = executor.submit(read);
+      final Future<byte[]> second = executor.submit(read);
+      assertArrayEquals(BYTES_VALUE, first.get());
+      assertArrayEquals(BYTES_VALUE, second.get());
+
+      metaTable.putValue("foo", "key", Bytes.toBytes("updated"));
+      assertEquals("updated", Bytes.toString(executor.submit(read).get()));
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
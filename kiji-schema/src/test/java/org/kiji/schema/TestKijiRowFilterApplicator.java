@@ -21,6 +21,7 @@ package org.kiji.schema;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -44,6 +45,7 @@ import org.kiji.schema.filter.KijiRowFilterDeserializer;
 import org.kiji.schema.hbase.HBaseColumnName;
 import org.kiji.schema.impl.DefaultKijiCellEncoderFactory;
 import org.kiji.schema.impl.HBaseDataRequestAdapter;
+import org.kiji.schema.impl.HBaseKijiTable;
 import org.kiji.schema.layout.CellSpec;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayouts;
@@ -64,6 +66,9 @@ public class TestKijiRowFilterApplicator extends KijiClientTest {
   /** The filter returned by the MyKijiRowFilter.toHBaseFilter(). */
   private Filter mHBaseFilter;
 
+  /** Number of calls to MyKijiRowFilter.toHBaseFilter(). */
+  private int mCompilations;
+
   @Before
   public void setupTests() throws IOException {
     mTableLayout =
@@ -91,6 +96,8 @@ public class TestKijiRowFilterApplicator extends KijiClientTest {
 
     @Override
     public Filter toHBaseFilter(Context context) throws IOException {
+      mCompilations += 1;
+
       // Make sure we can translate correctly between kiji objects and their HBase counterparts.
       assertArrayEquals("Row key not translated correctly by KijiRowFilter.Context",
           Bytes.toBytes("foo"), context.getHBaseRowKey("foo"));
@@ -146,4 +153,32 @@ public class TestKijiRowFilterApplicator extends KijiClientTest {
     assertEquals(expectedScan.toString(), actualScan.toString());
     assertTrue(new ScanEquals(expectedScan).matches(actualScan));
   }
+
+  @Test
+  public void testFilterPerScan() throws Exception {
+    final KijiRowFilter rowFilter = new MyKijiRowFilter();
+    final KijiRowFilterApplicator applicator =
+        KijiRowFilterApplicator.create(rowFilter, mTableLayout, getKiji().getSchemaTable());
+    final Scan scan1 = new Scan();
+    final Scan scan2 = new Scan();
+    applicator.applyTo(scan1);
+    applicator.applyTo(scan2);
+    // HBase filters are stateful: each scan gets its own.
+    assertEquals(2, mCompilations);
+    assertTrue(new ScanEquals(scan1).matches(scan2));
+
+    // Tables share applicators between scans with equal row filters:
+    final HBaseKijiTable table =
+        HBaseKijiTable.downcast(getKiji().openTable(mTableLayout.getName()));
+    try {
+      final KijiRowFilterApplicator tableApplicator =
+          table.getRowFilterApplicator(rowFilter, table.getLayout());
+      assertSame(tableApplicator, table.getRowFilterApplicator(rowFilter, table.getLayout()));
+      tableApplicator.applyTo(new Scan());
+      tableApplicator.applyTo(new Scan());
+      assertEquals(4, mCompilations);
+    } finally {
+      table.release();
+    }
+  }
 }
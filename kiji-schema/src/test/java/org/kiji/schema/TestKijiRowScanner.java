@@ -20,14 +20,19 @@
 package org.kiji.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.kiji.schema.KijiScanAggregates.ColumnAggregates;
 import org.kiji.schema.KijiTableReader.KijiScannerOptions;
 import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayouts;
@@ -51,9 +56,11 @@ public class TestKijiRowScanner extends KijiClientTest {
             .withRow("foo")
                 .withFamily("info")
                     .withQualifier("name").withValue(1L, "foo-val")
+                    .withQualifier("visits").withValue(1L, 5L)
             .withRow("bar")
                 .withFamily("info")
                     .withQualifier("name").withValue(1L, "bar-val")
+                    .withQualifier("visits").withValue(1L, 3L)
         .build();
 
     // Fill local variables.
@@ -96,4 +103,86 @@ public class TestKijiRowScanner extends KijiClientTest {
 
     ResourceUtils.closeOrLog(scanner);
   }
+
+  /**
+   * Scans the table and collects the names of the rows.
+   *
+   * @param options Options of the scanner.
+   * @return the names of the rows scanned, in scan order.
+   * @throws IOException on I/O error.
+   */
+  private List<String> scanNames(KijiScannerOptions options) throws IOException {
+    final KijiDataRequest request = KijiDataRequest.create("info", "name");
+    final List<String> names = Lists.newArrayList();
+    final KijiRowScanner scanner = mReader.getScanner(request, options);
+    try {
+      for (KijiRowData row : scanner) {
+        names.add(row.getValue("info", "name", 1L).toString());
+      }
+    } finally {
+      scanner.close();
+    }
+    return names;
+  }
+
+  @Test
+  public void testScannerOptionsRowRanges() throws Exception {
+    final EntityId foo = mTable.getEntityId("foo");
+    final EntityId bar = mTable.getEntityId("bar");
+
+    assertEquals(ImmutableList.of("foo-val"),
+        scanNames(new KijiScannerOptions().addRowPrefix(foo).addRowPrefix(foo)));
+    assertEquals(ImmutableList.of("bar-val"),
+        scanNames(new KijiScannerOptions().addRowRange(bar, foo)));
+    assertEquals(ImmutableList.of("bar-val", "foo-val"),
+        scanNames(new KijiScannerOptions().addRowPrefix(foo).addRowRange(null, foo)));
+    assertEquals(ImmutableList.of("foo-val"),
+        scanNames(new KijiScannerOptions().addRowRange(null, foo).setStartRow(foo)
+            .addRowPrefix(foo)));
+  }
+
+  @Test
+  public void testScannerOptionsParallelRowRanges() throws Exception {
+    final EntityId foo = mTable.getEntityId("foo");
+    final EntityId bar = mTable.getEntityId("bar");
+
+    assertEquals(ImmutableList.of("bar-val", "foo-val"),
+        scanNames(new KijiScannerOptions()
+            .addRowPrefix(foo)
+            .addRowPrefix(bar)
+            .setRowRangeParallelism(2)));
+    assertEquals(ImmutableList.of("bar-val", "foo-val"),
+        scanNames(new KijiScannerOptions().setRowRangeParallelism(4)));
+  }
+
+  @Test
+  public void testAggregate() throws Exception {
+    final KijiScanAggregates rows =
+        mReader.aggregate(KijiDataRequest.builder().build(), new KijiScannerOptions());
+    assertEquals(2L, rows.getRowCount());
+    assertEquals(1.0, rows.getSamplingRate(), 0.0);
+    assertEquals(0, rows.getColumns().size());
+
+    final KijiDataRequestBuilder builder = KijiDataRequest.builder();
+    builder.newColumnsDef().add("info", "name").add("info", "visits");
+    final KijiScanAggregates aggregates = mReader.aggregate(
+        builder.build(), new KijiScannerOptions().setRowRangeParallelism(2));
+    assertEquals(2L, aggregates.getRowCount());
+
+    final ColumnAggregates names = aggregates.getColumn("info", "name");
+    assertEquals(2L, names.getCellCount());
+    assertEquals(2L, names.getDistinctValueCount());
+    assertNull(names.getCounterSum());
+
+    final ColumnAggregates visits = aggregates.getColumn("info", "visits");
+    assertEquals(2L, visits.getCellCount());
+    assertEquals(8L, (long) visits.getCounterSum());
+    assertEquals(3L, (long) visits.getCounterMin());
+    assertEquals(5L, (long) visits.getCounterMax());
+
+    final KijiScanAggregates foo = mReader.aggregate(builder.build(),
+        new KijiScannerOptions().addRowPrefix(mTable.getEntityId("foo")));
+    assertEquals(1L, foo.getRowCount());
+    assertEquals(5L, (long) foo.getColumn("info", "visits").getCounterSum());
+  }
 }
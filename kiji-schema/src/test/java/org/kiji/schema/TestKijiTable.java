@@ -20,13 +20,22 @@
 package org.kiji.schema;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.hadoop.hbase.client.HTableInterface;
 import org.junit.Test;
 
+import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.impl.HBaseKijiRowData;
+import org.kiji.schema.impl.HBaseKijiTable;
+import org.kiji.schema.layout.KijiTableLayout;
 import org.kiji.schema.layout.KijiTableLayouts;
 
 public class TestKijiTable extends KijiClientTest {
@@ -47,8 +56,87 @@ public class TestKijiTable extends KijiClientTest {
       for (KijiRegion region : regions) {
         assertTrue(region.getLocations().size() > 0);
       }
+
+      // The HTable of this thread must still be usable:
+      final EntityId eid = mTable.getEntityId("row");
+      final KijiTableWriter writer = mTable.openTableWriter();
+      try {
+        writer.put(eid, "info", "name", 1L, "name");
+      } finally {
+        writer.close();
+      }
+      final KijiTableReader reader = mTable.openTableReader();
+      try {
+        final KijiRowData row = reader.get(eid, KijiDataRequest.create("info", "name"));
+        assertEquals("name", row.getMostRecentValue("info", "name").toString());
+      } finally {
+        reader.close();
+      }
     } finally {
       mTable.release();
     }
   }
+
+  @Test
+  public void testOpenTableIsShared() throws Exception {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+
+    final KijiTable table1 = kiji.openTable("table");
+    final KijiTable table2 = kiji.openTable("table");
+    try {
+      assertSame(table1, table2);
+
+      // Each thread gets its own HTable handle:
+      final HBaseKijiTable htable = HBaseKijiTable.downcast(table1);
+      final HTableInterface localHTable = htable.getHTable();
+      assertSame(localHTable, htable.getHTable());
+      final AtomicReference<HTableInterface> otherHTable = new AtomicReference<HTableInterface>();
+      final Thread thread = new Thread() {
+        @Override
+        public void run() {
+          otherHTable.set(htable.getHTable());
+        }
+      };
+      thread.start();
+      thread.join();
+      assertNotNull(otherHTable.get());
+      assertNotSame(localHTable, otherHTable.get());
+    } finally {
+      table2.release();
+    }
+
+    // Updating the layout swaps the new layout into the open table, which remains shared:
+    final KijiTableLayout previousLayout = table1.getLayout();
+    final KijiTableReader reader = table1.openTableReader();
+    final TableLayoutDesc update = TableLayoutDesc.newBuilder(previousLayout.getDesc()).build();
+    update.getLocalityGroups().get(0).setMaxVersions(1);
+    update.setReferenceLayout(previousLayout.getDesc().getLayoutId());
+    kiji.modifyTableLayout(update);
+    final KijiTable table3 = kiji.openTable("table");
+    try {
+      assertSame(table1, table3);
+      assertNotSame(previousLayout, table1.getLayout());
+      assertEquals(1,
+          (int) table1.getLayout().getLocalityGroupMap().get("default").getDesc().getMaxVersions());
+      assertSame(table1.getLayout(),
+          HBaseKijiTable.downcast(table1).getCellDecoderProvider().getLayout());
+      // Open readers use the new layout:
+      final HBaseKijiRowData row = (HBaseKijiRowData)
+          reader.get(table1.getEntityId("row"), KijiDataRequest.create("family"));
+      assertSame(table1.getLayout(), row.getTableLayout());
+    } finally {
+      reader.close();
+      table3.release();
+      table1.release();
+    }
+
+    // Tables released by all their handles are reopened:
+    final KijiTable table4 = kiji.openTable("table");
+    try {
+      assertNotSame(table3, table4);
+    } finally {
+      table4.release();
+    }
+  }
 }
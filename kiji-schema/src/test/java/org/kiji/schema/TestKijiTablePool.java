@@ -30,11 +30,19 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import org.kiji.schema.KijiTablePool.NoCapacityException;
+import org.kiji.schema.KijiTablePool.PoolStatistics;
 import org.kiji.schema.util.ResourceUtils;
 
 public class TestKijiTablePool extends KijiClientTest {
@@ -278,4 +286,104 @@ public class TestKijiTablePool extends KijiClientTest {
     }
   }
 
+  @Test
+  public void testGetAfterClose() throws IOException {
+    KijiTablePool pool = KijiTablePool.newBuilder(mTableFactory).build();
+    replay(mTableFactory);
+
+    pool.close();
+    try {
+      pool.get("foo");
+      fail("Should throw an IllegalStateException.");
+    } catch (IllegalStateException ise) {
+      assertEquals("Table pool is closed.", ise.getMessage());
+    }
+    assertEquals(0, pool.getPoolSize("foo"));
+  }
+
+  @Test
+  public void testStatistics() throws IOException {
+    KijiTablePool pool = KijiTablePool.newBuilder(mTableFactory)
+        .withMaxSize(1)
+        .build();
+
+    KijiTable foo = createMock(KijiTable.class);
+    expect(foo.getName()).andReturn("foo").anyTimes();
+    expect(foo.getURI()).andReturn(KijiURI.newBuilder("kiji://.env/foo").build()).anyTimes();
+    expect(mTableFactory.openTable("foo")).andReturn(foo);
+
+    replay(foo);
+    replay(mTableFactory);
+
+    assertEquals(0, pool.getStatistics("foo").getPoolSize());
+
+    KijiTable first = pool.get("foo");
+    PoolStatistics stats = pool.getStatistics("foo");
+    assertEquals(1, stats.getPoolSize());
+    assertEquals(0, stats.getAvailableCount());
+    assertEquals(1, stats.getActiveCount());
+    assertEquals(1, stats.getAcquireCount());
+
+    try {
+      pool.get("foo");
+      fail("An exception should have been thrown.");
+    } catch (NoCapacityException nce) {
+      assertEquals(1, pool.getStatistics("foo").getNoCapacityCount());
+    }
+
+    first.release();
+    stats = pool.getStatistics("foo");
+    assertEquals(1, stats.getPoolSize());
+    assertEquals(1, stats.getAvailableCount());
+    assertEquals(0, stats.getActiveCount());
+
+    pool.get("foo").release();
+    stats = pool.getStatistics("foo");
+    assertEquals(2, stats.getAcquireCount());
+    assertTrue(stats.getMaxAcquireNanos() >= stats.getMeanAcquireNanos());
+  }
+
+  @Test
+  public void testConcurrentGet() throws Exception {
+    final int maxSize = 4;
+    final KijiTablePool pool = KijiTablePool.newBuilder(mTableFactory)
+        .withMaxSize(maxSize)
+        .build();
+
+    KijiTable foo = createMock(KijiTable.class);
+    expect(foo.getName()).andReturn("foo").anyTimes();
+    expect(foo.getURI()).andReturn(KijiURI.newBuilder("kiji://.env/foo").build()).anyTimes();
+    expect(mTableFactory.openTable("foo")).andReturn(foo).times(1, maxSize);
+
+    replay(foo);
+    replay(mTableFactory);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(maxSize);
+    try {
+      final List<Future<Void>> futures = Lists.newArrayList();
+      for (int i = 0; i < maxSize; ++i) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < 1000; ++j) {
+              pool.get("foo").release();
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    final PoolStatistics stats = pool.getStatistics("foo");
+    assertTrue(stats.getPoolSize() <= maxSize);
+    assertEquals(stats.getPoolSize(), stats.getAvailableCount());
+    assertEquals(maxSize * 1000, stats.getAcquireCount());
+    assertEquals(0, stats.getNoCapacityCount());
+    verify(mTableFactory);
+  }
 }
@@ -122,6 +122,26 @@ public class TestReaderSchema extends KijiClientTest {
     }
   }
 
+  /** Decode a single field of a TestRecord2 using a projected data request. */
+  @Test
+  public void testDecodeProjectedRecord2() throws Exception {
+    final EntityId eid = mTable.getEntityId("eid");
+
+    final KijiDataRequest dataRequest = KijiDataRequest.builder()
+        .addColumns(ColumnsDef.create().withProjectedFields("text").add("family", "record2"))
+        .build();
+    final KijiTableReader reader = mTable.openTableReader();
+    try {
+      final KijiRowData row = reader.get(eid, dataRequest);
+      final GenericData.Record read = row.getMostRecentValue("family", "record2");
+      // Only the projected field is decoded:
+      assertEquals(1, read.getSchema().getFields().size());
+      assertEquals("record2", read.get("text").toString());
+    } finally {
+      reader.close();
+    }
+  }
+
   /** Decode a TestRecord1 as a specific TestRecord2 using CellSpec.setSpecificRecord(Class). */
   @Test
   public void testDecodeRecord1AsRecord2() throws Exception {
@@ -0,0 +1,225 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import org.kiji.schema.DecodedCell;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.avro.CellSchema;
+import org.kiji.schema.avro.SchemaStorage;
+import org.kiji.schema.avro.SchemaType;
+import org.kiji.schema.hbase.HBaseColumnName;
+import org.kiji.schema.impl.DefaultKijiCellEncoderFactory;
+import org.kiji.schema.layout.CellSpec;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+public class TestDecodedColumnValueRowFilter extends KijiClientTest {
+  private static final Schema TRANSACTION_SCHEMA = new Schema.Parser().parse(
+      "{\"type\": \"record\", \"name\": \"Transaction\", \"fields\": ["
+      + "{\"name\": \"productId\", \"type\": \"long\"},"
+      + "{\"name\": \"cost\", \"type\": \"double\"}]}");
+
+  private static final byte[] ROW = Bytes.toBytes("row");
+  private static final byte[] FAMILY = Bytes.toBytes("family");
+  private static final byte[] QUALIFIER = Bytes.toBytes("qualifier");
+
+  /**
+   * Encodes a transaction record.
+   *
+   * @param cellSpec Specification of the cell encoding.
+   * @param productId Product ID of the transaction.
+   * @param cost Cost of the transaction.
+   * @return the encoded transaction.
+   * @throws IOException on I/O error.
+   */
+  private static byte[] encodeTransaction(CellSpec cellSpec, long productId, double cost)
+      throws IOException {
+    final GenericData.Record record = new GenericData.Record(TRANSACTION_SCHEMA);
+    record.put("productId", productId);
+    record.put("cost", cost);
+    return DefaultKijiCellEncoderFactory.get().create(cellSpec)
+        .encode(new DecodedCell<Object>(TRANSACTION_SCHEMA, record));
+  }
+
+  /**
+   * Serializes and deserializes an HBase filter, as HBase does to ship it to region servers.
+   *
+   * @param filter HBase filter to copy.
+   * @return a copy of the filter.
+   * @throws IOException on I/O error.
+   */
+  private static DecodedColumnValueHBaseFilter copy(DecodedColumnValueHBaseFilter filter)
+      throws IOException {
+    final DataOutputBuffer out = new DataOutputBuffer();
+    filter.write(out);
+    final DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    final DecodedColumnValueHBaseFilter copy = new DecodedColumnValueHBaseFilter();
+    copy.readFields(in);
+    return copy;
+  }
+
+  /**
+   * Reports whether an HBase filter filters out a row with the given cells.
+   *
+   * @param filter HBase filter to evaluate.
+   * @param cells Cells of the filtered column, most recent first.
+   * @return whether the filter filters out the row.
+   */
+  private static boolean filterRow(DecodedColumnValueHBaseFilter filter, byte[]... cells) {
+    filter.reset();
+    long timestamp = cells.length;
+    for (byte[] cell : cells) {
+      filter.filterKeyValue(new KeyValue(ROW, FAMILY, QUALIFIER, timestamp--, cell));
+    }
+    return filter.filterRow();
+  }
+
+  @Test
+  public void testRecordFieldRange() throws IOException {
+    for (SchemaStorage storage : SchemaStorage.values()) {
+      final CellSpec cellSpec = CellSpec.fromCellSchema(
+          CellSchema.newBuilder()
+              .setType(SchemaType.INLINE)
+              .setStorage(storage)
+              .setValue(TRANSACTION_SCHEMA.toString())
+              .build(),
+          getKiji().getSchemaTable());
+      final byte[] cheap = encodeTransaction(cellSpec, 1L, 5.0);
+      final byte[] fair = encodeTransaction(cellSpec, 2L, 15.0);
+      final byte[] expensive = encodeTransaction(cellSpec, 3L, 20.0);
+
+      final DecodedColumnValueHBaseFilter filter = copy(DecodedColumnValueHBaseFilter.create(
+          new HBaseColumnName(FAMILY, QUALIFIER),
+          cellSpec,
+          DecodedValuePredicate.inRange("cost", 10, true, 20, false)));
+
+      assertFalse(storage.toString(), filterRow(filter, fair));
+      assertTrue(storage.toString(), filterRow(filter, cheap));
+      assertTrue(storage.toString(), filterRow(filter, expensive));
+      // Only the most recent cell is evaluated:
+      assertFalse(storage.toString(), filterRow(filter, fair, cheap));
+      assertTrue(storage.toString(), filterRow(filter, cheap, fair));
+      // Rows without the column are filtered out:
+      assertTrue(storage.toString(), filterRow(filter));
+    }
+  }
+
+  @Test
+  public void testPredicates() {
+    final GenericData.Record record = new GenericData.Record(TRANSACTION_SCHEMA);
+    record.put("productId", 3L);
+    record.put("cost", 2.5);
+
+    assertTrue(DecodedValuePredicate.equalTo("productId", 3).matches(record));
+    assertTrue(DecodedValuePredicate.equalTo("productId", 3.0).matches(record));
+    assertFalse(DecodedValuePredicate.equalTo("productId", "3").matches(record));
+    assertFalse(DecodedValuePredicate.equalTo("missing", 3).matches(record));
+    assertTrue(DecodedValuePredicate.inSet("cost", ImmutableList.of(1, 2.5)).matches(record));
+    assertTrue(DecodedValuePredicate.inRange("cost", null, false, 2.5, true).matches(record));
+    assertFalse(DecodedValuePredicate.inRange("cost", null, false, 2.5, false).matches(record));
+    assertTrue(DecodedValuePredicate.equalTo(null, "text").matches(new StringBuilder("text")));
+  }
+
+  @Test
+  public void testScan() throws Exception {
+    final Kiji kiji = new InstanceBuilder(getKiji())
+        .withTable(KijiTableLayouts.getLayout(KijiTableLayouts.FOO_TEST))
+            .withRow("alice")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "Alice")
+                    .withQualifier("b").withValue(1L, 10)
+            .withRow("bob")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "Bob")
+                    .withQualifier("b").withValue(1L, 20)
+            .withRow("carol")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "Carol")
+        .build();
+
+    final KijiTable table = kiji.openTable("foo");
+    try {
+      final KijiTableReader reader = table.openTableReader();
+      try {
+        assertEquals(ImmutableSet.of("Bob"), scanNames(reader,
+            DecodedColumnValueRowFilter.equalTo("info", "name", null, "Bob")));
+        assertEquals(ImmutableSet.of("Alice", "Bob"), scanNames(reader,
+            DecodedColumnValueRowFilter.inRange("info", "b", null, 10, true, 20L, true)));
+        assertEquals(ImmutableSet.of("Alice", "Carol"), scanNames(reader,
+            DecodedColumnValueRowFilter.inSet(
+                "info", "name", null, ImmutableSet.of("Alice", "Carol", "Dave"))));
+      } finally {
+        reader.close();
+      }
+    } finally {
+      table.release();
+    }
+  }
+
+  /**
+   * Scans the names of the rows accepted by a row filter.
+   *
+   * @param reader Table reader.
+   * @param filter Row filter.
+   * @return the names of the rows accepted by the filter.
+   * @throws IOException on I/O error.
+   */
+  private static Set<String> scanNames(KijiTableReader reader, KijiRowFilter filter)
+      throws IOException {
+    final Set<String> names = Sets.newHashSet();
+    final KijiRowScanner scanner = reader.getScanner(
+        KijiDataRequest.create("info", "name"),
+        new KijiScannerOptions().setKijiRowFilter(filter));
+    try {
+      for (KijiRowData row : scanner) {
+        names.add(row.getMostRecentValue("info", "name").toString());
+      }
+    } finally {
+      scanner.close();
+    }
+    return names;
+  }
+}
@@ -19,7 +19,10 @@
 
 package org.kiji.schema.filter;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import static org.kiji.schema.avro.ComponentType.INTEGER;
 import static org.kiji.schema.avro.ComponentType.LONG;
@@ -30,6 +33,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -431,6 +435,55 @@ public class TestFormattedEntityIdRowFilter {
     assertEquals(message, true, filterAllRemaining);
   }
 
+  @Test
+  public void testExactPrefixSkipsRegex() throws Exception {
+    RowKeyFormat2 rowKeyFormat = createRowKeyFormat(1, INTEGER, LONG, STRING);
+    EntityIdFactory factory = EntityIdFactory.getFactory(rowKeyFormat);
+    FormattedEntityIdRowFilter filter = createFilter(rowKeyFormat, 100, 2000L);
+
+    Filter hbaseFilter = filter.toHBaseFilter(null);
+    List<Filter> filters = ((FilterList) hbaseFilter).getFilters();
+    assertEquals(1, filters.size());
+    assertTrue(filters.get(0) instanceof PrefixFilter);
+
+    byte[] prefix = filter.getHBaseRowKeyPrefix();
+    byte[] hbaseKey = factory.getEntityId(100, 2000L, "value").getHBaseRowKey();
+    assertArrayEquals(prefix, Arrays.copyOf(hbaseKey, prefix.length));
+    runTest(rowKeyFormat, filter, factory, INCLUDE, 100, 2000L, "value");
+    runTest(rowKeyFormat, filter, factory, INCLUDE, 100, 2000L, null);
+    runTest(rowKeyFormat, filter, factory, EXCLUDE, 100, 2001L, "value");
+    runTest(rowKeyFormat, filter, factory, EXCLUDE, 101, 2000L, "value");
+  }
+
+  @Test
+  public void testRowKeyPrefixes() throws Exception {
+    RowKeyFormat2 rowKeyFormat = createRowKeyFormat(1, INTEGER, LONG, STRING);
+    rowKeyFormat.setRangeScanStartIndex(2);
+    EntityIdFactory factory = EntityIdFactory.getFactory(rowKeyFormat);
+
+    // The hash covers both the first components: a single prefix when both are specified.
+    FormattedEntityIdRowFilter filter = createFilter(rowKeyFormat, 100, 2000L, null);
+    List<byte[]> prefixes = filter.getHBaseRowKeyPrefixes();
+    assertEquals(1, prefixes.size());
+    byte[] hbaseKey = factory.getEntityId(100, 2000L, "value").getHBaseRowKey();
+    assertArrayEquals(prefixes.get(0), Arrays.copyOf(hbaseKey, prefixes.get(0).length));
+
+    // The hash cannot be computed: one prefix per hash value, followed by the first component.
+    filter = createFilter(rowKeyFormat, 100, null, "value");
+    assertNull(filter.getHBaseRowKeyPrefix());
+    prefixes = filter.getHBaseRowKeyPrefixes();
+    assertEquals(256, prefixes.size());
+    byte[] hashedPrefix = prefixes.get(hbaseKey[0] & 0xff);
+    assertArrayEquals(hashedPrefix, Arrays.copyOf(hbaseKey, hashedPrefix.length));
+    for (int i = 1; i < prefixes.size(); ++i) {
+      assertTrue(Bytes.compareTo(prefixes.get(i - 1), prefixes.get(i)) < 0);
+    }
+
+    // Nothing is known about the matching row keys:
+    filter = createFilter(rowKeyFormat, null, 2000L, null);
+    assertNull(filter.getHBaseRowKeyPrefixes());
+  }
+
   private void runTest(RowKeyFormat2 rowKeyFormat, FormattedEntityIdRowFilter filter,
       EntityIdFactory factory, boolean expectedFilter, Object... components) throws Exception {
     EntityId entityId = factory.getEntityId(components);
@@ -474,6 +527,9 @@ public class TestFormattedEntityIdRowFilter {
   private String filterToString(Filter filter) throws Exception {
     if (filter instanceof FilterList) {
       List<Filter> filters = ((FilterList) filter).getFilters();
+      if (filters.size() == 1) {
+        return String.format("[%s]", prefixFilterToString((PrefixFilter) filters.get(0)));
+      }
       return String.format("[%s] AND [%s]",
           prefixFilterToString((PrefixFilter) filters.get(0)),
           rowFilterToString((RowFilter) filters.get(1)));
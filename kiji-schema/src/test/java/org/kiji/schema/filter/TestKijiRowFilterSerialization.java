@@ -57,6 +57,15 @@ public class TestKijiRowFilterSerialization {
         new DecodedCell(record.getSchema(), record)));
   }
 
+  @Test
+  public void testDecodedColumnValueRowFilter() throws Exception {
+    runTest(DecodedColumnValueRowFilter.equalTo("family", "qualifier", "a.b", "value"));
+    runTest(DecodedColumnValueRowFilter.inRange("family", "qualifier", null, 1, true, 2.5, false));
+    runTest(DecodedColumnValueRowFilter.inRange("family", "qualifier", "a", null, false, 2, true));
+    runTest(DecodedColumnValueRowFilter.inSet(
+        "family", "qualifier", "a", ImmutableList.of("x", 1L, true)));
+  }
+
   @Test
   public void testAndRowFilter() throws Exception {
     TestRecord record = createTestRecord();
@@ -28,9 +28,10 @@ import org.apache.hadoop.conf.Configuration;
 import org.kiji.delegation.Priority;
 import org.kiji.schema.KijiURI;
 import org.kiji.schema.impl.DefaultHBaseAdminFactory;
-import org.kiji.schema.impl.DefaultHTableInterfaceFactory;
 import org.kiji.schema.impl.HBaseAdminFactory;
 import org.kiji.schema.impl.HTableInterfaceFactory;
+import org.kiji.schema.impl.PooledHTableInterfaceFactory;
+import org.kiji.schema.layout.impl.ZooKeeperClient;
 import org.kiji.schema.util.LocalLockFactory;
 import org.kiji.schema.util.LockFactory;
 import org.kiji.schema.util.ZooKeeperLockFactory;
@@ -45,6 +46,9 @@ public final class TestingHBaseFactory implements HBaseFactory {
   /** Map from fake HBase ID to fake (local) lock factories. */
   private final Map<String, LockFactory> mLock = Maps.newHashMap();
 
+  /** Map from fake HBase ID to the address of the ZooKeeper quorum attached to it. */
+  private final Map<String, String> mZooKeeperAddress = Maps.newHashMap();
+
   /**
    * Public constructor. This should not be directly invoked by users; you should
    * use HBaseFactory.get(), which retains a singleton instance.
@@ -101,7 +105,7 @@ public final class TestingHBaseFactory implements HBaseFactory {
     if (fake != null) {
       return fake.getHTableFactory();
     }
-    return DefaultHTableInterfaceFactory.get();
+    return PooledHTableInterfaceFactory.get();
   }
 
   /** {@inheritDoc} */
@@ -132,10 +136,44 @@ public final class TestingHBaseFactory implements HBaseFactory {
     return new ZooKeeperLockFactory(ZooKeeperLockFactory.zkConnStr(uri));
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public ZooKeeperClient getZooKeeperClient(KijiURI uri) throws IOException {
+    final String fakeID = getFakeHBaseID(uri);
+    if (fakeID != null) {
+      final String zkAddress;
+      synchronized (mZooKeeperAddress) {
+        zkAddress = mZooKeeperAddress.get(fakeID);
+      }
+      // Fake HBase instances have no ZooKeeper quorum, unless one is attached:
+      return (zkAddress != null) ? ZooKeeperLockFactory.newZooKeeper(zkAddress) : null;
+    }
+    return ZooKeeperLockFactory.newZooKeeper(ZooKeeperLockFactory.zkConnStr(uri));
+  }
+
+  /**
+   * Attaches a ZooKeeper quorum to a fake HBase instance.
+   *
+   * <p> Kiji instances in the fake HBase then track table layouts through this quorum. </p>
+   *
+   * @param uri URI of a fake HBase instance.
+   * @param zkAddress Address of the ZooKeeper quorum, as a comma-separated list of "host:port".
+   */
+  public void setZooKeeperAddress(KijiURI uri, String zkAddress) {
+    final String fakeID = getFakeHBaseID(uri);
+    if (fakeID == null) {
+      throw new IllegalArgumentException("Not a fake HBase URI: " + uri);
+    }
+    synchronized (mZooKeeperAddress) {
+      mZooKeeperAddress.put(fakeID, zkAddress);
+    }
+  }
+
   /** Resets the testing HBase factory. */
   public void reset() {
     mFakeHBase.clear();
     mLock.clear();
+    mZooKeeperAddress.clear();
   }
 
   /** {@inheritDoc} */
@@ -0,0 +1,137 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.junit.Assume;
+import org.junit.Test;
+
+import org.kiji.schema.hbase.KijiManagedHBaseTableName;
+import org.kiji.schema.platform.SchemaPlatformBridge;
+import org.kiji.schema.testutil.AbstractKijiIntegrationTest;
+import org.kiji.schema.util.ResourceUtils;
+
+/** Tests that the HTable handles created by PooledHTableInterfaceFactory share resources. */
+public class IntegrationTestPooledHTableInterfaceFactory extends AbstractKijiIntegrationTest {
+  private static final String RETRIES = "hbase.client.retries.number";
+
+  @Test
+  public void testResourcesKey() throws Exception {
+    final Configuration conf = HBaseConfiguration.create(getConf());
+    assertEquals(PooledHTableInterfaceFactory.getResourcesKey(conf),
+        PooledHTableInterfaceFactory.getResourcesKey(new Configuration(conf)));
+
+    final Configuration otherConf = new Configuration(conf);
+    otherConf.setInt(RETRIES, conf.getInt(RETRIES, 10) + 1);
+    assertEquals(PooledHTableInterfaceFactory.getClusterKey(conf),
+        PooledHTableInterfaceFactory.getClusterKey(otherConf));
+    assertFalse(PooledHTableInterfaceFactory.getResourcesKey(conf).equals(
+        PooledHTableInterfaceFactory.getResourcesKey(otherConf)));
+  }
+
+  @Test
+  public void testHandlesShareConnection() throws Exception {
+    final String tableName =
+        KijiManagedHBaseTableName.getMetaTableName(getInstanceName()).toString();
+    final Configuration conf = HBaseConfiguration.create(getConf());
+    final Configuration otherConf = new Configuration(conf);
+    otherConf.setInt(RETRIES, conf.getInt(RETRIES, 10) + 1);
+
+    final HTableInterface htable1 = PooledHTableInterfaceFactory.get().create(conf, tableName);
+    final HTableInterface htable2 =
+        PooledHTableInterfaceFactory.get().create(new Configuration(conf), tableName);
+    final HTableInterface htable3 =
+        PooledHTableInterfaceFactory.get().create(otherConf, tableName);
+    try {
+      // Equivalent configurations share a connection, other client settings do not:
+      assertSame(((HTable) htable1).getConnection(), ((HTable) htable2).getConnection());
+      assertNotSame(((HTable) htable1).getConnection(), ((HTable) htable3).getConnection());
+    } finally {
+      ResourceUtils.closeOrLog(htable1);
+      ResourceUtils.closeOrLog(htable2);
+      ResourceUtils.closeOrLog(htable3);
+    }
+
+    // Closing the handles does not release the shared connection:
+    final HTableInterface htable4 = PooledHTableInterfaceFactory.get().create(conf, tableName);
+    try {
+      assertFalse(((HTable) htable4).getConnection().isClosed());
+    } finally {
+      ResourceUtils.closeOrLog(htable4);
+    }
+  }
+
+  @Test
+  public void testHandleSettings() throws Exception {
+    Assume.assumeTrue(SchemaPlatformBridge.get().supportsSharedHTableResources());
+    final String tableName =
+        KijiManagedHBaseTableName.getMetaTableName(getInstanceName()).toString();
+    final Configuration conf = HBaseConfiguration.create(getConf());
+    final Configuration otherConf = new Configuration(conf);
+    otherConf.setInt("hbase.client.scanner.caching", 7);
+    otherConf.setLong("hbase.client.write.buffer", 12345);
+
+    final HTableInterface htable1 = PooledHTableInterfaceFactory.get().create(conf, tableName);
+    final HTableInterface htable2 =
+        PooledHTableInterfaceFactory.get().create(otherConf, tableName);
+    try {
+      // Handles share the connection but take their own settings from their configuration:
+      assertSame(((HTable) htable1).getConnection(), ((HTable) htable2).getConnection());
+      assertEquals(7, ((HTable) htable2).getScannerCaching());
+      assertEquals(12345, ((HTable) htable2).getWriteBufferSize());
+    } finally {
+      ResourceUtils.closeOrLog(htable1);
+      ResourceUtils.closeOrLog(htable2);
+    }
+  }
+
+  @Test
+  public void testReleaseResources() throws Exception {
+    Assume.assumeTrue(SchemaPlatformBridge.get().supportsSharedHTableResources());
+    final String tableName =
+        KijiManagedHBaseTableName.getMetaTableName(getInstanceName()).toString();
+    final Configuration conf = HBaseConfiguration.create(getConf());
+    // Use resources distinct from the ones of other tests:
+    conf.set("hbase.client.instance.id", "testReleaseResources");
+
+    PooledHTableInterfaceFactory.retainResources(conf);
+    PooledHTableInterfaceFactory.retainResources(conf);
+    final HTableInterface htable = PooledHTableInterfaceFactory.get().create(conf, tableName);
+    try {
+      PooledHTableInterfaceFactory.releaseResources(conf);
+      assertFalse(((HTable) htable).getConnection().isClosed());
+    } finally {
+      ResourceUtils.closeOrLog(htable);
+    }
+
+    // The last retention releases the shared connection:
+    PooledHTableInterfaceFactory.releaseResources(conf);
+    assertTrue(((HTable) htable).getConnection().isClosed());
+  }
+}
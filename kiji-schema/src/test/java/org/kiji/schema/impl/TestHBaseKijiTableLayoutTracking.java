@@ -0,0 +1,109 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiInstaller;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiURI;
+import org.kiji.schema.avro.TableLayoutDesc;
+import org.kiji.schema.hbase.HBaseFactory;
+import org.kiji.schema.hbase.TestingHBaseFactory;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.layout.impl.TableLayoutMonitor;
+import org.kiji.schema.layout.impl.ZooKeeperClient;
+import org.kiji.schema.util.ZooKeeperTest;
+
+/** Tests the propagation of table layout updates through ZooKeeper. */
+public class TestHBaseKijiTableLayoutTracking extends ZooKeeperTest {
+
+  /**
+   * Notifies the users of a table of a layout update, as another process would.
+   *
+   * @param tableURI URI of the table whose layout was updated.
+   * @param layoutId ID of the new layout.
+   * @throws Exception on error.
+   */
+  private void notifyLayout(KijiURI tableURI, String layoutId) throws Exception {
+    final ZooKeeperClient zkClient = ZooKeeperClient.getZooKeeperClient(getZKAddress());
+    try {
+      final TableLayoutMonitor monitor = new TableLayoutMonitor(zkClient);
+      try {
+        monitor.notifyNewTableLayout(tableURI, Bytes.toBytes(layoutId), -1);
+      } finally {
+        monitor.close();
+      }
+    } finally {
+      zkClient.release();
+    }
+  }
+
+  @Test
+  public void testLayoutUpdateNotifiedThroughZooKeeper() throws Exception {
+    final KijiURI hbaseURI = createTestHBaseURI();
+    ((TestingHBaseFactory) HBaseFactory.Provider.get())
+        .setZooKeeperAddress(hbaseURI, getZKAddress());
+    final KijiURI uri = KijiURI.newBuilder(hbaseURI).withInstanceName("layout_tracking").build();
+    KijiInstaller.get().install(uri, getConf());
+    final Kiji kiji = Kiji.Factory.open(uri, getConf());
+    try {
+      kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+      final KijiTable table = kiji.openTable("table");
+      try {
+        final KijiTableLayout previousLayout = table.getLayout();
+
+        // Notifications of the current layout leave the table untouched:
+        notifyLayout(table.getURI(), previousLayout.getDesc().getLayoutId());
+
+        // Another process updates the layout in the meta table, then notifies the table users:
+        final TableLayoutDesc update =
+            TableLayoutDesc.newBuilder(previousLayout.getDesc()).build();
+        update.getLocalityGroups().get(0).setMaxVersions(1);
+        update.setReferenceLayout(previousLayout.getDesc().getLayoutId());
+        final String layoutId =
+            kiji.getMetaTable().updateTableLayout("table", update).getDesc().getLayoutId();
+        assertSame(previousLayout, table.getLayout());
+        notifyLayout(table.getURI(), layoutId);
+
+        final long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!layoutId.equals(table.getLayout().getDesc().getLayoutId())
+            && (System.currentTimeMillis() < deadline)) {
+          Thread.sleep(50);
+        }
+        assertEquals(layoutId, table.getLayout().getDesc().getLayoutId());
+        assertEquals(1,
+            (int) table.getLayout().getLocalityGroupMap().get("default").getDesc()
+                .getMaxVersions());
+      } finally {
+        table.release();
+      }
+    } finally {
+      kiji.release();
+      KijiInstaller.get().uninstall(uri, getConf());
+    }
+  }
+}
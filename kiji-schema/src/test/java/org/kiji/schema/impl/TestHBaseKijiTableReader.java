@@ -0,0 +1,99 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.kiji.schema.DecodedCell;
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.filter.ColumnValueEqualsRowFilter;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayouts;
+import org.kiji.schema.util.InstanceBuilder;
+
+public class TestHBaseKijiTableReader extends KijiClientTest {
+  private Kiji mKiji;
+  private KijiTable mTable;
+  private HBaseKijiTableReader mReader;
+
+  @Before
+  public final void setupEnvironment() throws Exception {
+    final KijiTableLayout layout = KijiTableLayout.newLayout(
+        KijiTableLayouts.getLayout(KijiTableLayouts.COUNTER_TEST));
+
+    mKiji = new InstanceBuilder(getKiji())
+        .withTable("user", layout)
+            .withRow("foo")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "foo-val")
+                    .withQualifier("visits").withValue(1L, 5L)
+            .withRow("bar")
+                .withFamily("info")
+                    .withQualifier("name").withValue(1L, "bar-val")
+                    .withQualifier("visits").withValue(1L, 3L)
+        .build();
+
+    mTable = mKiji.openTable("user");
+    mReader = (HBaseKijiTableReader) mTable.openTableReader();
+  }
+
+  @After
+  public final void cleanupEnvironment() throws IOException {
+    mReader.close();
+    mTable.release();
+  }
+
+  @Test
+  public void testCountRowsWithRowFilter() throws Exception {
+    final KijiDataRequest dataRequest = KijiDataRequest.builder().build();
+    final KijiScannerOptions options = new KijiScannerOptions()
+        .setKijiRowFilter(new ColumnValueEqualsRowFilter("info", "name",
+            new DecodedCell<String>(Schema.create(Schema.Type.STRING), "foo-val")));
+
+    assertEquals(1L, mReader.aggregate(dataRequest, options).getRowCount());
+
+    // The row filter is combined with the filter stripping the values, and evaluated first:
+    final List<Scan> scans = mReader.getAggregationScans(dataRequest, options);
+    assertEquals(1, scans.size());
+    final Filter filter = scans.get(0).getFilter();
+    assertTrue(filter instanceof FilterList);
+    final List<Filter> filters = ((FilterList) filter).getFilters();
+    assertEquals(FilterList.Operator.MUST_PASS_ALL, ((FilterList) filter).getOperator());
+    assertEquals(2, filters.size());
+    assertTrue(filters.get(1) instanceof KeyOnlyFilter);
+  }
+}
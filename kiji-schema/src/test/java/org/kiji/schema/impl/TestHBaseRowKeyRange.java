@@ -0,0 +1,94 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+public class TestHBaseRowKeyRange {
+  /**
+   * Creates a key range from string row keys.
+   *
+   * @param start Start row key, or null for unbounded.
+   * @param stop Stop row key, or null for unbounded.
+   * @return the key range.
+   */
+  private static HBaseRowKeyRange range(String start, String stop) {
+    return new HBaseRowKeyRange(
+        (null == start) ? null : Bytes.toBytes(start),
+        (null == stop) ? null : Bytes.toBytes(stop));
+  }
+
+  @Test
+  public void testUnboundedRange() {
+    assertNull(HBaseRowKeyRange.ALL.getStartKey());
+    assertNull(HBaseRowKeyRange.ALL.getStopKey());
+    assertEquals(0, HBaseRowKeyRange.ALL.getStartRow().length);
+    assertEquals(HBaseRowKeyRange.ALL, new HBaseRowKeyRange(new byte[0], new byte[0]));
+    assertFalse(HBaseRowKeyRange.ALL.isEmpty());
+    assertTrue(HBaseRowKeyRange.ALL.contains(Bytes.toBytes("row")));
+  }
+
+  @Test
+  public void testPrefixRange() {
+    assertEquals(range("ab", "ac"), HBaseRowKeyRange.forPrefix(Bytes.toBytes("ab")));
+    assertArrayEquals(new byte[] {1, 3},
+        HBaseRowKeyRange.getPrefixStopKey(new byte[] {1, 2, -1, -1}));
+    assertEquals(0, HBaseRowKeyRange.getPrefixStopKey(new byte[] {-1, -1}).length);
+    assertTrue(HBaseRowKeyRange.forPrefix(Bytes.toBytes("ab")).contains(Bytes.toBytes("abz")));
+    assertFalse(HBaseRowKeyRange.forPrefix(Bytes.toBytes("ab")).contains(Bytes.toBytes("ac")));
+  }
+
+  @Test
+  public void testIntersect() {
+    assertEquals(range("b", "c"), range("a", "c").intersect(range("b", "d")));
+    assertEquals(range("b", "c"), range("b", null).intersect(range(null, "c")));
+    assertTrue(range("a", "b").intersect(range("c", "d")).isEmpty());
+  }
+
+  @Test
+  public void testCoalesce() {
+    assertEquals(
+        ImmutableList.of(range(null, "c"), range("d", "e"), range("f", null)),
+        HBaseRowKeyRange.coalesce(ImmutableList.of(
+            range("f", null),
+            range("b", "c"),
+            range("d", "e"),
+            range("x", "y"),
+            range(null, "b"),
+            range("d", "d"))));
+  }
+
+  @Test
+  public void testIntersectAll() {
+    assertEquals(
+        ImmutableList.of(range("b", "c"), range("d", "e")),
+        HBaseRowKeyRange.intersectAll(
+            ImmutableList.of(range("a", "c"), range("d", "f")),
+            ImmutableList.of(range("b", "e"))));
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.RandomRowFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import org.kiji.schema.Kiji;
+import org.kiji.schema.KijiClientTest;
+import org.kiji.schema.KijiDataRequest;
+import org.kiji.schema.KijiRowData;
+import org.kiji.schema.KijiRowScanner;
+import org.kiji.schema.KijiTable;
+import org.kiji.schema.KijiTableReader;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions;
+import org.kiji.schema.KijiTableReader.KijiScannerOptions.SamplingMode;
+import org.kiji.schema.KijiTableWriter;
+import org.kiji.schema.layout.KijiTableLayout;
+import org.kiji.schema.layout.KijiTableLayouts;
+
+public class TestHBaseScanSampler extends KijiClientTest {
+  private static final byte[] TABLE_NAME = Bytes.toBytes("table");
+
+  @Test
+  public void testHashValueEncoding() {
+    assertEquals(BigInteger.ZERO, HBaseScanSampler.toHashValue(new byte[0], 2));
+    assertEquals(BigInteger.valueOf(0xff00), HBaseScanSampler.toHashValue(new byte[] {-1}, 2));
+    assertEquals(BigInteger.valueOf(0x0102),
+        HBaseScanSampler.toHashValue(new byte[] {1, 2, 3}, 2));
+    assertArrayEquals(new byte[] {0, 1},
+        HBaseScanSampler.toRowKey(BigInteger.ONE, 2));
+    assertArrayEquals(new byte[] {-1, -1},
+        HBaseScanSampler.toRowKey(BigInteger.valueOf(0xffff), 2));
+  }
+
+  @Test
+  public void testHashPrefixSize() throws IOException {
+    assertEquals(8, HBaseScanSampler.getHashPrefixSize(
+        KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE)));
+    assertEquals(0, HBaseScanSampler.getHashPrefixSize(
+        KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE_UNHASHED)));
+  }
+
+  @Test
+  public void testSampleKeyRanges() throws IOException {
+    final KijiTableLayout layout = KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE);
+    final List<HRegionInfo> regions = ImmutableList.of(
+        new HRegionInfo(TABLE_NAME, new byte[0], new byte[] {0x40}),
+        new HRegionInfo(TABLE_NAME, new byte[] {0x40}, new byte[] {-0x80}),
+        new HRegionInfo(TABLE_NAME, new byte[] {-0x80}, new byte[0]));
+
+    final HBaseScanSampler sampler = new HBaseScanSampler(0.25, 1L);
+    final List<Scan> scans = sampler.sample(new Scan(), SamplingMode.KEY_RANGES, layout, regions);
+    assertEquals(3, scans.size());
+    assertEquals(0.25, sampler.getEffectiveRate(), 1e-6);
+
+    // Each sampled range lies within its region:
+    for (int i = 0; i < scans.size(); ++i) {
+      final Scan scan = scans.get(i);
+      final HRegionInfo region = regions.get(i);
+      assertTrue(Bytes.compareTo(scan.getStartRow(), region.getStartKey()) >= 0);
+      if (region.getEndKey().length > 0) {
+        assertTrue(scan.getStopRow().length > 0);
+        assertTrue(Bytes.compareTo(scan.getStopRow(), region.getEndKey()) <= 0);
+      }
+      assertTrue((scan.getStopRow().length == 0)
+          || (Bytes.compareTo(scan.getStartRow(), scan.getStopRow()) < 0));
+    }
+  }
+
+  @Test
+  public void testSampleKeyRangesWithinScannedRange() throws IOException {
+    final KijiTableLayout layout = KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE);
+    final List<HRegionInfo> regions =
+        ImmutableList.of(new HRegionInfo(TABLE_NAME, new byte[0], new byte[0]));
+    final Scan scan = new Scan(new byte[] {0x10}, new byte[] {0x20});
+
+    // The sampled range covers at least [0.1, 0.9] of the hash space and overlaps the scan:
+    final List<Scan> scans = new HBaseScanSampler(0.9, 1L)
+        .sample(scan, SamplingMode.KEY_RANGES, layout, regions);
+    assertEquals(1, scans.size());
+    for (Scan sampled : scans) {
+      assertTrue(Bytes.compareTo(sampled.getStartRow(), scan.getStartRow()) >= 0);
+      assertTrue(Bytes.compareTo(sampled.getStopRow(), scan.getStopRow()) <= 0);
+    }
+  }
+
+  @Test
+  public void testEffectiveRateAcrossRanges() throws IOException {
+    final KijiTableLayout layout = KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE);
+    final List<HRegionInfo> regions =
+        ImmutableList.of(new HRegionInfo(TABLE_NAME, new byte[0], new byte[0]));
+    final List<Scan> ranges = ImmutableList.of(
+        new Scan(new byte[] {0x00}, new byte[] {0x40}),
+        new Scan(new byte[] {-0x80}, new byte[] {-0x40}));
+
+    final HBaseScanSampler sampler = new HBaseScanSampler(0.5, 1L);
+    BigInteger sampledWidth = BigInteger.ZERO;
+    for (Scan range : ranges) {
+      for (Scan sampled : sampler.sample(range, SamplingMode.KEY_RANGES, layout, regions)) {
+        sampledWidth = sampledWidth.add(HBaseScanSampler.toHashValue(sampled.getStopRow(), 8)
+            .subtract(HBaseScanSampler.toHashValue(sampled.getStartRow(), 8)));
+      }
+    }
+
+    // The rate accounts for the rows sampled in both ranges, each a quarter of the hash space:
+    final double scannedWidth = BigInteger.ONE.shiftLeft(63).doubleValue();
+    assertEquals(sampledWidth.doubleValue() / scannedWidth, sampler.getEffectiveRate(), 1e-6);
+  }
+
+  @Test
+  public void testSampleRows() throws IOException {
+    final KijiTableLayout layout =
+        KijiTableLayouts.getTableLayout(KijiTableLayouts.SIMPLE_UNHASHED);
+    final HBaseScanSampler sampler = new HBaseScanSampler(0.01, null);
+
+    // Row keys are not hashed: key range sampling falls back to row sampling.
+    final List<Scan> scans = sampler.sample(
+        new Scan(), SamplingMode.KEY_RANGES, layout, ImmutableList.<HRegionInfo>of());
+    assertEquals(1, scans.size());
+    assertTrue(scans.get(0).getFilter() instanceof RandomRowFilter);
+    assertEquals(0.01, sampler.getEffectiveRate(), 1e-9);
+  }
+
+  @Test
+  public void testSamplingScanner() throws IOException {
+    final Kiji kiji = getKiji();
+    kiji.createTable(KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE));
+    final KijiTable table = kiji.openTable("table");
+    try {
+      final KijiTableWriter writer = table.openTableWriter();
+      try {
+        for (int i = 0; i < 200; ++i) {
+          writer.put(table.getEntityId("row" + i), "family", "column", 1L, "value" + i);
+        }
+      } finally {
+        writer.close();
+      }
+
+      final KijiTableReader reader = table.openTableReader();
+      try {
+        final KijiRowScanner scanner = reader.getScanner(
+            KijiDataRequest.create("family", "column"),
+            new KijiScannerOptions().setSamplingRate(0.5).setSamplingSeed(1L));
+        try {
+          int count = 0;
+          for (KijiRowData row : scanner) {
+            count += 1;
+          }
+          assertEquals(0.5, scanner.getEffectiveSamplingRate(), 1e-6);
+          assertTrue(String.format("Sampled %d rows out of 200", count),
+              (count > 50) && (count < 150));
+        } finally {
+          scanner.close();
+        }
+      } finally {
+        reader.close();
+      }
+    } finally {
+      table.release();
+    }
+  }
+}
@@ -21,6 +21,7 @@ package org.kiji.schema.layout;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -95,6 +96,32 @@ public class TestHBaseTableLayoutDatabase extends KijiClientTest {
     assertEquals(layout, result);
   }
 
+  @Test
+  public void testGetLayoutIsCached() throws Exception {
+    final TableLayoutDesc layoutDesc1 = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE);
+    final String tableName = layoutDesc1.getName();
+    final KijiTableLayout layout1 = mTableLayoutDatabase.updateTableLayout(tableName, layoutDesc1);
+
+    // Repeated reads share the layout built by the first read:
+    final KijiTableLayout read1 = mTableLayoutDatabase.getTableLayout(tableName);
+    assertEquals(layout1, read1);
+    assertSame(read1, mTableLayoutDatabase.getTableLayout(tableName));
+    assertSame(read1, mTableLayoutDatabase.getTableLayoutVersions(tableName, 1).get(0));
+
+    // Layout updates are visible immediately:
+    final TableLayoutDesc layoutDesc2 = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE);
+    layoutDesc2.setVersion("layout-1.0.1");
+    layoutDesc2.setReferenceLayout(layout1.getDesc().getLayoutId());
+    final KijiTableLayout layout2 = mTableLayoutDatabase.updateTableLayout(tableName, layoutDesc2);
+    final KijiTableLayout read2 = mTableLayoutDatabase.getTableLayout(tableName);
+    assertEquals(layout2, read2);
+    assertSame(read2, mTableLayoutDatabase.getTableLayout(tableName));
+
+    // Removing the most recent layout exposes the previous one:
+    mTableLayoutDatabase.removeRecentTableLayoutVersions(tableName, 1);
+    assertSame(read1, mTableLayoutDatabase.getTableLayout(tableName));
+  }
+
   @Test
   public void testTableExists() throws IOException {
     final TableLayoutDesc layoutDesc = KijiTableLayouts.getLayout(KijiTableLayouts.SIMPLE);
@@ -20,7 +20,12 @@
 package org.kiji.schema.layout.impl;
 
 import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -71,4 +76,59 @@ public class TestZooKeeperClient extends ZooKeeperTest {
       client.release();
     }
   }
+
+  @Test
+  public void testSharedZooKeeperClient() throws Exception {
+    final String zkAddr = String.format("localhost:%d", getZKCluster().getClientPort());
+
+    final ZooKeeperClient client = ZooKeeperClient.getZooKeeperClient(zkAddr);
+    try {
+      final ZooKeeperClient shared = ZooKeeperClient.getZooKeeperClient(zkAddr);
+      try {
+        Assert.assertSame(client, shared);
+      } finally {
+        shared.release();
+      }
+      // The shared client is still open:
+      Assert.assertNotNull(client.getZKClient(1.0));
+    } finally {
+      client.release();
+    }
+
+    // Released clients are not shared anymore:
+    final ZooKeeperClient reopened = ZooKeeperClient.getZooKeeperClient(zkAddr);
+    try {
+      Assert.assertNotSame(client, reopened);
+      Assert.assertNotNull(reopened.getZKClient(1.0));
+    } finally {
+      reopened.release();
+    }
+  }
+
+  @Test
+  public void testWatcherDispatch() throws Exception {
+    final String zkAddr = String.format("localhost:%d", getZKCluster().getClientPort());
+
+    final ZooKeeperClient client = new ZooKeeperClient(zkAddr, 10 * 1000);
+    try {
+      client.open();
+      final File path = new File("/watched");
+      final CountDownLatch latch = new CountDownLatch(1);
+      final AtomicReference<String> threadName = new AtomicReference<String>();
+      Assert.assertNull(client.exists(path, new Watcher() {
+        /** {@inheritDoc} */
+        @Override
+        public void process(WatchedEvent event) {
+          threadName.set(Thread.currentThread().getName());
+          latch.countDown();
+        }
+      }));
+      client.createNodeRecursively(path);
+
+      Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+      Assert.assertTrue(threadName.get(), threadName.get().startsWith("zookeeper-watcher-"));
+    } finally {
+      client.release();
+    }
+  }
 }
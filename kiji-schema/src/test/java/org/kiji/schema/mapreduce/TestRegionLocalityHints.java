@@ -0,0 +1,80 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.mapreduce;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+public class TestRegionLocalityHints {
+  @Test
+  public void testToHostname() {
+    assertEquals("host1", RegionLocalityHints.toHostname("host1:60020"));
+    assertEquals("host1", RegionLocalityHints.toHostname("host1"));
+  }
+
+  @Test
+  public void testRankHostsRegionServerFirst() {
+    final Map<String, Long> weights = ImmutableMap.of("a", 10L, "b", 30L, "c", 20L, "d", 5L);
+    assertArrayEquals(new String[] {"c", "b", "a"},
+        RegionLocalityHints.rankHosts("c", weights, 3));
+    assertArrayEquals(new String[] {"rs", "b", "c"},
+        RegionLocalityHints.rankHosts("rs", weights, 3));
+    assertArrayEquals(new String[] {"b", "c"},
+        RegionLocalityHints.rankHosts(null, weights, 2));
+  }
+
+  @Test
+  public void testRankHostsWithoutBlockLocality() {
+    final Map<String, Long> noWeights = ImmutableMap.of();
+    assertArrayEquals(new String[] {"rs"}, RegionLocalityHints.rankHosts("rs", noWeights, 3));
+    assertArrayEquals(new String[0], RegionLocalityHints.rankHosts(null, noWeights, 3));
+  }
+
+  @Test
+  public void testGetHostsWithoutRootDir() {
+    final RegionLocalityHints hints =
+        new RegionLocalityHints(new Configuration(false), "table", true);
+    assertArrayEquals(new String[] {"host1"}, hints.getHosts("region", "host1:60020"));
+    assertArrayEquals(new String[0], hints.getHosts(null, null));
+  }
+
+  @Test
+  public void testInterleaveByHost() {
+    final List<Map.Entry<String, String>> splits = Lists.newArrayList();
+    splits.add(Maps.immutableEntry("a", "a1"));
+    splits.add(Maps.immutableEntry("a", "a2"));
+    splits.add(Maps.immutableEntry("a", "a3"));
+    splits.add(Maps.immutableEntry("b", "b1"));
+    splits.add(Maps.immutableEntry((String) null, "n1"));
+    splits.add(Maps.immutableEntry("b", "b2"));
+    assertEquals(ImmutableList.of("a1", "b1", "n1", "a2", "b2", "a3"),
+        RegionLocalityHints.interleaveByHost(splits));
+  }
+}
@@ -335,4 +335,50 @@ public class TestAvroUtils {
     assertTrue(results.getCauses().contains(result2));
     assertTrue(results.getCauses().contains(result3));
   }
+
+  @Test
+  public void testProjectSchema() throws Exception {
+    final Schema address = Schema.createRecord("Address", null, "org.kiji", false);
+    address.setFields(Lists.newArrayList(
+        new Schema.Field("street", STRING_SCHEMA, null, null),
+        new Schema.Field("zip_code", INT_SCHEMA, null, null)));
+    final Schema person = Schema.createRecord("Person", null, "org.kiji", false);
+    person.setFields(Lists.newArrayList(
+        new Schema.Field("name", STRING_SCHEMA, null, null),
+        new Schema.Field("age", INT_SCHEMA, null, new IntNode(-1)),
+        new Schema.Field("address",
+            Schema.createUnion(Lists.newArrayList(NULL_SCHEMA, address)), null, null)));
+
+    final Schema projected =
+        AvroUtils.projectSchema(person, Lists.newArrayList("address.zip_code", "age"));
+    assertEquals("org.kiji.Person", projected.getFullName());
+    // Fields are kept in their original order, with their defaults:
+    assertEquals(2, projected.getFields().size());
+    assertEquals("age", projected.getFields().get(0).name());
+    assertEquals(new IntNode(-1), projected.getField("age").defaultValue());
+    final Schema projectedAddress =
+        AvroUtils.getOptionalType(projected.getField("address").schema());
+    assertEquals("org.kiji.Address", projectedAddress.getFullName());
+    assertEquals(1, projectedAddress.getFields().size());
+    assertEquals(INT_SCHEMA, projectedAddress.getField("zip_code").schema());
+
+    // A path ending on a field keeps the entire field:
+    assertEquals(address, AvroUtils.getOptionalType(AvroUtils.projectSchema(
+        person, Lists.newArrayList("address", "address.zip_code"))
+        .getField("address").schema()));
+
+    // The projected schema can decode data written with the original schema:
+    assertEquals(AvroUtils.SchemaCompatibilityType.COMPATIBLE,
+        AvroUtils.checkReaderWriterCompatibility(projected, person).getType());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testProjectSchemaMissingField() throws Exception {
+    AvroUtils.projectSchema(WRITER_SCHEMA, Lists.newArrayList("oldfield3"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testProjectSchemaNonRecordField() throws Exception {
+    AvroUtils.projectSchema(WRITER_SCHEMA, Lists.newArrayList("oldfield1.subfield"));
+  }
 }
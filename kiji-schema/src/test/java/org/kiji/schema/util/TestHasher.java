@@ -28,10 +28,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.kiji.schema.avro.HashType;
+
 public class TestHasher {
   private static final Logger LOG = LoggerFactory.getLogger(TestHasher.class);
 
@@ -45,6 +48,24 @@ public class TestHasher {
     assertFalse(Arrays.equals(Hasher.hash("foo"), Hasher.hash("bar")));
   }
 
+  @Test
+  public void testHashTypes() {
+    final byte[] foo = Bytes.toBytes("foo");
+    assertArrayEquals(Hasher.hash("foo"), Hasher.hash(HashType.MD5, foo));
+    assertEquals(16, Hasher.hash(HashType.MURMUR3, foo).length);
+    assertFalse(Arrays.equals(
+        Hasher.hash(HashType.MD5, foo), Hasher.hash(HashType.MURMUR3, foo)));
+
+    for (HashType hashType : HashType.values()) {
+      // Hash a range of the input, and write a prefix of the hash at an offset:
+      final byte[] dest = new byte[6];
+      Hasher.hash(hashType, Bytes.toBytes("xfoox"), 1, 3, dest, 2, 3);
+      final byte[] expected = new byte[6];
+      System.arraycopy(Hasher.hash(hashType, foo), 0, expected, 2, 3);
+      assertArrayEquals(hashType.toString(), expected, dest);
+    }
+  }
+
   public class HashingThread extends Thread {
     private final int mIterations;
     private boolean mFailed;
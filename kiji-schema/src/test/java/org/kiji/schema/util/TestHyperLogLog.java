@@ -0,0 +1,63 @@
+/**
+ * (c) Copyright 2013 WibiData, Inc.
+ *
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.kiji.schema.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+public class TestHyperLogLog {
+  @Test
+  public void testEstimate() {
+    final HyperLogLog hll = new HyperLogLog();
+    assertEquals(0L, hll.estimate());
+    for (int i = 0; i < 100000; ++i) {
+      // Every element is offered twice:
+      hll.offer(Bytes.toBytes(i % 50000));
+    }
+    assertEquals(50000.0, hll.estimate(), 50000 * 0.05);
+  }
+
+  @Test
+  public void testSmallCardinality() {
+    final HyperLogLog hll = new HyperLogLog();
+    for (int i = 0; i < 10; ++i) {
+      hll.offer(Bytes.toBytes("value-" + (i % 3)));
+    }
+    assertEquals(3L, hll.estimate());
+  }
+
+  @Test
+  public void testMerge() {
+    final HyperLogLog even = new HyperLogLog();
+    final HyperLogLog odd = new HyperLogLog();
+    for (int i = 0; i < 20000; ++i) {
+      ((i % 2 == 0) ? even : odd).offer(Bytes.toBytes(i));
+    }
+    assertEquals(10000.0, even.estimate(), 10000 * 0.05);
+    assertEquals(20000.0, even.merge(odd).estimate(), 20000 * 0.05);
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testMergeDifferentPrecisions() {
+    new HyperLogLog(10).merge(new HyperLogLog(12));
+  }
+}
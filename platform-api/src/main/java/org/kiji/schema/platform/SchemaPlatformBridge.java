@@ -20,11 +20,13 @@
 package org.kiji.schema.platform;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.KeyValue.KeyComparator;
+import org.apache.hadoop.hbase.client.HConnection;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.io.hfile.Compression;
 import org.apache.hadoop.hbase.io.hfile.HFile;
@@ -74,6 +76,40 @@ public abstract class SchemaPlatformBridge {
   public abstract void setWriteBufferSize(HTableInterface hTable, long bufSize)
       throws IOException;
 
+  /**
+   * Reports whether HTable handles can use an external connection and thread pool.
+   *
+   * @return whether {@link #newHTable} uses the connection and thread pool it is given.
+   */
+  public abstract boolean supportsSharedHTableResources();
+
+  /**
+   * Creates an HTable handle using a shared HBase connection and a shared thread pool.
+   *
+   * <p>
+   *   Closing the handle closes neither the connection nor the thread pool. Platforms whose
+   *   HTable cannot use an external connection and thread pool create a regular HTable, and
+   *   ignore the connection and thread pool: see {@link #supportsSharedHTableResources()}.
+   * </p>
+   *
+   * <p>
+   *   The write buffer size and scanner caching of the handle come from the given configuration.
+   *   Other client settings come from the configuration of the connection.
+   * </p>
+   *
+   * @param tableName Name of the HBase table.
+   * @param conf Configuration of the HBase cluster, with the settings of the handle.
+   * @param connection Shared connection to the HBase cluster.
+   *     May be null if the platform does not support shared resources.
+   * @param pool Shared thread pool running the batch operations of the handle.
+   *     May be null if the platform does not support shared resources.
+   * @return a new HTable handle.
+   * @throws IOException on I/O error.
+   */
+  public abstract HTableInterface newHTable(
+      String tableName, Configuration conf, HConnection connection, ExecutorService pool)
+      throws IOException;
+
   /**
    * Creates an HFile writer.
    *